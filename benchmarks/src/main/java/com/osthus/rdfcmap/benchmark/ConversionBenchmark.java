@@ -0,0 +1,39 @@
+package com.osthus.rdfcmap.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
+import com.osthus.rdfcmap.cmap.Turtle2CmapConverter;
+
+/**
+ * Complete conversions CXL -> TTL and TTL -> CXL of a synthetic map. Output files are written to the working directory.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversionBenchmark
+{
+	@Benchmark
+	public void cmap2Turtle(SyntheticMapState state) throws Exception
+	{
+		new Cmap2TurtleConverter().convert(state.syntheticMap.getCxlPath(), state.syntheticMap.getAdditionalFiles());
+	}
+
+	@Benchmark
+	public void turtle2Cmap(SyntheticMapState state) throws Exception
+	{
+		new Turtle2CmapConverter().convert(state.syntheticMap.getTurtlePath(), state.syntheticMap.getAdditionalFiles());
+	}
+}
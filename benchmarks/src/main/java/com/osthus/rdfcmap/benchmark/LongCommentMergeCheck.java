@@ -0,0 +1,123 @@
+package com.osthus.rdfcmap.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.osthus.rdfcmap.RdfCmap;
+import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
+import com.osthus.rdfcmap.util.Prefixes;
+import com.osthus.rdfcmap.util.VizUtil;
+
+/**
+ * Regression check for the parallel parsing of long comments. Converts a synthetic map with cross references (see {@link SyntheticMapGenerator}) once with
+ * every long comment parsed right before it is merged and once with the long comments parsed in parallel, and compares the instance graphs of both
+ * conversions. The visualization resources are left out, many of them get random IRIs on every conversion.
+ *
+ * Run with: java -cp benchmarks.jar com.osthus.rdfcmap.benchmark.LongCommentMergeCheck [conceptCount]
+ *
+ * Exits with 1 if the instance graphs differ, both TTL files are kept in the temporary directory then.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class LongCommentMergeCheck
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	public static void main(String[] args) throws Exception
+	{
+		int conceptCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+		RdfCmap.optimizeLayout = false;
+		RdfCmap.writeSeparateFiles = false;
+		RdfCmap.writeFiles = false;
+		Prefixes.updatePrefixes(new String[] { SyntheticMapGenerator.PREFIX, SyntheticMapGenerator.NAMESPACE });
+
+		Path directory = Files.createTempDirectory("rdfcmap-check");
+		SyntheticMapGenerator generator = new SyntheticMapGenerator(conceptCount, 2, 3, 20);
+		generator.setCrossReferences(true);
+		SyntheticMap syntheticMap = generator.generate(directory);
+
+		Model inOrder = convert(syntheticMap, true);
+		Model parallel = convert(syntheticMap, false);
+
+		if (inOrder.isIsomorphicWith(parallel))
+		{
+			log.info("Long comments parsed in parallel result in the same instance graph as parsed in order, " + inOrder.size() + " statements.");
+			return;
+		}
+
+		Path inOrderPath = write(inOrder, directory.resolve("in-order.ttl"));
+		Path parallelPath = write(parallel, directory.resolve("parallel.ttl"));
+		log.error("Long comments parsed in parallel result in a different instance graph than parsed in order, compare " + inOrderPath + " with "
+				+ parallelPath + ".");
+		log.error("Only in order:\n" + toTurtle(inOrder.difference(parallel)));
+		log.error("Only parallel:\n" + toTurtle(parallel.difference(inOrder)));
+		System.exit(1);
+	}
+
+	private static Model convert(SyntheticMap syntheticMap, boolean parseLongCommentsInOrder) throws Exception
+	{
+		RdfCmap.parseLongCommentsInOrder = parseLongCommentsInOrder;
+		try
+		{
+			Cmap2TurtleConverter converter = new Cmap2TurtleConverter();
+			converter.setWriteTurtleFile(false);
+			return instances(converter.convert(syntheticMap.getCxlPath(), syntheticMap.getAdditionalFiles()));
+		}
+		finally
+		{
+			RdfCmap.parseLongCommentsInOrder = false;
+		}
+	}
+
+	private static Model instances(Model model)
+	{
+		Model instances = ModelFactory.createDefaultModel();
+		StmtIterator iterator = model.listStatements();
+		while (iterator.hasNext())
+		{
+			Statement statement = iterator.next();
+			if (isVisualization(statement.getSubject()) || isVisualization(statement.getPredicate()) || isVisualization(statement.getObject()))
+			{
+				continue;
+			}
+			instances.add(statement);
+		}
+		instances.setNsPrefixes(model.getNsPrefixMap());
+		return instances;
+	}
+
+	private static boolean isVisualization(RDFNode node)
+	{
+		return node.isURIResource() && node.asResource().getURI().startsWith(VizUtil.AFV_PREFIX);
+	}
+
+	private static Path write(Model model, Path path) throws IOException
+	{
+		try (OutputStream out = Files.newOutputStream(path))
+		{
+			RDFDataMgr.write(out, model, Lang.TURTLE);
+		}
+		return path;
+	}
+
+	private static String toTurtle(Model model)
+	{
+		StringWriter writer = new StringWriter();
+		RDFDataMgr.write(writer, model, Lang.TURTLE);
+		return writer.toString();
+	}
+}
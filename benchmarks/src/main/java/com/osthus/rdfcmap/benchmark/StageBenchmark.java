@@ -0,0 +1,229 @@
+package com.osthus.rdfcmap.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.osthus.rdfcmap.RdfCmap;
+import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
+import com.osthus.rdfcmap.cmap.CxlWriter;
+import com.osthus.rdfcmap.cmap.Turtle2CmapConverter;
+import com.osthus.rdfcmap.cmap.layout.Layouter;
+import com.osthus.rdfcmap.cmap.layout.NativeLayouter;
+import com.osthus.rdfcmap.util.ConnectionGraph;
+import com.osthus.rdfcmap.util.RdfUtil;
+
+/**
+ * Single stages of the conversions of a synthetic map. Every stage gets a fresh model prepared by all preceding stages, stages that modify their model prepare it
+ * before each invocation.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StageBenchmark
+{
+	/**
+	 * Model of the CXL with vocabulary, before creating the visualization model.
+	 */
+	@State(Scope.Thread)
+	public static class CxlModel
+	{
+		Cmap2TurtleConverter converter;
+
+		Model model;
+
+		@Setup(Level.Invocation)
+		public void setup(SyntheticMapState state) throws Exception
+		{
+			converter = new Cmap2TurtleConverter();
+			model = state.readCxlModel();
+		}
+	}
+
+	/**
+	 * UI properties read from CXL, before building the visualization info.
+	 */
+	@State(Scope.Thread)
+	public static class UiProperties
+	{
+		Cmap2TurtleConverter converter;
+
+		Model model;
+
+		@Setup(Level.Invocation)
+		public void setup(SyntheticMapState state) throws Exception
+		{
+			converter = new Cmap2TurtleConverter();
+			model = state.readCxlModel();
+			converter.readUiProperties(state.syntheticMap.getCxlPath(), model);
+		}
+	}
+
+	/**
+	 * Visualization model of the CXL, before processing long comments.
+	 */
+	@State(Scope.Thread)
+	public static class VisualizationModel
+	{
+		Cmap2TurtleConverter converter;
+
+		Model model;
+
+		@Setup(Level.Invocation)
+		public void setup(SyntheticMapState state) throws Exception
+		{
+			converter = new Cmap2TurtleConverter();
+			model = converter.createOrUpdateVisualizationModel(state.syntheticMap.getCxlPath(), state.readCxlModel());
+		}
+	}
+
+	/**
+	 * Updated model of the CXL, before cleaning.
+	 */
+	@State(Scope.Thread)
+	public static class UpdatedModel
+	{
+		Cmap2TurtleConverter converter;
+
+		Model model;
+
+		@Setup(Level.Invocation)
+		public void setup(SyntheticMapState state) throws Exception
+		{
+			converter = new Cmap2TurtleConverter();
+			model = converter.createOrUpdateVisualizationModel(state.syntheticMap.getCxlPath(), state.readCxlModel());
+			model = converter.updateModel(model);
+		}
+	}
+
+	/**
+	 * Visualization model of the TTL, before writing CXL. Not modified by the writer.
+	 */
+	@State(Scope.Thread)
+	public static class TurtleVisualizationModel
+	{
+		Model model;
+
+		@Setup(Level.Trial)
+		public void setup(SyntheticMapState state) throws Exception
+		{
+			model = new Turtle2CmapConverter().createVisualizationModel(state.syntheticMap.getTurtlePath(), state.syntheticMap.getAdditionalFiles());
+		}
+	}
+
+	/**
+	 * Visualization model of the TTL and its connections, before layouting.
+	 */
+	@State(Scope.Thread)
+	public static class LayoutModel
+	{
+		@Param({ "1" })
+		public int layoutSeconds;
+
+		Model model;
+
+		ConnectionGraph connectionGraph;
+
+		@Setup(Level.Invocation)
+		public void setup(SyntheticMapState state) throws Exception
+		{
+			RdfCmap.layoutDuration = layoutSeconds;
+			model = new Turtle2CmapConverter().createVisualizationModel(state.syntheticMap.getTurtlePath(), state.syntheticMap.getAdditionalFiles());
+			connectionGraph = new ConnectionGraph(model);
+		}
+	}
+
+	/**
+	 * Vocabulary and labels of all concepts, looked up one after another.
+	 */
+	@State(Scope.Thread)
+	public static class Labels
+	{
+		Model model;
+
+		List<String> labels;
+
+		int next = 0;
+
+		@Setup(Level.Trial)
+		public void setup(SyntheticMapState state) throws Exception
+		{
+			model = state.readCxlModel();
+			labels = state.syntheticMap.getConceptLabels();
+		}
+
+		String nextLabel()
+		{
+			String label = labels.get(next);
+			next = (next + 1) % labels.size();
+			return label;
+		}
+	}
+
+	@Benchmark
+	public Model createOrUpdateVisualizationModel(SyntheticMapState state, CxlModel input) throws Exception
+	{
+		return input.converter.createOrUpdateVisualizationModel(state.syntheticMap.getCxlPath(), input.model);
+	}
+
+	@Benchmark
+	public Model createOrUpdateVisualizationInfo(SyntheticMapState state, UiProperties input)
+	{
+		return input.converter.createOrUpdateVisualizationInfo(state.syntheticMap.getCxlPath(), input.model);
+	}
+
+	@Benchmark
+	public Model updateModel(VisualizationModel input)
+	{
+		return input.converter.updateModel(input.model);
+	}
+
+	@Benchmark
+	public Model cleanModel(UpdatedModel input)
+	{
+		return input.converter.cleanModel(input.model);
+	}
+
+	@Benchmark
+	public void generateCxlFromRdfModel(SyntheticMapState state, TurtleVisualizationModel input) throws Exception
+	{
+		CxlWriter.generateCxlFromRdfModel(state.syntheticMap.getTurtlePath(), input.model);
+	}
+
+	@Benchmark
+	public Model optimizeLayout(LayoutModel input)
+	{
+		return Layouter.optimizeLayout(input.model, input.connectionGraph);
+	}
+
+	@Benchmark
+	public Model optimizeNativeLayout(LayoutModel input)
+	{
+		return NativeLayouter.optimizeLayout(input.model, input.connectionGraph);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Resource getResourceByLabel(Labels input)
+	{
+		return RdfUtil.getResourceByLabel(input.model, input.nextLabel(), false, true);
+	}
+}
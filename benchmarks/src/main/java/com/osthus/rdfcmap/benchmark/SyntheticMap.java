@@ -0,0 +1,59 @@
+package com.osthus.rdfcmap.benchmark;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Files of a generated synthetic map.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class SyntheticMap
+{
+	private final Path vocabularyPath;
+
+	private final Path cxlPath;
+
+	private final Path turtlePath;
+
+	private final List<String> conceptLabels;
+
+	public SyntheticMap(Path vocabularyPath, Path cxlPath, Path turtlePath, List<String> conceptLabels)
+	{
+		this.vocabularyPath = vocabularyPath;
+		this.cxlPath = cxlPath;
+		this.turtlePath = turtlePath;
+		this.conceptLabels = conceptLabels;
+	}
+
+	public Path getVocabularyPath()
+	{
+		return vocabularyPath;
+	}
+
+	public Path getCxlPath()
+	{
+		return cxlPath;
+	}
+
+	public Path getTurtlePath()
+	{
+		return turtlePath;
+	}
+
+	/**
+	 * @return vocabulary file as additional file for the converters
+	 */
+	public String[] getAdditionalFiles()
+	{
+		return new String[] { vocabularyPath.toString() };
+	}
+
+	/**
+	 * @return label of every concept in order of the concepts
+	 */
+	public List<String> getConceptLabels()
+	{
+		return conceptLabels;
+	}
+}
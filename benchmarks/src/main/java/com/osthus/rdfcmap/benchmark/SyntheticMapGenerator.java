@@ -0,0 +1,411 @@
+package com.osthus.rdfcmap.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates a synthetic map as vocabulary, CXL and TTL.
+ *
+ * The vocabulary contains classes and object properties with skos:prefLabel. The CXL contains concepts labeled with classes, each concept is linked to a fixed
+ * number of other concepts by linking phrases labeled with object properties and carries a long comment of the given number of triples. The TTL contains the
+ * same instance graph as RDF. A fixed seed makes the output reproducible.
+ *
+ * With cross references, all CXL identifiers are UUIDs, so that converting the same CXL twice creates the same instances. The vocabulary contains a legacy and
+ * a current term, the long comment of the first concept deprecates the legacy term and the long comments of all other concepts refer to the legacy term by
+ * label. How a long comment resolves the label thus depends on whether the first concept was merged before it.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class SyntheticMapGenerator
+{
+	public static final String NAMESPACE = "http://www.example.com/benchmark#";
+
+	public static final String VOCABULARY_FILE = "synthetic-vocabulary.ttl";
+
+	public static final String CXL_FILE = "synthetic-map.cxl";
+
+	public static final String TURTLE_FILE = "synthetic-model.ttl";
+
+	private static final String RDF_TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+
+	private static final String DCT_TITLE = "<http://purl.org/dc/terms/title>";
+
+	private static final String OWL_DEPRECATED = "<http://www.w3.org/2002/07/owl#deprecated>";
+
+	private static final String DCT_IS_REPLACED_BY = "<http://purl.org/dc/terms/isReplacedBy>";
+
+	private static final String XSD_BOOLEAN = "<http://www.w3.org/2001/XMLSchema#boolean>";
+
+	/**
+	 * Prefix of {@link #NAMESPACE} in long comments with cross references, must be registered in the prefixes of the converter.
+	 */
+	public static final String PREFIX = "bench";
+
+	private static final long SEED = 42l;
+
+	private final int conceptCount;
+
+	private final int fanOut;
+
+	private final int longCommentSize;
+
+	private final int vocabularySize;
+
+	private final int propertyCount;
+
+	private boolean crossReferences = false;
+
+	/**
+	 * @param conceptCount
+	 *            number of concepts (instances)
+	 * @param fanOut
+	 *            number of outgoing links per concept
+	 * @param longCommentSize
+	 *            number of literal triples per concept, written to the long comment in CXL
+	 * @param vocabularySize
+	 *            number of classes of the vocabulary, there is one object property per ten classes
+	 */
+	public SyntheticMapGenerator(int conceptCount, int fanOut, int longCommentSize, int vocabularySize)
+	{
+		this.conceptCount = conceptCount;
+		this.fanOut = fanOut;
+		this.longCommentSize = longCommentSize;
+		this.vocabularySize = Math.max(1, vocabularySize);
+		this.propertyCount = Math.max(1, vocabularySize / 10);
+	}
+
+	/**
+	 * @param crossReferences
+	 *            true to let long comments refer to a term deprecated by another long comment, see class comment
+	 */
+	public void setCrossReferences(boolean crossReferences)
+	{
+		this.crossReferences = crossReferences;
+	}
+
+	public SyntheticMap generate(Path directory) throws IOException
+	{
+		Random random = new Random(SEED);
+
+		List<Concept> concepts = new ArrayList<>(conceptCount);
+		for (int i = 0; i < conceptCount; i++)
+		{
+			concepts.add(new Concept(i, new UUID(random.nextLong(), random.nextLong()), random.nextInt(vocabularySize), crossReferences));
+		}
+
+		List<Link> links = new ArrayList<>(conceptCount * fanOut);
+		for (Concept concept : concepts)
+		{
+			for (int i = 0; i < fanOut && conceptCount > 1; i++)
+			{
+				int to = random.nextInt(conceptCount);
+				if (to == concept.index)
+				{
+					to = (to + 1) % conceptCount;
+				}
+				links.add(new Link(links.size(), concept, concepts.get(to), random.nextInt(propertyCount), crossReferences));
+			}
+		}
+
+		Path vocabularyPath = directory.resolve(VOCABULARY_FILE);
+		try (Writer writer = Files.newBufferedWriter(vocabularyPath, StandardCharsets.UTF_8))
+		{
+			writeVocabulary(writer);
+		}
+
+		Path cxlPath = directory.resolve(CXL_FILE);
+		try (Writer writer = Files.newBufferedWriter(cxlPath, StandardCharsets.UTF_8))
+		{
+			writeCxl(writer, concepts, links);
+		}
+
+		Path turtlePath = directory.resolve(TURTLE_FILE);
+		try (Writer writer = Files.newBufferedWriter(turtlePath, StandardCharsets.UTF_8))
+		{
+			writeTurtle(writer, concepts, links);
+		}
+
+		List<String> conceptLabels = new ArrayList<>(concepts.size());
+		for (Concept concept : concepts)
+		{
+			conceptLabels.add(classLabel(concept.type));
+		}
+
+		return new SyntheticMap(vocabularyPath, cxlPath, turtlePath, conceptLabels);
+	}
+
+	private void writeVocabulary(Writer writer) throws IOException
+	{
+		writer.write("@prefix owl: <http://www.w3.org/2002/07/owl#> .\n");
+		writer.write("@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n");
+		writer.write("@prefix skos: <http://www.w3.org/2004/02/skos/core#> .\n");
+		writer.write("@prefix bench: <" + NAMESPACE + "> .\n\n");
+
+		for (int i = 0; i < vocabularySize; i++)
+		{
+			writer.write("bench:Class" + i + " a owl:Class ;\n");
+			if (i > 0)
+			{
+				writer.write("\trdfs:subClassOf bench:Class" + ((i - 1) / 2) + " ;\n");
+			}
+			writer.write("\tskos:prefLabel \"" + classLabel(i) + "\" .\n");
+		}
+
+		for (int i = 0; i < propertyCount; i++)
+		{
+			writer.write("bench:relation" + i + " a owl:ObjectProperty ;\n");
+			writer.write("\tskos:prefLabel \"" + propertyLabel(i) + "\" .\n");
+		}
+
+		writer.write("bench:value a owl:DatatypeProperty ;\n");
+		writer.write("\tskos:prefLabel \"benchmark value\" .\n");
+
+		if (crossReferences)
+		{
+			writer.write("bench:LegacyTerm a owl:Class ;\n");
+			writer.write("\tskos:prefLabel \"legacy term\" .\n");
+			writer.write("bench:CurrentTerm a owl:Class ;\n");
+			writer.write("\tskos:prefLabel \"current term\" .\n");
+			writer.write("bench:related a owl:ObjectProperty ;\n");
+			writer.write("\tskos:prefLabel \"benchmark related\" .\n");
+		}
+	}
+
+	private void writeCxl(Writer writer, List<Concept> concepts, List<Link> links) throws IOException
+	{
+		int columns = (int) Math.ceil(Math.sqrt(Math.max(1, concepts.size())));
+
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
+		writer.write("<cmap xmlns:dcterms=\"http://purl.org/dc/terms/\" xmlns=\"http://cmap.ihmc.us/xml/cmap/\" "
+				+ "xmlns:dc=\"http://purl.org/dc/elements/1.1/\" xmlns:vcard=\"http://www.w3.org/2001/vcard-rdf/3.0#\">\r\n");
+		writer.write("    <res-meta>\r\n");
+		writer.write("        <dc:title>synthetic map of " + concepts.size() + " concepts</dc:title>\r\n");
+		writer.write("        <dc:format>x-cmap/x-storable</dc:format>\r\n");
+		writer.write("    </res-meta>\r\n");
+		writer.write("    <map width=\"" + (columns * 200 + 200) + "\" height=\"" + (columns * 100 + 100) + "\">\r\n");
+
+		writer.write("    <concept-list>\r\n");
+		for (Concept concept : concepts)
+		{
+			writer.write("        <concept id=\"" + concept.getCxlId() + "\" label=\"" + classLabel(concept.type) + "\" short-comment=\"synthetic concept "
+					+ concept.index + "\" long-comment=\"" + escapeAttribute(createLongComment(concept)) + "\"/>\r\n");
+		}
+		writer.write("    </concept-list>\r\n");
+
+		writer.write("    <concept-appearance-list>\r\n");
+		for (Concept concept : concepts)
+		{
+			writer.write("        <concept-appearance id=\"" + concept.getCxlId() + "\" x=\"" + ((concept.index % columns) * 200 + 100) + "\" y=\""
+					+ ((concept.index / columns) * 100 + 50) + "\" width=\"120\" height=\"25\"/>\r\n");
+		}
+		writer.write("    </concept-appearance-list>\r\n");
+
+		writer.write("    <linking-phrase-list>\r\n");
+		for (Link link : links)
+		{
+			writer.write("        <linking-phrase id=\"" + link.getCxlId() + "\" label=\"" + propertyLabel(link.property) + "\"/>\r\n");
+		}
+		writer.write("    </linking-phrase-list>\r\n");
+
+		writer.write("    <linking-phrase-appearance-list>\r\n");
+		for (Link link : links)
+		{
+			writer.write("        <linking-phrase-appearance id=\"" + link.getCxlId() + "\" x=\"" + ((link.from.index % columns) * 200 + 150) + "\" y=\""
+					+ ((link.from.index / columns) * 100 + 80) + "\" width=\"100\" height=\"11\"/>\r\n");
+		}
+		writer.write("    </linking-phrase-appearance-list>\r\n");
+
+		writer.write("    <connection-list>\r\n");
+		for (Link link : links)
+		{
+			writer.write("        <connection id=\"" + link.getCxlId() + "-from\" from-id=\"" + link.from.getCxlId() + "\" to-id=\"" + link.getCxlId()
+					+ "\"/>\r\n");
+			writer.write("        <connection id=\"" + link.getCxlId() + "-to\" from-id=\"" + link.getCxlId() + "\" to-id=\"" + link.to.getCxlId()
+					+ "\"/>\r\n");
+		}
+		writer.write("    </connection-list>\r\n");
+
+		writer.write("    <connection-appearance-list>\r\n");
+		for (Link link : links)
+		{
+			writer.write("        <connection-appearance id=\"" + link.getCxlId() + "-from\" from-pos=\"center\" to-pos=\"center\" arrowhead=\"no\"/>\r\n");
+			writer.write("        <connection-appearance id=\"" + link.getCxlId() + "-to\" from-pos=\"center\" to-pos=\"center\" arrowhead=\"yes\"/>\r\n");
+		}
+		writer.write("    </connection-appearance-list>\r\n");
+
+		writer.write("    </map>\r\n");
+		writer.write("</cmap>\r\n");
+	}
+
+	private String createLongComment(Concept concept)
+	{
+		if (longCommentSize <= 0)
+		{
+			return "";
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("<" + concept.getIri() + "> " + RDF_TYPE + " <" + NAMESPACE + "Class" + concept.type + "> ;\n");
+		sb.append("\t" + DCT_TITLE + " \"" + classLabel(concept.type) + "\"");
+		for (int i = 0; i < longCommentSize; i++)
+		{
+			sb.append(" ;\n\t<" + NAMESPACE + "value> \"" + createValue(concept, i) + "\"");
+		}
+		if (crossReferences && concept.index > 0)
+		{
+			sb.append(" ;\n\t<" + NAMESPACE + "related> <<" + PREFIX + ":legacy term>>");
+		}
+		sb.append(" .\n");
+		if (crossReferences && concept.index == 0)
+		{
+			sb.append("<" + NAMESPACE + "LegacyTerm> " + OWL_DEPRECATED + " \"true\"^^" + XSD_BOOLEAN + " ;\n");
+			sb.append("\t" + DCT_IS_REPLACED_BY + " <" + NAMESPACE + "CurrentTerm> .\n");
+		}
+		return sb.toString();
+	}
+
+	private void writeTurtle(Writer writer, List<Concept> concepts, List<Link> links) throws IOException
+	{
+		writer.write("@prefix owl: <http://www.w3.org/2002/07/owl#> .\n");
+		writer.write("@prefix dct: <http://purl.org/dc/terms/> .\n");
+		writer.write("@prefix bench: <" + NAMESPACE + "> .\n\n");
+
+		List<List<Link>> outgoingLinks = new ArrayList<>(concepts.size());
+		for (int i = 0; i < concepts.size(); i++)
+		{
+			outgoingLinks.add(new ArrayList<Link>(fanOut));
+		}
+		for (Link link : links)
+		{
+			outgoingLinks.get(link.from.index).add(link);
+		}
+
+		for (Concept concept : concepts)
+		{
+			writer.write("<" + concept.getIri() + "> a owl:NamedIndividual, bench:Class" + concept.type + " ;\n");
+			writer.write("\tdct:title \"" + classLabel(concept.type) + "\"");
+			for (int i = 0; i < longCommentSize; i++)
+			{
+				writer.write(" ;\n\tbench:value \"" + createValue(concept, i) + "\"");
+			}
+			for (Link link : outgoingLinks.get(concept.index))
+			{
+				writer.write(" ;\n\tbench:relation" + link.property + " <" + link.to.getIri() + ">");
+			}
+			writer.write(" .\n");
+		}
+	}
+
+	private static String classLabel(int index)
+	{
+		return "benchmark class " + index;
+	}
+
+	private static String propertyLabel(int index)
+	{
+		return "benchmark relation " + index;
+	}
+
+	private static String createValue(Concept concept, int index)
+	{
+		return "synthetic value " + index + " of concept " + concept.index;
+	}
+
+	private static String escapeAttribute(String value)
+	{
+		StringBuilder sb = new StringBuilder(value.length() + 64);
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '&':
+					sb.append("&amp;");
+					break;
+				case '<':
+					sb.append("&lt;");
+					break;
+				case '>':
+					sb.append("&gt;");
+					break;
+				case '"':
+					sb.append("&quot;");
+					break;
+				case '\n':
+					sb.append("&#10;");
+					break;
+				case '\t':
+					sb.append("&#9;");
+					break;
+				default:
+					sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static class Concept
+	{
+		private final int index;
+
+		private final UUID uuid;
+
+		private final int type;
+
+		private final boolean isUuidId;
+
+		private Concept(int index, UUID uuid, int type, boolean isUuidId)
+		{
+			this.index = index;
+			this.uuid = uuid;
+			this.type = type;
+			this.isUuidId = isUuidId;
+		}
+
+		private String getCxlId()
+		{
+			return isUuidId ? getIri() : "concept-" + index;
+		}
+
+		private String getIri()
+		{
+			return "urn:uuid:" + uuid;
+		}
+	}
+
+	private static class Link
+	{
+		private final int index;
+
+		private final Concept from;
+
+		private final Concept to;
+
+		private final int property;
+
+		private final boolean isUuidId;
+
+		private Link(int index, Concept from, Concept to, int property, boolean isUuidId)
+		{
+			this.index = index;
+			this.from = from;
+			this.to = to;
+			this.property = property;
+			this.isUuidId = isUuidId;
+		}
+
+		private String getCxlId()
+		{
+			String id = "link-" + index;
+			return isUuidId ? "urn:uuid:" + UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8)) : id;
+		}
+	}
+}
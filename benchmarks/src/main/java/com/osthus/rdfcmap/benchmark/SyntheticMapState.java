@@ -0,0 +1,59 @@
+package com.osthus.rdfcmap.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xml.sax.SAXException;
+
+import com.osthus.rdfcmap.RdfCmap;
+import com.osthus.rdfcmap.util.CmapUtil;
+
+/**
+ * Synthetic map shared by all benchmarks of a trial. Restrict the scaling curve on the command line, e.g. -p conceptCount=100,1000.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+@State(Scope.Benchmark)
+public class SyntheticMapState
+{
+	@Param({ "100", "1000", "10000", "100000" })
+	public int conceptCount;
+
+	@Param({ "2" })
+	public int fanOut;
+
+	@Param({ "10" })
+	public int longCommentSize;
+
+	@Param({ "1000" })
+	public int vocabularySize;
+
+	public SyntheticMap syntheticMap;
+
+	@Setup
+	public void generate() throws IOException
+	{
+		RdfCmap.optimizeLayout = false;
+		RdfCmap.writeSeparateFiles = false;
+		RdfCmap.writeFiles = false;
+
+		syntheticMap = new SyntheticMapGenerator(conceptCount, fanOut, longCommentSize, vocabularySize)
+				.generate(Files.createTempDirectory("rdfcmap-benchmark"));
+	}
+
+	/**
+	 * @return model stored in CXL (none for a synthetic map) together with the vocabulary, as read at the beginning of CXL to TTL conversion
+	 */
+	public Model readCxlModel() throws IOException, ParserConfigurationException, SAXException
+	{
+		Model model = CmapUtil.extractStoredModelFromCxl(syntheticMap.getCxlPath());
+		return CmapUtil.addTriples(syntheticMap.getAdditionalFiles(), model);
+	}
+}
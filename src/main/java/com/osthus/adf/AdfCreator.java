@@ -9,14 +9,7 @@ import org.allotrope.adf.service.AdfService;
 import org.allotrope.adf.service.AdfServiceFactory;
 import org.apache.logging.log4j.Logger;
 
-import com.hp.hpl.jena.rdf.model.AnonId;
 import com.hp.hpl.jena.rdf.model.Model;
-import com.hp.hpl.jena.rdf.model.ModelFactory;
-import com.hp.hpl.jena.rdf.model.Property;
-import com.hp.hpl.jena.rdf.model.RDFNode;
-import com.hp.hpl.jena.rdf.model.Resource;
-import com.hp.hpl.jena.rdf.model.Statement;
-import com.hp.hpl.jena.rdf.model.StmtIterator;
 
 import de.osthus.ambeth.exception.RuntimeExceptionUtil;
 
@@ -38,8 +31,8 @@ public class AdfCreator
 		try (AdfFile adfFile = adfService.createFile(adfPath))
 		{
 			DataDescription dataDescription = adfFile.getDataDescription();
-			Model newModel = dumpModel(model);
-			dataDescription.add(newModel);
+			long numTriples = AdfModelBridge.write(model.getGraph(), dataDescription);
+			log.info("Wrote " + numTriples + " triples to ADF data description.");
 		}
 		catch (IOException e)
 		{
@@ -54,8 +47,8 @@ public class AdfCreator
 		try (AdfFile adfFile = adfService.openFile(adfPath))
 		{
 			DataDescription dataDescription = adfFile.getDataDescription();
-			org.apache.jena.rdf.model.Model newModel = readModel(dataDescription);
-			model.add(newModel);
+			long numTriples = AdfModelBridge.read(dataDescription.getGraph(), model.getGraph());
+			log.info("Read " + numTriples + " triples from ADF data description.");
 		}
 		catch (IOException e)
 		{
@@ -66,175 +59,16 @@ public class AdfCreator
 	}
 
 	/**
-	 * Currently ADF depends on Jena 2.13.0 which has different model compared to jena 3.1.0 as used by rdfcmap. This method transforms jena 3.1.0 model to jena
-	 * 2.13.0 model based on conversion of single triples.
+	 * Currently ADF depends on Jena 2.13.0 which has different model compared to jena 3.1.0 as used by rdfcmap. This method transforms jena 2.13.0 model to jena
+	 * 3.1.0 model based on conversion of nodes by {@link AdfModelBridge}.
 	 *
 	 * @param model
 	 * @return
 	 */
-	private static Model dumpModel(org.apache.jena.rdf.model.Model model)
-	{
-		Model newModel = ModelFactory.createDefaultModel();
-		org.apache.jena.rdf.model.StmtIterator stmtIterator = model.listStatements();
-		while (stmtIterator.hasNext())
-		{
-			org.apache.jena.rdf.model.Statement statement = stmtIterator.next();
-			org.apache.jena.rdf.model.Resource subject = statement.getSubject();
-			org.apache.jena.rdf.model.Property property = statement.getPredicate();
-			org.apache.jena.rdf.model.RDFNode object = statement.getObject();
-
-			Resource newSubject;
-			Property newProperty;
-			RDFNode newObject;
-
-			if (subject.isURIResource())
-			{
-				newSubject = newModel.createResource(subject.getURI());
-			}
-			else
-			{
-				newSubject = newModel.createResource(new AnonId(subject.asNode().getBlankNodeId().getLabelString()));
-			}
-
-			newProperty = newModel.createProperty(property.getURI());
-
-			if (object.isURIResource())
-			{
-				newObject = newModel.createResource(object.asResource().getURI());
-			}
-			else if (object.isAnon())
-			{
-				newObject = newModel.createResource(new AnonId(object.asNode().getBlankNodeId().getLabelString()));
-			}
-			else
-			{
-				String datatypeUri = object.asLiteral().getDatatypeURI();
-				if (datatypeUri.contains("string"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getString());
-				}
-				else if (datatypeUri.contains("integer"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getInt());
-				}
-				else if (datatypeUri.contains("double"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getDouble());
-				}
-				else if (datatypeUri.contains("float"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getFloat());
-				}
-				else if (datatypeUri.contains("long"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getLong());
-				}
-				else if (datatypeUri.contains("boolean"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getBoolean());
-				}
-				else if (datatypeUri.contains("dateTime"))
-				{
-					String literalValue = object.asLiteral().getString();
-					if (literalValue.contains("\"^^"))
-					{
-						String[] segments = literalValue.split("\\^\\^");
-						literalValue = segments[0].substring(1, segments[0].length() - 1); // cut quotes
-					}
-					Object literalValueAsObject = javax.xml.bind.DatatypeConverter.parseDateTime(literalValue);
-					newObject = newModel.createTypedLiteral(literalValueAsObject);
-				}
-				else
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getString());
-				}
-			}
-
-			newModel.add(newSubject, newProperty, newObject);
-		}
-		return newModel;
-	}
-
 	public static org.apache.jena.rdf.model.Model readModel(Model model)
 	{
 		org.apache.jena.rdf.model.Model newModel = org.apache.jena.rdf.model.ModelFactory.createDefaultModel();
-		StmtIterator stmtIterator = model.listStatements();
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			Resource subject = statement.getSubject();
-			Property property = statement.getPredicate();
-			RDFNode object = statement.getObject();
-
-			org.apache.jena.rdf.model.Resource newSubject;
-			org.apache.jena.rdf.model.Property newProperty;
-			org.apache.jena.rdf.model.RDFNode newObject;
-
-			if (subject.isURIResource())
-			{
-				newSubject = newModel.createResource(subject.getURI());
-			}
-			else
-			{
-				newSubject = newModel.createResource(new org.apache.jena.rdf.model.AnonId(subject.asNode().getBlankNodeId().getLabelString()));
-			}
-
-			newProperty = newModel.createProperty(property.getURI());
-
-			if (object.isURIResource())
-			{
-				newObject = newModel.createResource(object.asResource().getURI());
-			}
-			else if (object.isAnon())
-			{
-				newObject = newModel.createResource(new org.apache.jena.rdf.model.AnonId(object.asNode().getBlankNodeId().getLabelString()));
-			}
-			else
-			{
-				String datatypeUri = object.asLiteral().getDatatypeURI();
-				if (datatypeUri.contains("string"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getString());
-				}
-				else if (datatypeUri.contains("integer"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getInt());
-				}
-				else if (datatypeUri.contains("double"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getDouble());
-				}
-				else if (datatypeUri.contains("float"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getFloat());
-				}
-				else if (datatypeUri.contains("long"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getLong());
-				}
-				else if (datatypeUri.contains("boolean"))
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getBoolean());
-				}
-				else if (datatypeUri.contains("dateTime"))
-				{
-					String literalValue = object.asLiteral().getString();
-					if (literalValue.contains("\"^^"))
-					{
-						String[] segments = literalValue.split("\\^\\^");
-						literalValue = segments[0].substring(1, segments[0].length() - 1); // cut quotes
-					}
-					Object literalValueAsObject = javax.xml.bind.DatatypeConverter.parseDateTime(literalValue);
-					newObject = newModel.createTypedLiteral(literalValueAsObject);
-				}
-				else
-				{
-					newObject = newModel.createTypedLiteral(object.asLiteral().getString());
-				}
-			}
-
-			newModel.add(newSubject, newProperty, newObject);
-		}
+		AdfModelBridge.read(model.getGraph(), newModel.getGraph());
 		return newModel;
 	}
 }
@@ -0,0 +1,296 @@
+package com.osthus.adf;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.allotrope.adf.dd.model.DataDescription;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * AdfModelBridge
+ *
+ * Streams triples between Jena 3 graphs as used by rdfcmap and Jena 2 graphs as used by ADF. Nodes are mapped directly, without creating resources,
+ * properties or typed literal values: IRIs and blank node labels are interned in bounded caches, literals keep their lexical form and the datatype of the
+ * other Jena version is taken from a map that is filled once per datatype IRI.
+ *
+ * Triples are written to the data description in chunks, so the source model and the copy for ADF are never both fully in memory.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class AdfModelBridge
+{
+	static final int CHUNK_SIZE = 50000;
+
+	private static final int MAX_CACHED_NODES = 100000;
+
+	private static final String XSD_DATETIME = XSDDatatype.XSDdateTime.getURI();
+
+	/**
+	 * Copies all triples of the given Jena 3 graph to the data description.
+	 *
+	 * @param source
+	 * @param dataDescription
+	 * @return number of copied triples
+	 */
+	static long write(org.apache.jena.graph.Graph source, DataDescription dataDescription)
+	{
+		ToAdf toAdf = new ToAdf();
+		long numTriples = 0;
+		Model chunk = ModelFactory.createDefaultModel();
+		Graph chunkGraph = chunk.getGraph();
+		org.apache.jena.util.iterator.ExtendedIterator<org.apache.jena.graph.Triple> iterator = source.find(org.apache.jena.graph.Node.ANY,
+				org.apache.jena.graph.Node.ANY, org.apache.jena.graph.Node.ANY);
+		try
+		{
+			while (iterator.hasNext())
+			{
+				chunkGraph.add(toAdf.convert(iterator.next()));
+				numTriples++;
+				if (numTriples % CHUNK_SIZE == 0)
+				{
+					dataDescription.add(chunk);
+					chunk = ModelFactory.createDefaultModel();
+					chunkGraph = chunk.getGraph();
+				}
+			}
+		}
+		finally
+		{
+			iterator.close();
+		}
+
+		if (!chunk.isEmpty())
+		{
+			dataDescription.add(chunk);
+		}
+		return numTriples;
+	}
+
+	/**
+	 * Copies all triples of the given Jena 2 graph to the Jena 3 graph.
+	 *
+	 * @param source
+	 * @param target
+	 * @return number of copied triples
+	 */
+	static long read(Graph source, org.apache.jena.graph.Graph target)
+	{
+		FromAdf fromAdf = new FromAdf();
+		long numTriples = 0;
+		ExtendedIterator<Triple> iterator = source.find(Node.ANY, Node.ANY, Node.ANY);
+		try
+		{
+			while (iterator.hasNext())
+			{
+				target.add(fromAdf.convert(iterator.next()));
+				numTriples++;
+			}
+		}
+		finally
+		{
+			iterator.close();
+		}
+		return numTriples;
+	}
+
+	/**
+	 * Strips quotes and datatype of dateTime values that were stored with their full N-Triples form as lexical form.
+	 */
+	private static String cleanDateTime(String lexicalForm)
+	{
+		if (!lexicalForm.contains("\"^^"))
+		{
+			return lexicalForm;
+		}
+
+		String[] segments = lexicalForm.split("\\^\\^");
+		return segments[0].substring(1, segments[0].length() - 1); // cut quotes
+	}
+
+	private static class ToAdf
+	{
+		private final Map<String, Node> uris = new NodeCache<>();
+
+		private final Map<String, Node> blankNodes = new NodeCache<>();
+
+		private final Map<String, RDFDatatype> datatypes = new HashMap<>();
+
+		private ToAdf()
+		{
+			for (XSDDatatype datatype : new XSDDatatype[] { XSDDatatype.XSDstring, XSDDatatype.XSDinteger, XSDDatatype.XSDint, XSDDatatype.XSDlong,
+					XSDDatatype.XSDdouble, XSDDatatype.XSDfloat, XSDDatatype.XSDdecimal, XSDDatatype.XSDboolean, XSDDatatype.XSDdateTime,
+					XSDDatatype.XSDdate, XSDDatatype.XSDanyURI })
+			{
+				datatypes.put(datatype.getURI(), datatype);
+			}
+		}
+
+		private Triple convert(org.apache.jena.graph.Triple triple)
+		{
+			return Triple.create(convert(triple.getSubject()), convert(triple.getPredicate()), convert(triple.getObject()));
+		}
+
+		private Node convert(org.apache.jena.graph.Node node)
+		{
+			if (node.isURI())
+			{
+				String uri = node.getURI();
+				Node newNode = uris.get(uri);
+				if (newNode == null)
+				{
+					newNode = NodeFactory.createURI(uri);
+					uris.put(uri, newNode);
+				}
+				return newNode;
+			}
+
+			if (node.isBlank())
+			{
+				String label = node.getBlankNodeLabel();
+				Node newNode = blankNodes.get(label);
+				if (newNode == null)
+				{
+					newNode = NodeFactory.createAnon(new AnonId(label));
+					blankNodes.put(label, newNode);
+				}
+				return newNode;
+			}
+
+			String language = node.getLiteralLanguage();
+			if (language != null && !language.isEmpty())
+			{
+				return NodeFactory.createLiteral(node.getLiteralLexicalForm(), language, null);
+			}
+
+			String datatypeUri = node.getLiteralDatatypeURI();
+			RDFDatatype datatype = datatypes.get(datatypeUri);
+			if (datatype == null)
+			{
+				datatype = TypeMapper.getInstance().getSafeTypeByName(datatypeUri);
+				datatypes.put(datatypeUri, datatype);
+			}
+
+			String lexicalForm = node.getLiteralLexicalForm();
+			if (XSD_DATETIME.equals(datatypeUri))
+			{
+				lexicalForm = cleanDateTime(lexicalForm);
+			}
+			return NodeFactory.createLiteral(lexicalForm, datatype);
+		}
+	}
+
+	private static class FromAdf
+	{
+		private final Map<String, org.apache.jena.graph.Node> uris = new NodeCache<>();
+
+		private final Map<String, org.apache.jena.graph.Node> blankNodes = new NodeCache<>();
+
+		private final Map<String, org.apache.jena.datatypes.RDFDatatype> datatypes = new HashMap<>();
+
+		private FromAdf()
+		{
+			for (org.apache.jena.datatypes.xsd.XSDDatatype datatype : new org.apache.jena.datatypes.xsd.XSDDatatype[] {
+					org.apache.jena.datatypes.xsd.XSDDatatype.XSDstring, org.apache.jena.datatypes.xsd.XSDDatatype.XSDinteger,
+					org.apache.jena.datatypes.xsd.XSDDatatype.XSDint, org.apache.jena.datatypes.xsd.XSDDatatype.XSDlong,
+					org.apache.jena.datatypes.xsd.XSDDatatype.XSDdouble, org.apache.jena.datatypes.xsd.XSDDatatype.XSDfloat,
+					org.apache.jena.datatypes.xsd.XSDDatatype.XSDdecimal, org.apache.jena.datatypes.xsd.XSDDatatype.XSDboolean,
+					org.apache.jena.datatypes.xsd.XSDDatatype.XSDdateTime, org.apache.jena.datatypes.xsd.XSDDatatype.XSDdate,
+					org.apache.jena.datatypes.xsd.XSDDatatype.XSDanyURI })
+			{
+				datatypes.put(datatype.getURI(), datatype);
+			}
+		}
+
+		private org.apache.jena.graph.Triple convert(Triple triple)
+		{
+			return org.apache.jena.graph.Triple.create(convert(triple.getSubject()), convert(triple.getPredicate()), convert(triple.getObject()));
+		}
+
+		private org.apache.jena.graph.Node convert(Node node)
+		{
+			if (node.isURI())
+			{
+				String uri = node.getURI();
+				org.apache.jena.graph.Node newNode = uris.get(uri);
+				if (newNode == null)
+				{
+					newNode = org.apache.jena.graph.NodeFactory.createURI(uri);
+					uris.put(uri, newNode);
+				}
+				return newNode;
+			}
+
+			if (node.isBlank())
+			{
+				String label = node.getBlankNodeLabel();
+				org.apache.jena.graph.Node newNode = blankNodes.get(label);
+				if (newNode == null)
+				{
+					newNode = org.apache.jena.graph.NodeFactory.createBlankNode(label);
+					blankNodes.put(label, newNode);
+				}
+				return newNode;
+			}
+
+			String language = node.getLiteralLanguage();
+			if (language != null && !language.isEmpty())
+			{
+				return org.apache.jena.graph.NodeFactory.createLiteral(node.getLiteralLexicalForm(), language);
+			}
+
+			// plain literals of Jena 2 have no datatype
+			String datatypeUri = node.getLiteralDatatypeURI();
+			if (datatypeUri == null)
+			{
+				datatypeUri = org.apache.jena.datatypes.xsd.XSDDatatype.XSDstring.getURI();
+			}
+
+			org.apache.jena.datatypes.RDFDatatype datatype = datatypes.get(datatypeUri);
+			if (datatype == null)
+			{
+				datatype = org.apache.jena.datatypes.TypeMapper.getInstance().getSafeTypeByName(datatypeUri);
+				datatypes.put(datatypeUri, datatype);
+			}
+
+			String lexicalForm = node.getLiteralLexicalForm();
+			if (XSD_DATETIME.equals(datatypeUri))
+			{
+				lexicalForm = cleanDateTime(lexicalForm);
+			}
+			return org.apache.jena.graph.NodeFactory.createLiteral(lexicalForm, datatype);
+		}
+	}
+
+	/**
+	 * Bounded map of recently used nodes. Most triples share predicates, types and subjects of their neighbours, the cache keeps those without holding every
+	 * node of a large model.
+	 */
+	private static class NodeCache<N> extends LinkedHashMap<String, N>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private NodeCache()
+		{
+			super(1024, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, N> eldest)
+		{
+			return size() > MAX_CACHED_NODES;
+		}
+	}
+}
@@ -21,6 +21,7 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
@@ -36,6 +37,8 @@ import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFact
 import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
 import org.xml.sax.SAXException;
 
+import com.osthus.rdfcmap.batch.BatchConverter;
+import com.osthus.rdfcmap.batch.ConversionServer;
 import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
 import com.osthus.rdfcmap.cmap.Turtle2CmapConverter;
 import com.osthus.rdfcmap.cmap.shape.ShapesCreator2;
@@ -43,6 +46,7 @@ import com.osthus.rdfcmap.ontology.OntologyCreator;
 import com.osthus.rdfcmap.path.PathFinder;
 import com.osthus.rdfcmap.sparql.SparqlCreator;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.PipelineMetrics;
 import com.osthus.rdfcmap.util.Prefixes;
 
 /**
@@ -68,6 +72,24 @@ public class RdfCmap
 
 	public static boolean listPaths = false;
 
+	public static int maxPathHops = -1;
+
+	public static String metricsFile = null;
+
+	public static boolean incrementalConversion = false;
+
+	public static boolean useVocabularyCache = true;
+
+	public static boolean rebuildVocabularyCache = false;
+
+	public static String vocabularyCacheFolder = Paths.get(System.getProperty("user.home"), ".rdfcmap", "vocabulary-cache").toString();
+
+	public static String batchInput = null;
+
+	public static int batchThreads = Runtime.getRuntime().availableProcessors();
+
+	public static int serverPort = -1;
+
 	public static boolean roundtrip = false;
 
 	public static boolean createShapes = false;
@@ -92,6 +114,10 @@ public class RdfCmap
 
 	public static boolean isGraphVizLayout = false;
 
+	public static boolean isNativeLayout = false;
+
+	public static boolean exportLayoutSnapshot = false;
+
 	public static boolean adjustLabels = false;
 
 	public static String dotBinary = "dot.exe";
@@ -124,6 +150,8 @@ public class RdfCmap
 
 	public static boolean ignoreLongComments = false;
 
+	public static boolean parseLongCommentsInOrder = false;
+
 	public static boolean usePrefixes = true;
 
 	public static boolean useBlankNodes = true;
@@ -166,12 +194,53 @@ public class RdfCmap
 		log = LogManager.getLogger("Logger");
 		init(args);
 
-		if (createSparql)
+		PipelineMetrics.Timer timer = PipelineMetrics.start("total");
+		int exitCode;
+		try
+		{
+			exitCode = convert();
+		}
+		finally
+		{
+			// metrics are written for failed conversions too
+			timer.stop();
+			writeMetrics();
+		}
+
+		if (exitCode != 0)
+		{
+			System.exit(exitCode);
+		}
+	}
+
+	/**
+	 * Runs the conversion selected on the command line.
+	 *
+	 * @return exit code
+	 */
+	private static int convert() throws IOException, SAXException, ParserConfigurationException, JAXBException
+	{
+		int numFailedInputs = 0;
+		if (batchInput != null || serverPort > 0)
+		{
+			if (createSparql || createShapes || createOntology || listPaths)
+			{
+				log.error("Batch mode only supports conversion between CXL and TTL.");
+				return 1;
+			}
+			if (writeSeparateFiles)
+			{
+				log.error("Separate files are not supported in batch mode, all inputs would write to the same folder.");
+				return 1;
+			}
+			numFailedInputs = runBatch();
+		}
+		else if (createSparql)
 		{
 			if (!inputFileToConvert.toLowerCase().endsWith("cxl"))
 			{
 				log.error("No .cxl input file found.");
-				System.exit(1);
+				return 1;
 			}
 			SparqlCreator sparqlCreator = new SparqlCreator();
 			if (additionalInputFiles != null && additionalInputFiles.length > 0)
@@ -186,43 +255,32 @@ public class RdfCmap
 		else if (createShapes)
 		{
 			writeFiles = true; // always create an instance model to be transformed to shapes
-			String pathToTtlFile = StringUtils.EMPTY;
+			ShapesCreator2 shapesCreator = new ShapesCreator2();
 			if (inputFileToConvert.toLowerCase().endsWith("cxl"))
 			{
 				log.info("Creating shapes from CXL: " + inputFileToConvert.toString() + ((additionalInputFiles != null && additionalInputFiles.length > 0)
 						? " using additional files: " + StringUtils.join(additionalInputFiles, ", ") : ""));
+				// the converted model is passed to shapes creation in memory, TTL is written as output only
 				Cmap2TurtleConverter cmap2TurtleConverter = new Cmap2TurtleConverter();
+				Model model;
 				if (additionalInputFiles != null && additionalInputFiles.length > 0)
 				{
-					cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), additionalInputFiles);
+					model = cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), additionalInputFiles);
 				}
 				else
 				{
-					cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), null);
+					model = cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), null);
 				}
-				String localName = Paths.get(inputFileToConvert).toFile().getName();
-				pathToTtlFile = localName.substring(0, localName.toString().length() - 3) + "ttl";
-				inputFileToConvert = pathToTtlFile; // created TTL from CXL, now take new TTL as input for shapes creation
+				shapesCreator.create(root, model, additionalInputFiles);
 			}
-			else if (!inputFileToConvert.toLowerCase().endsWith("ttl"))
-			{
-				log.error("No .cxl or .ttl as input file found.");
-				System.exit(1);
-			}
-
-			ShapesCreator2 shapesCreator = new ShapesCreator2();
-			if (additionalInputFiles != null && additionalInputFiles.length > 0)
+			else if (inputFileToConvert.toLowerCase().endsWith("ttl"))
 			{
 				shapesCreator.create(root, Paths.get(inputFileToConvert), additionalInputFiles);
 			}
 			else
 			{
-				shapesCreator.create(root, Paths.get(inputFileToConvert), null);
-			}
-
-			if (pathToTtlFile != null && !pathToTtlFile.isEmpty())
-			{
-				// Files.deleteIfExists(Paths.get(pathToTtlFile));
+				log.error("No .cxl or .ttl as input file found.");
+				return 1;
 			}
 		}
 		else if (createOntology)
@@ -242,7 +300,7 @@ public class RdfCmap
 			if (!inputFileToConvert.toLowerCase().endsWith("cxl"))
 			{
 				log.error("No .cxl input file found.");
-				System.exit(1);
+				return 1;
 			}
 			PathFinder pathFinder = new PathFinder();
 			if (additionalInputFiles != null && additionalInputFiles.length > 0)
@@ -304,16 +362,60 @@ public class RdfCmap
 			else
 			{
 				log.error("Found commandline option to update CXL but no .cxl input file was specified.");
-				System.exit(1);
+				return 1;
 			}
 		}
 		else
 		{
 			log.info("No input file for conversion found. Use command line option -i<filename> to specify input file.");
-			System.exit(1);
+			return 1;
 		}
 
 		log.info("done");
+		return numFailedInputs > 0 ? 1 : 0;
+	}
+
+	private static void writeMetrics()
+	{
+		if (metricsFile == null)
+		{
+			return;
+		}
+
+		try
+		{
+			PipelineMetrics.write(Paths.get(metricsFile));
+		}
+		catch (IOException e)
+		{
+			log.error("Could not write metrics to: " + metricsFile + ". " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Converts all inputs of option --batch and serves inputs of clients if option --server is given.
+	 *
+	 * @return number of inputs that failed
+	 */
+	private static int runBatch() throws IOException, ParserConfigurationException, SAXException
+	{
+		int numFailedInputs = 0;
+		try (BatchConverter batchConverter = new BatchConverter(additionalInputFiles, batchThreads))
+		{
+			if (batchInput != null)
+			{
+				numFailedInputs = batchConverter.convertAll(BatchConverter.collectInputs(Paths.get(batchInput)));
+			}
+
+			if (serverPort > 0)
+			{
+				try (ConversionServer conversionServer = new ConversionServer(batchConverter, serverPort))
+				{
+					conversionServer.run();
+				}
+			}
+		}
+		return numFailedInputs;
 	}
 
 	private static void init(String[] args) throws ParseException, NoSuchFieldException, IllegalAccessException, IOException
@@ -322,8 +424,8 @@ public class RdfCmap
 		printVersion();
 
 		Option help = Option.builder("h").longOpt("help").required(false).desc("Show list of command line arguments.").build();
-		Option input = Option.builder("i").longOpt("input").required(true).hasArg()
-				.desc("Specifies an input file for conversion (either TTL or CXL). Specifying a TTL file will convert to CXL, specifying a CXL file will convert to TTL. Mandatory argument.")
+		Option input = Option.builder("i").longOpt("input").required(false).hasArg()
+				.desc("Specifies an input file for conversion (either TTL or CXL). Specifying a TTL file will convert to CXL, specifying a CXL file will convert to TTL. Mandatory argument unless --batch or --server is given.")
 				.build();
 		Option externalFiles = Option.builder("r").longOpt("read").required(false).argName("file-1> <file-2> <...").hasArgs()
 				.desc("Specifies additional files (either TTL or CXL) with triples to be used during conversion. Optional argument. Up to 10 external files.")
@@ -364,19 +466,38 @@ public class RdfCmap
 		Option listPrefixes = Option.builder("l").longOpt("listprefix").required(false).desc("List prefixes for namespaces.").build();
 		Option pathfinder = Option.builder("f").longOpt("pathfinder").required(false).desc("List all paths starting from root node (with oval border).")
 				.build();
+		Option maxHops = Option.builder().longOpt("maxhops").required(false).hasArg().argName("hops")
+				.desc("Only list paths of the pathfinder with at most the given number of hops, at least 1. Default: unlimited").build();
+		Option metrics = Option.builder().longOpt("metrics").required(false).hasArg().argName("file")
+				.desc("Write time, allocated memory and counts of all stages of processing as JSON to the given file.").build();
+		Option incremental = Option.builder().longOpt("incremental").required(false)
+				.desc("Only process long comments of concepts and links that were added or changed compared to the RDF model stored in the CXL.").build();
+		Option noCache = Option.builder().longOpt("nocache").required(false).desc("Do not use the on-disk cache of parsed additional files.").build();
+		Option rebuildCache = Option.builder().longOpt("rebuildcache").required(false)
+				.desc("Parse all additional files again and replace their entries in the vocabulary cache.").build();
+		Option cacheDir = Option.builder().longOpt("cachedir").required(false).hasArg().argName("dir")
+				.desc("Folder of the vocabulary cache. Default: .rdfcmap/vocabulary-cache in the home folder of the user.").build();
+		Option batch = Option.builder().longOpt("batch").required(false).hasArg().argName("dir|listfile")
+				.desc("Convert all CXL and TTL files of the given folder, or all files listed line by line in the given file, in one run. Additional files are read only once.")
+				.build();
+		Option threads = Option.builder().longOpt("threads").required(false).hasArg()
+				.desc("Number of files converted in parallel in batch or server mode. Default: number of processors").build();
+		Option server = Option.builder().longOpt("server").required(false).hasArg().argName("port")
+				.desc("Keep running and convert files sent line by line by local clients to the given port. Additional files are read only once.").build();
 		Option shapes = Option.builder("sh").longOpt("shapes").required(false).desc("Create SHACL shapes from model.").build();
 		Option ontology = Option.builder("owl").longOpt("ontology").required(false).desc("Create an ontology based on SHACL shapes derived from the model.")
 				.build();
 		Option optimize = Option.builder("o").longOpt("optimize").required(false).desc("Optimize layout using gephi layout algorithm.").build();
 		Option optimizeTime = Option.builder("t").longOpt("time").required(false).hasArg().desc("Optimize layout for the given number of seconds.").build();
 		Option layouter = Option.builder("a").longOpt("layout").required(false).hasArg()
-				.desc("Use the specified layout as gephi layout algorithm. Possible values: auto, radial, circle, graphviz").build();
+				.desc("Use the specified layout algorithm. Possible values: auto, radial, circle, graphviz (gephi) or native (built-in force-directed layout)").build();
 		Option dotBinary = Option.builder("d").longOpt("dot").required(false).hasArg().desc("Specify absolute path to dot.exe for graphviz layouting.").build();
 		Option graphVizAlgo = Option.builder("g").longOpt("graphvizalgo").required(false).hasArg()
 				.desc("Specify rendering algorithm of graphviz e.g. dot, neato, fdp").build();
 		Option adjustLabels = Option.builder("b").longOpt("label").required(false)
 				.desc("Adjust labels according to level in class hierarchy. Top level terms with low level number get printed out with larger size and larger font size.")
 				.build();
+		Option snapshot = Option.builder().longOpt("snapshot").required(false).desc("Export a snapshot of the gephi layout to autolayout.pdf.").build();
 		Option breakcycles = Option.builder("x").longOpt("break").required(false).desc("Break cycles in a cyclic graph for better layout.").build();
 		Option instanceNamespace = Option.builder("n").longOpt("namespace").required(false).hasArgs()
 				.desc("Specify namespaces of instances to visualize. Default is \"urn:uuid:\"").build();
@@ -435,6 +556,15 @@ public class RdfCmap
 		appOptions.addOption(color);
 		appOptions.addOption(sparql);
 		appOptions.addOption(pathfinder);
+		appOptions.addOption(maxHops);
+		appOptions.addOption(metrics);
+		appOptions.addOption(incremental);
+		appOptions.addOption(noCache);
+		appOptions.addOption(rebuildCache);
+		appOptions.addOption(cacheDir);
+		appOptions.addOption(batch);
+		appOptions.addOption(threads);
+		appOptions.addOption(server);
 		appOptions.addOption(updateCxl);
 		appOptions.addOption(shapes);
 		appOptions.addOption(noTurtle);
@@ -445,6 +575,7 @@ public class RdfCmap
 		appOptions.addOption(dotBinary);
 		appOptions.addOption(graphVizAlgo);
 		appOptions.addOption(breakcycles);
+		appOptions.addOption(snapshot);
 		appOptions.addOption(instanceNamespace);
 		appOptions.addOption(noLinkLayout);
 		appOptions.addOption(nodeSize);
@@ -481,6 +612,15 @@ public class RdfCmap
 		allOptions.addOption(color);
 		allOptions.addOption(sparql);
 		allOptions.addOption(pathfinder);
+		allOptions.addOption(maxHops);
+		allOptions.addOption(metrics);
+		allOptions.addOption(incremental);
+		allOptions.addOption(noCache);
+		allOptions.addOption(rebuildCache);
+		allOptions.addOption(cacheDir);
+		allOptions.addOption(batch);
+		allOptions.addOption(threads);
+		allOptions.addOption(server);
 		allOptions.addOption(prefix);
 		allOptions.addOption(listPrefixes);
 		allOptions.addOption(updateCxl);
@@ -494,6 +634,7 @@ public class RdfCmap
 		allOptions.addOption(dotBinary);
 		allOptions.addOption(graphVizAlgo);
 		allOptions.addOption(breakcycles);
+		allOptions.addOption(snapshot);
 		allOptions.addOption(instanceNamespace);
 		allOptions.addOption(noLinkLayout);
 		allOptions.addOption(nodeSize);
@@ -575,7 +716,7 @@ public class RdfCmap
 			System.exit(1);
 		}
 
-		inputFileToConvert = cmd.getOptionValue("input");
+		inputFileToConvert = cmd.getOptionValue("input", StringUtils.EMPTY);
 
 		additionalInputFiles = cmd.getOptionValues("r");
 
@@ -660,6 +801,90 @@ public class RdfCmap
 			listPaths = true;
 		}
 
+		if (cmd.hasOption("maxhops"))
+		{
+			String hops = cmd.getOptionValue("maxhops").trim();
+			try
+			{
+				maxPathHops = Integer.valueOf(hops);
+			}
+			catch (NumberFormatException e)
+			{
+				maxPathHops = -1;
+			}
+			if (maxPathHops < 1)
+			{
+				log.error("Invalid number of hops: " + hops + ". Use --maxhops <hops> with a number of at least 1.");
+				System.exit(1);
+			}
+		}
+
+		if (cmd.hasOption("metrics"))
+		{
+			metricsFile = cmd.getOptionValue("metrics");
+		}
+
+		if (cmd.hasOption("incremental"))
+		{
+			incrementalConversion = true;
+		}
+
+		if (cmd.hasOption("nocache"))
+		{
+			useVocabularyCache = false;
+		}
+
+		if (cmd.hasOption("rebuildcache"))
+		{
+			rebuildVocabularyCache = true;
+		}
+
+		if (cmd.hasOption("cachedir"))
+		{
+			vocabularyCacheFolder = cmd.getOptionValue("cachedir");
+		}
+
+		if (cmd.hasOption("batch"))
+		{
+			batchInput = cmd.getOptionValue("batch");
+		}
+
+		if (cmd.hasOption("threads"))
+		{
+			String threads = cmd.getOptionValue("threads").trim();
+			try
+			{
+				batchThreads = Integer.valueOf(threads);
+			}
+			catch (NumberFormatException e)
+			{
+				batchThreads = -1;
+			}
+			if (batchThreads < 1)
+			{
+				log.error("Invalid number of threads: " + threads + ". Use --threads <threads> with a number of at least 1.");
+				System.exit(1);
+			}
+		}
+
+		if (cmd.hasOption("server"))
+		{
+			String port = cmd.getOptionValue("server").trim();
+			try
+			{
+				serverPort = Integer.valueOf(port);
+			}
+			catch (NumberFormatException e)
+			{
+				serverPort = -1;
+			}
+			if (serverPort < 1 || serverPort > 65535)
+			{
+				log.error("Invalid port: " + port + ". Use --server <port> with a port number from 1 to 65535.");
+				System.exit(1);
+			}
+		}
+
 		if (cmd.hasOption("update"))
 		{
 			roundtrip = true;
@@ -740,6 +965,11 @@ public class RdfCmap
 					RdfCmap.isAutoLayout = false;
 					RdfCmap.isCircleLayout = true;
 				}
+				else if (value.equals("native"))
+				{
+					RdfCmap.isAutoLayout = false;
+					RdfCmap.isNativeLayout = true;
+				}
 				else if (value.equals("graphviz"))
 				{
 					RdfCmap.isAutoLayout = false;
@@ -761,6 +991,11 @@ public class RdfCmap
 			RdfCmap.breakCycles = true;
 		}
 
+		if (cmd.hasOption("snapshot"))
+		{
+			RdfCmap.exportLayoutSnapshot = true;
+		}
+
 		if (cmd.hasOption("nolinklayout"))
 		{
 			RdfCmap.layoutLinks = false;
@@ -0,0 +1,346 @@
+package com.osthus.rdfcmap.batch;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.xml.sax.SAXException;
+
+import com.osthus.rdfcmap.RdfCmap;
+import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
+import com.osthus.rdfcmap.cmap.Turtle2CmapConverter;
+import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.PipelineMetrics;
+import com.osthus.rdfcmap.util.Prefixes;
+
+/**
+ * Converts many CXL and TTL files in one JVM.
+ *
+ * Additional files are read only once into a read-only vocabulary that is shared by all conversions. Inputs are converted by a bounded pool of workers, an
+ * input that fails is logged and does not stop the conversion of the other inputs. All inputs are converted with the same configuration of the command line,
+ * the configuration in RdfCmap is not modified while converting.
+ *
+ * As for a single input, output files are written to the working directory and named after the input file. Inputs of a batch must therefore have distinct
+ * names.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class BatchConverter implements Closeable
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final int QUEUED_INPUTS_PER_THREAD = 2;
+
+	private static final List<String> SUPPORTED_EXTENSIONS = Arrays.asList(".cxl", ".ttl", ".owl", ".xml", ".adf");
+
+	// any XML file may be RDF/XML, only files given explicitly are read as such
+	private static final List<String> SCANNED_EXTENSIONS = Arrays.asList(".cxl", ".ttl", ".owl", ".adf");
+
+	private final Model sharedVocabulary;
+
+	private final ThreadPoolExecutor executor;
+
+	private final Set<String> outputNamesInProgress = new HashSet<>();
+
+	public BatchConverter(String[] additionalFiles, int numThreads) throws FileNotFoundException, ParserConfigurationException, SAXException, IOException
+	{
+		PipelineMetrics.Timer timer = PipelineMetrics.start("batch.readSharedVocabulary");
+		sharedVocabulary = CmapUtil.readSharedVocabulary(additionalFiles);
+		timer.stop();
+
+		// prefix maps are created lazily, create them before they are read by several workers
+		Prefixes.getNamespaceMap();
+		Prefixes.getSparqlPrefixes();
+
+		// inputs are queued for a few workers only, the submitting thread converts an input itself if the queue is full, inputs are rejected after shutdown
+		executor = new ThreadPoolExecutor(numThreads, numThreads, 0l, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(numThreads * QUEUED_INPUTS_PER_THREAD), new RejectedExecutionHandler()
+				{
+					@Override
+					public void rejectedExecution(Runnable task, ThreadPoolExecutor pool)
+					{
+						if (pool.isShutdown())
+						{
+							throw new RejectedExecutionException("Batch converter is shut down.");
+						}
+						task.run();
+					}
+				});
+		log.info("Batch conversion with " + numThreads + " worker threads.");
+	}
+
+	/**
+	 * Lists all inputs of a batch.
+	 *
+	 * @param path
+	 *            either a folder with CXL, TTL, OWL and ADF files or a text file with the path of one input on each line
+	 * @return inputs of batch
+	 * @throws IOException
+	 */
+	public static List<Path> collectInputs(Path path) throws IOException
+	{
+		List<Path> inputs = new ArrayList<>();
+		if (Files.isDirectory(path))
+		{
+			try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(path))
+			{
+				for (Path file : directoryStream)
+				{
+					if (Files.isRegularFile(file) && hasExtension(file, SCANNED_EXTENSIONS))
+					{
+						inputs.add(file);
+					}
+				}
+			}
+			inputs.sort(null);
+		}
+		else
+		{
+			for (String line : Files.readAllLines(path, StandardCharsets.UTF_8))
+			{
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+				inputs.add(Paths.get(line));
+			}
+		}
+		return inputs;
+	}
+
+	public static boolean isSupportedInput(Path path)
+	{
+		return hasExtension(path, SUPPORTED_EXTENSIONS);
+	}
+
+	private static boolean hasExtension(Path path, List<String> extensions)
+	{
+		String fileName = path.getFileName().toString().toLowerCase();
+		for (String extension : extensions)
+		{
+			if (fileName.endsWith(extension))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Converts all inputs and waits until all conversions are finished.
+	 *
+	 * @param inputs
+	 * @return number of inputs that failed
+	 */
+	public int convertAll(List<Path> inputs)
+	{
+		log.info("Converting " + inputs.size() + " inputs.");
+
+		Map<String, Path> outputName2input = new HashMap<>();
+		Map<Path, Future<Path>> input2future = new HashMap<>();
+		List<Path> failedInputs = new ArrayList<>();
+		for (Path input : inputs)
+		{
+			Path otherInput = outputName2input.put(determineOutputName(input), input);
+			if (otherInput != null)
+			{
+				log.error("Skipping input " + input.toString() + ", output would overwrite output of " + otherInput.toString());
+				failedInputs.add(input);
+				continue;
+			}
+			input2future.put(input, submit(input));
+		}
+
+		for (Path input : inputs)
+		{
+			Future<Path> future = input2future.get(input);
+			if (future == null)
+			{
+				continue;
+			}
+			try
+			{
+				future.get();
+			}
+			catch (ExecutionException e)
+			{
+				failedInputs.add(input);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				failedInputs.add(input);
+				break;
+			}
+		}
+
+		log.info((inputs.size() - failedInputs.size()) + " of " + inputs.size() + " inputs converted.");
+		if (!failedInputs.isEmpty())
+		{
+			log.error("Failed inputs: " + StringUtils.join(failedInputs, ", "));
+		}
+		return failedInputs.size();
+	}
+
+	/**
+	 * Queues an input for conversion.
+	 *
+	 * @param input
+	 * @return future of the converted input, fails with the exception of the conversion or with a {@link RejectedExecutionException} if the batch converter is
+	 *         already closed
+	 */
+	public Future<Path> submit(final Path input)
+	{
+		try
+		{
+			return submitConversion(input);
+		}
+		catch (RejectedExecutionException e)
+		{
+			log.error("Skipping input " + input.toString() + ", batch converter is shut down.");
+			CompletableFuture<Path> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+	}
+
+	private Future<Path> submitConversion(final Path input)
+	{
+		return executor.submit(new Callable<Path>()
+		{
+			@Override
+			public Path call() throws Exception
+			{
+				String outputName = determineOutputName(input);
+				synchronized (outputNamesInProgress)
+				{
+					if (!outputNamesInProgress.add(outputName))
+					{
+						log.error("Skipping input " + input.toString() + ", another input with the same output is still converted.");
+						throw new IllegalStateException("Output of input " + input.toString() + " is already written by another conversion.");
+					}
+				}
+
+				PipelineMetrics.Timer timer = PipelineMetrics.start("batch.convert");
+				try
+				{
+					convert(input);
+					PipelineMetrics.count("batch.converted", 1);
+					return input;
+				}
+				catch (Exception e)
+				{
+					PipelineMetrics.count("batch.failed", 1);
+					log.error("Conversion of " + input.toString() + " failed: " + e.getLocalizedMessage());
+					log.debug("Stacktrace : \n" + StringUtils.join(e.getStackTrace(), "\n"));
+					throw e;
+				}
+				finally
+				{
+					timer.stop();
+					synchronized (outputNamesInProgress)
+					{
+						outputNamesInProgress.remove(outputName);
+					}
+				}
+			}
+		});
+	}
+
+	private void convert(Path input) throws Exception
+	{
+		if (Files.notExists(input))
+		{
+			throw new FileNotFoundException("Input file not found: " + input.toString());
+		}
+
+		String fileName = input.getFileName().toString();
+		if (fileName.toLowerCase().endsWith(".cxl"))
+		{
+			Cmap2TurtleConverter cmap2TurtleConverter = new Cmap2TurtleConverter();
+			cmap2TurtleConverter.setSharedVocabulary(sharedVocabulary);
+			cmap2TurtleConverter.convert(input, null);
+			if (RdfCmap.roundtrip)
+			{
+				Path pathToTtlFile = Paths.get(fileName.substring(0, fileName.length() - 3) + "ttl");
+				Turtle2CmapConverter turtle2CmapConverter = new Turtle2CmapConverter();
+				turtle2CmapConverter.convert(pathToTtlFile);
+				Files.deleteIfExists(pathToTtlFile);
+			}
+		}
+		else if (isSupportedInput(input))
+		{
+			if (RdfCmap.roundtrip)
+			{
+				throw new IllegalStateException("Found commandline option to update CXL but input is not a .cxl file: " + input.toString());
+			}
+			Turtle2CmapConverter turtle2CmapConverter = new Turtle2CmapConverter();
+			turtle2CmapConverter.setSharedVocabulary(sharedVocabulary);
+			turtle2CmapConverter.convert(input, null);
+		}
+		else
+		{
+			throw new IllegalStateException("Unsupported input file: " + input.toString());
+		}
+	}
+
+	/**
+	 * @param input
+	 * @return name of input without extension, all outputs of the input start with this name
+	 */
+	private static String determineOutputName(Path input)
+	{
+		String fileName = input.getFileName().toString().toLowerCase();
+		int extensionStart = fileName.lastIndexOf('.');
+		return extensionStart < 0 ? fileName : fileName.substring(0, extensionStart);
+	}
+
+	/**
+	 * Waits until all queued inputs are converted and stops the workers.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+		try
+		{
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+			{
+				log.info("Waiting for " + executor.getActiveCount() + " conversions to finish.");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+		}
+	}
+}
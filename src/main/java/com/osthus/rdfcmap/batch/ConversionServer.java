@@ -0,0 +1,153 @@
+package com.osthus.rdfcmap.batch;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Long-running local server that converts files with a {@link BatchConverter}, so that the JVM, the additional files and the configuration of the command line
+ * are set up once for many conversions.
+ *
+ * The server only listens on the loopback interface. A client sends the paths of its inputs, one per line, and ends a request with an empty line or by closing
+ * its output. For every input the server answers with a line "OK &lt;path&gt;" or "FAILED &lt;path&gt;: &lt;message&gt;" in the order of the request. The line
+ * "shutdown" stops the server after the conversions that are already queued, inputs that arrive later are answered with "FAILED".
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class ConversionServer implements Closeable
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final String SHUTDOWN = "shutdown";
+
+	private final BatchConverter batchConverter;
+
+	private final ServerSocket serverSocket;
+
+	private volatile boolean running = true;
+
+	public ConversionServer(BatchConverter batchConverter, int port) throws IOException
+	{
+		this.batchConverter = batchConverter;
+		this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * Accepts clients until a client requests shutdown. Every client is served by its own thread, the conversions of all clients share the workers of the
+	 * batch converter.
+	 */
+	public void run() throws IOException
+	{
+		log.info("Listening for inputs to convert on " + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort());
+		while (running)
+		{
+			final Socket socket;
+			try
+			{
+				socket = serverSocket.accept();
+			}
+			catch (SocketException e)
+			{
+				if (!running)
+				{
+					break;
+				}
+				throw e;
+			}
+
+			Thread clientThread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					serve(socket);
+				}
+			}, "rdfcmap-client-" + socket.getPort());
+			clientThread.setDaemon(true);
+			clientThread.start();
+		}
+		log.info("Server stopped.");
+	}
+
+	private void serve(Socket socket)
+	{
+		try (Socket client = socket;
+				BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+				PrintWriter writer = new PrintWriter(client.getOutputStream(), true))
+		{
+			List<Path> inputs = new ArrayList<>();
+			List<Future<Path>> futures = new ArrayList<>();
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if (SHUTDOWN.equals(line))
+				{
+					answer(writer, inputs, futures);
+					close();
+					return;
+				}
+				if (line.isEmpty())
+				{
+					answer(writer, inputs, futures);
+					continue;
+				}
+
+				Path input = Paths.get(line);
+				inputs.add(input);
+				futures.add(batchConverter.submit(input));
+			}
+			answer(writer, inputs, futures);
+		}
+		catch (IOException e)
+		{
+			log.error("Exception while serving client: " + e.getLocalizedMessage());
+		}
+	}
+
+	private void answer(PrintWriter writer, List<Path> inputs, List<Future<Path>> futures)
+	{
+		for (int i = 0; i < futures.size(); i++)
+		{
+			try
+			{
+				futures.get(i).get();
+				writer.println("OK " + inputs.get(i).toString());
+			}
+			catch (ExecutionException e)
+			{
+				writer.println("FAILED " + inputs.get(i).toString() + ": " + e.getCause().getLocalizedMessage());
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				writer.println("FAILED " + inputs.get(i).toString() + ": interrupted");
+			}
+		}
+		inputs.clear();
+		futures.clear();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		running = false;
+		serverSocket.close();
+	}
+}
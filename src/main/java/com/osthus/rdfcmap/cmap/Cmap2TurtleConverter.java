@@ -1,18 +1,17 @@
 package com.osthus.rdfcmap.cmap;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -24,14 +23,10 @@ import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.text.WordUtils;
@@ -47,6 +42,7 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
@@ -57,11 +53,12 @@ import org.xml.sax.SAXException;
 
 import com.osthus.adf.AdfCreator;
 import com.osthus.rdfcmap.RdfCmap;
+import com.osthus.rdfcmap.cmap.LongCommentParser.LabelChanges;
+import com.osthus.rdfcmap.cmap.LongCommentParser.ParsedLongComment;
 import com.osthus.rdfcmap.cmap.cardinality.Cardinality;
-import com.osthus.rdfcmap.cmap.cardinality.CardinalityExtractionResult;
 import com.osthus.rdfcmap.cmap.cardinality.StatementWithCardinality;
-import com.osthus.rdfcmap.cmap.xml.CMap;
-import com.osthus.rdfcmap.cmap.xml.CmapNamespacePrefixMapper;
+import com.osthus.rdfcmap.cmap.xml.CmapXmlCodec;
+import com.osthus.rdfcmap.cmap.xml.CmapXmlCodec.ElementHandler;
 import com.osthus.rdfcmap.cmap.xml.Concept;
 import com.osthus.rdfcmap.cmap.xml.ConceptAppearance;
 import com.osthus.rdfcmap.cmap.xml.Connection;
@@ -76,6 +73,7 @@ import com.osthus.rdfcmap.helper.PreparedModels;
 import com.osthus.rdfcmap.helper.VisualizationInfoBuilderResult;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.PipelineMetrics;
 import com.osthus.rdfcmap.util.Prefixes;
 import com.osthus.rdfcmap.util.RdfUtil;
 import com.osthus.rdfcmap.util.VizUtil;
@@ -101,9 +99,42 @@ public class Cmap2TurtleConverter
 
 	private List<Resource> resources = new ArrayList<>();
 
-	public void convert(Path pathToInputFile) throws FileNotFoundException, SAXException, IOException, ParserConfigurationException, JAXBException
+	private Model sharedVocabulary = null;
+
+	private VizIdentifierIndex vizIdentifierIndex = null;
+
+	private boolean writeTurtleFile = true;
+
+	/**
+	 * UI resources whose long comments have to be processed in incremental mode, null if all items are processed.
+	 */
+	private Set<String> changedItems = null;
+
+	/**
+	 * Use triples of a vocabulary that has already been read instead of reading additional files.
+	 *
+	 * @param sharedVocabulary
+	 *            read-only vocabulary, shared by all conversions of batch mode
+	 */
+	public void setSharedVocabulary(Model sharedVocabulary)
+	{
+		this.sharedVocabulary = sharedVocabulary;
+	}
+
+	/**
+	 * Skip writing the converted model to TTL, e.g. if the model returned by {@link #convert(Path, String[])} is passed on to the next stage in memory.
+	 * Separate files and ADF are still written if requested.
+	 *
+	 * @param writeTurtleFile
+	 */
+	public void setWriteTurtleFile(boolean writeTurtleFile)
+	{
+		this.writeTurtleFile = writeTurtleFile;
+	}
+
+	public Model convert(Path pathToInputFile) throws FileNotFoundException, SAXException, IOException, ParserConfigurationException, JAXBException
 	{
-		convert(pathToInputFile, null);
+		return convert(pathToInputFile, null);
 	}
 
 	/**
@@ -116,9 +147,10 @@ public class Cmap2TurtleConverter
 	 * @throws SAXException
 	 * @throws IOException
 	 * @throws ParserConfigurationException
+	 * @return converted model
 	 * @throws JAXBException
 	 */
-	public void convert(Path pathToInputFile, String[] additionalFiles)
+	public Model convert(Path pathToInputFile, String[] additionalFiles)
 			throws FileNotFoundException, SAXException, IOException, ParserConfigurationException, JAXBException
 	{
 		log.info("Converting to turtle: " + pathToInputFile.toString()
@@ -130,39 +162,75 @@ public class Cmap2TurtleConverter
 		// We must determine if CXL contains an additional RDF model. CXL directly generated by CMap do not include the RDF model, so we have to extract it from
 		// a previous version or provide it additionally.
 
+		PipelineMetrics.Timer timer = PipelineMetrics.start("cxl2ttl.extractStoredModel");
 		Model model = CmapUtil.extractStoredModelFromCxl(pathToInputFile);
-		log.info(model.listStatements().toList().size() + " triples total.");
-		model = CmapUtil.addTriples(additionalFiles, model);
+		timer.stop();
+		log.info(model.size() + " triples total.");
+
+		timer = PipelineMetrics.start("cxl2ttl.addTriples");
+		if (sharedVocabulary != null)
+		{
+			model = CmapUtil.addTriples(sharedVocabulary, model);
+		}
+		else
+		{
+			model = CmapUtil.addTriples(additionalFiles, model);
+		}
+		timer.stop();
 		if (model.isEmpty())
 		{
 			log.info("No RDF model found, generating from scratch.");
 		}
 		else if (additionalFiles != null && additionalFiles.length > 0)
 		{
-			log.info(model.listStatements().toList().size() + " triples total.");
+			log.info(model.size() + " triples total.");
+		}
+		PipelineMetrics.gauge("cxl2ttl.triplesInput", model.size());
+
+		ItemFingerprints storedFingerprints = null;
+		if (RdfCmap.incrementalConversion)
+		{
+			storedFingerprints = ItemFingerprints.of(model);
 		}
 
 		// Second, we create or update the visualization description of the RDF model.
+		timer = PipelineMetrics.start("cxl2ttl.createOrUpdateVisualizationModel");
 		model = createOrUpdateVisualizationModel(pathToInputFile, model);
+		timer.stop();
+
+		changedItems = null;
+		if (storedFingerprints != null && !storedFingerprints.isEmpty())
+		{
+			changedItems = ItemFingerprints.of(model).determineChangedItems(storedFingerprints);
+		}
 		// model.write(System.out, "TTL");
 		// Third, we walk through all long comments and update the RDF model (creating or updating resources)
+		timer = PipelineMetrics.start("cxl2ttl.updateModel");
 		model = updateModel(model);
+		timer.stop();
 
 		// Fourth, we walk through all concepts of CXL, compare to resources of RDF model and remove deleted concepts as well as all their relations.
+		timer = PipelineMetrics.start("cxl2ttl.cleanModel");
 		model = cleanModel(model);
+		timer.stop();
 
 		// Fifth, we walk through all concepts of CXL, replace created named individuals for resources from vocabulary e.g. qudt:mAU.
+		timer = PipelineMetrics.start("cxl2ttl.replaceNamedResources");
 		model = replaceNamedResources(model);
+		timer.stop();
 
+		timer = PipelineMetrics.start("cxl2ttl.prepareOutput");
 		prepareOutput(pathToInputFile, model);
+		timer.stop();
 
-		log.info(model.listStatements().toList().size() + " triples total after processing.");
+		PipelineMetrics.gauge("cxl2ttl.triplesOutput", model.size());
+		log.info(model.size() + " triples total after processing.");
+
+		return model;
 	}
 
 	public Model updateModel(Model model)
 	{
-		Model singleRdfModel = ModelFactory.createDefaultModel();
-
 		// Extract connections between concepts via links
 		Set<LinkedConcept> connectionsFromConceptToLink = new HashSet<>();
 		Set<LinkedConcept> connectionsFromLinkToConcept = new HashSet<>();
@@ -189,18 +257,32 @@ public class Cmap2TurtleConverter
 			}
 		}
 
+		LongCommentParser longCommentParser = new LongCommentParser(model);
+		Map<Resource, ParsedLongComment> resources2parsedLongComments = parseLongComments(model, longCommentParser);
+
+		// long comments were parsed before any of them is merged, merging may change labels that later long comments refer to
+		LabelChanges labelChanges = new LabelChanges();
+		model.register(labelChanges);
+		LongCommentParser currentLongCommentParser = null;
+		int currentLabelVersion = -1;
+
 		HashMap<Resource, List<StatementWithCardinality>> resources2cardinalities = new HashMap<>();
+		int numSkippedItems = 0;
 		for (Resource resource : resources)
 		{
+			if (changedItems != null && !changedItems.contains(resource.getURI()))
+			{
+				// unchanged since the stored model, its triples are carried over
+				numSkippedItems++;
+				continue;
+			}
+
 			Resource singleUiResource = model.getResource(resource.getURI());
 			Resource singleResource = singleUiResource.getProperty(AFOUtil.AFX_HAS_OBJECT).getResource();
 
-			String singleRdf = StringUtils.EMPTY;
-			if (singleUiResource.hasProperty(VizUtil.AFV_LONG_COMMENT))
-			{
-				singleRdf = singleUiResource.getProperty(VizUtil.AFV_LONG_COMMENT).getString();
-			}
-			if (singleRdf == null || singleRdf.isEmpty())
+			// the parsed long comments are the work list, items without an entry have no long comment
+			ParsedLongComment parsedLongComment = resources2parsedLongComments.get(resource);
+			if (parsedLongComment == null)
 			{
 				boolean isConcept = VizUtil.AFV_CONCEPT.getURI().equals(singleUiResource.getProperty(AFOUtil.RDF_TYPE).getResource().getURI());
 				boolean isLink = VizUtil.AFV_LINK.getURI().equals(singleUiResource.getProperty(AFOUtil.RDF_TYPE).getResource().getURI());
@@ -248,24 +330,30 @@ public class Cmap2TurtleConverter
 				continue;
 			}
 
-			singleRdf = StringEscapeUtils.unescapeXml(singleRdf);
-			CardinalityExtractionResult cardinalityExtractionResult = extractAndReplacePropertiesWithCardinality(model, singleRdf, singleResource.getURI());
-			resources2cardinalities.put(singleUiResource, cardinalityExtractionResult.getStatementsWithCardinality());
-			singleRdf = cardinalityExtractionResult.getSingleRdf();
-
-			singleRdf = createMachineReadableRdf(model, singleRdf);
-			InputStream rdfModelInputStream = new ByteArrayInputStream(singleRdf.getBytes());
-			try
+			if (RdfCmap.parseLongCommentsInOrder)
+			{
+				// reference for the parallel parsing, every long comment is parsed against the model it is merged into
+				parsedLongComment = new LongCommentParser(model).parseIntoGraph(singleResource.getURI(), parsedLongComment.longComment);
+			}
+			else if (longCommentParser.isAffected(parsedLongComment, labelChanges))
 			{
-				singleRdfModel.read(rdfModelInputStream, null, "TTL");
+				// resolve the labels as if the long comments were parsed and merged one after another
+				if (currentLongCommentParser == null || currentLabelVersion != labelChanges.getVersion())
+				{
+					currentLongCommentParser = new LongCommentParser(model);
+					currentLabelVersion = labelChanges.getVersion();
+				}
+				log.debug("Parsing long comment of " + singleResource.getURI() + " again, labels it refers to were changed by another long comment.");
+				parsedLongComment = currentLongCommentParser.parseIntoGraph(singleResource.getURI(), parsedLongComment.longComment);
 			}
-			catch (Exception e)
+
+			if (parsedLongComment.exception != null)
 			{
-				log.error("Exception while processing TTL from long comment:\n\n" + singleRdf + "\n");
-				log.error("Message: " + e.getLocalizedMessage());
-				log.error("Stacktrace : \n" + StringUtils.join(e.getStackTrace(), "\n"));
-				System.exit(1);
+				log.error("Exception while processing TTL from long comment:\n\n" + parsedLongComment.longComment + "\n");
+				throw new IllegalStateException("Exception while processing TTL from long comment of: " + singleResource.getURI(), parsedLongComment.exception);
 			}
+			resources2cardinalities.put(singleUiResource, withSubject(parsedLongComment.statementsWithCardinality, singleResource.getURI()));
+			Model singleRdfModel = ModelFactory.createModelForGraph(parsedLongComment.graph);
 			if (!singleRdfModel.isEmpty())
 			{
 				Resource oldResource = null;
@@ -467,8 +555,14 @@ public class Cmap2TurtleConverter
 					model.remove(outdatedStatements);
 				}
 			}
+		}
+
+		model.unregister(labelChanges);
 
-			singleRdfModel.removeAll();
+		if (changedItems != null)
+		{
+			log.info("Incremental conversion: skipped " + numSkippedItems + " unchanged of " + resources.size() + " items.");
+			PipelineMetrics.gauge("cxl2ttl.itemsSkipped", numSkippedItems);
 		}
 
 		// replace relations by af-x properties or imported properties
@@ -738,82 +832,76 @@ public class Cmap2TurtleConverter
 	}
 
 	/**
-	 * Method scans long comment for e.g. <<some:property <1>> or <<af-x:index 1>> and extracts title with cardinality plus related object. The property is
-	 * replaced for some:property and <<af-x:index>>
+	 * Parses the long comments of all resources that are processed by {@link #updateModel(Model)}. Parsing only reads labels of terms, so the long comments
+	 * can be parsed in parallel before the merge. A long comment whose labels are changed by merging another long comment is parsed again while merging.
 	 *
 	 * @param model
-	 * @param singleRdf
-	 * @return
+	 * @param longCommentParser
+	 *            parser reading the labels of the model before the merge
+	 * @return parsed long comment of every resource with a long comment, the work list of the merge
 	 */
-	private CardinalityExtractionResult extractAndReplacePropertiesWithCardinality(Model model, String singleRdf, String subject)
+	private Map<Resource, ParsedLongComment> parseLongComments(Model model, LongCommentParser longCommentParser)
 	{
-		List<StatementWithCardinality> statementsWithCardinality = new ArrayList<StatementWithCardinality>();
+		List<Resource> resourcesWithLongComment = new ArrayList<>();
+		List<String> subjects = new ArrayList<>();
+		List<String> longComments = new ArrayList<>();
+		for (Resource resource : resources)
+		{
+			if (changedItems != null && !changedItems.contains(resource.getURI()))
+			{
+				continue;
+			}
 
-		singleRdf = singleRdf.replaceAll("\r\n", " ");
-		singleRdf = singleRdf.replaceAll("\n", " ");
-		List<String> lines = Arrays.asList(singleRdf.split(";"));
+			Resource singleUiResource = model.getResource(resource.getURI());
+			if (!singleUiResource.hasProperty(VizUtil.AFV_LONG_COMMENT))
+			{
+				continue;
+			}
 
-		List<String> processedLines = new ArrayList<String>(lines.size());
+			String singleRdf = singleUiResource.getProperty(VizUtil.AFV_LONG_COMMENT).getString();
+			if (singleRdf == null || singleRdf.isEmpty())
+			{
+				continue;
+			}
 
-		String regex = "((^|[\\w\\s]*)<<((([a-z\\-]+):([a-z\\-\\s/\\(\\)0-9]+))\\s+((([\\[\\]]?)([\\<\\>\\=]*)\\s*([0-9]+)([\\[\\]]?))\\s*[\\,]?([0-9]*)\\s*([\\[\\]]?))\\s*)>>)([\"\\:\\w\\s<]*|$)";
-		Pattern p = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+			resourcesWithLongComment.add(resource);
+			subjects.add(singleUiResource.getProperty(AFOUtil.AFX_HAS_OBJECT).getResource().getURI());
+			longComments.add(StringEscapeUtils.unescapeXml(singleRdf));
+		}
 
-		String commentRegex = ".*#(?![\\w]*>.*)";
-		Pattern commentPattern = Pattern.compile(commentRegex, Pattern.CASE_INSENSITIVE);
+		PipelineMetrics.Timer timer = PipelineMetrics.start("cxl2ttl.parseLongComments");
+		List<ParsedLongComment> parsedLongComments = longCommentParser.parseAll(subjects, longComments);
+		timer.stop();
+		PipelineMetrics.gauge("cxl2ttl.longComments", longComments.size());
 
-		for (Iterator<String> iterator = lines.iterator(); iterator.hasNext();)
+		Map<Resource, ParsedLongComment> resources2parsedLongComments = new HashMap<>();
+		for (int i = 0; i < resourcesWithLongComment.size(); i++)
 		{
-			String line = iterator.next();
-			log.debug("<-- " + line);
-
-			// replace french quotes for double brackets
-			line = line.replaceAll("«", "<<");
-			line = line.replaceAll("»", ">>");
+			resources2parsedLongComments.put(resourcesWithLongComment.get(i), parsedLongComments.get(i));
+		}
+		return resources2parsedLongComments;
+	}
 
-			// replace human readable identifiers for artificial IDs
-			Matcher m = p.matcher(line);
-			Matcher commentMatcher = commentPattern.matcher(line);
-			boolean foundId = false;
-			boolean commentedOut = false;
-			while (m.find())
+	/**
+	 * @param statementsWithCardinality
+	 * @param subject
+	 * @return the statements, with the given subject if the subject of the resource was changed while merging a previous long comment
+	 */
+	private List<StatementWithCardinality> withSubject(List<StatementWithCardinality> statementsWithCardinality, String subject)
+	{
+		List<StatementWithCardinality> statementsForSubject = new ArrayList<>(statementsWithCardinality.size());
+		for (StatementWithCardinality statementWithCardinality : statementsWithCardinality)
+		{
+			if (subject.equals(statementWithCardinality.getSubject()))
 			{
-				foundId = true;
-				if (line.contains("#") && line.indexOf("#") < m.start(1))
-				{
-					if (commentMatcher.matches() && commentMatcher.end(1) < m.end(3))
-					{
-						commentedOut = true;
-						processedLines.add(line);
-						continue;
-					}
-				}
-
-				String label = m.group(3);
-				String labelWithoutCardinality = m.group(4);
-				String cardinality = m.group(7);
-				String object = m.group(15).trim().replaceAll("\"", "");
-				statementsWithCardinality.add(new StatementWithCardinality(subject, labelWithoutCardinality, object, cardinality));
-
-				if (label.toLowerCase().contains("af-x") || label.toLowerCase().contains("afx"))
-				{
-					// af-x property replace witch <<af-x:property>>
-					line = line.replaceAll("<<" + Pattern.quote(label) + ">>", "<<" + labelWithoutCardinality + ">>");
-				}
-				else
-				{
-					// other properties replace with other:property
-					line = line.replaceAll("<<" + Pattern.quote(label) + ">>", labelWithoutCardinality);
-				}
+				statementsForSubject.add(statementWithCardinality);
+				continue;
 			}
 
-			if (!(foundId && commentedOut))
-			{
-				processedLines.add(line);
-			}
-			log.debug("--> " + line);
+			statementsForSubject.add(new StatementWithCardinality(subject, statementWithCardinality.getProperty(), statementWithCardinality.getObject(),
+					statementWithCardinality.getCardinality()));
 		}
-
-		return new CardinalityExtractionResult(statementsWithCardinality, StringUtils.join(processedLines.toArray(), ";\n"));
+		return statementsForSubject;
 	}
 
 	private String getShortNameForPropertyFromLink(Model model, Resource propertyAsResource)
@@ -911,138 +999,6 @@ public class Cmap2TurtleConverter
 		return statementsToRemove;
 	}
 
-	private String createMachineReadableRdf(Model model, String singleRdf)
-	{
-		List<String> lines = Arrays.asList(singleRdf.split("\n"));
-		List<String> processedLines = new ArrayList<String>(lines.size());
-		String regex = "((^|[\\w\\s]*)<<([a-z\\-]+):([a-z\\-\\s/\\(\\)0-9]+)>>)([\\w\\s]*|$)";
-		String placeHolderRegex = "(^|[\\w\\s]+)(\\?[a-zA-Z0-9\\-]+)([\\w\\s]+|$)";
-		String commentRegex = ".*#(?![\\w]*>.*)";
-		Pattern p = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-		Pattern placeHolderPattern = Pattern.compile(placeHolderRegex, Pattern.CASE_INSENSITIVE);
-		Pattern commentPattern = Pattern.compile(commentRegex, Pattern.CASE_INSENSITIVE);
-		for (Iterator<String> iterator = lines.iterator(); iterator.hasNext();)
-		{
-			String line = iterator.next();
-			log.debug("<-- " + line);
-
-			// replace placeholders like ?variable-placeholder-name for UUIDs
-			Matcher placeHolderMatcher = placeHolderPattern.matcher(line);
-			Matcher commentMatcher = commentPattern.matcher(line);
-			while (placeHolderMatcher.find())
-			{
-				if (line.contains("#") && line.indexOf("#") < placeHolderMatcher.start(1))
-				{
-					if (commentMatcher.matches() && commentMatcher.end(1) < placeHolderMatcher.end(2))
-					{
-						continue;
-					}
-				}
-
-				String placeHolder = placeHolderMatcher.group(2);
-				String uuid = "<" + CmapUtil.URN_UUID + UUID.randomUUID() + ">";
-				line = line.replaceAll(Pattern.quote(placeHolder), uuid);
-			}
-
-			// replace french quotes for double brackets
-			line = line.replaceAll("«", "<<");
-			line = line.replaceAll("»", ">>");
-
-			// replace human readable identifiers for artificial IDs
-			Matcher m = p.matcher(line);
-			commentMatcher = commentPattern.matcher(line);
-			boolean foundId = false;
-			boolean commentedOut = false;
-			while (m.find())
-			{
-				foundId = true;
-				if (line.contains("#") && line.indexOf("#") < m.start(1))
-				{
-					if (commentMatcher.matches() && commentMatcher.end(1) < m.end(3))
-					{
-						commentedOut = true;
-						processedLines.add(line);
-						continue;
-					}
-				}
-
-				String label = m.group(4);
-				String escapedRegexForSparql = label.replaceAll("\\(", "\\\\\\\\(").replaceAll("\\)", "\\\\\\\\)");
-				String escapedRegexForJava = label.replaceAll("\\(", "\\\\\\(").replaceAll("\\)", "\\\\\\)");
-				// @formatter:off
-					String queryString = Prefixes.getSparqlPrefixes()
-				             + "select ?s where { \n"
-				             + "  { \n"
-				             + "    OPTIONAL { ?s skos:prefLabel ?label . } \n"
-				             + "  } UNION { \n"
-				             + "    OPTIONAL { ?s rdfs:label ?label . } \n"
-				             + "  } \n"
-				             + "  FILTER regex(?label, \"^" + escapedRegexForSparql + "$\", \"i\" )\n"
-				             + "  FILTER (lang(?label) = \"\" || langMatches(lang(?label), \"EN\") )\n"
-				             + "}" ;
-					// @formatter:on
-
-				Query query = QueryFactory.create(queryString);
-				QueryExecution queryExecution = QueryExecutionFactory.create(query, model);
-				ResultSet results = queryExecution.execSelect();
-				boolean foundPrefix = false;
-				while (results.hasNext())
-				{
-					QuerySolution qs = results.next();
-					String namespace = qs.get("s").asResource().getNameSpace();
-					String prefix = Prefixes.getNamespaceMap().get(namespace);
-					String localname = "";
-					if (prefix != null && ((prefix.equals(m.group(3))) || prefix.replaceAll("-", "").equals(m.group(3)) || prefix.toLowerCase().equals("obo")))
-					{
-						if (qs.get("s").asResource().hasProperty(AFOUtil.OWL_DEPRECATED)
-								&& qs.get("s").asResource().getProperty(AFOUtil.OWL_DEPRECATED).getBoolean())
-						{
-							// term is deprecated, look for replacement
-							if (!qs.get("s").asResource().hasProperty(AFOUtil.DCT_IS_REPLACED_BY))
-							{
-								log.error("Deprecated term without replacement: " + m.group(3) + ":" + m.group(4));
-								localname = qs.get("s").asResource().getLocalName();
-							}
-							else
-							{
-								namespace = qs.get("s").asResource().getProperty(AFOUtil.DCT_IS_REPLACED_BY).getObject().asResource().getNameSpace();
-								prefix = Prefixes.getNamespaceMap().get(namespace);
-								localname = qs.get("s").asResource().getProperty(AFOUtil.DCT_IS_REPLACED_BY).getObject().asResource().getLocalName();
-								String replaceLabel = qs.get("s").asResource().getProperty(AFOUtil.SKOS_PREF_LABEL).getString();
-								log.debug("Deprecated term: <<" + m.group(3) + ":" + label + ">> is replaced by <<" + prefix + ":" + replaceLabel + ">> ("
-										+ prefix + ":" + localname + ")");
-							}
-						}
-						else
-						{
-							// term is not deprecated
-							localname = qs.get("s").asResource().getLocalName();
-						}
-						foundPrefix = true;
-						line = line.replaceAll("<<" + Pattern.quote(m.group(3)) + ":" + Pattern.quote(m.group(4)) + ">>", "<" + namespace + localname + ">");
-						break;
-					}
-				}
-				queryExecution.close();
-
-				if (!foundPrefix)
-				{
-					log.error("Missing term: " + m.group(3) + ":" + m.group(4));
-				}
-			}
-
-			if (!(foundId && commentedOut))
-			{
-				processedLines.add(line);
-			}
-			log.debug("--> " + line);
-		}
-
-		processedLines = CmapUtil.replacePrefixesWithNamespaces(model, processedLines);
-
-		return StringUtils.join(processedLines.toArray(), "\n");
-	}
-
 	public static Resource tryToExtractLinkFromAfxAndObo(Model model, Resource link)
 	{
 		if (link.hasProperty(AFOUtil.DCT_TITLE))
@@ -1224,13 +1180,16 @@ public class Cmap2TurtleConverter
 			log.debug("Dropped all long comments. Clean up not needed.");
 			return model;
 		}
-		List<Statement> statementsToRemove = new ArrayList<>();
-		List<String> idsToRemove = new ArrayList<>();
-		StmtIterator stmtIterator = model.listStatements();
-		while (stmtIterator.hasNext())
+		if (vizIdentifierIndex == null)
 		{
-			Statement statement = stmtIterator.next();
-			Resource subject = statement.getSubject();
+			vizIdentifierIndex = new VizIdentifierIndex(model);
+		}
+
+		DeletionPlanner deletionPlanner = new DeletionPlanner(model);
+		ResIterator subjectIterator = model.listSubjects();
+		while (subjectIterator.hasNext())
+		{
+			Resource subject = subjectIterator.next();
 			if (subject.isAnon())
 			{
 				continue;
@@ -1238,7 +1197,7 @@ public class Cmap2TurtleConverter
 
 			String subjectId = subject.getURI();
 
-			if (idsToRemove.contains(subjectId))
+			if (deletionPlanner.isMarked(subject.asNode()))
 			{
 				// already handled
 				continue;
@@ -1263,76 +1222,32 @@ public class Cmap2TurtleConverter
 					&& !conceptId2UiProperties.containsKey(uiSubjectId) && !fullLinkId2UiProperties.containsKey(uiSubjectId)
 					&& !connectionId2UiProperties.containsKey(uiSubjectId) && !controlPointId2UiProperties.containsKey(uiSubjectId))
 			{
-				String vizKey = uiSubject.getProperty(VizUtil.AFV_IDENTIFIER).getString();
+				String vizKey = vizIdentifierIndex.getIdentifier(uiSubject);
+				if (vizKey == null)
+				{
+					// not a concept, link or connection
+					vizKey = uiSubject.getProperty(VizUtil.AFV_IDENTIFIER).getString();
+				}
+
 				if (!conceptId2UiProperties.containsKey(vizKey) && !fullLinkId2UiProperties.containsKey(vizKey)
 						&& !connectionId2UiProperties.containsKey(vizKey) && !controlPointId2UiProperties.containsKey(vizKey))
 				{
 					log.debug("RDF resource with id: " + subjectId + " was not found in vizmodel. Deleting from RDF model.");
-					statementsToRemove.addAll(extractStatementsForResource(subject, model));
-					statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, subject).toList());
-					idsToRemove.add(subjectId);
-
-					statementsToRemove.addAll(extractStatementsForResource(uiSubject, model));
-					statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, uiSubject).toList());
-					idsToRemove.add(uiSubjectId);
-
-					if (uiSubject.hasProperty(VizUtil.AFV_HAS_FONT))
-					{
-						Resource fontResource = uiSubject.getProperty(VizUtil.AFV_HAS_FONT).getResource();
-						statementsToRemove.addAll(extractStatementsForResource(fontResource, model));
-						statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, fontResource).toList());
-					}
-
-					if (uiSubject.hasProperty(VizUtil.AFV_HAS_BORDER))
-					{
-						Resource borderResource = uiSubject.getProperty(VizUtil.AFV_HAS_BORDER).getResource();
-						statementsToRemove.addAll(extractStatementsForResource(borderResource, model));
-						statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, borderResource).toList());
-					}
-
-					if (uiSubject.hasProperty(VizUtil.AFV_HAS_CONTROL_POINT))
-					{
-						Resource controlPointResource = uiSubject.getProperty(VizUtil.AFV_HAS_CONTROL_POINT).getResource();
-						statementsToRemove.addAll(extractStatementsForResource(controlPointResource, model));
-						statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, controlPointResource).toList());
-					}
-
-					if (uiSubject.hasProperty(VizUtil.AFV_HAS_IMAGE))
-					{
-						Resource imageResource = uiSubject.getProperty(VizUtil.AFV_HAS_IMAGE).getResource();
-						statementsToRemove.addAll(extractStatementsForResource(imageResource, model));
-						statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, imageResource).toList());
-					}
-
-					if (uiSubject.hasProperty(VizUtil.AFV_HAS_CARDINALITY))
-					{
-						Resource cardinalityResource = uiSubject.getProperty(VizUtil.AFV_HAS_CARDINALITY).getResource();
-						statementsToRemove.addAll(extractStatementsForResource(cardinalityResource, model));
-						statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, cardinalityResource).toList());
-					}
-
-					if (uiSubject.hasProperty(VizUtil.AFV_HAS_HIDDEN_PROPERTY))
-					{
-						StmtIterator hiddenPropertyIterator = model.listStatements(uiSubject, VizUtil.AFV_HAS_HIDDEN_PROPERTY, (RDFNode) null);
-						while (hiddenPropertyIterator.hasNext())
-						{
-							Statement statement2 = hiddenPropertyIterator.next();
-							Resource hiddenPropertyResource = statement2.getResource();
-							statementsToRemove.addAll(extractStatementsForResource(hiddenPropertyResource, model));
-							statementsToRemove.addAll(model.listStatements((Resource) null, (Property) null, hiddenPropertyResource).toList());
-						}
-					}
+					deletionPlanner.mark(subject.asNode());
+					deletionPlanner.markUiResource(uiSubject.asNode());
 				}
 			}
 		}
+		subjectIterator.close();
 
-		if (!idsToRemove.isEmpty())
+		if (!deletionPlanner.getMarked().isEmpty())
 		{
 			log.info("Cleaning model.");
-			log.debug("Deleting resources and relations for Ids: " + StringUtils.join(idsToRemove.iterator(), ", \n"));
+			log.debug("Deleting resources and relations for Ids: " + StringUtils.join(deletionPlanner.getMarked().iterator(), ", \n"));
 		}
 
-		model.remove(statementsToRemove);
+		int numberOfRemovedStatements = deletionPlanner.execute();
+		log.debug("Removed " + numberOfRemovedStatements + " statements.");
 
 		return model;
 	}
@@ -1340,515 +1255,525 @@ public class Cmap2TurtleConverter
 	@SuppressWarnings("deprecation")
 	public Model createOrUpdateVisualizationModel(Path path, Model model) throws JAXBException, IOException
 	{
-		JAXBContext jc = JAXBContext.newInstance(CMap.class);
-		// jc.generateSchema(new CMapSchemaOutputResolver(new File("src\\main\\resources")));
-
-		Unmarshaller unmarshaller = jc.createUnmarshaller();
-		CMap cmap = (CMap) unmarshaller.unmarshal(path.toFile());
+		readUiProperties(path, model);
+		return createOrUpdateVisualizationInfo(path, model);
+	}
 
-		Marshaller marshaller = jc.createMarshaller();
-		marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-		marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-		marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new CmapNamespacePrefixMapper());
+	/**
+	 * Reads concepts, links, connections, control points and images of the CXL into the maps of UI properties. The elements are handled one by one while the
+	 * CXL is streamed, the concept list comes before the concept appearance list in CXL.
+	 *
+	 * @param path
+	 * @param model
+	 *            used to look up labels of concepts
+	 * @throws JAXBException
+	 * @throws IOException
+	 */
+	public void readUiProperties(Path path, Model model) throws JAXBException, IOException
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug(CmapXmlCodec.marshal(CmapXmlCodec.unmarshal(path)));
+		}
 
-		ByteArrayOutputStream output = new ByteArrayOutputStream()
+		CmapXmlCodec.stream(path, new ElementHandler()
 		{
-			private StringBuilder string = new StringBuilder();
+			@Override
+			public void handleConcept(Concept concept)
+			{
+				readConcept(concept, model);
+			}
 
 			@Override
-			public void write(int b)
+			public void handleConceptAppearance(ConceptAppearance conceptAppearance)
 			{
-				string.append((char) b);
+				readConceptAppearance(conceptAppearance);
 			}
-		};
-		marshaller.marshal(cmap, output);
-		log.debug(output.toString());
 
-		List<Concept> concepts = new ArrayList<>();
-		if (cmap.getMap() != null && cmap.getMap().getConcepts() != null && cmap.getMap().getConcepts().getConceptList() != null)
-		{
-			concepts = cmap.getMap().getConcepts().getConceptList();
-		}
-		for (Iterator<Concept> iterator = concepts.iterator(); iterator.hasNext();)
-		{
-			Concept concept = iterator.next();
-			String conceptId = concept.getId();
-			Map<String, String> conceptProperties = CmapUtil.createOrRetrieveMapOfUiProperties(conceptId2UiProperties, conceptId);
-			String label = concept.getLabel();
-			if (label != null && !label.isEmpty())
+			@Override
+			public void handleLinkingPhrase(LinkingPhrase linkingPhrase)
 			{
-				label = unbreakString(label).trim();
-				if (label.contains("[") && label.contains("]") && !label.contains("\"") && !label.contains("^^"))
-				{
-					conceptProperties.put(ConceptProperty.IS_BLANK_NODE.name(), "true");
-					label = label.replaceAll("\\[", "").replaceAll("\\]", "");
-				}
-				else if ((label.startsWith("\"") && label.contains("\"^^")))
-				{
-					conceptProperties.put(ConceptProperty.IS_LITERAL_NODE.name(), "true");
-				}
+				readLinkingPhrase(linkingPhrase);
+			}
 
-				conceptProperties.put(ConceptProperty.TITLE.name(), label);
+			@Override
+			public void handleLinkingPhraseAppearance(LinkingPhraseAppearance linkingPhraseAppearance)
+			{
+				readLinkingPhraseAppearance(linkingPhraseAppearance);
+			}
 
-				Resource type = RdfUtil.getResourceByLabel(model, label, false, true);
-				if (type != null)
-				{
-					if (type.hasProperty(AFOUtil.RDF_TYPE, AFOUtil.OWL_NAMED_INDIVIDUAL) && !type.getURI().startsWith(AFOUtil.AFDT_PREFIX))
-					{
-						conceptProperties.put(ConceptProperty.IS_NAMED_INDIVIDUAL_OF_ONTOLOGIES.name(), "true");
-					}
-				}
+			@Override
+			public void handleConnection(Connection connection)
+			{
+				readConnection(connection);
+			}
 
+			@Override
+			public void handleConnectionAppearance(ConnectionAppearance connectionAppearance)
+			{
+				readConnectionAppearance(connectionAppearance);
 			}
 
-			String shortComment = concept.getShortComment();
-			if (shortComment != null && !shortComment.isEmpty())
+			@Override
+			public void handleImage(Image image)
 			{
-				conceptProperties.put(ConceptProperty.SHORT_COMMENT.name(), shortComment);
+				readImage(image);
 			}
+		});
+	}
 
-			String longComment = concept.getLongComment();
-			if (longComment != null && !longComment.isEmpty() && !RdfCmap.ignoreLongComments)
+	private void readConcept(Concept concept, Model model)
+	{
+		String conceptId = concept.getId();
+		Map<String, String> conceptProperties = CmapUtil.createOrRetrieveMapOfUiProperties(conceptId2UiProperties, conceptId);
+		String label = concept.getLabel();
+		if (label != null && !label.isEmpty())
+		{
+			label = unbreakString(label).trim();
+			if (label.contains("[") && label.contains("]") && !label.contains("\"") && !label.contains("^^"))
 			{
-				conceptProperties.put(ConceptProperty.LONG_COMMENT.name(),
-						NumericEntityEscaper.below(0x20).translate(StringEscapeUtils.escapeXml11(longComment)));
+				conceptProperties.put(ConceptProperty.IS_BLANK_NODE.name(), "true");
+				label = label.replaceAll("\\[", "").replaceAll("\\]", "");
+			}
+			else if ((label.startsWith("\"") && label.contains("\"^^")))
+			{
+				conceptProperties.put(ConceptProperty.IS_LITERAL_NODE.name(), "true");
 			}
 
-			String parentId = concept.getParentId();
-			if (parentId != null && !parentId.isEmpty())
+			conceptProperties.put(ConceptProperty.TITLE.name(), label);
+
+			Resource type = RdfUtil.getResourceByLabel(model, label, false, true);
+			if (type != null)
 			{
-				conceptProperties.put(ConceptProperty.PARENT.name(), parentId);
+				if (type.hasProperty(AFOUtil.RDF_TYPE, AFOUtil.OWL_NAMED_INDIVIDUAL) && !type.getURI().startsWith(AFOUtil.AFDT_PREFIX))
+				{
+					conceptProperties.put(ConceptProperty.IS_NAMED_INDIVIDUAL_OF_ONTOLOGIES.name(), "true");
+				}
 			}
 
-			conceptId2UiProperties.put(conceptId, conceptProperties);
 		}
 
-		List<ConceptAppearance> conceptAppearances = new ArrayList<>();
-		if (cmap.getMap() != null && cmap.getMap().getConceptAppearances() != null && cmap.getMap().getConceptAppearances().getConceptAppearances() != null)
+		String shortComment = concept.getShortComment();
+		if (shortComment != null && !shortComment.isEmpty())
 		{
-			conceptAppearances = cmap.getMap().getConceptAppearances().getConceptAppearances();
+			conceptProperties.put(ConceptProperty.SHORT_COMMENT.name(), shortComment);
 		}
-		for (Iterator<ConceptAppearance> iterator = conceptAppearances.iterator(); iterator.hasNext();)
+
+		String longComment = concept.getLongComment();
+		if (longComment != null && !longComment.isEmpty() && !RdfCmap.ignoreLongComments)
 		{
-			ConceptAppearance conceptAppearance = iterator.next();
-			String conceptAppearanceId = conceptAppearance.getId();
-			Map<String, String> conceptProperties = CmapUtil.createOrRetrieveMapOfUiProperties(conceptId2UiProperties, conceptAppearanceId);
-			String x = conceptAppearance.getX();
-			String y = conceptAppearance.getY();
-			String width = conceptAppearance.getWidth();
-			String height = conceptAppearance.getHeight();
-			String fontStyle = conceptAppearance.getFontStyle();
-			String fontSize = conceptAppearance.getFontSize();
-			String backgroundColor = conceptAppearance.getBackgroundColor();
-			String borderShape = conceptAppearance.getBorderShape();
-			String borderStyle = conceptAppearance.getBorderStyle();
-			String expanded = conceptAppearance.getExpanded();
-			String backgroundImage = conceptAppearance.getBackgroundImage();
-			String backgroundImageStyle = conceptAppearance.getBackgroundImageStyle();
-			String backgroundImageLayout = conceptAppearance.getBackgroundImageLayout();
+			conceptProperties.put(ConceptProperty.LONG_COMMENT.name(),
+					NumericEntityEscaper.below(0x20).translate(StringEscapeUtils.escapeXml11(longComment)));
+		}
 
-			if (x != null && !x.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.X.name(), x);
-			}
+		String parentId = concept.getParentId();
+		if (parentId != null && !parentId.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.PARENT.name(), parentId);
+		}
 
-			if (y != null && !y.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.Y.name(), y);
-			}
+		conceptId2UiProperties.put(conceptId, conceptProperties);
+	}
 
-			if (width != null && !width.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.WIDTH.name(), width);
-			}
+	private void readConceptAppearance(ConceptAppearance conceptAppearance)
+	{
+		String conceptAppearanceId = conceptAppearance.getId();
+		Map<String, String> conceptProperties = CmapUtil.createOrRetrieveMapOfUiProperties(conceptId2UiProperties, conceptAppearanceId);
+		String x = conceptAppearance.getX();
+		String y = conceptAppearance.getY();
+		String width = conceptAppearance.getWidth();
+		String height = conceptAppearance.getHeight();
+		String fontStyle = conceptAppearance.getFontStyle();
+		String fontSize = conceptAppearance.getFontSize();
+		String backgroundColor = conceptAppearance.getBackgroundColor();
+		String borderShape = conceptAppearance.getBorderShape();
+		String borderStyle = conceptAppearance.getBorderStyle();
+		String expanded = conceptAppearance.getExpanded();
+		String backgroundImage = conceptAppearance.getBackgroundImage();
+		String backgroundImageStyle = conceptAppearance.getBackgroundImageStyle();
+		String backgroundImageLayout = conceptAppearance.getBackgroundImageLayout();
 
-			if (height != null && !height.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.HEIGHT.name(), height);
-			}
+		if (x != null && !x.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.X.name(), x);
+		}
 
-			if (fontStyle != null && !fontStyle.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.FONT_STYLE.name(), fontStyle);
-			}
+		if (y != null && !y.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.Y.name(), y);
+		}
 
-			if (fontSize != null && !fontSize.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.FONT_SIZE.name(), fontSize);
-			}
+		if (width != null && !width.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.WIDTH.name(), width);
+		}
 
-			if (backgroundColor != null && !backgroundColor.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.BACKGROUND_COLOR.name(), backgroundColor);
-			}
+		if (height != null && !height.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.HEIGHT.name(), height);
+		}
 
-			if (backgroundImage != null && !backgroundImage.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.BACKGROUND_IMAGE.name(), backgroundImage);
-			}
+		if (fontStyle != null && !fontStyle.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.FONT_STYLE.name(), fontStyle);
+		}
 
-			if (backgroundImageStyle != null && !backgroundImageStyle.isEmpty())
-			{
-				conceptProperties.put(ConceptProperty.BACKGROUND_IMAGE_STYLE.name(), backgroundImageStyle);
-			}
+		if (fontSize != null && !fontSize.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.FONT_SIZE.name(), fontSize);
+		}
+
+		if (backgroundColor != null && !backgroundColor.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.BACKGROUND_COLOR.name(), backgroundColor);
+		}
+
+		if (backgroundImage != null && !backgroundImage.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.BACKGROUND_IMAGE.name(), backgroundImage);
+		}
+
+		if (backgroundImageStyle != null && !backgroundImageStyle.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.BACKGROUND_IMAGE_STYLE.name(), backgroundImageStyle);
+		}
+
+		if (backgroundImageLayout != null && !backgroundImageLayout.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.BACKGROUND_IMAGE_LAYOUT.name(), backgroundImageLayout);
+		}
 
-			if (backgroundImageLayout != null && !backgroundImageLayout.isEmpty())
+		if (borderShape != null && !borderShape.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.BORDER_SHAPE.name(), borderShape);
+			if (conceptProperties.get(ConceptProperty.IS_LITERAL_NODE.name()) == null
+					|| conceptProperties.get(ConceptProperty.IS_LITERAL_NODE.name()).equals("false"))
 			{
-				conceptProperties.put(ConceptProperty.BACKGROUND_IMAGE_LAYOUT.name(), backgroundImageLayout);
+				if (borderShape.equals("rounded-rectangle"))
+				{
+					log.debug("Found class node. Check for punning.");
+					conceptProperties.put(ConceptProperty.IS_CLASS.name(), "true");
+				}
 			}
 
-			if (borderShape != null && !borderShape.isEmpty())
+			if (borderShape.equals("oval"))
 			{
-				conceptProperties.put(ConceptProperty.BORDER_SHAPE.name(), borderShape);
-				if (conceptProperties.get(ConceptProperty.IS_LITERAL_NODE.name()) == null
-						|| conceptProperties.get(ConceptProperty.IS_LITERAL_NODE.name()).equals("false"))
+				if (borderStyle != null && (borderStyle.equals("dashed") || borderStyle.equals("dotted")))
 				{
-					if (borderShape.equals("rounded-rectangle"))
-					{
-						log.debug("Found class node. Check for punning.");
-						conceptProperties.put(ConceptProperty.IS_CLASS.name(), "true");
-					}
+					log.debug("Found source node.");
+					conceptProperties.put(ConceptProperty.IS_SOURCE_NODE.name(), "true");
 				}
-
-				if (borderShape.equals("oval"))
+				else
 				{
-					if (borderStyle != null && (borderStyle.equals("dashed") || borderStyle.equals("dotted")))
-					{
-						log.debug("Found source node.");
-						conceptProperties.put(ConceptProperty.IS_SOURCE_NODE.name(), "true");
-					}
-					else
-					{
-						log.debug("Found target node.");
-						conceptProperties.put(ConceptProperty.IS_TARGET_NODE.name(), "true");
-					}
+					log.debug("Found target node.");
+					conceptProperties.put(ConceptProperty.IS_TARGET_NODE.name(), "true");
 				}
 			}
+		}
 
-			if (borderStyle != null && !borderStyle.isEmpty())
+		if (borderStyle != null && !borderStyle.isEmpty())
+		{
+			conceptProperties.put(ConceptProperty.BORDER_STYLE.name(), borderStyle);
+			if (borderShape != null && borderShape.equals("oval"))
 			{
-				conceptProperties.put(ConceptProperty.BORDER_STYLE.name(), borderStyle);
-				if (borderShape != null && borderShape.equals("oval"))
+				if (borderStyle.equals("dashed"))
 				{
-					if (borderStyle.equals("dashed"))
-					{
-						log.debug("Found source node.");
-						conceptProperties.put(ConceptProperty.IS_SOURCE_NODE.name(), "true");
-					}
-					else if (borderStyle.equals("solid"))
-					{
-						log.debug("Found target node.");
-						conceptProperties.put(ConceptProperty.IS_TARGET_NODE.name(), "true");
-					}
+					log.debug("Found source node.");
+					conceptProperties.put(ConceptProperty.IS_SOURCE_NODE.name(), "true");
 				}
-				else
+				else if (borderStyle.equals("solid"))
 				{
-					if (borderStyle.equals("dotted") || borderStyle.equals("dashed"))
-					{
-						conceptProperties.put(ConceptProperty.IS_CLASS.name(), "true");
-						log.debug("Found class node with dashed/dotted border.");
-					}
+					log.debug("Found target node.");
+					conceptProperties.put(ConceptProperty.IS_TARGET_NODE.name(), "true");
 				}
 			}
-
-			if (expanded != null && !expanded.isEmpty())
+			else
 			{
-				conceptProperties.put(ConceptProperty.EXPANDED.name(), expanded);
+				if (borderStyle.equals("dotted") || borderStyle.equals("dashed"))
+				{
+					conceptProperties.put(ConceptProperty.IS_CLASS.name(), "true");
+					log.debug("Found class node with dashed/dotted border.");
+				}
 			}
-
-			conceptId2UiProperties.put(conceptAppearanceId, conceptProperties);
 		}
 
-		List<LinkingPhrase> links = new ArrayList<>();
-		if (cmap.getMap() != null && cmap.getMap().getLinkingPhrases() != null && cmap.getMap().getLinkingPhrases().getLinkingPhrases() != null)
+		if (expanded != null && !expanded.isEmpty())
 		{
-			links = cmap.getMap().getLinkingPhrases().getLinkingPhrases();
+			conceptProperties.put(ConceptProperty.EXPANDED.name(), expanded);
 		}
-		for (Iterator<LinkingPhrase> iterator = links.iterator(); iterator.hasNext();)
-		{
-			LinkingPhrase linkingPhrase = iterator.next();
-			String linkingPhraseId = linkingPhrase.getId();
-			Map<String, String> linkProperties = CmapUtil.createOrRetrieveMapOfUiProperties(fullLinkId2UiProperties, linkingPhraseId);
-			String label = linkingPhrase.getLabel();
-			if (label != null && !label.isEmpty())
-			{
-				label = unbreakString(label);
-
-				Pattern p = Pattern.compile(CmapUtil.CARDINALITY_PATTERN, Pattern.CASE_INSENSITIVE);
-				log.debug("Matching property label: " + label);
-				Matcher m = p.matcher(label);
-				String cardinalityString = StringUtils.EMPTY;
-				if (m.find())
-				{
-					label = m.group(1).trim();
-					cardinalityString = m.group(2).trim();
-				}
-
-				linkProperties.put(ConceptProperty.CARDINALITY.name(), cardinalityString);
 
-				if (label.contains(":") && !label.toLowerCase().contains("af-x") && !label.toLowerCase().contains("afx") && !isOboProperty(label)
-						&& !isQudtProperty(label))
-				{
-					// for properties of imported ontologies other than af-x/obo/qudt, spaces are not allowed and removed (must be wrong in label)
-					label = label.replaceAll(" ", "");
-				}
+		conceptId2UiProperties.put(conceptAppearanceId, conceptProperties);
+	}
 
-				linkProperties.put(ConceptProperty.TITLE.name(), label);
-			}
+	private void readLinkingPhrase(LinkingPhrase linkingPhrase)
+	{
+		String linkingPhraseId = linkingPhrase.getId();
+		Map<String, String> linkProperties = CmapUtil.createOrRetrieveMapOfUiProperties(fullLinkId2UiProperties, linkingPhraseId);
+		String label = linkingPhrase.getLabel();
+		if (label != null && !label.isEmpty())
+		{
+			label = unbreakString(label);
 
-			String shortComment = linkingPhrase.getShortComment();
-			if (shortComment != null && !shortComment.isEmpty())
+			Pattern p = Pattern.compile(CmapUtil.CARDINALITY_PATTERN, Pattern.CASE_INSENSITIVE);
+			log.debug("Matching property label: " + label);
+			Matcher m = p.matcher(label);
+			String cardinalityString = StringUtils.EMPTY;
+			if (m.find())
 			{
-				linkProperties.put(ConceptProperty.SHORT_COMMENT.name(), shortComment);
+				label = m.group(1).trim();
+				cardinalityString = m.group(2).trim();
 			}
 
-			String longComment = linkingPhrase.getLongComment();
-			if (longComment != null && !longComment.isEmpty() && !RdfCmap.ignoreLongComments)
-			{
-				linkProperties.put(ConceptProperty.LONG_COMMENT.name(), NumericEntityEscaper.below(0x20).translate(StringEscapeUtils.escapeXml(longComment)));
-			}
+			linkProperties.put(ConceptProperty.CARDINALITY.name(), cardinalityString);
 
-			String parentId = linkingPhrase.getParentId();
-			if (parentId != null && !parentId.isEmpty())
+			if (label.contains(":") && !label.toLowerCase().contains("af-x") && !label.toLowerCase().contains("afx") && !isOboProperty(label)
+					&& !isQudtProperty(label))
 			{
-				linkProperties.put(ConceptProperty.PARENT.name(), parentId);
+				// for properties of imported ontologies other than af-x/obo/qudt, spaces are not allowed and removed (must be wrong in label)
+				label = label.replaceAll(" ", "");
 			}
 
-			fullLinkId2UiProperties.put(linkingPhraseId, linkProperties);
+			linkProperties.put(ConceptProperty.TITLE.name(), label);
 		}
 
-		List<LinkingPhraseAppearance> linkAppearances = new ArrayList<>();
-		if (cmap.getMap() != null && cmap.getMap().getLinkingPhraseAppearances() != null
-				&& cmap.getMap().getLinkingPhraseAppearances().getLinkingPhraseAppearances() != null)
+		String shortComment = linkingPhrase.getShortComment();
+		if (shortComment != null && !shortComment.isEmpty())
 		{
-			linkAppearances = cmap.getMap().getLinkingPhraseAppearances().getLinkingPhraseAppearances();
+			linkProperties.put(ConceptProperty.SHORT_COMMENT.name(), shortComment);
 		}
-		for (Iterator<LinkingPhraseAppearance> iterator = linkAppearances.iterator(); iterator.hasNext();)
+
+		String longComment = linkingPhrase.getLongComment();
+		if (longComment != null && !longComment.isEmpty() && !RdfCmap.ignoreLongComments)
 		{
-			LinkingPhraseAppearance linkingPhraseAppearance = iterator.next();
-			String linkingPhraseAppearanceId = linkingPhraseAppearance.getId();
-			Map<String, String> linkProperties = CmapUtil.createOrRetrieveMapOfUiProperties(fullLinkId2UiProperties, linkingPhraseAppearanceId);
+			linkProperties.put(ConceptProperty.LONG_COMMENT.name(), NumericEntityEscaper.below(0x20).translate(StringEscapeUtils.escapeXml(longComment)));
+		}
 
-			String x = linkingPhraseAppearance.getX();
-			String y = linkingPhraseAppearance.getY();
-			String width = linkingPhraseAppearance.getWidth();
-			String height = linkingPhraseAppearance.getHeight();
-			String minWidth = linkingPhraseAppearance.getMinWidth();
-			String minHeight = linkingPhraseAppearance.getMinHeight();
-			String fontSize = linkingPhraseAppearance.getFontSize();
-			String fontColor = linkingPhraseAppearance.getFontColor();
-			String borderColor = linkingPhraseAppearance.getBorderColor();
-			String backgroundColor = linkingPhraseAppearance.getBackgroundColor();
-			String shadowColor = linkingPhraseAppearance.getShadowColor();
-			String backgroundImage = linkingPhraseAppearance.getBackgroundImage();
-			String backgroundImageStyle = linkingPhraseAppearance.getBackgroundImageStyle();
-			String backgroundImageLayout = linkingPhraseAppearance.getBackgroundImageLayout();
+		String parentId = linkingPhrase.getParentId();
+		if (parentId != null && !parentId.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.PARENT.name(), parentId);
+		}
 
-			if (x != null && !x.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.X.name(), x);
-			}
+		fullLinkId2UiProperties.put(linkingPhraseId, linkProperties);
+	}
 
-			if (y != null && !y.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.Y.name(), y);
-			}
+	private void readLinkingPhraseAppearance(LinkingPhraseAppearance linkingPhraseAppearance)
+	{
+		String linkingPhraseAppearanceId = linkingPhraseAppearance.getId();
+		Map<String, String> linkProperties = CmapUtil.createOrRetrieveMapOfUiProperties(fullLinkId2UiProperties, linkingPhraseAppearanceId);
 
-			if (width != null && !width.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.WIDTH.name(), width);
-			}
+		String x = linkingPhraseAppearance.getX();
+		String y = linkingPhraseAppearance.getY();
+		String width = linkingPhraseAppearance.getWidth();
+		String height = linkingPhraseAppearance.getHeight();
+		String minWidth = linkingPhraseAppearance.getMinWidth();
+		String minHeight = linkingPhraseAppearance.getMinHeight();
+		String fontSize = linkingPhraseAppearance.getFontSize();
+		String fontColor = linkingPhraseAppearance.getFontColor();
+		String borderColor = linkingPhraseAppearance.getBorderColor();
+		String backgroundColor = linkingPhraseAppearance.getBackgroundColor();
+		String shadowColor = linkingPhraseAppearance.getShadowColor();
+		String backgroundImage = linkingPhraseAppearance.getBackgroundImage();
+		String backgroundImageStyle = linkingPhraseAppearance.getBackgroundImageStyle();
+		String backgroundImageLayout = linkingPhraseAppearance.getBackgroundImageLayout();
 
-			if (height != null && !height.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.HEIGHT.name(), height);
-			}
+		if (x != null && !x.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.X.name(), x);
+		}
 
-			if (minWidth != null && !minWidth.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.MIN_WIDTH.name(), minWidth);
-			}
+		if (y != null && !y.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.Y.name(), y);
+		}
 
-			if (minHeight != null && !minHeight.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.MIN_HEIGHT.name(), minHeight);
-			}
+		if (width != null && !width.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.WIDTH.name(), width);
+		}
 
-			if (fontSize != null && !fontSize.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.FONT_SIZE.name(), fontSize);
-			}
+		if (height != null && !height.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.HEIGHT.name(), height);
+		}
 
-			if (fontColor != null && !fontColor.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.FONT_COLOR.name(), fontColor);
-			}
+		if (minWidth != null && !minWidth.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.MIN_WIDTH.name(), minWidth);
+		}
 
-			if (borderColor != null && !borderColor.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.BORDER_COLOR.name(), borderColor);
-			}
+		if (minHeight != null && !minHeight.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.MIN_HEIGHT.name(), minHeight);
+		}
 
-			if (backgroundColor != null && !backgroundColor.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.BACKGROUND_COLOR.name(), backgroundColor);
-			}
+		if (fontSize != null && !fontSize.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.FONT_SIZE.name(), fontSize);
+		}
 
-			if (backgroundImage != null && !backgroundImage.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.BACKGROUND_IMAGE.name(), backgroundImage);
-			}
+		if (fontColor != null && !fontColor.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.FONT_COLOR.name(), fontColor);
+		}
 
-			if (backgroundImageStyle != null && !backgroundImageStyle.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.BACKGROUND_IMAGE_STYLE.name(), backgroundImageStyle);
-			}
+		if (borderColor != null && !borderColor.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.BORDER_COLOR.name(), borderColor);
+		}
 
-			if (backgroundImageLayout != null && !backgroundImageLayout.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.BACKGROUND_IMAGE_LAYOUT.name(), backgroundImageLayout);
-			}
+		if (backgroundColor != null && !backgroundColor.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.BACKGROUND_COLOR.name(), backgroundColor);
+		}
 
-			if (shadowColor != null && !shadowColor.isEmpty())
-			{
-				linkProperties.put(ConceptProperty.SHADOW_COLOR.name(), shadowColor);
-			}
+		if (backgroundImage != null && !backgroundImage.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.BACKGROUND_IMAGE.name(), backgroundImage);
+		}
 
-			fullLinkId2UiProperties.put(linkingPhraseAppearanceId, linkProperties);
+		if (backgroundImageStyle != null && !backgroundImageStyle.isEmpty())
+		{
+			linkProperties.put(ConceptProperty.BACKGROUND_IMAGE_STYLE.name(), backgroundImageStyle);
 		}
 
-		List<Connection> connections = new ArrayList<>();
-		if (cmap.getMap() != null && cmap.getMap().getConnections() != null && cmap.getMap().getConnections().getConnections() != null)
+		if (backgroundImageLayout != null && !backgroundImageLayout.isEmpty())
 		{
-			connections = cmap.getMap().getConnections().getConnections();
+			linkProperties.put(ConceptProperty.BACKGROUND_IMAGE_LAYOUT.name(), backgroundImageLayout);
 		}
-		for (Iterator<Connection> iterator = connections.iterator(); iterator.hasNext();)
+
+		if (shadowColor != null && !shadowColor.isEmpty())
 		{
-			Connection connection = iterator.next();
-			String connectionId = connection.getId();
-			Map<String, String> connectionProperties = CmapUtil.createOrRetrieveMapOfUiProperties(connectionId2UiProperties, connectionId);
-			String fromId = connection.getFromId();
-			if (fromId != null && !fromId.isEmpty())
-			{
-				connectionProperties.put(ConceptProperty.CONNECTS_FROM.name(), fromId);
-			}
-			else
-			{
-				throw new IllegalStateException("Connection with id: " + connectionId + " has no source specified.");
-			}
+			linkProperties.put(ConceptProperty.SHADOW_COLOR.name(), shadowColor);
+		}
 
-			String toId = connection.getToId();
-			if (toId != null && !toId.isEmpty())
-			{
-				connectionProperties.put(ConceptProperty.CONNECTS_TO.name(), toId);
-			}
-			else
-			{
-				throw new IllegalStateException("Connection with id: " + connectionId + " has no target specified.");
-			}
+		fullLinkId2UiProperties.put(linkingPhraseAppearanceId, linkProperties);
+	}
 
-			connectionId2UiProperties.put(connectionId, connectionProperties);
+	private void readConnection(Connection connection)
+	{
+		String connectionId = connection.getId();
+		Map<String, String> connectionProperties = CmapUtil.createOrRetrieveMapOfUiProperties(connectionId2UiProperties, connectionId);
+		String fromId = connection.getFromId();
+		if (fromId != null && !fromId.isEmpty())
+		{
+			connectionProperties.put(ConceptProperty.CONNECTS_FROM.name(), fromId);
+		}
+		else
+		{
+			throw new IllegalStateException("Connection with id: " + connectionId + " has no source specified.");
 		}
 
-		List<ConnectionAppearance> connectionAppearances = new ArrayList<>();
-		if (cmap.getMap() != null && cmap.getMap().getConnectionAppearances() != null
-				&& cmap.getMap().getConnectionAppearances().getConnectionAppearances() != null)
+		String toId = connection.getToId();
+		if (toId != null && !toId.isEmpty())
 		{
-			connectionAppearances = cmap.getMap().getConnectionAppearances().getConnectionAppearances();
+			connectionProperties.put(ConceptProperty.CONNECTS_TO.name(), toId);
 		}
-		for (Iterator<ConnectionAppearance> iterator = connectionAppearances.iterator(); iterator.hasNext();)
+		else
 		{
-			ConnectionAppearance connectionAppearance = iterator.next();
-			String connectionAppearanceId = connectionAppearance.getId();
-			Map<String, String> connectionProperties = CmapUtil.createOrRetrieveMapOfUiProperties(connectionId2UiProperties, connectionAppearanceId);
-			String fromPos = connectionAppearance.getFromPos();
-			if (fromPos != null && !fromPos.isEmpty())
-			{
-				connectionProperties.put(ConceptProperty.ANCHOR_FROM.name(), fromPos);
-			}
+			throw new IllegalStateException("Connection with id: " + connectionId + " has no target specified.");
+		}
 
-			String toPos = connectionAppearance.getToPos();
-			if (toPos != null && !toPos.isEmpty())
-			{
-				connectionProperties.put(ConceptProperty.ANCHOR_TO.name(), toPos);
-			}
+		connectionId2UiProperties.put(connectionId, connectionProperties);
+	}
 
-			String arrowHead = connectionAppearance.getArrowHead();
-			if (arrowHead != null && !arrowHead.isEmpty())
-			{
-				connectionProperties.put(ConceptProperty.ARROW_HEAD.name(), arrowHead);
-			}
+	private void readConnectionAppearance(ConnectionAppearance connectionAppearance)
+	{
+		String connectionAppearanceId = connectionAppearance.getId();
+		Map<String, String> connectionProperties = CmapUtil.createOrRetrieveMapOfUiProperties(connectionId2UiProperties, connectionAppearanceId);
+		String fromPos = connectionAppearance.getFromPos();
+		if (fromPos != null && !fromPos.isEmpty())
+		{
+			connectionProperties.put(ConceptProperty.ANCHOR_FROM.name(), fromPos);
+		}
 
-			String type = connectionAppearance.getType();
-			if (type != null && !type.isEmpty())
-			{
-				connectionProperties.put(ConceptProperty.LINE_TYPE.name(), type);
-			}
+		String toPos = connectionAppearance.getToPos();
+		if (toPos != null && !toPos.isEmpty())
+		{
+			connectionProperties.put(ConceptProperty.ANCHOR_TO.name(), toPos);
+		}
 
-			connectionId2UiProperties.put(connectionAppearanceId, connectionProperties);
+		String arrowHead = connectionAppearance.getArrowHead();
+		if (arrowHead != null && !arrowHead.isEmpty())
+		{
+			connectionProperties.put(ConceptProperty.ARROW_HEAD.name(), arrowHead);
+		}
 
-			List<ControlPoint> controlPoints = new ArrayList<>();
-			if (connectionAppearance.getControlPoints() != null)
-			{
-				controlPoints = connectionAppearance.getControlPoints();
-			}
-			int pointCount = 0;
-			for (Iterator<ControlPoint> controlPointIterator = controlPoints.iterator(); controlPointIterator.hasNext();)
-			{
-				ControlPoint controlPoint = controlPointIterator.next();
-				Map<String, String> controlPointProperties = CmapUtil.createOrRetrieveMapOfUiProperties(controlPointId2UiProperties, "");
+		String type = connectionAppearance.getType();
+		if (type != null && !type.isEmpty())
+		{
+			connectionProperties.put(ConceptProperty.LINE_TYPE.name(), type);
+		}
 
-				String x = controlPoint.getX();
-				String y = controlPoint.getY();
+		connectionId2UiProperties.put(connectionAppearanceId, connectionProperties);
 
-				if (x != null && !x.isEmpty())
-				{
-					controlPointProperties.put(ConceptProperty.X.name(), x);
-				}
+		List<ControlPoint> controlPoints = new ArrayList<>();
+		if (connectionAppearance.getControlPoints() != null)
+		{
+			controlPoints = connectionAppearance.getControlPoints();
+		}
+		int pointCount = 0;
+		for (Iterator<ControlPoint> controlPointIterator = controlPoints.iterator(); controlPointIterator.hasNext();)
+		{
+			ControlPoint controlPoint = controlPointIterator.next();
+			Map<String, String> controlPointProperties = CmapUtil.createOrRetrieveMapOfUiProperties(controlPointId2UiProperties, "");
 
-				if (y != null && !y.isEmpty())
-				{
-					controlPointProperties.put(ConceptProperty.Y.name(), y);
-				}
+			String x = controlPoint.getX();
+			String y = controlPoint.getY();
 
-				controlPointProperties.put(ConceptProperty.CONNECTION_ID.name(), connectionAppearanceId);
-				controlPointProperties.put(ConceptProperty.INDEX.name(), String.valueOf(pointCount));
+			if (x != null && !x.isEmpty())
+			{
+				controlPointProperties.put(ConceptProperty.X.name(), x);
+			}
 
-				controlPointId2UiProperties.put(CmapUtil.URN_UUID + UUID.randomUUID().toString(), controlPointProperties); // control points must be newly
-																															// created because they have no id
-																															// in xml. Do not forget to replace
-																															// existing control points.
-				pointCount++;
+			if (y != null && !y.isEmpty())
+			{
+				controlPointProperties.put(ConceptProperty.Y.name(), y);
 			}
-		}
 
-		List<Image> images = new ArrayList<>();
-		if (cmap.getMap() != null && cmap.getMap().getImages() != null && cmap.getMap().getImages().getImages() != null)
-		{
-			images = cmap.getMap().getImages().getImages();
+			controlPointProperties.put(ConceptProperty.CONNECTION_ID.name(), connectionAppearanceId);
+			controlPointProperties.put(ConceptProperty.INDEX.name(), String.valueOf(pointCount));
+
+			controlPointId2UiProperties.put(CmapUtil.URN_UUID + UUID.randomUUID().toString(), controlPointProperties); // control points must be newly
+																														// created because they have no id
+																														// in xml. Do not forget to replace
+																														// existing control points.
+			pointCount++;
 		}
-		for (Iterator<Image> iterator = images.iterator(); iterator.hasNext();)
-		{
-			Image image = iterator.next();
-			String imageId = image.getId();
-			Map<String, String> imageProperties = CmapUtil.createOrRetrieveMapOfUiProperties(imageId2UiProperties, imageId);
-			String bytes = image.getBytes();
+	}
 
-			if (bytes != null && !bytes.isEmpty())
-			{
-				imageProperties.put(ConceptProperty.BACKGROUND_IMAGE_BYTES.name(), bytes);
-			}
+	private void readImage(Image image)
+	{
+		String imageId = image.getId();
+		Map<String, String> imageProperties = CmapUtil.createOrRetrieveMapOfUiProperties(imageId2UiProperties, imageId);
+		String bytes = image.getBytes();
 
-			imageId2UiProperties.put(imageId, imageProperties);
+		if (bytes != null && !bytes.isEmpty())
+		{
+			imageProperties.put(ConceptProperty.BACKGROUND_IMAGE_BYTES.name(), bytes);
 		}
 
+		imageId2UiProperties.put(imageId, imageProperties);
+	}
+
+	/**
+	 * Creates or updates the visualization description of the model from the UI properties read before.
+	 *
+	 * @param path
+	 * @param model
+	 * @return
+	 */
+	public Model createOrUpdateVisualizationInfo(Path path, Model model)
+	{
 		if (!model.contains((Resource) null, AFOUtil.RDF_TYPE, VizUtil.AFV_MAP))
 		{
 			CmapUtil.createMap(model);
 		}
 
+		vizIdentifierIndex = new VizIdentifierIndex(model);
 		VisualizationInfoBuilderResult visualizationInfoBuilderResult = VisualizationInfoBuilder.createOrUpdateVisualizationInfo(model, path,
-				conceptId2UiProperties, fullLinkId2UiProperties, connectionId2UiProperties, controlPointId2UiProperties, imageId2UiProperties, resources);
+				conceptId2UiProperties, fullLinkId2UiProperties, connectionId2UiProperties, controlPointId2UiProperties, imageId2UiProperties, resources,
+				Collections.<String> emptySet(), vizIdentifierIndex);
 
 		model = visualizationInfoBuilderResult.getModel();
 
@@ -1869,12 +1794,15 @@ public class Cmap2TurtleConverter
 	private void prepareOutput(Path path, Model model) throws IOException, FileNotFoundException
 	{
 		String inputFileName = path.getFileName().toString();
-		String outputFileName = inputFileName.substring(0, inputFileName.length() - 3) + "ttl";
-		Path ttlPath = Paths.get(outputFileName);
-		Files.deleteIfExists(ttlPath);
-		ttlPath = Files.createFile(ttlPath);
-		model.write(new FileOutputStream(ttlPath.toFile()), "TTL");
-		CmapUtil.appendSignature(ttlPath.toFile());
+		if (writeTurtleFile)
+		{
+			String outputFileName = inputFileName.substring(0, inputFileName.length() - 3) + "ttl";
+			Path ttlPath = Paths.get(outputFileName);
+			Files.deleteIfExists(ttlPath);
+			ttlPath = Files.createFile(ttlPath);
+			model.write(new FileOutputStream(ttlPath.toFile()), "TTL");
+			CmapUtil.appendSignature(ttlPath.toFile());
+		}
 
 		if (RdfCmap.writeSeparateFiles)
 		{
@@ -1922,79 +1850,13 @@ public class Cmap2TurtleConverter
 			otherTriplesModel.setNsPrefixes(Prefixes.nsPrefixMap);
 		}
 
-		List<Statement> vizStatements = new ArrayList<>();
-		List<Statement> instanceStatements = new ArrayList<>();
-		List<Statement> otherStatements = new ArrayList<>();
-
-		StmtIterator stmtIterator = model.listStatements();
-		long blanks = 0;
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			if (statement.getSubject().isAnon() || (statement.getObject().isResource() && statement.getObject().isAnon()))
-			{
-				blanks++;
-				otherStatements.add(statement);
-				continue;
-			}
-
-			Resource subject = statement.getSubject();
-			Resource subjectType = null;
-			StmtIterator typeIterator = model.listStatements(subject, AFOUtil.RDF_TYPE, (RDFNode) null);
-			if (typeIterator.hasNext())
-			{
-				subjectType = typeIterator.next().getResource();
-			}
-
-			boolean isConnection = false;
-			boolean isLink = false;
-			boolean isParent = false;
-			if (subject.getURI().contains(CmapUtil.URN_UUID))
-			{
-				Resource uiResource = model.getResource(subject.getURI().replace(CmapUtil.URN_UUID, VizUtil.AFV_PREFIX));
-				if (uiResource.hasProperty(AFOUtil.RDF_TYPE)
-						&& uiResource.getProperty(AFOUtil.RDF_TYPE).getResource().getURI().equals(VizUtil.AFV_CONNECTION.getURI()))
-				{
-					isConnection = true;
-				}
-				if (uiResource.hasProperty(AFOUtil.RDF_TYPE)
-						&& uiResource.getProperty(AFOUtil.RDF_TYPE).getResource().getURI().equals(VizUtil.AFV_LINK.getURI()))
-				{
-					isLink = true;
-				}
-				isParent = model.listStatements((Resource) null, VizUtil.AFV_HAS_PARENT, uiResource).hasNext();
-			}
-
-			if (subject.getURI().startsWith(CmapUtil.URN_UUID) && !(subjectType != null && subjectType.getURI().contains(VizUtil.AFV_PREFIX)) && !isConnection
-					&& !isLink && !isParent && !(subjectType != null && subjectType.getURI().equals(AFOUtil.OWL_OBJECT_PROPERTY.getURI())))
-			{
-				instanceStatements.add(statement);
-			}
-			else if (subject.getURI().startsWith(VizUtil.AFV_PREFIX)
-					|| (subject.getURI().startsWith(CmapUtil.URN_UUID) && (subjectType != null && subjectType.getURI().contains(VizUtil.AFV_PREFIX)))
-					|| isConnection || isLink
-					|| (subject.getURI().startsWith(CmapUtil.URN_UUID) && (subjectType != null && subjectType.getURI().equals(AFOUtil.OWL_OBJECT_PROPERTY)))
-					|| isParent)
-			{
-				vizStatements.add(statement);
-			}
-			else
-			{
-				otherStatements.add(statement);
-			}
-		}
+		long blanks = StatementPartitioner.partition(model, vizModel, instanceModel, otherTriplesModel);
 
 		if (blanks > 0)
 		{
 			log.debug("Found " + blanks + " statements with blank nodes that were treated always as other statements.");
 		}
 
-		vizModel.add(vizStatements);
-
-		otherTriplesModel.add(otherStatements);
-
-		instanceModel.add(instanceStatements);
-
 		if (instanceModel.isEmpty())
 		{
 			return new PreparedModels(instanceModel, vizModel, otherTriplesModel);
@@ -2604,71 +2466,13 @@ public class Cmap2TurtleConverter
 			otherTriplesModel.setNsPrefixes(Prefixes.nsPrefixMap);
 		}
 
-		List<Statement> vizStatements = new ArrayList<>();
-		List<Statement> instanceStatements = new ArrayList<>();
-		List<Statement> otherStatements = new ArrayList<>();
-		StmtIterator stmtIterator = model.listStatements();
-		long blanks = 0;
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			if (statement.getSubject().isAnon() || (statement.getObject().isResource() && statement.getObject().isAnon()))
-			{
-				blanks++;
-				otherStatements.add(statement);
-				continue;
-			}
-
-			Resource subject = statement.getSubject();
-			Resource subjectType = null;
-			StmtIterator typeIterator = model.listStatements(subject, AFOUtil.RDF_TYPE, (RDFNode) null);
-			if (typeIterator.hasNext())
-			{
-				subjectType = typeIterator.next().getResource();
-			}
-
-			boolean isConnection = false;
-			boolean isLink = false;
-			boolean isParent = false;
-			if (subject.getURI().contains(CmapUtil.URN_UUID))
-			{
-				Resource uiResource = model.getResource(subject.getURI().replace(CmapUtil.URN_UUID, VizUtil.AFV_PREFIX));
-				if (uiResource.hasProperty(AFOUtil.RDF_TYPE)
-						&& uiResource.getProperty(AFOUtil.RDF_TYPE).getResource().getURI().equals(VizUtil.AFV_CONNECTION.getURI()))
-				{
-					isConnection = true;
-				}
-				if (uiResource.hasProperty(AFOUtil.RDF_TYPE)
-						&& uiResource.getProperty(AFOUtil.RDF_TYPE).getResource().getURI().equals(VizUtil.AFV_LINK.getURI()))
-				{
-					isLink = true;
-				}
-				isParent = model.listStatements((Resource) null, VizUtil.AFV_HAS_PARENT, uiResource).hasNext();
-			}
-
-			if (subject.getURI().startsWith(CmapUtil.URN_UUID) && !(subjectType.getURI().contains(VizUtil.AFV_PREFIX)) && !isConnection && !isLink && !isParent
-					&& !subjectType.getURI().equals(AFOUtil.OWL_OBJECT_PROPERTY.getURI()))
-			{
-				instanceStatements.add(statement);
-			}
-			else if (subject.getURI().startsWith(VizUtil.AFV_PREFIX)
-					|| (subject.getURI().startsWith(CmapUtil.URN_UUID) && subjectType.getURI().contains(VizUtil.AFV_PREFIX)) || isConnection || isLink
-					|| (subject.getURI().startsWith(CmapUtil.URN_UUID) && subjectType.getURI().equals(AFOUtil.OWL_OBJECT_PROPERTY)) || isParent)
-			{
-				vizStatements.add(statement);
-			}
-			else
-			{
-				otherStatements.add(statement);
-			}
-		}
+		long blanks = StatementPartitioner.partition(model, vizModel, instanceModel, otherTriplesModel);
 
 		if (blanks > 0)
 		{
 			log.debug("Found " + blanks + " statements with blank nodes that were treated always as other statements.");
 		}
 
-		vizModel.add(vizStatements);
 		if (!vizModel.isEmpty())
 		{
 			String vizModelOutputFileName = inputFileName.substring(0, inputFileName.length() - 4) + "-visualization-model.ttl";
@@ -2678,9 +2482,6 @@ public class Cmap2TurtleConverter
 			CmapUtil.appendSignature(vizTtlPath.toFile());
 		}
 
-		otherTriplesModel.add(otherStatements);
-
-		instanceModel.add(instanceStatements);
 		if (instanceModel.isEmpty())
 		{
 			return;
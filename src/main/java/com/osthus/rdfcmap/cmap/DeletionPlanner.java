@@ -0,0 +1,142 @@
+package com.osthus.rdfcmap.cmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.VizUtil;
+
+/**
+ * DeletionPlanner
+ *
+ * Collects resources to delete from a model and removes them in one bulk operation. For each marked resource all statements with the resource as subject or
+ * object are removed, together with the statements of blank nodes reachable from it. Marking a UI resource also marks its fonts, borders, control points,
+ * images, cardinalities and hidden properties.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class DeletionPlanner
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final List<Property> satelliteProperties = Arrays.asList(VizUtil.AFV_HAS_FONT, VizUtil.AFV_HAS_BORDER, VizUtil.AFV_HAS_CONTROL_POINT,
+			VizUtil.AFV_HAS_IMAGE, VizUtil.AFV_HAS_CARDINALITY, VizUtil.AFV_HAS_HIDDEN_PROPERTY);
+
+	private final Graph graph;
+
+	private final Set<Node> marked = new LinkedHashSet<>();
+
+	DeletionPlanner(Model model)
+	{
+		this.graph = model.getGraph();
+	}
+
+	boolean isMarked(Node node)
+	{
+		return marked.contains(node);
+	}
+
+	void mark(Node node)
+	{
+		marked.add(node);
+	}
+
+	void markUiResource(Node uiNode)
+	{
+		marked.add(uiNode);
+		for (Property satelliteProperty : satelliteProperties)
+		{
+			ExtendedIterator<Triple> iterator = graph.find(uiNode, satelliteProperty.asNode(), Node.ANY);
+			try
+			{
+				while (iterator.hasNext())
+				{
+					marked.add(iterator.next().getObject());
+				}
+			}
+			finally
+			{
+				iterator.close();
+			}
+		}
+	}
+
+	Set<Node> getMarked()
+	{
+		return marked;
+	}
+
+	/**
+	 * Removes all statements of the marked resources and of the blank nodes reachable from them.
+	 *
+	 * @return number of removed statements
+	 */
+	int execute()
+	{
+		Set<Triple> triplesToRemove = new HashSet<>();
+		Set<Node> visitedBlankNodes = new HashSet<>();
+		Deque<Node> blankNodes = new ArrayDeque<>();
+
+		for (Node node : marked)
+		{
+			collectOutgoing(node, triplesToRemove, blankNodes);
+			triplesToRemove.addAll(graph.find(Node.ANY, Node.ANY, node).toList());
+		}
+
+		while (!blankNodes.isEmpty())
+		{
+			Node blankNode = blankNodes.pop();
+			if (!visitedBlankNodes.add(blankNode) || marked.contains(blankNode))
+			{
+				continue;
+			}
+
+			collectOutgoing(blankNode, triplesToRemove, blankNodes);
+		}
+
+		GraphUtil.delete(graph, new ArrayList<Triple>(triplesToRemove));
+		return triplesToRemove.size();
+	}
+
+	private void collectOutgoing(Node subject, Set<Triple> triplesToRemove, Deque<Node> blankNodes)
+	{
+		ExtendedIterator<Triple> iterator = graph.find(subject, Node.ANY, Node.ANY);
+		try
+		{
+			while (iterator.hasNext())
+			{
+				Triple triple = iterator.next();
+				triplesToRemove.add(triple);
+				Node object = triple.getObject();
+				if (object.isBlank())
+				{
+					blankNodes.push(object);
+				}
+				else if (subject.isBlank() && object.isURI() && object.getURI().contains(CmapUtil.URN_UUID))
+				{
+					log.warn("Found blank node with relation to an instance. Check. Instance ID: " + object.getURI());
+				}
+			}
+		}
+		finally
+		{
+			iterator.close();
+		}
+	}
+}
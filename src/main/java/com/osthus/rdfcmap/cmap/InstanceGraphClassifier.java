@@ -0,0 +1,183 @@
+package com.osthus.rdfcmap.cmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import com.osthus.rdfcmap.util.AFOUtil;
+import com.osthus.rdfcmap.util.CmapUtil;
+
+/**
+ * InstanceGraphClassifier
+ *
+ * Determines the nodes of the instance graph: all resources with IRIs starting with urn:uuid: and all blank nodes that are connected to at least one of them,
+ * in any direction and via any other nodes. Properties of RDF and OWL and schema properties of RDFS do not connect nodes. Blank nodes that describe
+ * restrictions, classes, properties, axioms and data types are not part of the instance graph.
+ *
+ * Nodes are mapped to integers and merged into connected components with union-find in a single pass over all statements, so every node is visited once.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class InstanceGraphClassifier
+{
+	private static final Set<Resource> typesToSkip = new HashSet<Resource>(Arrays.asList(AFOUtil.OWL_RESTRICTION, AFOUtil.OWL_CLASS,
+			AFOUtil.OWL_OBJECT_PROPERTY, AFOUtil.OWL_DATATYPE_PROPERTY, AFOUtil.OWL_ANNOTATION_PROPERTY, AFOUtil.OWL_AXIOM, AFOUtil.RDFS_DATATYPE,
+			AFOUtil.OWL_ALL_DIFFERENT));
+
+	private final Map<Node, Integer> node2index = new HashMap<>();
+
+	private final List<Node> nodes = new ArrayList<>();
+
+	private final Map<Node, Boolean> propertiesToSkip = new HashMap<>();
+
+	private int[] parent = new int[1024];
+
+	private int[] size = new int[1024];
+
+	/**
+	 * @param model
+	 * @return URIs of named nodes and labels of blank nodes of the instance graph
+	 */
+	static Set<String> collectNodeIds(Model model)
+	{
+		return new InstanceGraphClassifier().classify(model);
+	}
+
+	private Set<String> classify(Model model)
+	{
+		ExtendedIterator<Triple> iterator = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		try
+		{
+			while (iterator.hasNext())
+			{
+				Triple triple = iterator.next();
+				int subject = index(triple.getSubject());
+				if (triple.getObject().isLiteral())
+				{
+					continue;
+				}
+
+				int object = index(triple.getObject());
+				if (!isPropertyToSkip(triple.getPredicate()))
+				{
+					union(subject, object);
+				}
+			}
+		}
+		finally
+		{
+			iterator.close();
+		}
+
+		BitSet instanceComponents = new BitSet(nodes.size());
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			if (isInstance(nodes.get(i)))
+			{
+				instanceComponents.set(find(i));
+			}
+		}
+
+		Set<String> nodeIds = new HashSet<String>();
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			Node node = nodes.get(i);
+			if (isInstance(node))
+			{
+				nodeIds.add(node.getURI());
+			}
+			else if (node.isBlank() && instanceComponents.get(find(i)) && !hasTypeToSkip(model, node))
+			{
+				nodeIds.add(node.getBlankNodeLabel());
+			}
+		}
+		return nodeIds;
+	}
+
+	private static boolean isInstance(Node node)
+	{
+		return node.isURI() && node.getURI().startsWith(CmapUtil.URN_UUID);
+	}
+
+	private static boolean hasTypeToSkip(Model model, Node node)
+	{
+		Resource type = model.wrapAsResource(node).getPropertyResourceValue(AFOUtil.RDF_TYPE);
+		return type != null && typesToSkip.contains(type);
+	}
+
+	private boolean isPropertyToSkip(Node property)
+	{
+		Boolean isPropertyToSkip = propertiesToSkip.get(property);
+		if (isPropertyToSkip == null)
+		{
+			String uri = property.getURI();
+			isPropertyToSkip = uri.startsWith(AFOUtil.RDF_PREFIX) || uri.startsWith(AFOUtil.OWL_PREFIX) || uri.equals(AFOUtil.RDFS_SUBCLASS_OF.getURI())
+					|| uri.equals(AFOUtil.RDFS_SUBPROPERTY_OF.getURI()) || uri.equals(AFOUtil.RDFS_DOMAIN.getURI()) || uri.equals(AFOUtil.RDFS_RANGE.getURI())
+					|| uri.equals(AFOUtil.RDFS_DATATYPE.getURI());
+			propertiesToSkip.put(property, isPropertyToSkip);
+		}
+		return isPropertyToSkip;
+	}
+
+	private int index(Node node)
+	{
+		Integer index = node2index.get(node);
+		if (index != null)
+		{
+			return index;
+		}
+
+		index = nodes.size();
+		if (index == parent.length)
+		{
+			parent = Arrays.copyOf(parent, 2 * index);
+			size = Arrays.copyOf(size, 2 * index);
+		}
+		parent[index] = index;
+		size[index] = 1;
+		nodes.add(node);
+		node2index.put(node, index);
+		return index;
+	}
+
+	private int find(int node)
+	{
+		while (parent[node] != node)
+		{
+			// path halving
+			parent[node] = parent[parent[node]];
+			node = parent[node];
+		}
+		return node;
+	}
+
+	private void union(int node1, int node2)
+	{
+		int root1 = find(node1);
+		int root2 = find(node2);
+		if (root1 == root2)
+		{
+			return;
+		}
+
+		if (size[root1] < size[root2])
+		{
+			int root = root1;
+			root1 = root2;
+			root2 = root;
+		}
+		parent[root2] = root1;
+		size[root1] += size[root2];
+	}
+}
@@ -0,0 +1,237 @@
+package com.osthus.rdfcmap.cmap;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+import com.osthus.rdfcmap.util.AFOUtil;
+import com.osthus.rdfcmap.util.VizUtil;
+
+import de.osthus.ambeth.exception.RuntimeExceptionUtil;
+
+/**
+ * ItemFingerprints
+ *
+ * Fingerprints of the concepts, links and connections of a visualization model. The fingerprint of an item covers type, label, long comment, short comment
+ * and appearance (literal values of the UI resource, its font and its border) but not its position or size, so moving items around does not change it.
+ *
+ * Comparing the fingerprints of the stored model with those after reading the CXL yields the items that have to be processed again. Changed connections
+ * also mark the items they connect, and changed links mark the concepts they connect, since the relations of a concept are checked against its links.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class ItemFingerprints
+{
+	private static final List<Resource> itemTypes = Arrays.asList(VizUtil.AFV_CONCEPT, VizUtil.AFV_LINK, VizUtil.AFV_CONNECTION);
+
+	private static final Set<Property> ignoredProperties = new HashSet<>(
+			Arrays.asList(VizUtil.AFV_X_POSITION, VizUtil.AFV_Y_POSITION, VizUtil.AFV_WIDTH, VizUtil.AFV_HEIGHT));
+
+	private static final Set<Property> referenceProperties = new HashSet<>(
+			Arrays.asList(AFOUtil.RDF_TYPE, AFOUtil.AFX_HAS_OBJECT, VizUtil.AFV_CONNECTS_FROM, VizUtil.AFV_CONNECTS_TO));
+
+	private static final Set<Property> appearanceProperties = new HashSet<>(Arrays.asList(VizUtil.AFV_HAS_FONT, VizUtil.AFV_HAS_BORDER));
+
+	private final Map<String, String> fingerprints = new HashMap<>();
+
+	private final Map<String, String> types = new HashMap<>();
+
+	private final Map<String, String[]> connections = new HashMap<>();
+
+	private ItemFingerprints()
+	{
+	}
+
+	/**
+	 * @param model
+	 * @return fingerprints of all concepts, links and connections of the model, empty if the model has no visualization
+	 */
+	static ItemFingerprints of(Model model)
+	{
+		ItemFingerprints itemFingerprints = new ItemFingerprints();
+		for (Resource itemType : itemTypes)
+		{
+			ResIterator resIterator = model.listSubjectsWithProperty(AFOUtil.RDF_TYPE, itemType);
+			while (resIterator.hasNext())
+			{
+				Resource uiResource = resIterator.next();
+				if (!uiResource.isURIResource())
+				{
+					continue;
+				}
+
+				itemFingerprints.fingerprints.put(uiResource.getURI(), fingerprint(uiResource));
+				itemFingerprints.types.put(uiResource.getURI(), itemType.getURI());
+				if (VizUtil.AFV_CONNECTION.equals(itemType))
+				{
+					Resource from = uiResource.getPropertyResourceValue(VizUtil.AFV_CONNECTS_FROM);
+					Resource to = uiResource.getPropertyResourceValue(VizUtil.AFV_CONNECTS_TO);
+					if (from != null && to != null && from.isURIResource() && to.isURIResource())
+					{
+						itemFingerprints.connections.put(uiResource.getURI(), new String[] { from.getURI(), to.getURI() });
+					}
+				}
+			}
+		}
+		return itemFingerprints;
+	}
+
+	boolean isEmpty()
+	{
+		return fingerprints.isEmpty();
+	}
+
+	int size()
+	{
+		return fingerprints.size();
+	}
+
+	/**
+	 * @param previous
+	 *            fingerprints of the stored model
+	 * @return URIs of UI resources that were added or changed compared to the previous fingerprints, or that are connected to added, changed or deleted items
+	 */
+	Set<String> determineChangedItems(ItemFingerprints previous)
+	{
+		Set<String> changedItems = new HashSet<>();
+		for (Entry<String, String> entry : fingerprints.entrySet())
+		{
+			if (!entry.getValue().equals(previous.fingerprints.get(entry.getKey())))
+			{
+				changedItems.add(entry.getKey());
+			}
+		}
+
+		// items of the previous model that are gone, their neighbours have to be processed again
+		Set<String> deletedItems = new HashSet<>(previous.fingerprints.keySet());
+		deletedItems.removeAll(fingerprints.keySet());
+
+		Map<String, List<String>> neighbours = new HashMap<>();
+		addNeighbours(neighbours, previous.connections);
+		addNeighbours(neighbours, connections);
+
+		Set<String> dirtyItems = new HashSet<>(changedItems);
+		dirtyItems.addAll(deletedItems);
+
+		// changed connections change the relations of both ends
+		for (String dirtyItem : new ArrayList<>(dirtyItems))
+		{
+			String[] ends = connections.containsKey(dirtyItem) ? connections.get(dirtyItem) : previous.connections.get(dirtyItem);
+			if (ends != null)
+			{
+				changedItems.add(ends[0]);
+				changedItems.add(ends[1]);
+				dirtyItems.add(ends[0]);
+				dirtyItems.add(ends[1]);
+			}
+		}
+
+		// changed links change the relations of the concepts they connect
+		for (String dirtyItem : new ArrayList<>(dirtyItems))
+		{
+			String type = types.containsKey(dirtyItem) ? types.get(dirtyItem) : previous.types.get(dirtyItem);
+			if (!VizUtil.AFV_LINK.getURI().equals(type) || !neighbours.containsKey(dirtyItem))
+			{
+				continue;
+			}
+
+			changedItems.addAll(neighbours.get(dirtyItem));
+		}
+
+		changedItems.retainAll(fingerprints.keySet());
+		return changedItems;
+	}
+
+	private static void addNeighbours(Map<String, List<String>> neighbours, Map<String, String[]> connections)
+	{
+		for (String[] ends : connections.values())
+		{
+			addNeighbour(neighbours, ends[0], ends[1]);
+			addNeighbour(neighbours, ends[1], ends[0]);
+		}
+	}
+
+	private static void addNeighbour(Map<String, List<String>> neighbours, String item, String neighbour)
+	{
+		List<String> itemNeighbours = neighbours.get(item);
+		if (itemNeighbours == null)
+		{
+			itemNeighbours = new ArrayList<>();
+			neighbours.put(item, itemNeighbours);
+		}
+		itemNeighbours.add(neighbour);
+	}
+
+	private static String fingerprint(Resource uiResource)
+	{
+		List<String> values = new ArrayList<>();
+		StmtIterator stmtIterator = uiResource.listProperties();
+		while (stmtIterator.hasNext())
+		{
+			Statement statement = stmtIterator.next();
+			Property property = statement.getPredicate();
+			RDFNode object = statement.getObject();
+			if (ignoredProperties.contains(property))
+			{
+				continue;
+			}
+
+			if (object.isLiteral())
+			{
+				values.add(property.getURI() + "=" + object.asLiteral().getLexicalForm());
+			}
+			else if (referenceProperties.contains(property) && object.isURIResource())
+			{
+				values.add(property.getURI() + "=<" + object.asResource().getURI() + ">");
+			}
+			else if (appearanceProperties.contains(property))
+			{
+				StmtIterator appearanceIterator = object.asResource().listProperties();
+				while (appearanceIterator.hasNext())
+				{
+					Statement appearanceStatement = appearanceIterator.next();
+					if (appearanceStatement.getObject().isLiteral())
+					{
+						values.add(property.getURI() + "/" + appearanceStatement.getPredicate().getURI() + "="
+								+ appearanceStatement.getObject().asLiteral().getLexicalForm());
+					}
+				}
+			}
+		}
+		Collections.sort(values);
+
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw RuntimeExceptionUtil.mask(e);
+		}
+
+		for (String value : values)
+		{
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\n');
+		}
+		return new String(digest.digest(), StandardCharsets.ISO_8859_1);
+	}
+}
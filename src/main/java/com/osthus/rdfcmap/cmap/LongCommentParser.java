@@ -0,0 +1,1283 @@
+package com.osthus.rdfcmap.cmap;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.RiotParseException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.osthus.rdfcmap.cmap.cardinality.StatementWithCardinality;
+import com.osthus.rdfcmap.util.AFOUtil;
+import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.Prefixes;
+
+/**
+ * LongCommentParser
+ *
+ * Parses the human readable Turtle of long comments in a single pass. Next to plain Turtle, long comments may contain terms given by their label, e.g.
+ * &lt;&lt;af-r:device&gt;&gt; or «af-r:device», properties with cardinality, e.g. &lt;&lt;af-x:index 1&gt;&gt; or &lt;&lt;obo:RO_0000057 [1,2]&gt;&gt;,
+ * placeholders for new instances, e.g. ?sample, and prefixed names with the prefixes of {@link Prefixes} without declaration. Comments are recognized by the
+ * tokenizer, so a # inside an IRI or a string does not start a comment.
+ *
+ * Triples are sent to the graph of the long comment as soon as they are complete and properties with cardinality are returned as
+ * {@link StatementWithCardinality}, the long comment is not rewritten before parsing.
+ *
+ * Labels are resolved through an index of all English or untagged skos:prefLabel and rdfs:label values of the model, case-insensitive and for any subject.
+ * The index is a snapshot taken on first use. Every parsed long comment records the labels it looked up: if merging other long comments changes these labels
+ * or the deprecation of their terms, see {@link LabelChanges}, the long comment is parsed again against the current model, so that it refers to the same terms
+ * as if all long comments were parsed and merged one after another.
+ *
+ * {@link #parseAll(List, List)} parses many long comments on the common fork-join pool. The parser only reads the model, so the model must not be changed
+ * while parsing.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class LongCommentParser
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final char EOF = '\uffff';
+
+	static final int PARALLEL_THRESHOLD = 16;
+
+	private final Model model;
+
+	private Map<String, List<Resource>> label2terms;
+
+	private final Map<String, Node> resolvedLabels = Collections.synchronizedMap(new HashMap<String, Node>());
+
+	/**
+	 * Triples and properties with cardinality of a single long comment, or the exception if it could not be parsed.
+	 */
+	static class ParsedLongComment
+	{
+		final String longComment;
+
+		final Graph graph;
+
+		final List<StatementWithCardinality> statementsWithCardinality;
+
+		/**
+		 * Lower case labels of all terms given by label, resolved or not.
+		 */
+		final Set<String> labels;
+
+		final RuntimeException exception;
+
+		ParsedLongComment(String longComment, Graph graph, List<StatementWithCardinality> statementsWithCardinality, Set<String> labels,
+				RuntimeException exception)
+		{
+			this.longComment = longComment;
+			this.graph = graph;
+			this.statementsWithCardinality = statementsWithCardinality;
+			this.labels = labels;
+			this.exception = exception;
+		}
+	}
+
+	/**
+	 * Labels and deprecated terms changed in a model. Registered at the model while long comments that were parsed before are merged into it.
+	 */
+	static class LabelChanges extends StatementListener
+	{
+		private static final Node SKOS_PREF_LABEL = AFOUtil.SKOS_PREF_LABEL.asNode();
+		private static final Node RDFS_LABEL = AFOUtil.RDFS_LABEL.asNode();
+		private static final Node OWL_DEPRECATED = AFOUtil.OWL_DEPRECATED.asNode();
+		private static final Node DCT_IS_REPLACED_BY = AFOUtil.DCT_IS_REPLACED_BY.asNode();
+
+		private final Set<String> labels = new HashSet<>();
+
+		private final Set<Node> terms = new HashSet<>();
+
+		private boolean isUnknown = false;
+
+		private int version = 0;
+
+		/**
+		 * @return number of changes so far, a parser created at the same version sees the current labels
+		 */
+		int getVersion()
+		{
+			return version;
+		}
+
+		@Override
+		public void addedStatement(Statement statement)
+		{
+			changed(statement.asTriple());
+		}
+
+		@Override
+		public void removedStatement(Statement statement)
+		{
+			changed(statement.asTriple());
+		}
+
+		@Override
+		public void notifyEvent(Model model, Object event)
+		{
+			// removeAll and other bulk events do not report single statements, only a pattern with another property is known to leave labels unchanged
+			if (event instanceof GraphEvents && ((GraphEvents) event).getContent() instanceof Triple)
+			{
+				Node predicate = ((Triple) ((GraphEvents) event).getContent()).getPredicate();
+				if (predicate.isConcrete() && !isLabel(predicate) && !isDeprecation(predicate))
+				{
+					return;
+				}
+			}
+			isUnknown = true;
+			version++;
+		}
+
+		private void changed(Triple triple)
+		{
+			Node predicate = triple.getPredicate();
+			if (isLabel(predicate) && triple.getObject().isLiteral())
+			{
+				labels.add(triple.getObject().getLiteralLexicalForm().toLowerCase(Locale.ENGLISH));
+				version++;
+			}
+			else if (isDeprecation(predicate))
+			{
+				terms.add(triple.getSubject());
+				version++;
+			}
+		}
+
+		private boolean isChanged(String label, List<Resource> candidates)
+		{
+			if (isUnknown || labels.contains(label))
+			{
+				return true;
+			}
+			if (candidates != null)
+			{
+				for (Resource candidate : candidates)
+				{
+					if (terms.contains(candidate.asNode()))
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private static boolean isLabel(Node predicate)
+		{
+			return SKOS_PREF_LABEL.equals(predicate) || RDFS_LABEL.equals(predicate);
+		}
+
+		private static boolean isDeprecation(Node predicate)
+		{
+			return OWL_DEPRECATED.equals(predicate) || DCT_IS_REPLACED_BY.equals(predicate);
+		}
+	}
+
+	/**
+	 * @param model
+	 *            model with the labels of the terms, labels are read on first use only
+	 */
+	LongCommentParser(Model model)
+	{
+		this.model = model;
+	}
+
+	/**
+	 * @param subject
+	 *            IRI of the resource of the long comment, subject of the returned statements with cardinality
+	 * @param longComment
+	 *            long comment without XML escapes
+	 * @return the long comment parsed into its own graph, or the {@link RiotParseException} if it is no valid Turtle or contains unknown terms or prefixes
+	 */
+	ParsedLongComment parseIntoGraph(String subject, String longComment)
+	{
+		Graph graph = Factory.createDefaultGraph();
+		StreamRDF output = StreamRDFLib.graph(graph);
+		Parse parse = new Parse(longComment, subject, output);
+		output.start();
+		try
+		{
+			parse.turtleDoc();
+			return new ParsedLongComment(longComment, graph, Collections.unmodifiableList(parse.statementsWithCardinality), parse.labels, null);
+		}
+		catch (RuntimeException e)
+		{
+			return new ParsedLongComment(longComment, null, null, parse.labels, e);
+		}
+		finally
+		{
+			output.finish();
+		}
+	}
+
+	/**
+	 * @param parsedLongComment
+	 *            long comment parsed by this parser
+	 * @param labelChanges
+	 *            changes of the model since this parser read its labels
+	 * @return true if a term given by label in the long comment may resolve to another term in the current model
+	 */
+	boolean isAffected(ParsedLongComment parsedLongComment, LabelChanges labelChanges)
+	{
+		for (String label : parsedLongComment.labels)
+		{
+			if (labelChanges.isChanged(label, getLabelIndex().get(label)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param subjects
+	 *            IRI of the resource of each long comment
+	 * @param longComments
+	 *            long comments without XML escapes
+	 * @return parsed long comments in the order of the given long comments, each in its own graph
+	 */
+	List<ParsedLongComment> parseAll(List<String> subjects, List<String> longComments)
+	{
+		ParsedLongComment[] parsedLongComments = new ParsedLongComment[longComments.size()];
+		if (parsedLongComments.length < PARALLEL_THRESHOLD)
+		{
+			for (int i = 0; i < parsedLongComments.length; i++)
+			{
+				parsedLongComments[i] = parseIntoGraph(subjects.get(i), longComments.get(i));
+			}
+			return Arrays.asList(parsedLongComments);
+		}
+
+		// the namespace map of Prefixes is filled lazily and must not be filled by several threads
+		Prefixes.getNamespaceMap();
+		ForkJoinPool.commonPool().invoke(new ParseTask(subjects, longComments, parsedLongComments, 0, parsedLongComments.length));
+		return Arrays.asList(parsedLongComments);
+	}
+
+	/**
+	 * @param prefix
+	 * @param label
+	 * @return term with the given label in the namespace of the given prefix (or an OBO namespace), its replacement if it is deprecated, null if there is none
+	 */
+	private Node resolveLabel(String prefix, String label)
+	{
+		String key = prefix + ":" + label.toLowerCase(Locale.ENGLISH);
+		if (resolvedLabels.containsKey(key))
+		{
+			return resolvedLabels.get(key);
+		}
+
+		Node term = null;
+		List<Resource> candidates = getLabelIndex().get(label.toLowerCase(Locale.ENGLISH));
+		if (candidates != null)
+		{
+			for (Resource candidate : candidates)
+			{
+				String candidatePrefix = Prefixes.getNamespaceMap().get(candidate.getNameSpace());
+				if (candidatePrefix != null && (candidatePrefix.equals(prefix) || candidatePrefix.replaceAll("-", "").equals(prefix)
+						|| candidatePrefix.toLowerCase().equals("obo")))
+				{
+					term = replaceDeprecated(candidate, prefix, label);
+					break;
+				}
+			}
+		}
+
+		resolvedLabels.put(key, term);
+		return term;
+	}
+
+	private synchronized Map<String, List<Resource>> getLabelIndex()
+	{
+		if (label2terms == null)
+		{
+			label2terms = new HashMap<>();
+			indexLabels(AFOUtil.SKOS_PREF_LABEL);
+			indexLabels(AFOUtil.RDFS_LABEL);
+		}
+		return label2terms;
+	}
+
+	private void indexLabels(Property labelProperty)
+	{
+		StmtIterator stmtIterator = model.listStatements((Resource) null, labelProperty, (RDFNode) null);
+		while (stmtIterator.hasNext())
+		{
+			Statement statement = stmtIterator.next();
+			if (!statement.getSubject().isURIResource() || !statement.getObject().isLiteral())
+			{
+				continue;
+			}
+
+			String language = statement.getLiteral().getLanguage();
+			if (!language.isEmpty() && !language.equalsIgnoreCase("en") && !language.toLowerCase(Locale.ENGLISH).startsWith("en-"))
+			{
+				continue;
+			}
+
+			String label = statement.getLiteral().getLexicalForm().toLowerCase(Locale.ENGLISH);
+			List<Resource> terms = label2terms.get(label);
+			if (terms == null)
+			{
+				terms = new ArrayList<>(1);
+				label2terms.put(label, terms);
+			}
+			if (!terms.contains(statement.getSubject()))
+			{
+				terms.add(statement.getSubject());
+			}
+		}
+	}
+
+	private Node replaceDeprecated(Resource term, String prefix, String label)
+	{
+		if (!term.hasProperty(AFOUtil.OWL_DEPRECATED) || !term.getProperty(AFOUtil.OWL_DEPRECATED).getBoolean())
+		{
+			return term.asNode();
+		}
+
+		if (!term.hasProperty(AFOUtil.DCT_IS_REPLACED_BY))
+		{
+			log.error("Deprecated term without replacement: " + prefix + ":" + label);
+			return term.asNode();
+		}
+
+		Resource replacement = term.getProperty(AFOUtil.DCT_IS_REPLACED_BY).getResource();
+		String replacementLabel = replacement.hasProperty(AFOUtil.SKOS_PREF_LABEL) ? replacement.getProperty(AFOUtil.SKOS_PREF_LABEL).getString()
+				: replacement.getLocalName();
+		String replacementPrefix = Prefixes.getNamespaceMap().get(replacement.getNameSpace());
+		log.debug("Deprecated term: <<" + prefix + ":" + label + ">> is replaced by <<" + replacementPrefix + ":" + replacementLabel + ">> ("
+				+ replacementPrefix + ":" + replacement.getLocalName() + ")");
+		return replacement.asNode();
+	}
+
+	/**
+	 * Splits the cardinality from the end of the label of a property, e.g. "index 1", "index >=1", "index [0,1]". The label may contain digits, so the
+	 * shortest cardinality that leaves a valid label is taken.
+	 *
+	 * @param label
+	 * @return start of the cardinality in the label or -1 if there is none
+	 */
+	private static int findCardinality(String label)
+	{
+		for (int start = label.length() - 1; start > 0; start--)
+		{
+			if (!Character.isWhitespace(label.charAt(start - 1)) || Character.isWhitespace(label.charAt(start)))
+			{
+				continue;
+			}
+
+			if (isCardinality(label, start) && !StringUtils.containsAny(label.substring(0, start), "[]<>=,") && !label.substring(0, start).trim().isEmpty())
+			{
+				return start;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isCardinality(String text, int start)
+	{
+		int i = start;
+		int length = text.length();
+		if (i < length && isBracket(text.charAt(i)))
+		{
+			i++;
+		}
+		while (i < length && "<>=".indexOf(text.charAt(i)) >= 0)
+		{
+			i++;
+		}
+		i = skipWhitespace(text, i);
+
+		int digitsStart = i;
+		while (i < length && Character.isDigit(text.charAt(i)))
+		{
+			i++;
+		}
+		if (i == digitsStart)
+		{
+			return false;
+		}
+
+		if (i < length && isBracket(text.charAt(i)))
+		{
+			i++;
+		}
+		i = skipWhitespace(text, i);
+		if (i < length && text.charAt(i) == ',')
+		{
+			i = skipWhitespace(text, i + 1);
+		}
+		while (i < length && Character.isDigit(text.charAt(i)))
+		{
+			i++;
+		}
+		i = skipWhitespace(text, i);
+		if (i < length && isBracket(text.charAt(i)))
+		{
+			i++;
+		}
+		return i == length;
+	}
+
+	private static boolean isBracket(char c)
+	{
+		return c == '[' || c == ']';
+	}
+
+	private static int skipWhitespace(String text, int i)
+	{
+		while (i < text.length() && Character.isWhitespace(text.charAt(i)))
+		{
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isNameChar(char c)
+	{
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':' || c == '%';
+	}
+
+	private class ParseTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> subjects;
+
+		private final List<String> longComments;
+
+		private final ParsedLongComment[] parsedLongComments;
+
+		private final int from;
+
+		private final int to;
+
+		private ParseTask(List<String> subjects, List<String> longComments, ParsedLongComment[] parsedLongComments, int from, int to)
+		{
+			this.subjects = subjects;
+			this.longComments = longComments;
+			this.parsedLongComments = parsedLongComments;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= PARALLEL_THRESHOLD / 2)
+			{
+				for (int i = from; i < to; i++)
+				{
+					parsedLongComments[i] = parseIntoGraph(subjects.get(i), longComments.get(i));
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ParseTask(subjects, longComments, parsedLongComments, from, middle),
+					new ParseTask(subjects, longComments, parsedLongComments, middle, to));
+		}
+	}
+
+	/**
+	 * State of parsing one long comment.
+	 */
+	private class Parse
+	{
+		private final String text;
+
+		private final String subject;
+
+		private final StreamRDF output;
+
+		private final List<StatementWithCardinality> statementsWithCardinality = new ArrayList<>();
+
+		private final Map<String, String> prefixes = new HashMap<>();
+
+		private final Map<String, Node> blankNodes = new HashMap<>();
+
+		private final Map<String, Node> placeholders = new HashMap<>();
+
+		private final Set<String> labels = new HashSet<>();
+
+		private String base = null;
+
+		private int pos = 0;
+
+		/**
+		 * Cardinality and property label of the last term with cardinality.
+		 */
+		private String cardinality;
+
+		private String propertyWithCardinality;
+
+		private Parse(String text, String subject, StreamRDF output)
+		{
+			this.text = text;
+			this.subject = subject;
+			this.output = output;
+		}
+
+		private Node resolveLabel(String prefix, String label)
+		{
+			labels.add(label.toLowerCase(Locale.ENGLISH));
+			return LongCommentParser.this.resolveLabel(prefix, label);
+		}
+
+		private void turtleDoc()
+		{
+			skipWhitespaceAndComments();
+			while (pos < text.length())
+			{
+				statement();
+				skipWhitespaceAndComments();
+			}
+		}
+
+		private void statement()
+		{
+			if (peek() == '@')
+			{
+				pos++;
+				String keyword = readName(false);
+				if ("prefix".equals(keyword))
+				{
+					prefixDirective(true);
+				}
+				else if ("base".equals(keyword))
+				{
+					baseDirective(true);
+				}
+				else
+				{
+					throw error("Unknown directive: @" + keyword);
+				}
+				return;
+			}
+
+			if (isKeyword("PREFIX", true))
+			{
+				pos += 6;
+				prefixDirective(false);
+				return;
+			}
+
+			if (isKeyword("BASE", true))
+			{
+				pos += 4;
+				baseDirective(false);
+				return;
+			}
+
+			triples();
+			skipWhitespaceAndComments();
+			expect('.');
+		}
+
+		private void prefixDirective(boolean withDot)
+		{
+			skipWhitespaceAndComments();
+			String prefix = readName(false);
+			expect(':');
+			skipWhitespaceAndComments();
+			String namespace = iriRef();
+			prefixes.put(prefix, namespace);
+			output.prefix(prefix, namespace);
+			if (withDot)
+			{
+				skipWhitespaceAndComments();
+				expect('.');
+			}
+		}
+
+		private void baseDirective(boolean withDot)
+		{
+			skipWhitespaceAndComments();
+			base = iriRef();
+			output.base(base);
+			if (withDot)
+			{
+				skipWhitespaceAndComments();
+				expect('.');
+			}
+		}
+
+		private void triples()
+		{
+			if (peek() == '[')
+			{
+				Node blankNode = blankNodePropertyList();
+				skipWhitespaceAndComments();
+				if (peek() != '.')
+				{
+					predicateObjectList(blankNode);
+				}
+				return;
+			}
+
+			Node node;
+			if (peek() == '(')
+			{
+				node = collection();
+			}
+			else if (isBlankNodeLabel())
+			{
+				node = blankNodeLabel();
+			}
+			else
+			{
+				node = iri();
+			}
+			skipWhitespaceAndComments();
+			predicateObjectList(node);
+		}
+
+		private void predicateObjectList(Node node)
+		{
+			while (true)
+			{
+				skipWhitespaceAndComments();
+				cardinality = null;
+				propertyWithCardinality = null;
+				Node predicate = verb();
+				String predicateCardinality = cardinality;
+				String predicateWithCardinality = propertyWithCardinality;
+
+				boolean isFirstObject = true;
+				do
+				{
+					skipWhitespaceAndComments();
+					Node object = object();
+					output.triple(Triple.create(node, predicate, object));
+					if (isFirstObject && predicateCardinality != null)
+					{
+						statementsWithCardinality.add(new StatementWithCardinality(subject, predicateWithCardinality, asString(object), predicateCardinality));
+					}
+					isFirstObject = false;
+					skipWhitespaceAndComments();
+				}
+				while (consume(','));
+
+				if (peek() != ';')
+				{
+					return;
+				}
+
+				while (consume(';'))
+				{
+					skipWhitespaceAndComments();
+				}
+
+				char c = peek();
+				if (c == '.' || c == ']' || c == EOF)
+				{
+					return;
+				}
+			}
+		}
+
+		private Node verb()
+		{
+			if (peek() == 'a' && (pos + 1 == text.length() || !isNameChar(text.charAt(pos + 1))))
+			{
+				pos++;
+				return RDF.Nodes.type;
+			}
+			return iri();
+		}
+
+		private Node object()
+		{
+			char c = peek();
+			if (c == '[')
+			{
+				return blankNodePropertyList();
+			}
+
+			if (c == '(')
+			{
+				return collection();
+			}
+
+			if (c == '"' || c == '\'')
+			{
+				return literal();
+			}
+
+			if (Character.isDigit(c) || c == '+' || c == '-' || (c == '.' && pos + 1 < text.length() && Character.isDigit(text.charAt(pos + 1))))
+			{
+				return number();
+			}
+
+			if (isBlankNodeLabel())
+			{
+				return blankNodeLabel();
+			}
+
+			if (isKeyword("true", false) || isKeyword("false", false))
+			{
+				String value = readName(false);
+				return NodeFactory.createLiteral(value, XSDDatatype.XSDboolean);
+			}
+
+			return iri();
+		}
+
+		/**
+		 * IRI, prefixed name, term with label or placeholder.
+		 */
+		private Node iri()
+		{
+			char c = peek();
+			if (c == '<' && pos + 1 < text.length() && text.charAt(pos + 1) == '<')
+			{
+				pos += 2;
+				return termWithLabel();
+			}
+
+			if (c == '«')
+			{
+				pos++;
+				return termWithLabel();
+			}
+
+			if (c == '<')
+			{
+				return NodeFactory.createURI(iriRef());
+			}
+
+			if (c == '?')
+			{
+				return placeholder();
+			}
+
+			int start = pos;
+			String name = readName(true);
+			int colon = name.indexOf(':');
+			if (colon < 0)
+			{
+				pos = start;
+				throw error("Expected IRI, prefixed name or <<label>> but found: " + (c == EOF ? "end of long comment" : "'" + c + "'"));
+			}
+
+			String prefix = name.substring(0, colon);
+			String namespace = prefixes.containsKey(prefix) ? prefixes.get(prefix) : Prefixes.nsPrefixMap.get(prefix);
+			if (namespace == null || namespace.isEmpty())
+			{
+				log.info("Found URI with unknown prefix: " + name);
+				pos = start;
+				throw error("Unknown prefix: " + prefix);
+			}
+			return NodeFactory.createURI(namespace + name.substring(colon + 1));
+		}
+
+		/**
+		 * Term given by label after &lt;&lt; or «, optionally followed by a cardinality.
+		 */
+		private Node termWithLabel()
+		{
+			int start = pos;
+			int end = start;
+			int closingLength = 0;
+			while (end < text.length())
+			{
+				if (text.charAt(end) == '»')
+				{
+					closingLength = 1;
+					break;
+				}
+				if (text.startsWith(">>", end))
+				{
+					closingLength = 2;
+					break;
+				}
+				end++;
+			}
+			if (closingLength == 0)
+			{
+				throw error("Missing >> after <<");
+			}
+
+			String content = text.substring(start, end).trim();
+			int colon = content.indexOf(':');
+			if (colon < 0)
+			{
+				throw error("Missing prefix in <<" + content + ">>");
+			}
+
+			String prefix = content.substring(0, colon).trim();
+			String label = content.substring(colon + 1).trim();
+			Node term;
+			int cardinalityStart = findCardinality(label);
+			if (cardinalityStart < 0)
+			{
+				term = resolveLabel(prefix, label);
+			}
+			else
+			{
+				cardinality = label.substring(cardinalityStart).trim();
+				label = label.substring(0, cardinalityStart).trim();
+				propertyWithCardinality = prefix + ":" + label;
+				if (prefix.equalsIgnoreCase("af-x") || prefix.equalsIgnoreCase("afx") || StringUtils.containsWhitespace(label))
+				{
+					term = resolveLabel(prefix, label);
+				}
+				else
+				{
+					// other properties with cardinality are given by prefixed name, e.g. <<obo:RO_0000057 1>>
+					String namespace = prefixes.containsKey(prefix) ? prefixes.get(prefix) : Prefixes.nsPrefixMap.get(prefix);
+					if (namespace == null || namespace.isEmpty())
+					{
+						log.info("Found URI with unknown prefix: " + prefix + ":" + label);
+						throw error("Unknown prefix: " + prefix);
+					}
+					term = NodeFactory.createURI(namespace + label);
+				}
+			}
+
+			if (term == null)
+			{
+				log.error("Missing term: " + prefix + ":" + label);
+				throw error("Missing term: " + prefix + ":" + label);
+			}
+
+			pos = end + closingLength;
+			return term;
+		}
+
+		private Node placeholder()
+		{
+			pos++;
+			int start = pos;
+			while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '-' || text.charAt(pos) == '_'))
+			{
+				pos++;
+			}
+			if (pos == start)
+			{
+				throw error("Missing name of placeholder after ?");
+			}
+
+			// the same placeholder stands for the same new instance within a long comment
+			String name = text.substring(start, pos);
+			Node instance = placeholders.get(name);
+			if (instance == null)
+			{
+				instance = NodeFactory.createURI(CmapUtil.URN_UUID + UUID.randomUUID());
+				placeholders.put(name, instance);
+			}
+			return instance;
+		}
+
+		private String iriRef()
+		{
+			expect('<');
+			StringBuilder iri = new StringBuilder();
+			while (true)
+			{
+				char c = peek();
+				if (c == '>')
+				{
+					pos++;
+					break;
+				}
+				if (c == EOF || c == '<' || c == '"' || Character.isWhitespace(c))
+				{
+					throw error("Bad character in IRI: " + (c == EOF ? "end of long comment" : "'" + c + "'"));
+				}
+				if (c == '\\')
+				{
+					pos++;
+					iri.appendCodePoint(unicodeEscape());
+					continue;
+				}
+				iri.append(c);
+				pos++;
+			}
+
+			if (base != null && !iri.toString().contains(":"))
+			{
+				return URI.create(base).resolve(iri.toString()).toString();
+			}
+			return iri.toString();
+		}
+
+		private boolean isBlankNodeLabel()
+		{
+			return peek() == '_' && pos + 1 < text.length() && text.charAt(pos + 1) == ':';
+		}
+
+		private Node blankNodeLabel()
+		{
+			pos += 2;
+			String label = readName(false);
+			if (label.isEmpty())
+			{
+				throw error("Missing label of blank node after _:");
+			}
+
+			Node blankNode = blankNodes.get(label);
+			if (blankNode == null)
+			{
+				blankNode = NodeFactory.createBlankNode();
+				blankNodes.put(label, blankNode);
+			}
+			return blankNode;
+		}
+
+		private Node blankNodePropertyList()
+		{
+			expect('[');
+			Node blankNode = NodeFactory.createBlankNode();
+			skipWhitespaceAndComments();
+			if (consume(']'))
+			{
+				return blankNode;
+			}
+
+			predicateObjectList(blankNode);
+			skipWhitespaceAndComments();
+			expect(']');
+			return blankNode;
+		}
+
+		private Node collection()
+		{
+			expect('(');
+			skipWhitespaceAndComments();
+			if (consume(')'))
+			{
+				return RDF.Nodes.nil;
+			}
+
+			Node head = NodeFactory.createBlankNode();
+			Node current = head;
+			while (true)
+			{
+				output.triple(Triple.create(current, RDF.Nodes.first, object()));
+				skipWhitespaceAndComments();
+				if (consume(')'))
+				{
+					output.triple(Triple.create(current, RDF.Nodes.rest, RDF.Nodes.nil));
+					return head;
+				}
+
+				Node next = NodeFactory.createBlankNode();
+				output.triple(Triple.create(current, RDF.Nodes.rest, next));
+				current = next;
+			}
+		}
+
+		private Node literal()
+		{
+			char quote = text.charAt(pos);
+			String longQuote = new String(new char[] { quote, quote, quote });
+			boolean isLong = text.startsWith(longQuote, pos);
+			pos += isLong ? 3 : 1;
+
+			StringBuilder lexicalForm = new StringBuilder();
+			while (true)
+			{
+				char c = peek();
+				if (c == EOF)
+				{
+					throw error("Missing closing quote of string");
+				}
+				// a quote right before the closing quotes of a long string belongs to the string
+				if (isLong ? text.startsWith(longQuote, pos) && !(pos + 3 < text.length() && text.charAt(pos + 3) == quote) : c == quote)
+				{
+					pos += isLong ? 3 : 1;
+					break;
+				}
+				pos++;
+				if (c != '\\')
+				{
+					lexicalForm.append(c);
+					continue;
+				}
+
+				char escaped = peek();
+				switch (escaped)
+				{
+					case 't':
+						lexicalForm.append('\t');
+						break;
+					case 'b':
+						lexicalForm.append('\b');
+						break;
+					case 'n':
+						lexicalForm.append('\n');
+						break;
+					case 'r':
+						lexicalForm.append('\r');
+						break;
+					case 'f':
+						lexicalForm.append('\f');
+						break;
+					case '"':
+					case '\'':
+					case '\\':
+						lexicalForm.append(escaped);
+						break;
+					case 'u':
+					case 'U':
+						lexicalForm.appendCodePoint(unicodeEscape());
+						continue;
+					default:
+						throw error("Bad escape sequence in string: \\" + escaped);
+				}
+				pos++;
+			}
+
+			if (consume('@'))
+			{
+				int start = pos;
+				while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '-'))
+				{
+					pos++;
+				}
+				if (pos == start)
+				{
+					throw error("Missing language tag after @");
+				}
+				return NodeFactory.createLiteral(lexicalForm.toString(), text.substring(start, pos));
+			}
+
+			if (text.startsWith("^^", pos))
+			{
+				pos += 2;
+				String datatype = iri().getURI();
+				return NodeFactory.createLiteral(lexicalForm.toString(), TypeMapper.getInstance().getSafeTypeByName(datatype));
+			}
+
+			return NodeFactory.createLiteral(lexicalForm.toString());
+		}
+
+		/**
+		 * Reads \\uXXXX or \\UXXXXXXXX, the backslash was consumed before.
+		 */
+		private int unicodeEscape()
+		{
+			char c = peek();
+			int numDigits = c == 'u' ? 4 : c == 'U' ? 8 : 0;
+			if (numDigits == 0 || pos + 1 + numDigits > text.length())
+			{
+				throw error("Bad escape sequence: \\" + c);
+			}
+
+			try
+			{
+				int codePoint = Integer.parseInt(text.substring(pos + 1, pos + 1 + numDigits), 16);
+				pos += 1 + numDigits;
+				return codePoint;
+			}
+			catch (NumberFormatException e)
+			{
+				throw error("Bad escape sequence: \\" + text.substring(pos, pos + 1 + numDigits));
+			}
+		}
+
+		private Node number()
+		{
+			int start = pos;
+			if (peek() == '+' || peek() == '-')
+			{
+				pos++;
+			}
+			int numDigits = skipDigits();
+
+			XSDDatatype datatype = XSDDatatype.XSDinteger;
+			if (peek() == '.' && pos + 1 < text.length() && Character.isDigit(text.charAt(pos + 1)))
+			{
+				pos++;
+				numDigits += skipDigits();
+				datatype = XSDDatatype.XSDdecimal;
+			}
+
+			if (numDigits > 0 && (peek() == 'e' || peek() == 'E'))
+			{
+				pos++;
+				if (peek() == '+' || peek() == '-')
+				{
+					pos++;
+				}
+				if (skipDigits() == 0)
+				{
+					throw error("Missing exponent of number");
+				}
+				datatype = XSDDatatype.XSDdouble;
+			}
+
+			if (numDigits == 0)
+			{
+				throw error("Bad number: " + text.substring(start, pos));
+			}
+			return NodeFactory.createLiteral(text.substring(start, pos), datatype);
+		}
+
+		private int skipDigits()
+		{
+			int start = pos;
+			while (pos < text.length() && Character.isDigit(text.charAt(pos)))
+			{
+				pos++;
+			}
+			return pos - start;
+		}
+
+		/**
+		 * Reads a name, prefixed name or keyword. A name does not end with a dot, which ends the statement instead.
+		 *
+		 * @param withColon
+		 *            whether the name may contain colons
+		 */
+		private String readName(boolean withColon)
+		{
+			StringBuilder name = new StringBuilder();
+			while (pos < text.length())
+			{
+				char c = text.charAt(pos);
+				if (c == '\\' && withColon && pos + 1 < text.length())
+				{
+					// escaped character of a local name
+					name.append(text.charAt(pos + 1));
+					pos += 2;
+					continue;
+				}
+				if (!isNameChar(c) || (c == ':' && !withColon))
+				{
+					break;
+				}
+				name.append(c);
+				pos++;
+			}
+
+			while (name.length() > 0 && name.charAt(name.length() - 1) == '.' && text.charAt(pos - 1) == '.'
+					&& (pos < 2 || text.charAt(pos - 2) != '\\'))
+			{
+				name.setLength(name.length() - 1);
+				pos--;
+			}
+
+			return name.toString();
+		}
+
+		private boolean isKeyword(String keyword, boolean ignoreCase)
+		{
+			int end = pos + keyword.length();
+			return text.regionMatches(ignoreCase, pos, keyword, 0, keyword.length()) && (end == text.length() || !isNameChar(text.charAt(end)));
+		}
+
+		private void skipWhitespaceAndComments()
+		{
+			while (pos < text.length())
+			{
+				char c = text.charAt(pos);
+				if (c == '#')
+				{
+					while (pos < text.length() && text.charAt(pos) != '\n' && text.charAt(pos) != '\r')
+					{
+						pos++;
+					}
+				}
+				else if (Character.isWhitespace(c) || Character.isSpaceChar(c))
+				{
+					pos++;
+				}
+				else
+				{
+					return;
+				}
+			}
+		}
+
+		private char peek()
+		{
+			return pos < text.length() ? text.charAt(pos) : EOF;
+		}
+
+		private boolean consume(char c)
+		{
+			if (peek() != c)
+			{
+				return false;
+			}
+			pos++;
+			return true;
+		}
+
+		private void expect(char c)
+		{
+			if (!consume(c))
+			{
+				char found = peek();
+				throw error("Expected '" + c + "' but found " + (found == EOF ? "end of long comment" : "'" + found + "'"));
+			}
+		}
+
+		private RiotParseException error(String message)
+		{
+			int line = 1;
+			int lineStart = 0;
+			for (int i = 0; i < pos && i < text.length(); i++)
+			{
+				if (text.charAt(i) == '\n')
+				{
+					line++;
+					lineStart = i + 1;
+				}
+			}
+			return new RiotParseException(message, line, pos - lineStart + 1);
+		}
+
+		/**
+		 * @return object as written for a property with cardinality: IRIs in angle brackets, literals by their lexical form and blank nodes as [
+		 */
+		private String asString(Node object)
+		{
+			if (object.isURI())
+			{
+				return "<" + object.getURI() + ">";
+			}
+
+			if (object.isLiteral())
+			{
+				return object.getLiteralLexicalForm().trim().replaceAll("\"", "");
+			}
+
+			return "[";
+		}
+	}
+}
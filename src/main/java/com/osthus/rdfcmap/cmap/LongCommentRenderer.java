@@ -0,0 +1,525 @@
+package com.osthus.rdfcmap.cmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.osthus.rdfcmap.util.AFOUtil;
+import com.osthus.rdfcmap.util.Prefixes;
+
+/**
+ * LongCommentRenderer
+ *
+ * Renders the statements of a single concept as human readable Turtle for the long comment of the concept. Terms of Allotrope ontologies are written with
+ * their labels, e.g. &lt;&lt;af-r:device&gt;&gt;, other IRIs with the prefix of the longest known namespace. The long comment is read again by
+ * {@link Cmap2TurtleConverter}, which replaces labels and prefixes by IRIs.
+ *
+ * The Turtle is written directly into a string builder, optionally escaped for XML attributes in the same pass. Namespaces are looked up in a trie, so the
+ * cost of a lookup depends on the length of the IRI, not on the number of known namespaces.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class LongCommentRenderer
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final Pattern HUMAN_READABLE_ID = Pattern.compile("http://purl\\.allotrope\\.org/ontologies/[a-z]*#[A-Z]{3}_[0-9]{7}",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern PREFIX = Pattern.compile("[a-z\\-]+", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern LOCAL_NAME = Pattern.compile("[a-z0-9_][a-z0-9_\\-]*", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern INTEGER = Pattern.compile("[+\\-]?[0-9]+");
+
+	private static final Pattern DECIMAL = Pattern.compile("[+\\-]?[0-9]*\\.[0-9]+");
+
+	private static final String INDENT = "        ";
+
+	private final TrieNode namespaces = new TrieNode();
+
+	/**
+	 * Node of the trie of namespaces, prefix is set if the path to this node is a namespace.
+	 */
+	private static class TrieNode
+	{
+		private final Map<Character, TrieNode> children = new HashMap<>(4);
+
+		private String prefix;
+	}
+
+	/**
+	 * Creates the trie of all namespaces known at this time.
+	 */
+	public LongCommentRenderer()
+	{
+		for (Entry<String, String> entry : Prefixes.getNamespaceMap().entrySet())
+		{
+			if (!PREFIX.matcher(entry.getValue()).matches())
+			{
+				// prefixes with other characters are not replaced by namespaces when reading long comments
+				continue;
+			}
+
+			TrieNode node = namespaces;
+			String namespace = entry.getKey();
+			for (int i = 0; i < namespace.length(); i++)
+			{
+				Character character = namespace.charAt(i);
+				TrieNode child = node.children.get(character);
+				if (child == null)
+				{
+					child = new TrieNode();
+					node.children.put(character, child);
+				}
+				node = child;
+			}
+			node.prefix = entry.getValue();
+		}
+	}
+
+	/**
+	 * @param model
+	 *            model with labels of terms
+	 * @param subject
+	 *            subject that is written first
+	 * @param statements
+	 *            statements of the subject and of its blank nodes
+	 * @return Turtle of the statements
+	 */
+	public String render(Model model, Resource subject, Collection<Statement> statements)
+	{
+		return render(model, subject, statements, false);
+	}
+
+	/**
+	 * @param model
+	 *            model with labels of terms
+	 * @param subject
+	 *            subject that is written first
+	 * @param statements
+	 *            statements of the subject and of its blank nodes
+	 * @return Turtle of the statements, escaped for an XML attribute
+	 */
+	public String renderEscaped(Model model, Resource subject, Collection<Statement> statements)
+	{
+		return render(model, subject, statements, true);
+	}
+
+	private String render(Model model, Resource subject, Collection<Statement> statements, boolean escape)
+	{
+		Map<Resource, List<Statement>> subject2statements = new LinkedHashMap<>();
+		subject2statements.put(subject, new ArrayList<Statement>());
+		Map<Resource, Integer> blankNode2references = new HashMap<>();
+		for (Statement statement : statements)
+		{
+			List<Statement> subjectStatements = subject2statements.get(statement.getSubject());
+			if (subjectStatements == null)
+			{
+				subjectStatements = new ArrayList<>();
+				subject2statements.put(statement.getSubject(), subjectStatements);
+			}
+			subjectStatements.add(statement);
+
+			if (statement.getObject().isAnon())
+			{
+				Resource blankNode = statement.getResource();
+				Integer references = blankNode2references.get(blankNode);
+				blankNode2references.put(blankNode, references == null ? 1 : references + 1);
+			}
+		}
+
+		Fragment fragment = new Fragment(model, subject2statements, blankNode2references, escape);
+
+		// subjects with IRIs first, then blank nodes that are not nested
+		for (Resource resource : subject2statements.keySet())
+		{
+			if (!resource.isAnon() && !subject2statements.get(resource).isEmpty())
+			{
+				fragment.writeSubject(resource);
+			}
+		}
+		for (Resource resource : subject2statements.keySet())
+		{
+			if (resource.isAnon() && !subject2statements.get(resource).isEmpty() && !fragment.written.contains(resource) && !fragment.isNested(resource))
+			{
+				fragment.writeSubject(resource);
+			}
+		}
+		for (Resource resource : subject2statements.keySet())
+		{
+			if (resource.isAnon() && !subject2statements.get(resource).isEmpty() && !fragment.written.contains(resource))
+			{
+				// nested blank nodes on a cycle that is not reachable from any other subject
+				fragment.writeSubject(resource);
+			}
+		}
+
+		return fragment.builder.toString();
+	}
+
+	/**
+	 * Appends the text escaped for an XML 1.1 attribute in the same way as StringEscapeUtils.escapeXml11 followed by escaping all control characters as
+	 * numeric entities.
+	 *
+	 * @param builder
+	 * @param text
+	 * @return builder
+	 */
+	public static StringBuilder appendEscaped(StringBuilder builder, CharSequence text)
+	{
+		for (int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			switch (c)
+			{
+				case '&':
+					builder.append("&amp;");
+					break;
+				case '<':
+					builder.append("&lt;");
+					break;
+				case '>':
+					builder.append("&gt;");
+					break;
+				case '"':
+					builder.append("&quot;");
+					break;
+				case '\'':
+					builder.append("&apos;");
+					break;
+				case '\u0000':
+				case '\ufffe':
+				case '\uffff':
+					break;
+				default:
+					if (c < 0x20 || (c >= 0x7f && c <= 0x84) || (c >= 0x86 && c <= 0x9f))
+					{
+						builder.append("&#").append((int) c).append(';');
+					}
+					else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1)))
+					{
+						builder.append(c).append(text.charAt(++i));
+					}
+					else if (!Character.isSurrogate(c))
+					{
+						builder.append(c);
+					}
+			}
+		}
+		return builder;
+	}
+
+	/**
+	 * @param text
+	 * @return text escaped for an XML 1.1 attribute
+	 */
+	public static String escape(String text)
+	{
+		return appendEscaped(new StringBuilder(text.length() + 16), text).toString();
+	}
+
+	/**
+	 * State of rendering one set of statements.
+	 */
+	private class Fragment
+	{
+		private final StringBuilder builder = new StringBuilder(256);
+
+		private final Model model;
+
+		private final Map<Resource, List<Statement>> subject2statements;
+
+		private final Map<Resource, Integer> blankNode2references;
+
+		private final boolean escape;
+
+		private final Set<Resource> written = new HashSet<>();
+
+		private final Map<Resource, String> blankNode2label = new HashMap<>();
+
+		private Fragment(Model model, Map<Resource, List<Statement>> subject2statements, Map<Resource, Integer> blankNode2references, boolean escape)
+		{
+			this.model = model;
+			this.subject2statements = subject2statements;
+			this.blankNode2references = blankNode2references;
+			this.escape = escape;
+		}
+
+		private boolean isNested(Resource blankNode)
+		{
+			Integer references = blankNode2references.get(blankNode);
+			return references != null && references == 1;
+		}
+
+		private void writeSubject(Resource subject)
+		{
+			written.add(subject);
+			List<Statement> statements = subject2statements.get(subject);
+			if (subject.isAnon() && blankNode2references.get(subject) == null)
+			{
+				text("[ ");
+				writePredicates(statements, INDENT);
+				text(" ] .\n");
+				return;
+			}
+
+			writeResource(subject.isAnon() ? null : subject, subject);
+			text("  ");
+			writePredicates(statements, INDENT);
+			text(" .\n");
+		}
+
+		private void writePredicates(List<Statement> statements, String indent)
+		{
+			Map<Resource, List<RDFNode>> predicate2objects = new LinkedHashMap<>();
+			for (Statement statement : sort(statements))
+			{
+				List<RDFNode> objects = predicate2objects.get(statement.getPredicate());
+				if (objects == null)
+				{
+					objects = new ArrayList<>();
+					predicate2objects.put(statement.getPredicate(), objects);
+				}
+				objects.add(statement.getObject());
+			}
+
+			boolean first = true;
+			for (Entry<Resource, List<RDFNode>> entry : predicate2objects.entrySet())
+			{
+				if (!first)
+				{
+					text(" ;\n");
+					text(indent);
+				}
+				first = false;
+
+				if (AFOUtil.RDF_TYPE.equals(entry.getKey()))
+				{
+					text("a");
+				}
+				else
+				{
+					writeResource(entry.getKey(), null);
+				}
+				text("  ");
+
+				boolean firstObject = true;
+				for (RDFNode object : entry.getValue())
+				{
+					if (!firstObject)
+					{
+						text(" , ");
+					}
+					firstObject = false;
+					writeObject(object, indent);
+				}
+			}
+		}
+
+		private void writeObject(RDFNode object, String indent)
+		{
+			if (object.isLiteral())
+			{
+				writeLiteral(object.asLiteral());
+				return;
+			}
+
+			Resource resource = object.asResource();
+			if (!resource.isAnon())
+			{
+				writeResource(resource, null);
+				return;
+			}
+
+			if (!isNested(resource) || written.contains(resource))
+			{
+				writeResource(null, resource);
+				return;
+			}
+
+			written.add(resource);
+			List<Statement> statements = subject2statements.get(resource);
+			if (statements == null || statements.isEmpty())
+			{
+				text("[]");
+				return;
+			}
+
+			text("[ ");
+			writePredicates(statements, indent + INDENT);
+			text("\n");
+			text(indent);
+			text("]");
+		}
+
+		/**
+		 * Writes an IRI or the label of a blank node.
+		 */
+		private void writeResource(Resource resource, Resource blankNode)
+		{
+			if (resource == null)
+			{
+				String label = blankNode2label.get(blankNode);
+				if (label == null)
+				{
+					label = "_:b" + blankNode2label.size();
+					blankNode2label.put(blankNode, label);
+				}
+				text(label);
+				return;
+			}
+
+			String uri = resource.getURI();
+			if (HUMAN_READABLE_ID.matcher(uri).matches())
+			{
+				Resource term = model.getResource(uri);
+				String prefix = Prefixes.getNamespaceMap().get(term.getNameSpace());
+				if (prefix != null && term.hasProperty(AFOUtil.SKOS_PREF_LABEL))
+				{
+					text("<<");
+					text(prefix);
+					text(":");
+					text(term.getProperty(AFOUtil.SKOS_PREF_LABEL).getString());
+					text(">>");
+					return;
+				}
+				log.error("Error during replacement as human readable identifier: " + uri);
+			}
+
+			TrieNode node = namespaces;
+			String prefix = null;
+			int namespaceLength = 0;
+			for (int i = 0; i < uri.length() && node != null; i++)
+			{
+				node = node.children.get(uri.charAt(i));
+				if (node != null && node.prefix != null)
+				{
+					prefix = node.prefix;
+					namespaceLength = i + 1;
+				}
+			}
+
+			if (prefix != null && LOCAL_NAME.matcher(uri).region(namespaceLength, uri.length()).matches())
+			{
+				text(prefix);
+				text(":");
+				text(uri.substring(namespaceLength));
+				return;
+			}
+
+			text("<");
+			text(uri);
+			text(">");
+		}
+
+		private void writeLiteral(Literal literal)
+		{
+			String lexicalForm = literal.getLexicalForm();
+			String datatype = literal.getDatatypeURI();
+			if (XSDDatatype.XSDinteger.getURI().equals(datatype) && INTEGER.matcher(lexicalForm).matches()
+					|| XSDDatatype.XSDdecimal.getURI().equals(datatype) && DECIMAL.matcher(lexicalForm).matches()
+					|| XSDDatatype.XSDboolean.getURI().equals(datatype) && ("true".equals(lexicalForm) || "false".equals(lexicalForm)))
+			{
+				text(lexicalForm);
+				return;
+			}
+
+			text("\"");
+			int start = 0;
+			for (int i = 0; i < lexicalForm.length(); i++)
+			{
+				String replacement;
+				switch (lexicalForm.charAt(i))
+				{
+					case '"':
+						replacement = "\\\"";
+						break;
+					case '\\':
+						replacement = "\\\\";
+						break;
+					case '\n':
+						replacement = "\\n";
+						break;
+					case '\r':
+						replacement = "\\r";
+						break;
+					case '\t':
+						replacement = "\\t";
+						break;
+					default:
+						continue;
+				}
+				text(lexicalForm.substring(start, i));
+				text(replacement);
+				start = i + 1;
+			}
+			text(lexicalForm.substring(start));
+			text("\"");
+
+			if (!literal.getLanguage().isEmpty())
+			{
+				text("@");
+				text(literal.getLanguage());
+			}
+			else if (datatype != null && !XSDDatatype.XSDstring.getURI().equals(datatype))
+			{
+				text("^^");
+				writeResource(model.getResource(datatype), null);
+			}
+		}
+
+		private void text(String text)
+		{
+			if (escape)
+			{
+				appendEscaped(builder, text);
+			}
+			else
+			{
+				builder.append(text);
+			}
+		}
+	}
+
+	/**
+	 * rdf:type first, then predicates in order of their IRIs, so that long comments do not change between conversions.
+	 */
+	private static List<Statement> sort(List<Statement> statements)
+	{
+		List<Statement> sorted = new ArrayList<>(statements);
+		Collections.sort(sorted, new Comparator<Statement>()
+		{
+			@Override
+			public int compare(Statement statement1, Statement statement2)
+			{
+				boolean isType1 = AFOUtil.RDF_TYPE.equals(statement1.getPredicate());
+				boolean isType2 = AFOUtil.RDF_TYPE.equals(statement2.getPredicate());
+				if (isType1 != isType2)
+				{
+					return isType1 ? -1 : 1;
+				}
+				return statement1.getPredicate().getURI().compareTo(statement2.getPredicate().getURI());
+			}
+		});
+		return sorted;
+	}
+}
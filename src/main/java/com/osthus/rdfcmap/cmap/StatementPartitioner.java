@@ -0,0 +1,199 @@
+package com.osthus.rdfcmap.cmap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import com.osthus.rdfcmap.util.AFOUtil;
+import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.VizUtil;
+
+/**
+ * StatementPartitioner
+ *
+ * Splits the statements of a model into visualization statements, instance statements and other statements. Every subject is classified exactly once, then
+ * all of its statements are routed to the graph of its category. Statements with blank subject or blank object are always other statements.
+ *
+ * Subjects are classified in shards, in parallel for large models. The model is only read while partitioning; the output graphs are filled afterwards in
+ * the order of the shards.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class StatementPartitioner
+{
+	private static final int SHARD_SIZE = 4096;
+
+	private static final int INSTANCE = 0;
+
+	private static final int VISUALIZATION = 1;
+
+	private static final int OTHER = 2;
+
+	private final Graph graph;
+
+	private final Node rdfType = AFOUtil.RDF_TYPE.asNode();
+
+	private final Node hasParent = VizUtil.AFV_HAS_PARENT.asNode();
+
+	private StatementPartitioner(Model model)
+	{
+		this.graph = model.getGraph();
+	}
+
+	/**
+	 * @param model
+	 * @param vizModel
+	 * @param instanceModel
+	 * @param otherTriplesModel
+	 * @return number of statements with blank nodes that were added to the other statements
+	 */
+	static long partition(Model model, Model vizModel, Model instanceModel, Model otherTriplesModel)
+	{
+		StatementPartitioner partitioner = new StatementPartitioner(model);
+
+		Set<Node> distinctSubjects = new LinkedHashSet<>();
+		ExtendedIterator<Triple> iterator = partitioner.graph.find(Node.ANY, Node.ANY, Node.ANY);
+		try
+		{
+			while (iterator.hasNext())
+			{
+				distinctSubjects.add(iterator.next().getSubject());
+			}
+		}
+		finally
+		{
+			iterator.close();
+		}
+		List<Node> subjects = new ArrayList<>(distinctSubjects);
+
+		int numberOfShards = (subjects.size() + SHARD_SIZE - 1) / SHARD_SIZE;
+		IntStream shardIndices = IntStream.range(0, numberOfShards);
+		if (numberOfShards > 1)
+		{
+			shardIndices = shardIndices.parallel();
+		}
+
+		List<Shard> shards = shardIndices.mapToObj(
+				shardIndex -> partitioner.partitionShard(subjects.subList(shardIndex * SHARD_SIZE, Math.min(subjects.size(), (shardIndex + 1) * SHARD_SIZE))))
+				.collect(Collectors.toList());
+
+		long blanks = 0;
+		for (Shard shard : shards)
+		{
+			GraphUtil.add(instanceModel.getGraph(), shard.triples.get(INSTANCE));
+			GraphUtil.add(vizModel.getGraph(), shard.triples.get(VISUALIZATION));
+			GraphUtil.add(otherTriplesModel.getGraph(), shard.triples.get(OTHER));
+			blanks += shard.blanks;
+		}
+		return blanks;
+	}
+
+	private Shard partitionShard(List<Node> subjects)
+	{
+		Shard shard = new Shard();
+		for (Node subject : subjects)
+		{
+			int category = subject.isBlank() ? OTHER : classify(subject);
+			ExtendedIterator<Triple> iterator = graph.find(subject, Node.ANY, Node.ANY);
+			try
+			{
+				while (iterator.hasNext())
+				{
+					Triple triple = iterator.next();
+					if (subject.isBlank() || triple.getObject().isBlank())
+					{
+						shard.blanks++;
+						shard.triples.get(OTHER).add(triple);
+						continue;
+					}
+
+					shard.triples.get(category).add(triple);
+				}
+			}
+			finally
+			{
+				iterator.close();
+			}
+		}
+		return shard;
+	}
+
+	private int classify(Node subject)
+	{
+		String uri = subject.getURI();
+		boolean isInstanceIri = uri.startsWith(CmapUtil.URN_UUID);
+
+		String subjectType = firstTypeUri(subject);
+		boolean hasVisualizationType = subjectType != null && subjectType.contains(VizUtil.AFV_PREFIX);
+		boolean isObjectProperty = subjectType != null && subjectType.equals(AFOUtil.OWL_OBJECT_PROPERTY.getURI());
+
+		boolean isConnection = false;
+		boolean isLink = false;
+		boolean isParent = false;
+		if (uri.contains(CmapUtil.URN_UUID))
+		{
+			Node uiNode = NodeFactory.createURI(uri.replace(CmapUtil.URN_UUID, VizUtil.AFV_PREFIX));
+			String uiType = firstTypeUri(uiNode);
+			isConnection = VizUtil.AFV_CONNECTION.getURI().equals(uiType);
+			isLink = VizUtil.AFV_LINK.getURI().equals(uiType);
+			isParent = graph.contains(Node.ANY, hasParent, uiNode);
+		}
+
+		if (isInstanceIri && !hasVisualizationType && !isConnection && !isLink && !isParent && !isObjectProperty)
+		{
+			return INSTANCE;
+		}
+
+		if (uri.startsWith(VizUtil.AFV_PREFIX) || (isInstanceIri && hasVisualizationType) || isConnection || isLink || isParent)
+		{
+			return VISUALIZATION;
+		}
+
+		return OTHER;
+	}
+
+	private String firstTypeUri(Node node)
+	{
+		ExtendedIterator<Triple> typeIterator = graph.find(node, rdfType, Node.ANY);
+		try
+		{
+			if (!typeIterator.hasNext())
+			{
+				return null;
+			}
+
+			Node type = typeIterator.next().getObject();
+			return type.isURI() ? type.getURI() : null;
+		}
+		finally
+		{
+			typeIterator.close();
+		}
+	}
+
+	private static class Shard
+	{
+		private final List<List<Triple>> triples = new ArrayList<>(3);
+
+		private long blanks = 0;
+
+		private Shard()
+		{
+			for (int category = INSTANCE; category <= OTHER; category++)
+			{
+				triples.add(new ArrayList<Triple>());
+			}
+		}
+	}
+}
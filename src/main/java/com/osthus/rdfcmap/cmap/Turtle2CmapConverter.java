@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -19,7 +20,6 @@ import java.util.regex.Pattern;
 import javax.xml.bind.JAXBException;
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.text.translate.NumericEntityEscaper;
@@ -41,14 +41,16 @@ import com.osthus.rdfcmap.RdfCmap;
 import com.osthus.rdfcmap.cmap.cardinality.Cardinality;
 import com.osthus.rdfcmap.cmap.cardinality.StatementWithCardinality;
 import com.osthus.rdfcmap.cmap.layout.Layouter;
+import com.osthus.rdfcmap.cmap.layout.NativeLayouter;
 import com.osthus.rdfcmap.enums.ConceptProperty;
 import com.osthus.rdfcmap.helper.ConceptRelation;
 import com.osthus.rdfcmap.helper.LinkedConcept;
 import com.osthus.rdfcmap.helper.VisualizationInfoBuilderResult;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.ConnectionGraph;
+import com.osthus.rdfcmap.util.PipelineMetrics;
 import com.osthus.rdfcmap.util.Prefixes;
-import com.osthus.rdfcmap.util.RdfUtil;
 import com.osthus.rdfcmap.util.VizUtil;
 
 @SuppressWarnings("deprecation")
@@ -65,22 +67,79 @@ public class Turtle2CmapConverter
 
 	List<Resource> resources = new ArrayList<>();
 
-	public static Set<String> allNodeIdsOfInstanceGraph = new HashSet<>();
+	private Set<String> allNodeIdsOfInstanceGraph = new HashSet<>();
 
-	private static Map<Resource, ConceptRelation> link2conceptRelations = new HashMap<Resource, ConceptRelation>();
+	private ConnectionGraph connectionGraph = null;
+
+	private Model sharedVocabulary = null;
+
+	private LongCommentRenderer longCommentRenderer = null;
+
+	private VizIdentifierIndex vizIdentifierIndex = null;
 
 	private static final Logger log = LogManager.getLogger("Logger");
 
+	/**
+	 * Use triples of a vocabulary that has already been read instead of reading additional files.
+	 *
+	 * @param sharedVocabulary
+	 *            read-only vocabulary, shared by all conversions of batch mode
+	 */
+	public void setSharedVocabulary(Model sharedVocabulary)
+	{
+		this.sharedVocabulary = sharedVocabulary;
+	}
+
 	public void convert(Path pathToInputFile) throws FileNotFoundException, SAXException, IOException, ParserConfigurationException, JAXBException
 	{
 		convert(pathToInputFile, null);
 	}
 
 	public void convert(Path pathToInputFile, String[] additionalFiles) throws JAXBException, IOException, ParserConfigurationException, SAXException
+	{
+		Model model = createVisualizationModel(pathToInputFile, additionalFiles);
+
+		PipelineMetrics.Timer timer;
+		if (RdfCmap.optimizeLayout)
+		{
+			timer = PipelineMetrics.start("ttl2cxl.optimizeLayout");
+			// connections were created or updated with the visualization, layouts do not change them
+			connectionGraph = new ConnectionGraph(model);
+			if (RdfCmap.isNativeLayout)
+			{
+				model = NativeLayouter.optimizeLayout(model, connectionGraph);
+			}
+			else
+			{
+				model = Layouter.optimizeLayout(model, connectionGraph);
+			}
+			timer.stop();
+		}
+
+		timer = PipelineMetrics.start("ttl2cxl.generateCxl");
+		CxlWriter.generateCxlFromRdfModel(pathToInputFile, model, vizIdentifierIndex);
+		timer.stop();
+
+		PipelineMetrics.gauge("ttl2cxl.triplesOutput", model.size());
+		log.info(model.size() + " triples total after processing.");
+	}
+
+	/**
+	 * Reads the RDF model and adds the visualization description of all nodes of the instance graph, without layouting and writing CXL.
+	 *
+	 * @param pathToInputFile
+	 * @param additionalFiles
+	 * @return model with visualization description
+	 * @throws IOException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 */
+	public Model createVisualizationModel(Path pathToInputFile, String[] additionalFiles) throws IOException, ParserConfigurationException, SAXException
 	{
 		log.info("Converting to cmap: " + pathToInputFile.toString()
 				+ ((additionalFiles != null && additionalFiles.length > 0) ? " using additional files: " + StringUtils.join(additionalFiles, ", ") : ""));
 
+		PipelineMetrics.Timer timer = PipelineMetrics.start("ttl2cxl.readModel");
 		Model model = ModelFactory.createDefaultModel();
 		log.info("Reading model from file: " + pathToInputFile.toString());
 
@@ -106,21 +165,36 @@ public class Turtle2CmapConverter
 		{
 			model.read(pathToInputFile.toUri().toString(), null, "TTL");
 		}
+		timer.stop();
 
-		log.info(model.listStatements().toList().size() + " triples total.");
+		log.info(model.size() + " triples total.");
 
-		model = CmapUtil.addTriples(additionalFiles, model);
+		timer = PipelineMetrics.start("ttl2cxl.addTriples");
+		if (sharedVocabulary != null)
+		{
+			model = CmapUtil.addTriples(sharedVocabulary, model);
+		}
+		else
+		{
+			model = CmapUtil.addTriples(additionalFiles, model);
+		}
+		timer.stop();
 		if (model.isEmpty())
 		{
-			log.info("No RDF model found. Check input file.");
-			System.exit(1);
+			throw new IllegalStateException("No RDF model found. Check input file: " + pathToInputFile.toString());
 		}
 		else if (additionalFiles != null && additionalFiles.length > 0)
 		{
-			log.info(model.listStatements().toList().size() + " triples total.");
+			log.info(model.size() + " triples total.");
 		}
+		PipelineMetrics.gauge("ttl2cxl.triplesInput", model.size());
+
+		timer = PipelineMetrics.start("ttl2cxl.determineConceptRelations");
+		connectionGraph = new ConnectionGraph(model);
+		timer.stop();
 
-		link2conceptRelations = RdfUtil.determineConceptRelations(model);
+		timer = PipelineMetrics.start("ttl2cxl.collectUiProperties");
+		longCommentRenderer = new LongCommentRenderer();
 
 		Map<String, Map<String, String>> conceptId2UiProperties = new HashMap<>();
 		Map<String, Map<String, String>> linkId2UiProperties = new HashMap<>();
@@ -193,7 +267,7 @@ public class Turtle2CmapConverter
 
 				conceptId2UiProperties.put(subjectKey, conceptProperties);
 
-				Model singleConceptModel = ModelFactory.createDefaultModel();
+				Set<Statement> singleConceptStatements = new LinkedHashSet<>();
 				StmtIterator instanceStmtIterator = model.listStatements(statement.getSubject(), (Property) null, (RDFNode) null);
 				while (instanceStmtIterator.hasNext())
 				{
@@ -220,7 +294,7 @@ public class Turtle2CmapConverter
 
 						conceptId2UiProperties.put(targetSubjectKey, targetConceptProperties);
 
-						singleConceptModel.add(instanceStatement);
+						singleConceptStatements.add(instanceStatement);
 					}
 					else if (instanceStatement.getObject().isAnon()
 							&& allNodeIdsOfInstanceGraph.contains(instanceStatement.getResource().getId().getBlankNodeId().getLabelString()))
@@ -246,16 +320,16 @@ public class Turtle2CmapConverter
 
 						conceptId2UiProperties.put(targetSubjectKey, targetConceptProperties);
 
-						singleConceptModel.add(instanceStatement);
+						singleConceptStatements.add(instanceStatement);
 					}
 					else if (instanceStatement.getObject().isURIResource() || instanceStatement.getObject().isLiteral())
 					{
-						singleConceptModel.add(instanceStatement);
+						singleConceptStatements.add(instanceStatement);
 					}
 					else if (instanceStatement.getObject().isAnon())
 					{
 						String blankIri = instanceStatement.getObject().toString();
-						singleConceptModel = addBlankNodes(model, singleConceptModel, instanceStatement, blankIri);
+						singleConceptStatements = addBlankNodes(model, singleConceptStatements, instanceStatement, blankIri);
 					}
 					else
 					{
@@ -263,23 +337,11 @@ public class Turtle2CmapConverter
 					}
 				}
 
-				if (!singleConceptModel.isEmpty())
+				if (!singleConceptStatements.isEmpty())
 				{
-					ByteArrayOutputStream output = new ByteArrayOutputStream()
-					{
-						private StringBuilder string = new StringBuilder();
-
-						@Override
-						public void write(int b)
-						{
-							string.append((char) b);
-						}
-					};
-
-					singleConceptModel.write(output, "TTL");
 					conceptProperties = CmapUtil.createOrRetrieveMapOfUiProperties(conceptId2UiProperties, subjectKey);
 					conceptProperties.put(ConceptProperty.LONG_COMMENT.name(),
-							NumericEntityEscaper.below(0x20).translate(StringEscapeUtils.escapeXml11(createHumanReadableRdf(model, output.toString()))));
+							longCommentRenderer.renderEscaped(model, statement.getSubject(), singleConceptStatements));
 
 					conceptId2UiProperties.put(subjectKey, conceptProperties);
 				}
@@ -414,25 +476,28 @@ public class Turtle2CmapConverter
 			}
 		}
 
+		timer.stop();
+		PipelineMetrics.count("ttl2cxl.concepts", conceptId2UiProperties.size());
+		PipelineMetrics.count("ttl2cxl.links", fullLinkId2UiProperties.size());
+
+		timer = PipelineMetrics.start("ttl2cxl.createOrUpdateVisualizationInfo");
+		vizIdentifierIndex = new VizIdentifierIndex(model);
 		VisualizationInfoBuilderResult visualizationInfoBuilderResult = VisualizationInfoBuilder.createOrUpdateVisualizationInfo(model, pathToInputFile,
-				conceptId2UiProperties, fullLinkId2UiProperties, connectionId2UiProperties, controlPointId2UiProperties, imageId2UiProperties, resources);
+				conceptId2UiProperties, fullLinkId2UiProperties, connectionId2UiProperties, controlPointId2UiProperties, imageId2UiProperties, resources,
+				allNodeIdsOfInstanceGraph, vizIdentifierIndex);
+		timer.stop();
 
 		model = visualizationInfoBuilderResult.getModel();
 
 		if (RdfCmap.visualizeLiterals)
 		{
+			timer = PipelineMetrics.start("ttl2cxl.addLiteralNodes");
 			model = addLiteralNodesForVisualization(model);
 			model = addSelectedNodesForVisualization(model);
+			timer.stop();
 		}
 
-		if (RdfCmap.optimizeLayout)
-		{
-			model = Layouter.optimizeLayout(model);
-		}
-
-		CxlWriter.generateCxlFromRdfModel(pathToInputFile, model);
-
-		log.info(model.listStatements().toList().size() + " triples total after processing.");
+		return model;
 	}
 
 	private Model addLiteralNodesForVisualization(Model model)
@@ -478,6 +543,7 @@ public class Turtle2CmapConverter
 				log.debug("Added literal concept with title: " + ((title == null || title.isEmpty()) ? "<unknown>" : "\"" + title + "\"") + " new ID: "
 						+ uiConcept.getURI());
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiConcept, AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT);
+				vizIdentifierIndex.add(uiConcept, VizUtil.AFV_CONCEPT);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConcept, AFOUtil.DCT_IDENTIFIER, uiConcept.getURI());
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConcept, AFOUtil.DCT_TITLE, title);
 				Resource map = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, VizUtil.AFV_MAP).next().getSubject();
@@ -531,6 +597,7 @@ public class Turtle2CmapConverter
 				log.debug("Added literal link with title: " + ((propertyTitle == null || propertyTitle.isEmpty()) ? "<unknown>" : "\"" + propertyTitle + "\"")
 						+ " new ID: " + uiLink.getURI());
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiLink, AFOUtil.RDF_TYPE, VizUtil.AFV_LINK);
+				vizIdentifierIndex.add(uiLink, VizUtil.AFV_LINK);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiLink, AFOUtil.DCT_IDENTIFIER, uiLink.getURI());
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiLink, AFOUtil.DCT_TITLE, propertyTitle);
 				uiLink.addProperty(VizUtil.AFV_HAS_MAP, map);
@@ -562,6 +629,7 @@ public class Turtle2CmapConverter
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, VizUtil.AFV_IDENTIFIER, connectionId);
 				log.debug("Added new literal connection for new ID: " + connectionId);
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiConnection, AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION);
+				vizIdentifierIndex.add(uiConnection, VizUtil.AFV_CONNECTION);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, AFOUtil.DCT_IDENTIFIER, uiConnection.getURI());
 				uiConnection.addProperty(VizUtil.AFV_HAS_MAP, map);
 				Resource from = uiResource;
@@ -582,6 +650,7 @@ public class Turtle2CmapConverter
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, VizUtil.AFV_IDENTIFIER, connectionId);
 				log.debug("Added new literal connection for new ID: " + connectionId);
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiConnection, AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION);
+				vizIdentifierIndex.add(uiConnection, VizUtil.AFV_CONNECTION);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, AFOUtil.DCT_IDENTIFIER, uiConnection.getURI());
 				uiConnection.addProperty(VizUtil.AFV_HAS_MAP, map);
 				from = uiLink;
@@ -642,6 +711,7 @@ public class Turtle2CmapConverter
 				log.debug("Added selected concept with title: " + ((title == null || title.isEmpty()) ? "<unknown>" : "\"" + title + "\"") + " new ID: "
 						+ uiConcept.getURI());
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiConcept, AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT);
+				vizIdentifierIndex.add(uiConcept, VizUtil.AFV_CONCEPT);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConcept, AFOUtil.DCT_IDENTIFIER, uiConcept.getURI());
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConcept, AFOUtil.DCT_TITLE, title);
 				Resource map = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, VizUtil.AFV_MAP).next().getSubject();
@@ -693,6 +763,7 @@ public class Turtle2CmapConverter
 				log.debug("Added selected link with title: " + ((propertyTitle == null || propertyTitle.isEmpty()) ? "<unknown>" : "\"" + propertyTitle + "\"")
 						+ " new ID: " + uiLink.getURI());
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiLink, AFOUtil.RDF_TYPE, VizUtil.AFV_LINK);
+				vizIdentifierIndex.add(uiLink, VizUtil.AFV_LINK);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiLink, AFOUtil.DCT_IDENTIFIER, uiLink.getURI());
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiLink, AFOUtil.DCT_TITLE, propertyTitle);
 				uiLink.addProperty(VizUtil.AFV_HAS_MAP, map);
@@ -724,6 +795,7 @@ public class Turtle2CmapConverter
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, VizUtil.AFV_IDENTIFIER, connectionId);
 				log.debug("Added new selected connection for new ID: " + connectionId);
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiConnection, AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION);
+				vizIdentifierIndex.add(uiConnection, VizUtil.AFV_CONNECTION);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, AFOUtil.DCT_IDENTIFIER, uiConnection.getURI());
 				uiConnection.addProperty(VizUtil.AFV_HAS_MAP, map);
 				Resource from = uiResource;
@@ -744,6 +816,7 @@ public class Turtle2CmapConverter
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, VizUtil.AFV_IDENTIFIER, connectionId);
 				log.debug("Added new selected connection for new ID: " + connectionId);
 				model = CmapUtil.createOrUpdateRelatedResource(model, uiConnection, AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION);
+				vizIdentifierIndex.add(uiConnection, VizUtil.AFV_CONNECTION);
 				model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, AFOUtil.DCT_IDENTIFIER, uiConnection.getURI());
 				uiConnection.addProperty(VizUtil.AFV_HAS_MAP, map);
 				from = uiLink;
@@ -781,92 +854,15 @@ public class Turtle2CmapConverter
 	private Set<String> collectNodeIds(Model model)
 	{
 		log.info("Collecting nodes of instance graph.");
-		Set<String> nodeIds = new HashSet<String>();
-		Set<String> checkedNodeIds = new HashSet<String>();
-		StmtIterator stmtIterator = model.listStatements();
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			Resource subject = statement.getSubject();
-			if (hasAlreadyBeenChecked(subject, nodeIds, checkedNodeIds))
-			{
-				continue;
-			}
-
-			if (subject.isURIResource() && !subject.getURI().startsWith(CmapUtil.URN_UUID))
-			{
-				checkedNodeIds.add(subject.getURI());
-				continue;
-			}
-
-			if (isNodeOfInstanceGraph(subject, model, nodeIds))
-			{
-				if (subject.isURIResource())
-				{
-					nodeIds.add(subject.getURI());
-				}
-				else
-				{
-					nodeIds.add(subject.getId().getBlankNodeId().getLabelString());
-				}
+		Set<String> nodeIds = InstanceGraphClassifier.collectNodeIds(model);
 
-				Map<String, String> properties = createTitle(model, subject, new HashMap<String, String>());
-				log.info("Found node: " + subject.toString() + " of type \"" + properties.get(ConceptProperty.TITLE.name()) + "\"");
-			}
-
-			if (subject.isURIResource())
-			{
-				checkedNodeIds.add(subject.getURI());
-			}
-			else
-			{
-				checkedNodeIds.add(subject.getId().getBlankNodeId().getLabelString());
-			}
-		}
-
-		stmtIterator = model.listStatements();
-		while (stmtIterator.hasNext())
+		if (log.isDebugEnabled())
 		{
-			Statement statement = stmtIterator.next();
-			if (statement.getObject().isLiteral())
+			for (String nodeId : nodeIds)
 			{
-				continue;
-			}
-
-			Resource object = statement.getResource();
-			if (hasAlreadyBeenChecked(object, nodeIds, checkedNodeIds))
-			{
-				continue;
-			}
-
-			if (object.isURIResource() && !object.getURI().startsWith(CmapUtil.URN_UUID))
-			{
-				checkedNodeIds.add(object.getURI());
-				continue;
-			}
-
-			if (isNodeOfInstanceGraph(object, model, nodeIds))
-			{
-				if (object.isURIResource())
-				{
-					nodeIds.add(object.getURI());
-				}
-				else
-				{
-					nodeIds.add(object.getId().getBlankNodeId().getLabelString());
-				}
-
-				Map<String, String> properties = createTitle(model, object, new HashMap<String, String>());
-				log.info("Found node: " + object.toString() + " of type \"" + properties.get(ConceptProperty.TITLE.name()) + "\"");
-			}
-
-			if (object.isURIResource())
-			{
-				checkedNodeIds.add(object.getURI());
-			}
-			else
-			{
-				checkedNodeIds.add(object.getId().getBlankNodeId().getLabelString());
+				Resource node = nodeId.startsWith(CmapUtil.URN_UUID) ? model.getResource(nodeId) : model.createResource(new AnonId(new BlankNodeId(nodeId)));
+				Map<String, String> properties = createTitle(model, node, new HashMap<String, String>());
+				log.debug("Found node: " + node.toString() + " of type \"" + properties.get(ConceptProperty.TITLE.name()) + "\"");
 			}
 		}
 
@@ -874,289 +870,6 @@ public class Turtle2CmapConverter
 		return nodeIds;
 	}
 
-	private boolean hasAlreadyBeenChecked(Resource resource, Set<String> nodeIds, Set<String> checkedNodeIds)
-	{
-		if (resource.isURIResource())
-		{
-			if (checkedNodeIds.contains(resource.getURI()))
-			{
-				return true;
-			}
-
-			if (nodeIds.contains(resource.getURI()))
-			{
-				return true;
-			}
-		}
-		else
-		{
-			if (checkedNodeIds.contains(resource.getId().getBlankNodeId().getLabelString()))
-			{
-				return true;
-			}
-
-			if (nodeIds.contains(resource.getId().getBlankNodeId().getLabelString()))
-			{
-				return true;
-			}
-		}
-
-		return false;
-	}
-
-	private boolean isNodeOfInstanceGraph(Resource resource, Model model, Set<String> nodeIds)
-	{
-		if (resource.isURIResource() && resource.getURI().startsWith(CmapUtil.URN_UUID))
-		{
-			return true;
-		}
-
-		if (resource.isURIResource())
-		{
-			return false;
-		}
-
-		if (isBlankNodeWithConnectionToInstanceGraph(resource, model, nodeIds))
-		{
-			return true;
-		}
-
-		return false;
-	}
-
-	/**
-	 * Check if a resource is connected via object properties to at least one named resource (urn:uuid:...)
-	 *
-	 * @param resource
-	 * @param model
-	 * @param nodeIds
-	 *            TODO
-	 * @return
-	 */
-	private boolean isBlankNodeWithConnectionToInstanceGraph(Resource resource, Model model, Set<String> nodeIds)
-	{
-		if (resource.isURIResource() || resource.isLiteral())
-		{
-			return false;
-		}
-
-		if (resource.hasProperty(AFOUtil.RDF_TYPE))
-		{
-			if (AFOUtil.OWL_RESTRICTION.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-			if (AFOUtil.OWL_CLASS.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-			if (AFOUtil.OWL_OBJECT_PROPERTY.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-			if (AFOUtil.OWL_DATATYPE_PROPERTY.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-			if (AFOUtil.OWL_ANNOTATION_PROPERTY.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-			if (AFOUtil.OWL_AXIOM.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-			if (AFOUtil.RDFS_DATATYPE.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-			if (AFOUtil.OWL_ALL_DIFFERENT.equals(resource.getPropertyResourceValue(AFOUtil.RDF_TYPE)))
-			{
-				return false;
-			}
-		}
-
-		Map<String, String> properties = createTitle(model, resource, new HashMap<String, String>());
-		String title = properties.get(ConceptProperty.TITLE.name());
-		log.debug("Checking: " + resource.toString() + " " + title);
-
-		Set<String> visited = new HashSet<String>();
-		visited.add(resource.getId().getBlankNodeId().getLabelString());
-		VisitedNodesStruct visitedNodesStruct = new VisitedNodesStruct(visited);
-		visitedNodesStruct = visitNeighboursToFindLinkToNamedResource(resource, model, visitedNodesStruct, nodeIds);
-
-		return visitedNodesStruct.isInstanceNode();
-	}
-
-	private VisitedNodesStruct visitNeighboursToFindLinkToNamedResource(Resource resource, Model model, VisitedNodesStruct visitedNodesStruct,
-			Set<String> nodeIds)
-	{
-		Set<String> visited = visitedNodesStruct.getVisitedNodes();
-
-		StmtIterator stmtIterator = model.listStatements(resource, (Property) null, (RDFNode) null);
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			Property property = statement.getPredicate();
-
-			if (isPropertyToSkip(property))
-			{
-				continue;
-			}
-
-			if (statement.getObject().isLiteral())
-			{
-				continue;
-			}
-
-			Resource object = statement.getResource();
-			if (object.isURIResource())
-			{
-				if (object.getURI().startsWith(CmapUtil.URN_UUID))
-				{
-					visitedNodesStruct.setInstanceNode(true);
-					return visitedNodesStruct;
-				}
-
-				if (nodeIds.contains(object.getURI()))
-				{
-					visitedNodesStruct.setInstanceNode(true);
-					return visitedNodesStruct;
-				}
-
-				if (visited.contains(object.getURI()))
-				{
-					continue;
-				}
-
-				visited.add(object.getURI());
-			}
-			else
-			{
-				if (nodeIds.contains(object.getId().getBlankNodeId().getLabelString()))
-				{
-					visitedNodesStruct.setInstanceNode(true);
-					return visitedNodesStruct;
-				}
-
-				if (visited.contains(object.getId().getBlankNodeId().getLabelString()))
-				{
-					continue;
-				}
-
-				visited.add(object.getId().getBlankNodeId().getLabelString());
-			}
-
-			visitedNodesStruct.setVisitedNodes(visited);
-			visitedNodesStruct = visitNeighboursToFindLinkToNamedResource(object, model, visitedNodesStruct, nodeIds);
-
-			if (visitedNodesStruct.isInstanceNode())
-			{
-				return visitedNodesStruct;
-			}
-		}
-
-		stmtIterator = model.listStatements((Resource) null, (Property) null, resource);
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			Property property = statement.getPredicate();
-
-			if (isPropertyToSkip(property))
-			{
-				continue;
-			}
-
-			Resource subject = statement.getSubject();
-			if (subject.isURIResource())
-			{
-				if (subject.getURI().startsWith(CmapUtil.URN_UUID))
-				{
-					visitedNodesStruct.setInstanceNode(true);
-					return visitedNodesStruct;
-				}
-
-				if (nodeIds.contains(subject.getURI()))
-				{
-					visitedNodesStruct.setInstanceNode(true);
-					return visitedNodesStruct;
-				}
-
-				if (visited.contains(subject.getURI()))
-				{
-					continue;
-				}
-
-				visited.add(subject.getURI());
-			}
-			else
-			{
-				if (nodeIds.contains(subject.getId().getBlankNodeId().getLabelString()))
-				{
-					visitedNodesStruct.setInstanceNode(true);
-					return visitedNodesStruct;
-				}
-
-				if (visited.contains(subject.getId().getBlankNodeId().getLabelString()))
-				{
-					continue;
-				}
-
-				visited.add(subject.getId().getBlankNodeId().getLabelString());
-			}
-
-			visitedNodesStruct.setVisitedNodes(visited);
-			visitedNodesStruct = visitNeighboursToFindLinkToNamedResource(subject, model, visitedNodesStruct, nodeIds);
-
-			if (visitedNodesStruct.isInstanceNode())
-			{
-				return visitedNodesStruct;
-			}
-		}
-
-		return visitedNodesStruct;
-	}
-
-	private boolean isPropertyToSkip(Property property)
-	{
-		if (property.getURI().startsWith(AFOUtil.RDF_PREFIX))
-		{
-			return true;
-		}
-
-		if (property.getURI().startsWith(AFOUtil.OWL_PREFIX))
-		{
-			return true;
-		}
-
-		if (property.equals(AFOUtil.RDFS_SUBCLASS_OF))
-		{
-			return true;
-		}
-
-		if (property.equals(AFOUtil.RDFS_SUBPROPERTY_OF))
-		{
-			return true;
-		}
-
-		if (property.equals(AFOUtil.RDFS_DOMAIN))
-		{
-			return true;
-		}
-
-		if (property.equals(AFOUtil.RDFS_RANGE))
-		{
-			return true;
-		}
-
-		if (property.equals(AFOUtil.RDFS_DATATYPE))
-		{
-			return true;
-		}
-
-		return false;
-	}
-
 	private Map<String, String> createLinkCardinality(Model model, Resource subject, Map<String, String> linkProperties)
 	{
 		if (subject.hasProperty(VizUtil.AFV_HAS_CARDINALITY))
@@ -1497,18 +1210,6 @@ public class Turtle2CmapConverter
 
 	private Map<String, String> createLongComment(Model model, Resource resource, Map<String, String> properties)
 	{
-		ByteArrayOutputStream output = new ByteArrayOutputStream()
-		{
-			private StringBuilder string = new StringBuilder();
-
-			@Override
-			public void write(int b)
-			{
-				string.append((char) b);
-			}
-		};
-
-		Model singleConceptModel = ModelFactory.createDefaultModel();
 		Set<Statement> statements = model.listStatements(resource, (Property) null, (RDFNode) null).toSet();
 
 		StmtIterator anonStmtIterator = model.listStatements(resource, (Property) null, (RDFNode) null);
@@ -1516,19 +1217,15 @@ public class Turtle2CmapConverter
 		{
 			statements = CmapUtil.addStatementsWithBlankNodes(model, anonStmtIterator.next(), statements);
 		}
-		singleConceptModel.add(new ArrayList<Statement>(statements));
 
-		singleConceptModel.write(output, "TTL");
-		String singleConceptModelString = output.toString();
-		singleConceptModelString = createHumanReadableRdf(model, singleConceptModelString);
-		singleConceptModelString = addCardinalitiesToLongComment(model, singleConceptModel, resource, singleConceptModelString);
-		properties.put(ConceptProperty.LONG_COMMENT.name(),
-				NumericEntityEscaper.below(0x20).translate(StringEscapeUtils.escapeXml11(singleConceptModelString)));
+		String singleConceptModelString = longCommentRenderer.render(model, resource, statements);
+		singleConceptModelString = addCardinalitiesToLongComment(model, resource, singleConceptModelString);
+		properties.put(ConceptProperty.LONG_COMMENT.name(), LongCommentRenderer.escape(singleConceptModelString));
 
 		return properties;
 	}
 
-	private String addCardinalitiesToLongComment(Model model, Model singleConceptModel, Resource resource, String singleConceptModelString)
+	private String addCardinalitiesToLongComment(Model model, Resource resource, String singleConceptModelString)
 	{
 		Resource uiResource = model.getResource(resource.getURI().replaceAll(CmapUtil.URN_UUID, VizUtil.AFV_PREFIX));
 
@@ -1538,34 +1235,31 @@ public class Turtle2CmapConverter
 		}
 
 		List<StatementWithCardinality> statementsWithCardinality = new ArrayList<>();
-		for (ConceptRelation conceptRelation : link2conceptRelations.values())
+		for (ConceptRelation conceptRelation : connectionGraph.getOutgoingRelations(uiResource))
 		{
-			if (conceptRelation.from.equals(uiResource))
+			if (model.listStatements(conceptRelation.link, VizUtil.AFV_HAS_CARDINALITY, (RDFNode) null).hasNext())
 			{
-				if (model.listStatements(conceptRelation.link, VizUtil.AFV_HAS_CARDINALITY, (RDFNode) null).hasNext())
-				{
-					Resource cardinality = model.listStatements(conceptRelation.link, VizUtil.AFV_HAS_CARDINALITY, (RDFNode) null).next().getResource();
-					Resource cardinalityType = model.listStatements(cardinality, AFOUtil.RDF_TYPE, (RDFNode) null).next().getResource();
-					String minCardinality = model.listStatements(cardinality, AFOUtil.AFX_MINIMUM_VALUE, (RDFNode) null).next().getString();
-					String maxCardinality = model.listStatements(cardinality, AFOUtil.AFX_MAXIMUM_VALUE, (RDFNode) null).next().getString();
-					String cardinalityString = (new Cardinality(cardinalityType, minCardinality, maxCardinality)).toString();
-
-					if (cardinalityString.equals(CmapUtil.MIN_ZERO))
-					{
-						// this is the default for absence of cardinality
-						continue;
-					}
+				Resource cardinality = model.listStatements(conceptRelation.link, VizUtil.AFV_HAS_CARDINALITY, (RDFNode) null).next().getResource();
+				Resource cardinalityType = model.listStatements(cardinality, AFOUtil.RDF_TYPE, (RDFNode) null).next().getResource();
+				String minCardinality = model.listStatements(cardinality, AFOUtil.AFX_MINIMUM_VALUE, (RDFNode) null).next().getString();
+				String maxCardinality = model.listStatements(cardinality, AFOUtil.AFX_MAXIMUM_VALUE, (RDFNode) null).next().getString();
+				String cardinalityString = (new Cardinality(cardinalityType, minCardinality, maxCardinality)).toString();
 
-					String propertyTitle = model.listStatements(conceptRelation.link, AFOUtil.AFX_HAS_OBJECT, (RDFNode) null).next().getResource()
-							.getProperty(AFOUtil.DCT_TITLE).getString();
-					if (!propertyTitle.contains(":"))
-					{
-						propertyTitle = "af-x:" + propertyTitle;
-					}
+				if (cardinalityString.equals(CmapUtil.MIN_ZERO))
+				{
+					// this is the default for absence of cardinality
+					continue;
+				}
 
-					statementsWithCardinality
-							.add(new StatementWithCardinality(uiResource.getURI(), propertyTitle, conceptRelation.to.getURI(), cardinalityString));
+				String propertyTitle = model.listStatements(conceptRelation.link, AFOUtil.AFX_HAS_OBJECT, (RDFNode) null).next().getResource()
+						.getProperty(AFOUtil.DCT_TITLE).getString();
+				if (!propertyTitle.contains(":"))
+				{
+					propertyTitle = "af-x:" + propertyTitle;
 				}
+
+				statementsWithCardinality
+						.add(new StatementWithCardinality(uiResource.getURI(), propertyTitle, conceptRelation.to.getURI(), cardinalityString));
 			}
 		}
 
@@ -1697,116 +1391,6 @@ public class Turtle2CmapConverter
 		return properties;
 	}
 
-	public String createHumanReadableRdf(Model model, String singleConceptModelString)
-	{
-		List<String> lines = Arrays.asList(singleConceptModelString.split("\n"));
-		List<String> processedLines = new ArrayList<String>(lines.size());
-		String regex = "(^|[\\w\\s]+)<(http\\:\\/\\/purl\\.allotrope\\.org\\/ontologies\\/[a-z]*#)([A-Z]{3}_[0-9]{7})>[\\w\\s.]*";
-		String regexUri = "(<((http[s]?|ftp):\\/)?\\/?([^:\\/\\s]+)((\\/\\w+)*\\/)([\\w\\-\\.]+[^#?\\s]+)(.*)>)";
-		Pattern p = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-		Pattern patternUri = Pattern.compile(regexUri, Pattern.CASE_INSENSITIVE);
-		String commentRegex = ".*#(?![\\w]*>.*)";
-		Pattern commentPattern = Pattern.compile(commentRegex, Pattern.CASE_INSENSITIVE);
-		for (Iterator<String> iterator = lines.iterator(); iterator.hasNext();)
-		{
-			String line = iterator.next();
-			log.debug("<-- " + line);
-			Matcher m = p.matcher(line);
-			Matcher commentMatcher = commentPattern.matcher(line);
-			boolean foundId = false;
-			boolean commentedOut = false;
-			while (m.find())
-			{
-				foundId = true;
-				if (line.contains("#") && line.indexOf("#") < m.start(2))
-				{
-					if (commentMatcher.matches() && commentMatcher.end(1) < m.end(3))
-					{
-						commentedOut = true;
-						processedLines.add(line);
-						continue;
-					}
-				}
-
-				String resourceIri = m.group(2) + m.group(3);
-				Resource resource = model.getResource(resourceIri);
-				if (!resource.hasProperty(AFOUtil.SKOS_PREF_LABEL))
-				{
-					log.error("Error during replacement as human readable identifier: " + m.group(2) + m.group(3));
-				}
-
-				String label = resource.getProperty(AFOUtil.SKOS_PREF_LABEL).getString();
-				String prefix = Prefixes.getNamespaceMap().get(resource.getNameSpace());
-				line = line.replaceAll("<" + m.group(2), "<<" + prefix + ":");
-				line = line.replaceAll(m.group(3) + ">", label + ">>");
-			}
-
-			if (!(foundId && commentedOut))
-			{
-				processedLines.add(line);
-			}
-			log.debug("--> " + line);
-		}
-
-		processedLines = replaceNamespacesWithPrefixes(model, processedLines);
-		return StringUtils.join(processedLines.toArray(), "\n");
-	}
-
-	private List<String> replaceNamespacesWithPrefixes(Model model, List<String> lines)
-	{
-		List<String> processedLines = new ArrayList<String>(lines.size());
-		String regexUri = "(<((http[s]?|ftp):\\/)?\\/?([^:\\/\\s]+)((\\/\\w+)*\\/)([\\w\\-\\.]+[^#?\\s]+)>)";
-		Pattern patternUri = Pattern.compile(regexUri, Pattern.CASE_INSENSITIVE);
-		String commentRegex = ".*#(?![\\w]*>.*)";
-		Pattern commentPattern = Pattern.compile(commentRegex, Pattern.CASE_INSENSITIVE);
-		for (Iterator<String> iterator = lines.iterator(); iterator.hasNext();)
-		{
-			String line = iterator.next();
-			log.debug("<-- " + line);
-			Matcher m = patternUri.matcher(line);
-			Matcher commentMatcher = commentPattern.matcher(line);
-			boolean foundUri = false;
-			boolean commentedOut = false;
-			while (m.find())
-			{
-				foundUri = true;
-				if (line.contains("#") && line.indexOf("#") < m.start(1))
-				{
-					if (commentMatcher.matches() && commentMatcher.end(1) < m.end(2))
-					{
-						commentedOut = true;
-						processedLines.add(line);
-						continue;
-					}
-				}
-				boolean isNamespaceKnown = false;
-				for (String namespace : Prefixes.getNamespaceMap().keySet())
-				{
-					if (m.group(1).contains(namespace))
-					{
-						isNamespaceKnown = true;
-						String replacement = m.group(1).replaceAll("<", "").replaceAll(">", "").replace(namespace,
-								Prefixes.getNamespaceMap().get(namespace) + ":");
-						line = line.replace(m.group(1), replacement);
-						break;
-					}
-				}
-
-				if (!isNamespaceKnown)
-				{
-					log.info("Unknown namespace in URI: " + m.group(1));
-				}
-			}
-
-			if (!(foundUri && commentedOut))
-			{
-				processedLines.add(line);
-			}
-			log.debug("--> " + line);
-		}
-		return processedLines;
-	}
-
 	private Map<String, String> createShortComment(Model model, Resource resource, Map<String, String> properties)
 	{
 		if (resource.isURIResource() && (resource.getURI().startsWith(CmapUtil.URN_UUID + "AF") || resource.getURI().startsWith(CmapUtil.URN_UUID + "BFO")
@@ -2299,29 +1883,29 @@ public class Turtle2CmapConverter
 		return labelString;
 	}
 
-	private Model addBlankNodes(Model model, Model singleConceptModel, Statement statementWithBlankObject, String iri)
+	private Set<Statement> addBlankNodes(Model model, Set<Statement> singleConceptStatements, Statement statementWithBlankObject, String iri)
 	{
 		StmtIterator stmtIterator = model.listStatements(statementWithBlankObject.getObject().asResource(), (Property) null, (RDFNode) null);
 		while (stmtIterator.hasNext())
 		{
 			Statement statement = stmtIterator.next();
-			if (singleConceptModel.contains(statement))
+			if (singleConceptStatements.contains(statement))
 			{
 				continue;
 			}
-			singleConceptModel.add(statement);
+			singleConceptStatements.add(statement);
 			if (statement.getObject().isAnon() && !statement.getObject().toString().equals(iri))
 			{
-				singleConceptModel = addBlankNodes(model, singleConceptModel, statement, iri);
+				singleConceptStatements = addBlankNodes(model, singleConceptStatements, statement, iri);
 			}
 		}
 		stmtIterator = model.listStatements((Resource) null, (Property) null, statementWithBlankObject.getObject());
 		while (stmtIterator.hasNext())
 		{
-			singleConceptModel.add(stmtIterator.next());
+			singleConceptStatements.add(stmtIterator.next());
 		}
 
-		return singleConceptModel;
+		return singleConceptStatements;
 	}
 
 	private Set<LinkedConcept> createOrRetrieveSetOfLinkedConcepts(Map<String, Set<LinkedConcept>> linkId2LinkedConcepts, String key)
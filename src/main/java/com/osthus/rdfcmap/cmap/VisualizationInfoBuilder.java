@@ -43,7 +43,8 @@ public class VisualizationInfoBuilder
 	public static VisualizationInfoBuilderResult createOrUpdateVisualizationInfo(Model model, Path path,
 			Map<String, Map<String, String>> conceptId2UiProperties, Map<String, Map<String, String>> fullLinkId2UiProperties,
 			Map<String, Map<String, String>> connectionId2UiProperties, Map<String, Map<String, String>> controlPointId2UiProperties,
-			Map<String, Map<String, String>> imageId2UiProperties, List<Resource> resources)
+			Map<String, Map<String, String>> imageId2UiProperties, List<Resource> resources, Set<String> allNodeIdsOfInstanceGraph,
+			VizIdentifierIndex vizIdentifierIndex)
 	{
 		log.info("Creating or updating visualization info.");
 		Long x = 10l;
@@ -64,7 +65,7 @@ public class VisualizationInfoBuilder
 			{
 				// new concept, new instance
 				String title = entry.getValue().get(ConceptProperty.TITLE.name());
-				Resource existingConceptWithSameVizId = findExistingUiResource(model, entry.getKey(), VizUtil.AFV_CONCEPT);
+				Resource existingConceptWithSameVizId = vizIdentifierIndex.getUiResource(entry.getKey(), VizUtil.AFV_CONCEPT);
 				if (existingConceptWithSameVizId == null)
 				{
 					String id = UUID.randomUUID().toString();
@@ -83,7 +84,7 @@ public class VisualizationInfoBuilder
 				{
 					// reuse existing concept
 					uiConcept = existingConceptWithSameVizId;
-					concept = model.listStatements(uiConcept, AFOUtil.AFX_HAS_OBJECT, (RDFNode) null).next().getResource();
+					concept = vizIdentifierIndex.getResource(uiConcept);
 					String existingTitle = uiConcept.getProperty(AFOUtil.DCT_TITLE).getString();
 					log.debug("Reusing existing concept <" + uiConcept.getURI() + "> with title: " + "\"" + existingTitle + "\" for new concept with title "
 							+ ((title == null || title.isEmpty()) ? "<unknown>" : "\"" + title + "\"") + " and given ID: " + entry.getKey());
@@ -106,6 +107,7 @@ public class VisualizationInfoBuilder
 			resources.add(uiConcept);
 
 			model = CmapUtil.createOrUpdateRelatedResource(model, uiConcept, AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT);
+			vizIdentifierIndex.add(uiConcept, VizUtil.AFV_CONCEPT);
 			model = CmapUtil.createOrUpdateLiteralValue(model, uiConcept, AFOUtil.DCT_IDENTIFIER, uiConcept.getURI());
 
 			// resolve title against ontologies and add rdf:type
@@ -469,9 +471,9 @@ public class VisualizationInfoBuilder
 				model = CmapUtil.createOrUpdateLiteralValueOfRelatedResource(model, uiConcept, VizUtil.AFV_HAS_BORDER, VizUtil.AFV_BORDER, VizUtil.AFV_SHAPE,
 						entry.getValue().get(ConceptProperty.BORDER_SHAPE.name()));
 			}
-			else if (Turtle2CmapConverter.allNodeIdsOfInstanceGraph != null && !Turtle2CmapConverter.allNodeIdsOfInstanceGraph.isEmpty()
-					&& (Turtle2CmapConverter.allNodeIdsOfInstanceGraph.contains(concept.getURI().replaceAll(CmapUtil.URN_UUID, ""))
-							|| Turtle2CmapConverter.allNodeIdsOfInstanceGraph.contains(concept.getURI())))
+			else if (allNodeIdsOfInstanceGraph != null && !allNodeIdsOfInstanceGraph.isEmpty()
+					&& (allNodeIdsOfInstanceGraph.contains(concept.getURI().replaceAll(CmapUtil.URN_UUID, ""))
+							|| allNodeIdsOfInstanceGraph.contains(concept.getURI())))
 			{
 				model = CmapUtil.createOrUpdateLiteralValueOfRelatedResource(model, uiConcept, VizUtil.AFV_HAS_BORDER, VizUtil.AFV_BORDER, VizUtil.AFV_SHAPE,
 						"rectangle");
@@ -574,7 +576,7 @@ public class VisualizationInfoBuilder
 			{
 				// new link
 				String title = entry.getValue().get(ConceptProperty.TITLE.name());
-				Resource existingLinkWithSameVizId = findExistingUiResource(model, entry.getKey(), VizUtil.AFV_LINK);
+				Resource existingLinkWithSameVizId = vizIdentifierIndex.getUiResource(entry.getKey(), VizUtil.AFV_LINK);
 				if (existingLinkWithSameVizId == null)
 				{
 					String id = UUID.randomUUID().toString();
@@ -590,7 +592,7 @@ public class VisualizationInfoBuilder
 				{
 					// reuse existing link
 					uiLink = existingLinkWithSameVizId;
-					link = model.listStatements(uiLink, AFOUtil.AFX_HAS_OBJECT, (RDFNode) null).next().getResource();
+					link = vizIdentifierIndex.getResource(uiLink);
 					String existingTitle = uiLink.getProperty(AFOUtil.DCT_TITLE).getString();
 					log.debug("Reusing existing link <" + uiLink.getURI() + "> with title: " + "\"" + existingTitle + "\" for new link with title "
 							+ ((title == null || title.isEmpty()) ? "<unknown>" : "\"" + title + "\"") + " and given ID: " + entry.getKey());
@@ -610,6 +612,7 @@ public class VisualizationInfoBuilder
 			resources.add(uiLink);
 
 			model = CmapUtil.createOrUpdateRelatedResource(model, uiLink, AFOUtil.RDF_TYPE, VizUtil.AFV_LINK);
+			vizIdentifierIndex.add(uiLink, VizUtil.AFV_LINK);
 			model = CmapUtil.createOrUpdateLiteralValue(model, uiLink, AFOUtil.DCT_IDENTIFIER, uiLink.getURI());
 			model = CmapUtil.createOrUpdateLiteralValue(model, uiLink, AFOUtil.DCT_TITLE, entry.getValue().get(ConceptProperty.TITLE.name()));
 
@@ -933,7 +936,7 @@ public class VisualizationInfoBuilder
 			else
 			{
 				// new connection
-				Resource existingConnectionWithSameVizId = findExistingUiResource(model, entry.getKey(), VizUtil.AFV_CONNECTION);
+				Resource existingConnectionWithSameVizId = vizIdentifierIndex.getUiResource(entry.getKey(), VizUtil.AFV_CONNECTION);
 				if (existingConnectionWithSameVizId == null)
 				{
 					String id = UUID.randomUUID().toString();
@@ -948,7 +951,7 @@ public class VisualizationInfoBuilder
 				{
 					// reuse existing connection
 					uiConnection = existingConnectionWithSameVizId;
-					connection = model.listStatements(uiConnection, AFOUtil.AFX_HAS_OBJECT, (RDFNode) null).next().getResource();
+					connection = vizIdentifierIndex.getResource(uiConnection);
 					String existingTitle = connection.getProperty(AFOUtil.DCT_TITLE).getString();
 					log.debug("Reusing existing connection <" + uiConnection.getURI() + "> with title: " + "\"" + existingTitle
 							+ "\" for new connection and given ID: " + entry.getKey());
@@ -968,6 +971,7 @@ public class VisualizationInfoBuilder
 			resources.add(uiConnection);
 
 			model = CmapUtil.createOrUpdateRelatedResource(model, uiConnection, AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION);
+			vizIdentifierIndex.add(uiConnection, VizUtil.AFV_CONNECTION);
 			model = CmapUtil.createOrUpdateLiteralValue(model, uiConnection, AFOUtil.DCT_IDENTIFIER, uiConnection.getURI());
 
 			if (!model.contains(uiConnection, VizUtil.AFV_HAS_MAP, (RDFNode) null))
@@ -1313,30 +1317,6 @@ public class VisualizationInfoBuilder
 		return false;
 	}
 
-	private static Resource findExistingUiResource(Model model, String key, Resource rdfType)
-	{
-		StmtIterator stmtIterator = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, rdfType);
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-
-			if (!statement.getSubject().isURIResource())
-			{
-				continue;
-			}
-
-			Resource subject = statement.getSubject();
-
-			String id = model.listStatements(subject, VizUtil.AFV_IDENTIFIER, (RDFNode) null).next().getString();
-			if (id != null && !id.isEmpty() && id.equals(key))
-			{
-				return subject;
-			}
-		}
-
-		return null;
-	}
-
 	private static Model replaceVisualizationIdentifiersForIris(Model model)
 	{
 		List<List<Statement>> statementsToReplace = new ArrayList<>();
@@ -0,0 +1,173 @@
+package com.osthus.rdfcmap.cmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+import com.osthus.rdfcmap.util.AFOUtil;
+import com.osthus.rdfcmap.util.VizUtil;
+
+/**
+ * VizIdentifierIndex
+ *
+ * Index of the UI concepts, links and connections of a model. Maps the CMap IDs (afv:identifier) to the UI resources per afv type and the UI resources to
+ * the RDF resources they visualize (afx:hasObject). The index is built once per run and must be updated with {@link #add(Resource, Resource)} whenever a UI
+ * resource is created.
+ *
+ * Identifiers may be replaced or UI resources removed from the model after indexing, so lookups by identifier are verified against the model.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class VizIdentifierIndex
+{
+	private static final List<Resource> indexedTypes = Arrays.asList(VizUtil.AFV_CONCEPT, VizUtil.AFV_LINK, VizUtil.AFV_CONNECTION);
+
+	private final Model model;
+
+	private final Map<Resource, Map<String, Resource>> type2identifier2UiResource = new HashMap<>();
+
+	private final Map<Resource, Set<Resource>> type2UiResources = new HashMap<>();
+
+	private final Map<Resource, String> uiResource2identifier = new HashMap<>();
+
+	private final Map<Resource, Resource> uiResource2Resource = new HashMap<>();
+
+	public VizIdentifierIndex(Model model)
+	{
+		this.model = model;
+		for (Resource type : indexedTypes)
+		{
+			type2identifier2UiResource.put(type, new HashMap<String, Resource>());
+			type2UiResources.put(type, new LinkedHashSet<Resource>());
+
+			StmtIterator stmtIterator = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, type);
+			while (stmtIterator.hasNext())
+			{
+				Statement statement = stmtIterator.next();
+				if (!statement.getSubject().isURIResource())
+				{
+					continue;
+				}
+
+				add(statement.getSubject(), type);
+			}
+		}
+	}
+
+	/**
+	 * Adds a UI resource of the given type with its current identifier and RDF resource. The first UI resource of a type wins if several share an identifier.
+	 *
+	 * @param uiResource
+	 * @param type
+	 *            afv:Concept, afv:Link or afv:Connection
+	 */
+	public void add(Resource uiResource, Resource type)
+	{
+		type2UiResources.get(type).add(uiResource);
+
+		StmtIterator identifierIterator = model.listStatements(uiResource, VizUtil.AFV_IDENTIFIER, (RDFNode) null);
+		if (identifierIterator.hasNext())
+		{
+			String identifier = identifierIterator.next().getString();
+			identifierIterator.close();
+			uiResource2identifier.put(uiResource, identifier);
+			if (identifier != null && !identifier.isEmpty() && !type2identifier2UiResource.get(type).containsKey(identifier))
+			{
+				type2identifier2UiResource.get(type).put(identifier, uiResource);
+			}
+		}
+
+		StmtIterator objectIterator = model.listStatements(uiResource, AFOUtil.AFX_HAS_OBJECT, (RDFNode) null);
+		if (objectIterator.hasNext())
+		{
+			uiResource2Resource.put(uiResource, objectIterator.next().getResource());
+			objectIterator.close();
+		}
+	}
+
+	/**
+	 * @param identifier
+	 *            CMap ID
+	 * @param type
+	 *            afv:Concept, afv:Link or afv:Connection
+	 * @return UI resource of the given type with the given identifier or null
+	 */
+	public Resource getUiResource(String identifier, Resource type)
+	{
+		Resource uiResource = type2identifier2UiResource.get(type).get(identifier);
+		if (uiResource == null)
+		{
+			return null;
+		}
+
+		if (!model.contains(uiResource, VizUtil.AFV_IDENTIFIER, identifier) || !model.contains(uiResource, AFOUtil.RDF_TYPE, type))
+		{
+			type2identifier2UiResource.get(type).remove(identifier);
+			return null;
+		}
+
+		return uiResource;
+	}
+
+	/**
+	 * @param type
+	 *            afv:Concept, afv:Link or afv:Connection
+	 * @return all indexed UI resources of the given type that are still typed in the model, in order of indexing
+	 */
+	public List<Resource> getUiResources(Resource type)
+	{
+		List<Resource> uiResources = new ArrayList<>(type2UiResources.get(type).size());
+		for (Resource uiResource : type2UiResources.get(type))
+		{
+			if (model.contains(uiResource, AFOUtil.RDF_TYPE, type))
+			{
+				uiResources.add(uiResource);
+			}
+		}
+		return uiResources;
+	}
+
+	/**
+	 * @param uiResource
+	 * @return identifier of the UI resource at the time of indexing or null
+	 */
+	public String getIdentifier(Resource uiResource)
+	{
+		return uiResource2identifier.get(uiResource);
+	}
+
+	/**
+	 * @param uiResource
+	 * @return RDF resource visualized by the UI resource or null, looked up in the model if the indexed one is not visualized any more
+	 */
+	public Resource getResource(Resource uiResource)
+	{
+		Resource resource = uiResource2Resource.get(uiResource);
+		if (resource != null && model.contains(uiResource, AFOUtil.AFX_HAS_OBJECT, resource))
+		{
+			return resource;
+		}
+
+		uiResource2Resource.remove(uiResource);
+		StmtIterator objectIterator = model.listStatements(uiResource, AFOUtil.AFX_HAS_OBJECT, (RDFNode) null);
+		if (!objectIterator.hasNext())
+		{
+			return null;
+		}
+
+		resource = objectIterator.next().getResource();
+		objectIterator.close();
+		uiResource2Resource.put(uiResource, resource);
+		return resource;
+	}
+}
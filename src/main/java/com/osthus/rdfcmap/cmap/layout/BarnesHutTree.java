@@ -0,0 +1,203 @@
+package com.osthus.rdfcmap.cmap.layout;
+
+import java.util.Arrays;
+
+/**
+ * Quadtree of the node positions for Barnes-Hut approximation of the repulsion between all nodes.
+ *
+ * Cells are stored in primitive arrays, the four children of a cell are stored next to each other. Children are always created after their parent, so the
+ * centers of mass are accumulated in one pass from the last cell to the root. Nodes that are closer than the minimum cell size share a leaf.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class BarnesHutTree
+{
+	private static final float MIN_CELL_SIZE = 0.01f;
+
+	static final int NONE = -1;
+
+	int cellCount = 0;
+
+	float[] cellMinX;
+
+	float[] cellMinY;
+
+	float[] cellSize;
+
+	float[] cellMass;
+
+	float[] cellCenterX;
+
+	float[] cellCenterY;
+
+	/**
+	 * index of first of the four children, NONE for a leaf
+	 */
+	int[] firstChild;
+
+	/**
+	 * first node of a leaf, NONE for an empty leaf or an inner cell
+	 */
+	int[] firstNode;
+
+	/**
+	 * next node in the same leaf
+	 */
+	int[] nextNode;
+
+	BarnesHutTree(int nodeCount)
+	{
+		allocate(Math.max(16, 4 * nodeCount));
+		nextNode = new int[nodeCount];
+	}
+
+	void build(float[] x, float[] y, float[] mass)
+	{
+		int nodeCount = x.length;
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < nodeCount; i++)
+		{
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+
+		cellCount = 0;
+		int root = createCell(minX, minY, Math.max(maxX - minX, maxY - minY) * 1.001f + 1.0f);
+		for (int i = 0; i < nodeCount; i++)
+		{
+			insert(root, i, x, y);
+		}
+
+		accumulate(x, y, mass);
+	}
+
+	private void insert(int root, int node, float[] x, float[] y)
+	{
+		int cell = root;
+		while (true)
+		{
+			if (firstChild[cell] != NONE)
+			{
+				cell = firstChild[cell] + quadrant(cell, x[node], y[node]);
+				continue;
+			}
+
+			if (firstNode[cell] == NONE)
+			{
+				firstNode[cell] = node;
+				nextNode[node] = NONE;
+				return;
+			}
+
+			if (cellSize[cell] < MIN_CELL_SIZE)
+			{
+				nextNode[node] = firstNode[cell];
+				firstNode[cell] = node;
+				return;
+			}
+
+			// split leaf and move its node to a child, then continue with the children
+			int otherNode = firstNode[cell];
+			firstNode[cell] = NONE;
+			float half = cellSize[cell] * 0.5f;
+			int children = createCell(cellMinX[cell], cellMinY[cell], half);
+			createCell(cellMinX[cell] + half, cellMinY[cell], half);
+			createCell(cellMinX[cell], cellMinY[cell] + half, half);
+			createCell(cellMinX[cell] + half, cellMinY[cell] + half, half);
+			firstChild[cell] = children;
+			int otherCell = children + quadrant(cell, x[otherNode], y[otherNode]);
+			firstNode[otherCell] = otherNode;
+			nextNode[otherNode] = NONE;
+		}
+	}
+
+	private int quadrant(int cell, float x, float y)
+	{
+		float half = cellSize[cell] * 0.5f;
+		int quadrant = 0;
+		if (x >= cellMinX[cell] + half)
+		{
+			quadrant += 1;
+		}
+		if (y >= cellMinY[cell] + half)
+		{
+			quadrant += 2;
+		}
+		return quadrant;
+	}
+
+	private void accumulate(float[] x, float[] y, float[] mass)
+	{
+		for (int cell = cellCount - 1; cell >= 0; cell--)
+		{
+			float m = 0.0f;
+			float mx = 0.0f;
+			float my = 0.0f;
+			if (firstChild[cell] == NONE)
+			{
+				for (int node = firstNode[cell]; node != NONE; node = nextNode[node])
+				{
+					m += mass[node];
+					mx += mass[node] * x[node];
+					my += mass[node] * y[node];
+				}
+			}
+			else
+			{
+				for (int child = firstChild[cell]; child < firstChild[cell] + 4; child++)
+				{
+					m += cellMass[child];
+					mx += cellMass[child] * cellCenterX[child];
+					my += cellMass[child] * cellCenterY[child];
+				}
+			}
+			cellMass[cell] = m;
+			cellCenterX[cell] = m > 0.0f ? mx / m : 0.0f;
+			cellCenterY[cell] = m > 0.0f ? my / m : 0.0f;
+		}
+	}
+
+	private int createCell(float minX, float minY, float size)
+	{
+		if (cellCount == firstChild.length)
+		{
+			allocate(2 * cellCount);
+		}
+		int cell = cellCount++;
+		cellMinX[cell] = minX;
+		cellMinY[cell] = minY;
+		cellSize[cell] = size;
+		firstChild[cell] = NONE;
+		firstNode[cell] = NONE;
+		return cell;
+	}
+
+	private void allocate(int capacity)
+	{
+		if (firstChild == null)
+		{
+			cellMinX = new float[capacity];
+			cellMinY = new float[capacity];
+			cellSize = new float[capacity];
+			cellMass = new float[capacity];
+			cellCenterX = new float[capacity];
+			cellCenterY = new float[capacity];
+			firstChild = new int[capacity];
+			firstNode = new int[capacity];
+			return;
+		}
+		cellMinX = Arrays.copyOf(cellMinX, capacity);
+		cellMinY = Arrays.copyOf(cellMinY, capacity);
+		cellSize = Arrays.copyOf(cellSize, capacity);
+		cellMass = Arrays.copyOf(cellMass, capacity);
+		cellCenterX = Arrays.copyOf(cellCenterX, capacity);
+		cellCenterY = Arrays.copyOf(cellCenterY, capacity);
+		firstChild = Arrays.copyOf(firstChild, capacity);
+		firstNode = Arrays.copyOf(firstNode, capacity);
+	}
+}
@@ -0,0 +1,106 @@
+package com.osthus.rdfcmap.cmap.layout;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Determines the edges to remove so that a graph has no cycles when the direction of the edges is ignored, which gives a tree-like layout.
+ *
+ * Nodes and edges are given by index. The edges are visited in the given order and the connected components are tracked with a union-find structure: an edge
+ * whose ends are already connected closes a cycle and is removed. Self-loops and edges between two nodes that are already direct neighbours (cycles of two
+ * edges, e.g. a relation and its inverse) are kept, as the former path search did. Takes time almost linear in the number of nodes and edges and uses no
+ * recursion.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class CycleBreaker
+{
+	private final int numNodes;
+
+	private final int[] edgeSources;
+
+	private final int[] edgeTargets;
+
+	/**
+	 * @param numNodes
+	 * @param edgeSources
+	 *            index of the source node of each edge
+	 * @param edgeTargets
+	 *            index of the target node of each edge
+	 */
+	CycleBreaker(int numNodes, int[] edgeSources, int[] edgeTargets)
+	{
+		this.numNodes = numNodes;
+		this.edgeSources = edgeSources;
+		this.edgeTargets = edgeTargets;
+	}
+
+	/**
+	 * @return indices of the edges to remove
+	 */
+	BitSet determineEdgesToBreak()
+	{
+		int[] parent = new int[numNodes];
+		int[] size = new int[numNodes];
+		for (int node = 0; node < numNodes; node++)
+		{
+			parent[node] = node;
+			size[node] = 1;
+		}
+
+		Set<Long> neighbours = new HashSet<>();
+		BitSet edgesToBreak = new BitSet(edgeSources.length);
+		for (int edge = 0; edge < edgeSources.length; edge++)
+		{
+			int source = edgeSources[edge];
+			int target = edgeTargets[edge];
+			if (source == target)
+			{
+				continue;
+			}
+
+			boolean isNeighbour = !neighbours.add(pairKey(source, target));
+			int sourceRoot = find(parent, source);
+			int targetRoot = find(parent, target);
+			if (sourceRoot == targetRoot)
+			{
+				if (!isNeighbour)
+				{
+					edgesToBreak.set(edge);
+				}
+				continue;
+			}
+
+			if (size[sourceRoot] < size[targetRoot])
+			{
+				int swap = sourceRoot;
+				sourceRoot = targetRoot;
+				targetRoot = swap;
+			}
+			parent[targetRoot] = sourceRoot;
+			size[sourceRoot] += size[targetRoot];
+		}
+		return edgesToBreak;
+	}
+
+	/**
+	 * Root of the component of the node, halves the path on the way.
+	 */
+	private static int find(int[] parent, int node)
+	{
+		while (parent[node] != node)
+		{
+			parent[node] = parent[parent[node]];
+			node = parent[node];
+		}
+		return node;
+	}
+
+	private static Long pairKey(int node1, int node2)
+	{
+		int min = Math.min(node1, node2);
+		int max = Math.max(node1, node2);
+		return Long.valueOf(((long) min << 32) | (max & 0xffffffffL));
+	}
+}
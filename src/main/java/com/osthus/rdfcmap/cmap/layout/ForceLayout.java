@@ -0,0 +1,458 @@
+package com.osthus.rdfcmap.cmap.layout;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Force-directed layout in the style of ForceAtlas2 on primitive arrays.
+ *
+ * Linked nodes attract each other, all nodes repel each other and are pulled weakly to the center. Forces take the radius of the nodes into account, so
+ * nodes do not overlap. Repulsion is approximated with a Barnes-Hut quadtree and computed in parallel for large graphs. The speed of every node is adapted to
+ * its oscillation, the layout stops as soon as nodes hardly move anymore.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class ForceLayout
+{
+	private static final float SCALING_RATIO = 200.0f;
+
+	private static final float GRAVITY = 50.0f;
+
+	private static final float THETA = 1.2f;
+
+	private static final float JITTER_TOLERANCE = 1.0f;
+
+	private static final float MAX_DISPLACEMENT = 50.0f;
+
+	/**
+	 * mean displacement per iteration in pixels below which the layout has converged
+	 */
+	private static final float CONVERGENCE_DISPLACEMENT = 0.5f;
+
+	/**
+	 * number of iterations over which the movement of nodes is averaged
+	 */
+	private static final int CONVERGENCE_WINDOW = 50;
+
+	/**
+	 * relative decrease of the averaged movement that counts as a new minimum
+	 */
+	private static final float CONVERGENCE_DECREASE = 0.05f;
+
+	/**
+	 * number of windows without a new minimum of the averaged movement after which the layout has converged
+	 */
+	private static final int CONVERGENCE_PATIENCE = 10;
+
+	private static final int MIN_ITERATIONS = 50;
+
+	private static final int PARALLEL_THRESHOLD = 512;
+
+	private static final double GOLDEN_ANGLE = Math.PI * (3.0 - Math.sqrt(5.0));
+
+	private final int nodeCount;
+
+	private final float[] x;
+
+	private final float[] y;
+
+	private final float[] radius;
+
+	private final float[] mass;
+
+	private final int[] edgeSources;
+
+	private final int[] edgeTargets;
+
+	private final float[] dx;
+
+	private final float[] dy;
+
+	private final float[] oldDx;
+
+	private final float[] oldDy;
+
+	private final BarnesHutTree tree;
+
+	private float speed = 1.0f;
+
+	private float speedEfficiency = 1.0f;
+
+	/**
+	 * @param x
+	 *            initial x coordinates, updated by the layout
+	 * @param y
+	 *            initial y coordinates, updated by the layout
+	 * @param radius
+	 *            radius of every node
+	 * @param edgeSources
+	 *            first node of every edge
+	 * @param edgeTargets
+	 *            second node of every edge
+	 */
+	public ForceLayout(float[] x, float[] y, float[] radius, int[] edgeSources, int[] edgeTargets)
+	{
+		this.nodeCount = x.length;
+		this.x = x;
+		this.y = y;
+		this.radius = radius;
+		this.edgeSources = edgeSources;
+		this.edgeTargets = edgeTargets;
+
+		mass = new float[nodeCount];
+		for (int i = 0; i < nodeCount; i++)
+		{
+			mass[i] = 1.0f;
+		}
+		for (int e = 0; e < edgeSources.length; e++)
+		{
+			mass[edgeSources[e]] += 1.0f;
+			mass[edgeTargets[e]] += 1.0f;
+		}
+
+		dx = new float[nodeCount];
+		dy = new float[nodeCount];
+		oldDx = new float[nodeCount];
+		oldDy = new float[nodeCount];
+		tree = new BarnesHutTree(nodeCount);
+
+		normalizeInitialPositions();
+		breakSymmetry();
+	}
+
+	/**
+	 * Runs the layout until it converges, at most for the given time or number of iterations. The layout has converged if nodes hardly move anymore or if the
+	 * mean movement of nodes, averaged over windows of iterations, has not reached a new minimum for several windows, i.e. the remaining movement is jitter.
+	 *
+	 * @param maxIterations
+	 * @param maxNanos
+	 * @return number of iterations
+	 */
+	public int run(int maxIterations, long maxNanos)
+	{
+		if (nodeCount < 2)
+		{
+			return 0;
+		}
+
+		long start = System.nanoTime();
+		int iteration = 0;
+		float windowDisplacement = 0.0f;
+		float minWindowDisplacement = Float.MAX_VALUE;
+		int windowsWithoutDecrease = 0;
+		while (iteration < maxIterations)
+		{
+			float meanDisplacement = step();
+			iteration++;
+			if (iteration >= MIN_ITERATIONS && meanDisplacement < CONVERGENCE_DISPLACEMENT)
+			{
+				break;
+			}
+
+			windowDisplacement += meanDisplacement;
+			if (iteration % CONVERGENCE_WINDOW == 0)
+			{
+				windowDisplacement /= CONVERGENCE_WINDOW;
+				if (windowDisplacement < (1.0f - CONVERGENCE_DECREASE) * minWindowDisplacement)
+				{
+					minWindowDisplacement = windowDisplacement;
+					windowsWithoutDecrease = 0;
+				}
+				else if (++windowsWithoutDecrease >= CONVERGENCE_PATIENCE)
+				{
+					break;
+				}
+				windowDisplacement = 0.0f;
+			}
+
+			if (System.nanoTime() - start > maxNanos)
+			{
+				break;
+			}
+		}
+		return iteration;
+	}
+
+	/**
+	 * Computes all forces and moves the nodes once.
+	 *
+	 * @return mean displacement of nodes
+	 */
+	float step()
+	{
+		for (int i = 0; i < nodeCount; i++)
+		{
+			oldDx[i] = dx[i];
+			oldDy[i] = dy[i];
+		}
+
+		tree.build(x, y, mass);
+		if (nodeCount >= PARALLEL_THRESHOLD)
+		{
+			ForkJoinPool.commonPool().invoke(new RepulsionTask(0, nodeCount));
+		}
+		else
+		{
+			computeRepulsionAndGravity(0, nodeCount, new int[64]);
+		}
+		computeAttraction();
+		adjustSpeed();
+		return moveNodes();
+	}
+
+	private void computeRepulsionAndGravity(int from, int to, int[] stack)
+	{
+		for (int i = from; i < to; i++)
+		{
+			dx[i] = 0.0f;
+			dy[i] = 0.0f;
+			stack = computeRepulsion(i, stack);
+
+			// gravity of constant strength to the center
+			float distance = (float) Math.sqrt(x[i] * x[i] + y[i] * y[i]);
+			if (distance > 0.0f)
+			{
+				float factor = mass[i] * GRAVITY / distance;
+				dx[i] -= x[i] * factor;
+				dy[i] -= y[i] * factor;
+			}
+		}
+	}
+
+	private int[] computeRepulsion(int i, int[] stack)
+	{
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0)
+		{
+			int cell = stack[--top];
+			if (tree.cellMass[cell] <= 0.0f)
+			{
+				continue;
+			}
+
+			if (tree.firstChild[cell] == BarnesHutTree.NONE)
+			{
+				for (int j = tree.firstNode[cell]; j != BarnesHutTree.NONE; j = tree.nextNode[j])
+				{
+					if (j != i)
+					{
+						repulseFromNode(i, j);
+					}
+				}
+				continue;
+			}
+
+			float xDist = x[i] - tree.cellCenterX[cell];
+			float yDist = y[i] - tree.cellCenterY[cell];
+			float distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
+			if (distance > 0.0f && tree.cellSize[cell] / distance < THETA)
+			{
+				// far away cell acts as a single node at its center of mass
+				float factor = SCALING_RATIO * mass[i] * tree.cellMass[cell] / distance / distance;
+				dx[i] += xDist * factor;
+				dy[i] += yDist * factor;
+				continue;
+			}
+
+			if (top + 4 > stack.length)
+			{
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			}
+			for (int child = tree.firstChild[cell]; child < tree.firstChild[cell] + 4; child++)
+			{
+				stack[top++] = child;
+			}
+		}
+		return stack;
+	}
+
+	private void repulseFromNode(int i, int j)
+	{
+		float xDist = x[i] - x[j];
+		float yDist = y[i] - y[j];
+		float centerDistance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
+		if (centerDistance <= 0.0f)
+		{
+			return;
+		}
+
+		// distance between the borders of the nodes, overlapping nodes repel each other like nodes at a distance of one pixel
+		float distance = Math.max(centerDistance - radius[i] - radius[j], 1.0f);
+		float factor = SCALING_RATIO * mass[i] * mass[j] / distance / centerDistance;
+		dx[i] += xDist * factor;
+		dy[i] += yDist * factor;
+	}
+
+	private void computeAttraction()
+	{
+		for (int e = 0; e < edgeSources.length; e++)
+		{
+			int source = edgeSources[e];
+			int target = edgeTargets[e];
+			if (source == target)
+			{
+				continue;
+			}
+			float xDist = x[source] - x[target];
+			float yDist = y[source] - y[target];
+			float distance = (float) Math.sqrt(xDist * xDist + yDist * yDist) - radius[source] - radius[target];
+			if (distance > 0.0f)
+			{
+				dx[source] -= xDist;
+				dy[source] -= yDist;
+				dx[target] += xDist;
+				dy[target] += yDist;
+			}
+		}
+	}
+
+	private void adjustSpeed()
+	{
+		float totalSwinging = 0.0f;
+		float totalEffectiveTraction = 0.0f;
+		for (int i = 0; i < nodeCount; i++)
+		{
+			float swingingX = oldDx[i] - dx[i];
+			float swingingY = oldDy[i] - dy[i];
+			float tractionX = oldDx[i] + dx[i];
+			float tractionY = oldDy[i] + dy[i];
+			totalSwinging += mass[i] * (float) Math.sqrt(swingingX * swingingX + swingingY * swingingY);
+			totalEffectiveTraction += mass[i] * 0.5f * (float) Math.sqrt(tractionX * tractionX + tractionY * tractionY);
+		}
+
+		if (totalSwinging <= 0.0f)
+		{
+			return;
+		}
+
+		float estimatedOptimalJitterTolerance = 0.05f * (float) Math.sqrt(nodeCount);
+		float minJitterTolerance = (float) Math.sqrt(estimatedOptimalJitterTolerance);
+		float jitterTolerance = JITTER_TOLERANCE * Math.max(minJitterTolerance,
+				Math.min(10.0f, estimatedOptimalJitterTolerance * totalEffectiveTraction / ((float) nodeCount * (float) nodeCount)));
+
+		float minSpeedEfficiency = 0.05f;
+		if (totalEffectiveTraction > 0.0f && totalSwinging / totalEffectiveTraction > 2.0f)
+		{
+			if (speedEfficiency > minSpeedEfficiency)
+			{
+				speedEfficiency *= 0.5f;
+			}
+			jitterTolerance = Math.max(jitterTolerance, JITTER_TOLERANCE);
+		}
+
+		float targetSpeed = jitterTolerance * speedEfficiency * totalEffectiveTraction / totalSwinging;
+
+		if (totalSwinging > jitterTolerance * totalEffectiveTraction)
+		{
+			if (speedEfficiency > minSpeedEfficiency)
+			{
+				speedEfficiency *= 0.7f;
+			}
+		}
+		else if (speed < 1000.0f)
+		{
+			speedEfficiency *= 1.3f;
+		}
+
+		float maxRise = 0.5f;
+		speed = speed + Math.min(targetSpeed - speed, maxRise * speed);
+	}
+
+	private float moveNodes()
+	{
+		float totalDisplacement = 0.0f;
+		for (int i = 0; i < nodeCount; i++)
+		{
+			float swingingX = oldDx[i] - dx[i];
+			float swingingY = oldDy[i] - dy[i];
+			float swinging = mass[i] * (float) Math.sqrt(swingingX * swingingX + swingingY * swingingY);
+			float force = (float) Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+			if (force <= 0.0f)
+			{
+				continue;
+			}
+
+			float factor = 0.1f * speed / (1.0f + (float) Math.sqrt(speed * swinging));
+			factor = Math.min(factor * force, MAX_DISPLACEMENT) / force;
+			x[i] += dx[i] * factor;
+			y[i] += dy[i] * factor;
+			totalDisplacement += factor * force;
+		}
+		return totalDisplacement / nodeCount;
+	}
+
+	/**
+	 * Centers the initial positions and scales them to the expected size of the layout, so that the layout does not spend its iterations on pulling far away
+	 * nodes together or on pushing nodes apart.
+	 */
+	private void normalizeInitialPositions()
+	{
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		double area = 0.0;
+		for (int i = 0; i < nodeCount; i++)
+		{
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+			area += 4.0 * Math.max(1.0f, radius[i]) * Math.max(1.0f, radius[i]);
+		}
+
+		float extent = Math.max(maxX - minX, maxY - minY);
+		float scale = extent > 0.0f ? (float) (2.0 * Math.sqrt(area) / extent) : 1.0f;
+		float centerX = 0.5f * (minX + maxX);
+		float centerY = 0.5f * (minY + maxY);
+		for (int i = 0; i < nodeCount; i++)
+		{
+			x[i] = (x[i] - centerX) * scale;
+			y[i] = (y[i] - centerY) * scale;
+		}
+	}
+
+	/**
+	 * Nodes at the same position have no direction to repel each other and nodes on a line, e.g. of the diagonal initial layout, are only pushed along that
+	 * line. Every node is therefore moved by a small offset that differs from node to node, the result is reproducible.
+	 */
+	private void breakSymmetry()
+	{
+		for (int i = 0; i < nodeCount; i++)
+		{
+			double angle = i * GOLDEN_ANGLE;
+			double distance = 0.5 * Math.max(1.0f, radius[i]) * ((i * 0.618034) % 1.0);
+			x[i] += (float) (distance * Math.cos(angle));
+			y[i] += (float) (distance * Math.sin(angle));
+		}
+	}
+
+	private class RepulsionTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		private RepulsionTask(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= PARALLEL_THRESHOLD / 2)
+			{
+				computeRepulsionAndGravity(from, to, new int[64]);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RepulsionTask(from, middle), new RepulsionTask(middle, to));
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.osthus.rdfcmap.cmap.layout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.osthus.rdfcmap.RdfCmap;
+import com.osthus.rdfcmap.helper.ConceptRelation;
+import com.osthus.rdfcmap.util.AFOUtil;
+import com.osthus.rdfcmap.util.VizUtil;
+
+/**
+ * LayoutUtil
+ *
+ * Steps shared by all layouts that do not depend on the layout algorithm.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class LayoutUtil
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	/**
+	 * Positions the label of every link at the center of the concepts it connects. Labels are moved as long as they overlap with concepts, and optionally
+	 * with other labels. Positions are read from the model once and all new positions are written back at the end.
+	 *
+	 * @param model
+	 * @param link2conceptRelations
+	 *            concepts connected by every link
+	 * @return model with updated locations of links
+	 */
+	static Model updateLinkLocations(Model model, Map<Resource, ConceptRelation> link2conceptRelations)
+	{
+		log.info("updating link locations.");
+		LinkLabelPlacer linkLabelPlacer = new LinkLabelPlacer();
+		Map<Resource, int[]> conceptPositions = new HashMap<>();
+		ResIterator conceptIterator = model.listSubjectsWithProperty(AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT);
+		while (conceptIterator.hasNext())
+		{
+			Resource concept = conceptIterator.next();
+			int[] position = readPosition(concept);
+			conceptPositions.put(concept, position);
+			linkLabelPlacer.addOccupied(position[0], position[1]);
+		}
+
+		if (RdfCmap.avoidLinkLinkOverlap)
+		{
+			log.debug("Avoiding overlap between links.");
+		}
+
+		log.debug("link positions:");
+		List<Statement> statementsToRemove = new ArrayList<>();
+		List<Statement> statementsToAdd = new ArrayList<>();
+		for (Entry<Resource, ConceptRelation> entry : link2conceptRelations.entrySet())
+		{
+			Resource link = entry.getKey();
+			int[] from = getPosition(entry.getValue().from, conceptPositions);
+			int[] to = getPosition(entry.getValue().to, conceptPositions);
+			int x = (int) (Math.round(0.5 * (from[0] + to[0])));
+			int y = (int) (Math.round(0.5 * (from[1] + to[1])));
+
+			int[] position = linkLabelPlacer.place(x, y);
+			if (RdfCmap.avoidLinkLinkOverlap)
+			{
+				linkLabelPlacer.addOccupied(position[0], position[1]);
+			}
+
+			if (log.isDebugEnabled())
+			{
+				String size = link.hasProperty(VizUtil.AFV_WIDTH) ? link.getProperty(VizUtil.AFV_WIDTH).getString() : StringUtils.EMPTY;
+				log.debug(String.format(" X Y %14d %14d %14s %10s", x, y, size, determineNodeLabel(link.getURI(), model)));
+				log.debug(String.format(" X Y %14d %14d %14s %10s", position[0], position[1], size, determineNodeLabel(link.getURI(), model)));
+			}
+
+			statementsToRemove.addAll(model.listStatements(link, VizUtil.AFV_X_POSITION, (RDFNode) null).toList());
+			statementsToRemove.addAll(model.listStatements(link, VizUtil.AFV_Y_POSITION, (RDFNode) null).toList());
+			statementsToAdd.add(ResourceFactory.createStatement(link, VizUtil.AFV_X_POSITION, ResourceFactory.createTypedLiteral(String.valueOf(position[0]))));
+			statementsToAdd.add(ResourceFactory.createStatement(link, VizUtil.AFV_Y_POSITION, ResourceFactory.createTypedLiteral(String.valueOf(position[1]))));
+		}
+
+		model.remove(statementsToRemove);
+		model.add(statementsToAdd);
+		return model;
+	}
+
+	private static int[] getPosition(Resource resource, Map<Resource, int[]> conceptPositions)
+	{
+		int[] position = conceptPositions.get(resource);
+		if (position == null)
+		{
+			position = readPosition(resource);
+			conceptPositions.put(resource, position);
+		}
+		return position;
+	}
+
+	private static int[] readPosition(Resource resource)
+	{
+		return new int[] { Integer.parseInt(resource.getProperty(VizUtil.AFV_X_POSITION).getString()),
+				Integer.parseInt(resource.getProperty(VizUtil.AFV_Y_POSITION).getString()) };
+	}
+
+	static String determineNodeLabel(String uri, Model model)
+	{
+		Resource resource = model.getResource(uri);
+		String label = StringUtils.EMPTY;
+		if (model.listStatements(resource, AFOUtil.DCT_TITLE, (RDFNode) null).hasNext())
+		{
+			label = model.listStatements(resource, AFOUtil.DCT_TITLE, (RDFNode) null).next().getString();
+		}
+
+		if (model.listStatements(resource, AFOUtil.SKOS_PREF_LABEL, (RDFNode) null).hasNext())
+		{
+			label = model.listStatements(resource, AFOUtil.SKOS_PREF_LABEL, (RDFNode) null).next().getString();
+		}
+
+		if (model.listStatements(resource, AFOUtil.RDFS_LABEL, (RDFNode) null).hasNext())
+		{
+			label = model.listStatements(resource, AFOUtil.RDFS_LABEL, (RDFNode) null).next().getString();
+		}
+
+		if (!label.isEmpty())
+		{
+			label = label.replaceAll("\"", "\\\\\"");
+			return label;
+		}
+
+		return uri;
+	}
+}
@@ -3,23 +3,18 @@ package com.osthus.rdfcmap.cmap.layout;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.gephi.graph.api.DirectedGraph;
@@ -44,9 +39,8 @@ import org.openide.util.Lookup;
 
 import com.osthus.rdfcmap.RdfCmap;
 import com.osthus.rdfcmap.helper.ConceptRelation;
-import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
-import com.osthus.rdfcmap.util.RdfUtil;
+import com.osthus.rdfcmap.util.ConnectionGraph;
 import com.osthus.rdfcmap.util.VizUtil;
 
 /**
@@ -61,9 +55,16 @@ import com.osthus.rdfcmap.util.VizUtil;
 public class Layouter
 {
 	private static final Logger log = LogManager.getLogger("Logger");
-	private static Map<Resource, ConceptRelation> link2conceptRelations = new HashMap<Resource, ConceptRelation>();
 
-	public static Model optimizeLayout(Model model)
+	/**
+	 * Gephi keeps a single current project and workspace per JVM, layouts of several models (batch mode) are therefore computed one after another.
+	 *
+	 * @param model
+	 * @param connectionGraph
+	 *            connections of the model
+	 * @return model with updated locations
+	 */
+	public static synchronized Model optimizeLayout(Model model, ConnectionGraph connectionGraph)
 	{
 		// Init a project - and therefore a workspace
 		ProjectController pc = Lookup.getDefault().lookup(ProjectController.class);
@@ -83,11 +84,11 @@ public class Layouter
 
 		if (RdfCmap.layoutLinks)
 		{
-			node2UiConcept = createGraphFromModel(model, graphModel, directedGraph);
+			node2UiConcept = createGraphFromModel(model, connectionGraph, graphModel, directedGraph);
 		}
 		else
 		{
-			node2UiConcept = createGraphFromConceptsInModel(model, graphModel, directedGraph);
+			node2UiConcept = createGraphFromConceptsInModel(model, connectionGraph, graphModel, directedGraph);
 		}
 
 		log.info("Nodes: " + directedGraph.getNodeCount());
@@ -152,160 +153,40 @@ public class Layouter
 
 		if (!RdfCmap.layoutLinks)
 		{
-			model = updateLinkLocations(model);
+			model = LayoutUtil.updateLinkLocations(model, connectionGraph.getConceptRelations());
 		}
 
-		log.info("Layout finished. Exporting snapshot to autolayout.pdf");
-		PreviewModel previewModel = Lookup.getDefault().lookup(PreviewController.class).getModel();
-		previewModel.getProperties().putValue(PreviewProperty.EDGE_CURVED, Boolean.FALSE);
-		previewModel.getProperties().putValue(PreviewProperty.NODE_LABEL_FONT,
-				previewModel.getProperties().getFontValue(PreviewProperty.NODE_LABEL_FONT).deriveFont(8));
-		previewModel.getProperties().putValue(PreviewProperty.SHOW_NODE_LABELS, Boolean.TRUE);
-		ExportController ec = Lookup.getDefault().lookup(ExportController.class);
-		try
+		if (RdfCmap.exportLayoutSnapshot)
 		{
-			ec.exportFile(new File("autolayout.pdf"));
-		}
-		catch (IOException ex)
-		{
-			ex.printStackTrace();
-		}
-		log.info("Export done.");
-
-		return model;
-	}
-
-	private static Model updateLinkLocations(Model model)
-	{
-		log.info("updating link locations.");
-		List<Integer> xcoord = new ArrayList<>();
-		List<Integer> ycoord = new ArrayList<>();
-
-		StmtIterator stmtIterator = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT);
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			xcoord.add(Integer.valueOf(model.listStatements(statement.getSubject(), VizUtil.AFV_X_POSITION, (RDFNode) null).next().getString()));
-			ycoord.add(Integer.valueOf(model.listStatements(statement.getSubject(), VizUtil.AFV_Y_POSITION, (RDFNode) null).next().getString()));
-		}
-
-		Collections.sort(xcoord);
-		Collections.sort(ycoord);
-
-		log.debug("link positions:");
-		List<LinkPosition> linkPositions = new ArrayList<LinkPosition>();
-		for (Entry<Resource, ConceptRelation> entry : link2conceptRelations.entrySet())
-		{
-			Resource link = entry.getKey();
-			Resource from = entry.getValue().from;
-			Resource to = entry.getValue().to;
-			int size = Integer.valueOf(model.listStatements(link, VizUtil.AFV_WIDTH, (RDFNode) null).next().getString());
-			int x1 = Integer.valueOf(model.listStatements(from, VizUtil.AFV_X_POSITION, (RDFNode) null).next().getString());
-			int y1 = Integer.valueOf(model.listStatements(from, VizUtil.AFV_Y_POSITION, (RDFNode) null).next().getString());
-			int x2 = Integer.valueOf(model.listStatements(to, VizUtil.AFV_X_POSITION, (RDFNode) null).next().getString());
-			int y2 = Integer.valueOf(model.listStatements(to, VizUtil.AFV_Y_POSITION, (RDFNode) null).next().getString());
-			int x = (int) (Math.round(0.5 * (x1 + x2)));
-			int y = (int) (Math.round(0.5 * (y1 + y2)));
-			log.debug(String.format(" X Y %14d %14d %14d %10s", x, y, size, determineNodeLabel(link.getURI(), model)));
-
-			x = removeOverlap(xcoord, x);
-			y = removeOverlap(ycoord, y);
-
-			log.debug(String.format(" X Y %14d %14d %14d %10s", x, y, size, determineNodeLabel(link.getURI(), model)));
-			model = CmapUtil.createOrUpdateLiteralValue(model, link, VizUtil.AFV_X_POSITION, String.valueOf(x));
-			model = CmapUtil.createOrUpdateLiteralValue(model, link, VizUtil.AFV_Y_POSITION, String.valueOf(y));
-			linkPositions.add(new LinkPosition(link, x, y));
-		}
-
-		if (RdfCmap.avoidLinkLinkOverlap)
-		{
-			log.debug("Avoiding overlap between links.");
-			List<Resource> handledLinks = new ArrayList<>();
-			int counter = 1;
-			for (LinkPosition linkPosition : linkPositions)
+			log.info("Layout finished. Exporting snapshot to autolayout.pdf");
+			PreviewModel previewModel = Lookup.getDefault().lookup(PreviewController.class).getModel();
+			previewModel.getProperties().putValue(PreviewProperty.EDGE_CURVED, Boolean.FALSE);
+			previewModel.getProperties().putValue(PreviewProperty.NODE_LABEL_FONT,
+					previewModel.getProperties().getFontValue(PreviewProperty.NODE_LABEL_FONT).deriveFont(8));
+			previewModel.getProperties().putValue(PreviewProperty.SHOW_NODE_LABELS, Boolean.TRUE);
+			ExportController ec = Lookup.getDefault().lookup(ExportController.class);
+			try
 			{
-				Resource link = linkPosition.getLink();
-				int size = Integer.valueOf(model.listStatements(link, VizUtil.AFV_WIDTH, (RDFNode) null).next().getString());
-				int x = linkPosition.getX();
-				int y = linkPosition.getY();
-
-				List<Integer> linkXcoord = new ArrayList<>();
-				List<Integer> linkYcoord = new ArrayList<>();
-				for (LinkPosition otherLinkPosition : linkPositions)
-				{
-					if (linkPosition.getLink().equals(otherLinkPosition.getLink()) || handledLinks.contains(otherLinkPosition.getLink()))
-					{
-						continue;
-					}
-					linkXcoord.add(otherLinkPosition.getX());
-					linkYcoord.add(otherLinkPosition.getY());
-				}
-
-				x = removeOverlap(linkXcoord, x);
-				y = removeOverlap(linkYcoord, y);
-
-				log.debug(String.format(" X Y %14d %14d %14d %10s %6d/%d", x, y, size, determineNodeLabel(link.getURI(), model), counter++,
-						linkPositions.size()));
-				model = CmapUtil.createOrUpdateLiteralValue(model, link, VizUtil.AFV_X_POSITION, String.valueOf(x));
-				model = CmapUtil.createOrUpdateLiteralValue(model, link, VizUtil.AFV_Y_POSITION, String.valueOf(y));
-				handledLinks.add(link);
+				ec.exportFile(new File("autolayout.pdf"));
 			}
-		}
-		return model;
-	}
-
-	private static int removeOverlap(List<Integer> coord, int pos)
-	{
-		int hit = -1;
-		for (int i = 0; i < coord.size(); i++)
-		{
-			if (coord.get(i) >= pos)
+			catch (IOException ex)
 			{
-				hit = coord.get(i);
-				break;
+				ex.printStackTrace();
 			}
+			log.info("Export done.");
 		}
 
-		if (hit > 0)
-		{
-			int overlap = 5;
-			for (int j = 0; j <= 20; j = j + 1)
-			{
-				if (hit > 0 && Math.abs(hit - pos) <= overlap)
-				{
-					pos = pos + 10;
-				}
-				hit = -1;
-				for (int i = 0; i < coord.size(); i++)
-				{
-					if (coord.get(i) >= pos)
-					{
-						hit = coord.get(i);
-						break;
-					}
-				}
-
-				if (hit < 0)
-				{
-					break;
-				}
-
-			}
-		}
-		return pos;
+		return model;
 	}
 
-	private static Map<Node, Resource> createGraphFromModel(Model model, GraphModel graphModel, DirectedGraph directedGraph)
+	private static Map<Node, Resource> createGraphFromModel(Model model, ConnectionGraph connectionGraph, GraphModel graphModel, DirectedGraph directedGraph)
 	{
 		Map<Resource, Node> uiConcept2Node = new HashMap<>();
 		Map<Node, Resource> node2UiConcept = new HashMap<>();
-		StmtIterator stmtIterator = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION);
-		while (stmtIterator.hasNext())
+		for (Resource connection : connectionGraph.getConnections())
 		{
-			Statement statement = stmtIterator.next();
-			Resource connection = statement.getSubject();
-			Resource from = model.listStatements(connection, VizUtil.AFV_CONNECTS_FROM, (RDFNode) null).next().getResource();
-			Resource to = model.listStatements(connection, VizUtil.AFV_CONNECTS_TO, (RDFNode) null).next().getResource();
+			Resource from = connectionGraph.getConnectsFrom(connection);
+			Resource to = connectionGraph.getConnectsTo(connection);
 
 			String fromX = model.listStatements(from, VizUtil.AFV_X_POSITION, (RDFNode) null).next().getString();
 			String fromY = model.listStatements(from, VizUtil.AFV_Y_POSITION, (RDFNode) null).next().getString();
@@ -327,7 +208,7 @@ public class Layouter
 			if (!uiConcept2Node.containsKey(from))
 			{
 				fromNode = graphModel.factory().newNode(String.valueOf(uiConcept2Node.size()));
-				fromNode.setLabel(determineNodeLabel(from.getURI(), model));
+				fromNode.setLabel(LayoutUtil.determineNodeLabel(from.getURI(), model));
 				if (fromSize > 0.0f && RdfCmap.isAutoLayout)
 				{
 					fromNode.setSize(Math.max(Math.min(500.0f / fromSize, 100.0f), 500.0f));
@@ -352,7 +233,7 @@ public class Layouter
 			if (!uiConcept2Node.containsKey(to))
 			{
 				toNode = graphModel.factory().newNode(String.valueOf(uiConcept2Node.size()));
-				toNode.setLabel(determineNodeLabel(to.getURI(), model));
+				toNode.setLabel(LayoutUtil.determineNodeLabel(to.getURI(), model));
 				if (toSize > 0.0f && RdfCmap.isAutoLayout)
 				{
 					toNode.setSize(Math.max(Math.min(500.0f / toSize, 100.0f), 500.0f));
@@ -381,14 +262,13 @@ public class Layouter
 		return node2UiConcept;
 	}
 
-	private static Map<Node, Resource> createGraphFromConceptsInModel(Model model, GraphModel graphModel, DirectedGraph directedGraph)
+	private static Map<Node, Resource> createGraphFromConceptsInModel(Model model, ConnectionGraph connectionGraph, GraphModel graphModel,
+			DirectedGraph directedGraph)
 	{
-		link2conceptRelations = RdfUtil.determineConceptRelations(model);
-
 		Map<Resource, Node> uiConcept2Node = new HashMap<>();
 		Map<Node, Resource> node2UiConcept = new HashMap<>();
 
-		for (Entry<Resource, ConceptRelation> entry : link2conceptRelations.entrySet())
+		for (Entry<Resource, ConceptRelation> entry : connectionGraph.getConceptRelations().entrySet())
 		{
 			Resource from = entry.getValue().from;
 			Resource to = entry.getValue().to;
@@ -412,7 +292,7 @@ public class Layouter
 			if (!uiConcept2Node.containsKey(from))
 			{
 				fromNode = graphModel.factory().newNode(String.valueOf(uiConcept2Node.size()));
-				fromNode.setLabel(determineNodeLabel(from.getURI(), model));
+				fromNode.setLabel(LayoutUtil.determineNodeLabel(from.getURI(), model));
 				if (fromSize > 0.0f && RdfCmap.isAutoLayout)
 				{
 					fromNode.setSize(Math.max(Math.min(500.0f / fromSize, 100.0f), 500.0f));
@@ -439,7 +319,7 @@ public class Layouter
 				toNode = graphModel.factory().newNode(String.valueOf(uiConcept2Node.size()));
 				if (to.isURIResource())
 				{
-					toNode.setLabel(determineNodeLabel(to.getURI(), model));
+					toNode.setLabel(LayoutUtil.determineNodeLabel(to.getURI(), model));
 				}
 				if (toSize > 0.0f && RdfCmap.isAutoLayout)
 				{
@@ -469,87 +349,38 @@ public class Layouter
 		return node2UiConcept;
 	}
 
-	private static String determineNodeLabel(String uri, Model model)
+	private static GraphModel determineEdgesToBreakCycles(DirectedGraph directedGraph, GraphModel graphModel)
 	{
-		Resource resource = model.getResource(uri);
-		String label = StringUtils.EMPTY;
-		if (model.listStatements(resource, AFOUtil.DCT_TITLE, (RDFNode) null).hasNext())
-		{
-			label = model.listStatements(resource, AFOUtil.DCT_TITLE, (RDFNode) null).next().getString();
-		}
-
-		if (model.listStatements(resource, AFOUtil.SKOS_PREF_LABEL, (RDFNode) null).hasNext())
-		{
-			label = model.listStatements(resource, AFOUtil.SKOS_PREF_LABEL, (RDFNode) null).next().getString();
-		}
-
-		if (model.listStatements(resource, AFOUtil.RDFS_LABEL, (RDFNode) null).hasNext())
+		Map<Node, Integer> node2Index = new HashMap<>();
+		for (Node node : directedGraph.getNodes())
 		{
-			label = model.listStatements(resource, AFOUtil.RDFS_LABEL, (RDFNode) null).next().getString();
+			node2Index.put(node, node2Index.size());
 		}
 
-		if (!label.isEmpty())
+		List<Edge> edges = new ArrayList<>(directedGraph.getEdges().toCollection());
+		int[] edgeSources = new int[edges.size()];
+		int[] edgeTargets = new int[edges.size()];
+		for (int i = 0; i < edges.size(); i++)
 		{
-			label = label.replaceAll("\"", "\\\\\"");
-			return label;
+			edgeSources[i] = node2Index.get(edges.get(i).getSource());
+			edgeTargets[i] = node2Index.get(edges.get(i).getTarget());
 		}
 
-		return uri;
-	}
-
-	private static GraphModel determineEdgesToBreakCycles(DirectedGraph directedGraph, GraphModel graphModel)
-	{
+		BitSet edgeIndicesToBreak = new CycleBreaker(node2Index.size(), edgeSources, edgeTargets).determineEdgesToBreak();
 		Set<Edge> edgesToBreak = new HashSet<>();
-		LinkedHashSet<Node> visited = new LinkedHashSet<>();
-		BreakInfo breakInfo = new BreakInfo(visited, edgesToBreak);
-		int numNodes = directedGraph.getNodes().toCollection().size();
-		int nodeCounter = 1;
-		for (Node startNode : directedGraph.getNodes())
+		for (int i = edgeIndicesToBreak.nextSetBit(0); i >= 0; i = edgeIndicesToBreak.nextSetBit(i + 1))
 		{
-			log.info("start node (" + nodeCounter++ + "/" + numNodes + "): " + startNode.getLabel());
-			visited = breakInfo.getVisited();
-			visited.add(startNode);
-			breakInfo.setVisitedNodes(visited);
-
-			for (Edge outEdge : directedGraph.getOutEdges(startNode))
+			Edge edge = edges.get(i);
+			if (log.isDebugEnabled())
 			{
-				if (breakInfo.getEdgesToBreak().contains(outEdge))
-				{
-					log.info("skip broken edge: " + outEdge.getSource().getLabel() + "/" + outEdge.getSource().getId() + "->" + outEdge.getTarget().getLabel()
-							+ "/" + outEdge.getTarget().getId());
-					continue;
-				}
-
-				if (visited.contains(outEdge.getTarget()))
-				{
-					log.info("skip start from visited node: " + outEdge.getTarget().getLabel() + "/" + outEdge.getTarget().getId());
-					continue;
-				}
-
-				breakInfo = follow(startNode, outEdge.getTarget(), directedGraph, breakInfo);
-			}
-
-			for (Edge inEdge : directedGraph.getInEdges(startNode))
-			{
-				if (breakInfo.getEdgesToBreak().contains(inEdge))
-				{
-					log.info("skip broken edge: " + inEdge.getSource().getLabel() + "/" + inEdge.getSource().getId() + "->" + inEdge.getTarget().getLabel()
-							+ "/" + inEdge.getTarget().getId());
-					continue;
-				}
-
-				if (visited.contains(inEdge.getSource()))
-				{
-					log.info("skip start from visited node: " + inEdge.getSource().getLabel() + "/" + inEdge.getSource().getId());
-					continue;
-				}
-
-				breakInfo = follow(startNode, inEdge.getTarget(), directedGraph, breakInfo);
+				log.debug("Edge to break: " + edge.getSource().getLabel() + "/" + edge.getSource().getId() + " --> " + edge.getTarget().getLabel() + "/"
+						+ edge.getTarget().getId());
 			}
+			edgesToBreak.add(edge);
 		}
 
 		graphModel = createGraphModelWithUpdatedDirectedGraph(directedGraph, edgesToBreak, graphModel);
-		log.info("Found " + edgesToBreak.size() + " cycles.");
+		log.info("Found " + edgesToBreak.size() + " edges to break cycles.");
 		return graphModel;
 	}
 
@@ -595,163 +426,6 @@ public class Layouter
 		return graphModel;
 	}
 
-	private static BreakInfo follow(Node startNode, Node currentNode, DirectedGraph directedGraph, BreakInfo breakInfo)
-	{
-		if (currentNode.equals(startNode))
-		{
-			return breakInfo;
-		}
-
-		LinkedHashSet<Node> visitedNodes = breakInfo.getVisited();
-		Set<Edge> edgesToBreak = breakInfo.getEdgesToBreak();
-
-		StringBuilder sb = new StringBuilder();
-		if (log.isDebugEnabled())
-		{
-			sb.append("-> ");
-			for (int i = 0; i < visitedNodes.size(); i++)
-			{
-				sb.append("    ");
-			}
-		}
-		String indent = sb.toString();
-
-		log.debug(indent + "(" + currentNode.getLabel() + "/" + currentNode.getId() + ") (" + printVisitedNodes(visitedNodes) + ")");
-		for (Edge outEdge : directedGraph.getOutEdges(currentNode))
-		{
-			if (edgesToBreak.contains(outEdge))
-			{
-				log.info(indent + "skip broken edge: " + outEdge.getSource().getLabel() + "/" + outEdge.getSource().getId() + "->"
-						+ outEdge.getTarget().getLabel() + "/" + outEdge.getTarget().getId());
-				continue;
-			}
-			Node nextNode = outEdge.getTarget();
-			log.debug(indent + "(" + currentNode.getLabel() + "/" + currentNode.getId() + ") OUT: " + nextNode.getLabel() + " ("
-					+ printVisitedNodes(visitedNodes) + ")");
-
-			if (startNode.equals(nextNode) && visitedNodes.size() >= 2 && !isFirstNeighbour(currentNode, visitedNodes))
-			{
-				log.info(indent + "Found cycle! Edge to break: " + startNode.getLabel() + "/" + startNode.getId() + " --> " + currentNode.getLabel() + "/"
-						+ currentNode.getId());
-				edgesToBreak.add(outEdge);
-				breakInfo.setEdgesToBreak(edgesToBreak);
-				continue;
-			}
-
-			if (visitedNodes.contains(nextNode) && isCycleToNodeOnPath(nextNode, visitedNodes))
-			{
-				log.info(indent + "Found cycle! Edge to break: " + currentNode.getLabel() + "/" + currentNode.getId() + " --> " + nextNode.getLabel() + "/"
-						+ nextNode.getId());
-				edgesToBreak.add(outEdge);
-				breakInfo.setEdgesToBreak(edgesToBreak);
-				continue;
-			}
-
-			if (visitedNodes.contains(nextNode))
-			{
-				continue;
-			}
-
-			visitedNodes.add(currentNode);
-			breakInfo.setVisitedNodes(visitedNodes);
-
-			breakInfo = follow(startNode, nextNode, directedGraph, breakInfo);
-		}
-
-		visitedNodes = breakInfo.getVisited();
-		edgesToBreak = breakInfo.getEdgesToBreak();
-
-		for (Edge inEdge : directedGraph.getInEdges(currentNode))
-		{
-			if (edgesToBreak.contains(inEdge))
-			{
-				log.info(indent + "skip broken edge: " + inEdge.getSource().getLabel() + "/" + inEdge.getSource().getId() + "->" + inEdge.getTarget().getLabel()
-						+ "/" + inEdge.getTarget().getId());
-				continue;
-			}
-			Node nextNode = inEdge.getSource();
-			log.debug(indent + "(" + currentNode.getLabel() + "/" + currentNode.getId() + ") IN : " + nextNode.getLabel() + " ("
-					+ printVisitedNodes(visitedNodes) + ")");
-
-			if (startNode.equals(nextNode) && visitedNodes.size() >= 2 && !isFirstNeighbour(currentNode, visitedNodes))
-			{
-				log.info(indent + "Found cycle! Edge to break: " + startNode.getLabel() + "/" + startNode.getId() + " --> " + currentNode.getLabel() + "/"
-						+ currentNode.getId());
-				edgesToBreak.add(inEdge);
-				breakInfo.setEdgesToBreak(edgesToBreak);
-				continue;
-			}
-
-			if (visitedNodes.contains(nextNode) && isCycleToNodeOnPath(nextNode, visitedNodes))
-			{
-				log.info(indent + "Found cycle! Edge to break: " + currentNode.getLabel() + "/" + currentNode.getId() + " --> " + nextNode.getLabel() + "/"
-						+ nextNode.getId());
-				edgesToBreak.add(inEdge);
-				breakInfo.setEdgesToBreak(edgesToBreak);
-				continue;
-			}
-
-			if (visitedNodes.contains(nextNode))
-			{
-				continue;
-			}
-
-			visitedNodes.add(currentNode);
-			breakInfo.setVisitedNodes(visitedNodes);
-
-			breakInfo = follow(startNode, nextNode, directedGraph, breakInfo);
-		}
-
-		return breakInfo;
-	}
-
-	private static boolean isCycleToNodeOnPath(Node node, LinkedHashSet<Node> visitedNodes)
-	{
-		List<Node> nodesAsList = new ArrayList<>(visitedNodes);
-		int currentPosition = visitedNodes.size();
-		int nodePosition = nodesAsList.indexOf(node);
-		if (currentPosition - nodePosition >= 4)
-		{
-			return true;
-		}
-		return false;
-	}
-
-	private static boolean isFirstNeighbour(Node currentNode, LinkedHashSet<Node> visitedNodes)
-	{
-		Iterator<Node> iterator = visitedNodes.iterator();
-		if (!iterator.hasNext())
-		{
-			return false;
-		}
-
-		Node node = iterator.next();
-		if (!iterator.hasNext())
-		{
-			return false;
-		}
-
-		node = iterator.next();
-		if (node.equals(currentNode))
-		{
-			return true;
-		}
-
-		return false;
-	}
-
-	private static String printVisitedNodes(LinkedHashSet<Node> visitedNodes)
-	{
-		List<String> visitedNodeLabels = new ArrayList<>();
-		for (Iterator<Node> iterator = visitedNodes.iterator(); iterator.hasNext();)
-		{
-			Node node = iterator.next();
-			visitedNodeLabels.add(node.getLabel() + "/" + node.getId());
-		}
-
-		return StringUtils.join(visitedNodeLabels, " - ");
-	}
-
 	private static GraphModel doGraphVizLayout(GraphModel graphModel)
 	{
 		log.info(
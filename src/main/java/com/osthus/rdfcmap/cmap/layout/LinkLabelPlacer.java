@@ -0,0 +1,108 @@
+package com.osthus.rdfcmap.cmap.layout;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Moves link labels away from occupied positions.
+ *
+ * Occupied positions (centers of concepts and, optionally, of labels placed before) are stored in primitive arrays and indexed by a uniform grid with cells
+ * of the size of the overlap window, so finding a collision looks at no more than four cells. A label collides if an occupied position is within the overlap
+ * distance in both directions; it is then shifted diagonally by a fixed step until it is free or the maximum number of steps is reached.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class LinkLabelPlacer
+{
+	static final int OVERLAP = 5;
+
+	static final int STEP = 10;
+
+	static final int MAX_STEPS = 21;
+
+	private static final int CELL_SIZE = 2 * OVERLAP + 1;
+
+	private int[] xs = new int[256];
+
+	private int[] ys = new int[256];
+
+	private int size = 0;
+
+	private final Map<Long, int[]> cells = new HashMap<>();
+
+	void addOccupied(int x, int y)
+	{
+		if (size == xs.length)
+		{
+			xs = Arrays.copyOf(xs, 2 * size);
+			ys = Arrays.copyOf(ys, 2 * size);
+		}
+		xs[size] = x;
+		ys[size] = y;
+
+		Long key = cellKey(Math.floorDiv(x, CELL_SIZE), Math.floorDiv(y, CELL_SIZE));
+		int[] cell = cells.get(key);
+		if (cell == null)
+		{
+			// first element holds the number of points of the cell
+			cell = new int[4];
+		}
+		else if (cell[0] + 1 == cell.length)
+		{
+			cell = Arrays.copyOf(cell, 2 * cell.length);
+		}
+		cell[++cell[0]] = size;
+		cells.put(key, cell);
+		size++;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return free position at or near the given position, {x, y}
+	 */
+	int[] place(int x, int y)
+	{
+		for (int step = 0; step < MAX_STEPS && isOccupied(x, y); step++)
+		{
+			x += STEP;
+			y += STEP;
+		}
+		return new int[] { x, y };
+	}
+
+	private boolean isOccupied(int x, int y)
+	{
+		int minCellX = Math.floorDiv(x - OVERLAP, CELL_SIZE);
+		int maxCellX = Math.floorDiv(x + OVERLAP, CELL_SIZE);
+		int minCellY = Math.floorDiv(y - OVERLAP, CELL_SIZE);
+		int maxCellY = Math.floorDiv(y + OVERLAP, CELL_SIZE);
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+		{
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++)
+			{
+				int[] cell = cells.get(cellKey(cellX, cellY));
+				if (cell == null)
+				{
+					continue;
+				}
+
+				for (int i = 1; i <= cell[0]; i++)
+				{
+					int point = cell[i];
+					if (Math.abs(xs[point] - x) <= OVERLAP && Math.abs(ys[point] - y) <= OVERLAP)
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static Long cellKey(int cellX, int cellY)
+	{
+		return Long.valueOf(((long) cellX << 32) | (cellY & 0xffffffffL));
+	}
+}
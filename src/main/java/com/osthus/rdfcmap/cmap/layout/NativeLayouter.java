@@ -0,0 +1,150 @@
+package com.osthus.rdfcmap.cmap.layout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.osthus.rdfcmap.RdfCmap;
+import com.osthus.rdfcmap.helper.ConceptRelation;
+import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.ConnectionGraph;
+import com.osthus.rdfcmap.util.VizUtil;
+
+/**
+ * NativeLayouter
+ *
+ * Layouts the RDF model with the built-in {@link ForceLayout}, without gephi. Nodes and edges are taken from the model in the same way as by
+ * {@link Layouter}, the size of a node is given by the width and height of its concept.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class NativeLayouter
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final float DEFAULT_RADIUS = 50.0f;
+
+	private static final int MAX_ITERATIONS = 10000;
+
+	/**
+	 * @param model
+	 * @param connectionGraph
+	 *            connections of the model
+	 * @return model with updated locations
+	 */
+	public static Model optimizeLayout(Model model, ConnectionGraph connectionGraph)
+	{
+		List<Resource> nodes = new ArrayList<>();
+		Map<Resource, Integer> node2index = new HashMap<>();
+		List<Integer> edges = new ArrayList<>();
+
+		if (RdfCmap.layoutLinks)
+		{
+			for (Resource connection : connectionGraph.getConnections())
+			{
+				edges.add(determineNodeIndex(connectionGraph.getConnectsFrom(connection), nodes, node2index));
+				edges.add(determineNodeIndex(connectionGraph.getConnectsTo(connection), nodes, node2index));
+			}
+		}
+		else
+		{
+			for (ConceptRelation conceptRelation : connectionGraph.getConceptRelations().values())
+			{
+				edges.add(determineNodeIndex(conceptRelation.from, nodes, node2index));
+				edges.add(determineNodeIndex(conceptRelation.to, nodes, node2index));
+			}
+		}
+
+		log.info("Nodes: " + nodes.size());
+		log.info("Edges: " + edges.size() / 2);
+
+		int nodeCount = nodes.size();
+		float[] x = new float[nodeCount];
+		float[] y = new float[nodeCount];
+		float[] radius = new float[nodeCount];
+		for (int i = 0; i < nodeCount; i++)
+		{
+			Resource node = nodes.get(i);
+			x[i] = Float.valueOf(model.listStatements(node, VizUtil.AFV_X_POSITION, (RDFNode) null).next().getString());
+			y[i] = Float.valueOf(model.listStatements(node, VizUtil.AFV_Y_POSITION, (RDFNode) null).next().getString());
+			radius[i] = determineRadius(node, model);
+		}
+
+		int[] edgeSources = new int[edges.size() / 2];
+		int[] edgeTargets = new int[edges.size() / 2];
+		for (int e = 0; e < edgeSources.length; e++)
+		{
+			edgeSources[e] = edges.get(2 * e);
+			edgeTargets[e] = edges.get(2 * e + 1);
+		}
+
+		log.info("Native force-directed layout for at most " + RdfCmap.layoutDuration + " seconds.");
+		ForceLayout forceLayout = new ForceLayout(x, y, radius, edgeSources, edgeTargets);
+		int iterations = forceLayout.run(MAX_ITERATIONS, TimeUnit.SECONDS.toNanos(RdfCmap.layoutDuration));
+		log.info("Layout finished after " + iterations + " iterations. Optimizing coordinates for cmap.");
+
+		float minX = 0.0f;
+		float minY = 0.0f;
+		for (int i = 0; i < nodeCount; i++)
+		{
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+		}
+		log.debug("min x: " + minX + " min y: " + minY);
+
+		for (int i = 0; i < nodeCount; i++)
+		{
+			Resource uiConcept = nodes.get(i);
+			model = CmapUtil.createOrUpdateLiteralValue(model, uiConcept, VizUtil.AFV_X_POSITION, String.format("%.0f", x[i] - minX + 100));
+			model = CmapUtil.createOrUpdateLiteralValue(model, uiConcept, VizUtil.AFV_Y_POSITION, String.format("%.0f", y[i] - minY + 100));
+		}
+
+		if (!RdfCmap.layoutLinks)
+		{
+			model = LayoutUtil.updateLinkLocations(model, connectionGraph.getConceptRelations());
+		}
+
+		return model;
+	}
+
+	private static int determineNodeIndex(Resource node, List<Resource> nodes, Map<Resource, Integer> node2index)
+	{
+		Integer index = node2index.get(node);
+		if (index == null)
+		{
+			index = nodes.size();
+			nodes.add(node);
+			node2index.put(node, index);
+		}
+		return index;
+	}
+
+	private static float determineRadius(Resource node, Model model)
+	{
+		float width = 0.0f;
+		float height = 0.0f;
+		if (model.listStatements(node, VizUtil.AFV_WIDTH, (RDFNode) null).hasNext())
+		{
+			width = Float.valueOf(model.listStatements(node, VizUtil.AFV_WIDTH, (RDFNode) null).next().getString());
+		}
+		if (model.listStatements(node, VizUtil.AFV_HEIGHT, (RDFNode) null).hasNext())
+		{
+			height = Float.valueOf(model.listStatements(node, VizUtil.AFV_HEIGHT, (RDFNode) null).next().getString());
+		}
+
+		float radius = 0.5f * Math.max(width, height);
+		if (radius <= 0.0f)
+		{
+			return DEFAULT_RADIUS;
+		}
+		return radius;
+	}
+}
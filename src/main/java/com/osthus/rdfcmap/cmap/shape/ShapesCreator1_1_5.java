@@ -41,8 +41,8 @@ import com.osthus.rdfcmap.enums.ConceptProperty;
 import com.osthus.rdfcmap.helper.ConceptRelation;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.ConnectionGraph;
 import com.osthus.rdfcmap.util.Prefixes;
-import com.osthus.rdfcmap.util.RdfUtil;
 import com.osthus.rdfcmap.util.VizUtil;
 
 /**
@@ -56,27 +56,41 @@ public class ShapesCreator1_1_5
 
 	private static File outputFolder = new File("shapes");
 
-	public static Map<Resource, ConceptRelation> link2conceptRelations = new HashMap<Resource, ConceptRelation>();
+	private ConnectionGraph connectionGraph = null;
 
-	public static Model modelWithShapes = null;
-
-	public static Model mappingModel = null;
+	private Model mappingModel = null;
 
 	private Map<String, NodeShape> uuid2Shape = new HashMap<String, NodeShape>();
 
 	private Turtle2CmapConverter turtle2CmapConverter = new Turtle2CmapConverter();
 	private Cmap2TurtleConverter cmap2TurtleConverter = new Cmap2TurtleConverter();
 
-	public void create(Path pathToInputFile, String[] additionalFiles) throws JAXBException, IOException, ParserConfigurationException, SAXException
+	public Model create(Path pathToInputFile, String[] additionalFiles) throws JAXBException, IOException, ParserConfigurationException, SAXException
 	{
 		log.info("Creating shapes from TTL: " + pathToInputFile.toString()
 				+ ((additionalFiles != null && additionalFiles.length > 0) ? " using additional files: " + StringUtils.join(additionalFiles, ", ") : ""));
 
 		Model model = ModelFactory.createDefaultModel();
-		mappingModel = ModelFactory.createDefaultModel();
 		log.info("Reading model from file: " + pathToInputFile.toString());
 		model.read(pathToInputFile.toUri().toString(), null, "TTL");
-		log.info(model.listStatements().toList().size() + " triples total.");
+		log.info(model.size() + " triples total.");
+
+		return create(model, additionalFiles);
+	}
+
+	/**
+	 * Creates shapes for the given model, e.g. as converted from CXL in memory, and writes them to the shapes folder.
+	 *
+	 * @param model
+	 * @param additionalFiles
+	 * @return the model together with all shapes
+	 * @throws IOException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 */
+	public Model create(Model model, String[] additionalFiles) throws IOException, ParserConfigurationException, SAXException
+	{
+		mappingModel = ModelFactory.createDefaultModel();
 
 		model = CmapUtil.addTriples(additionalFiles, model);
 		if (model.isEmpty())
@@ -86,14 +100,16 @@ public class ShapesCreator1_1_5
 		}
 		else if (additionalFiles != null && additionalFiles.length > 0)
 		{
-			log.info(model.listStatements().toList().size() + " triples total.");
+			log.info(model.size() + " triples total.");
 		}
 
 		createShapes(model);
 
-		exportShapes(model, pathToInputFile);
+		Model modelWithShapes = exportShapes(model);
 
 		exportMapping(model);
+
+		return modelWithShapes;
 	}
 
 	private void createShapes(Model model)
@@ -102,12 +118,12 @@ public class ShapesCreator1_1_5
 
 		collectNodeShapes(model);
 
-		link2conceptRelations = RdfUtil.determineConceptRelations(model);
+		connectionGraph = new ConnectionGraph(model);
 
 		determineShapes(model);
 	}
 
-	private void exportShapes(Model model, Path pathToInputFile) throws IOException
+	private Model exportShapes(Model model) throws IOException
 	{
 		if (Files.notExists(outputFolder.toPath()))
 		{
@@ -136,7 +152,7 @@ public class ShapesCreator1_1_5
 		}
 
 		model.add(allShapesModel);
-		modelWithShapes = model;
+		return model;
 	}
 
 	private void exportMapping(Model model) throws IOException, FileNotFoundException
@@ -461,15 +477,9 @@ public class ShapesCreator1_1_5
 				nodeShape = createOrUpdatePropertyShapes(nodeShape, propertyShape);
 			}
 
-			for (Entry<Resource, ConceptRelation> linkEntry : link2conceptRelations.entrySet())
+			for (ConceptRelation conceptRelation : connectionGraph.getOutgoingRelations(uiConcept))
 			{
-				Resource link = linkEntry.getKey();
-				ConceptRelation conceptRelation = linkEntry.getValue();
-				if (!conceptRelation.from.getURI().equals(uiConcept.getURI()))
-				{
-					continue;
-				}
-
+				Resource link = conceptRelation.link;
 				PropertyShape propertyShape = new PropertyShape();
 				propertyShape.setPath(Arrays.asList(getPropertyForLink(model, model.getProperty(link.getURI()))));
 				String propertyName = model.listStatements(link, AFOUtil.DCT_TITLE, (RDFNode) null).next().getString();
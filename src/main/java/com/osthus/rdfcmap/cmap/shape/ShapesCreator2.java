@@ -14,7 +14,6 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.xml.bind.JAXBException;
@@ -43,8 +42,9 @@ import com.osthus.rdfcmap.helper.ConceptRelation;
 import com.osthus.rdfcmap.sparql.PathList;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.ConnectionGraph;
+import com.osthus.rdfcmap.util.PipelineMetrics;
 import com.osthus.rdfcmap.util.Prefixes;
-import com.osthus.rdfcmap.util.RdfUtil;
 import com.osthus.rdfcmap.util.VizUtil;
 
 /**
@@ -58,80 +58,110 @@ public class ShapesCreator2
 
 	Model shapesModel = ModelFactory.createDefaultModel();
 	private static File outputFolder = new File("shapes");
-	private static String rootShapeTitle = "rootShapeTitle";
+	private String rootShapeTitle = "rootShapeTitle";
 	private Map<String, Integer> shapelabel2counter = new HashMap<String, Integer>();
-	private static Map<Resource, ConceptRelation> link2conceptRelations = new HashMap<Resource, ConceptRelation>();
+	private ConnectionGraph connectionGraph = null;
 
 	public void create(Resource rootType, Path pathToInputFile, String[] additionalFiles)
 			throws JAXBException, IOException, ParserConfigurationException, SAXException
 	{
-		if (RdfCmap.useNetworkShapeGraph)
-		{
-			log.info("Creating shapes from TTL: " + pathToInputFile.toString()
-					+ ((additionalFiles != null && additionalFiles.length > 0) ? " using additional files: " + StringUtils.join(additionalFiles, ", ") : ""));
+		log.info("Creating shapes from TTL: " + pathToInputFile.toString()
+				+ ((additionalFiles != null && additionalFiles.length > 0) ? " using additional files: " + StringUtils.join(additionalFiles, ", ") : ""));
 
-			Model model = ModelFactory.createDefaultModel();
-			log.info("Reading model from file: " + pathToInputFile.toString());
-			model.read(pathToInputFile.toUri().toString(), null, "TTL");
-			log.info(model.listStatements().toList().size() + " triples total.");
+		PipelineMetrics.Timer timer = PipelineMetrics.start("shapes.readModel");
+		Model model = ModelFactory.createDefaultModel();
+		log.info("Reading model from file: " + pathToInputFile.toString());
+		model.read(pathToInputFile.toUri().toString(), null, "TTL");
+		timer.stop();
+		log.info(model.size() + " triples total.");
 
-			model = CmapUtil.addTriples(additionalFiles, model);
-			if (model.isEmpty())
-			{
-				log.info("No RDF model found. Check input file.");
-				System.exit(1);
-			}
-			else if (additionalFiles != null && additionalFiles.length > 0)
-			{
-				log.info(model.listStatements().toList().size() + " triples total.");
-			}
+		create(rootType, model, additionalFiles);
+	}
 
-			if (rootType == null)
-			{
-				throw new IllegalStateException("Missing root node for shapes creation. Use option --root");
-			}
+	/**
+	 * Creates shapes for the given model, e.g. as converted from CXL in memory, and writes them to the shapes folder.
+	 *
+	 * @param rootType
+	 * @param model
+	 * @param additionalFiles
+	 * @return model of shapes
+	 * @throws IOException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 */
+	public Model create(Resource rootType, Model model, String[] additionalFiles) throws IOException, ParserConfigurationException, SAXException
+	{
+		if (!RdfCmap.useNetworkShapeGraph)
+		{
+			PipelineMetrics.Timer timer = PipelineMetrics.start("shapes.createPathShapes");
+			ShapesCreatorPath shapesCreatorPath = new ShapesCreatorPath();
+			Model pathShapesModel = shapesCreatorPath.create(rootType, model, additionalFiles);
+			timer.stop();
+			return pathShapesModel;
+		}
 
-			link2conceptRelations = RdfUtil.determineConceptRelations(model); // model.write(System.out, "TTL")
+		PipelineMetrics.Timer timer = PipelineMetrics.start("shapes.addTriples");
+		model = CmapUtil.addTriples(additionalFiles, model);
+		timer.stop();
+		if (model.isEmpty())
+		{
+			log.info("No RDF model found. Check input file.");
+			System.exit(1);
+		}
+		else if (additionalFiles != null && additionalFiles.length > 0)
+		{
+			log.info(model.size() + " triples total.");
+		}
+		PipelineMetrics.gauge("shapes.triplesInput", model.size());
 
-			Resource root = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, rootType).next().getSubject();
-			log.info("Found root: " + root.getURI());
+		if (rootType == null)
+		{
+			throw new IllegalStateException("Missing root node for shapes creation. Use option --root");
+		}
 
-			Set<String> visited = new LinkedHashSet<String>();
-			visited.add(root.getURI());
+		timer = PipelineMetrics.start("shapes.determineConceptRelations");
+		connectionGraph = new ConnectionGraph(model);
+		timer.stop();
 
-			PathList pathList = new PathList(visited, false);
+		Resource root = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, rootType).next().getSubject();
+		log.info("Found root: " + root.getURI());
 
-			rootShapeTitle = getShapesLabel(root, model, true);
-			Resource rootShape = shapesModel.createResource(AFOUtil.AFS_PREFIX + rootShapeTitle);
-			rootShape.addProperty(AFOUtil.RDF_TYPE, AFOUtil.SHACL_NODE_SHAPE);
+		Set<String> visited = new LinkedHashSet<String>();
+		visited.add(root.getURI());
 
-			PathAndModel pathAndModel = new PathAndModel(pathList, shapesModel, rootShape, 0);
-			pathAndModel = findNeighbour(model, root, null, pathAndModel, true);
+		PathList pathList = new PathList(visited, false);
 
-			rootShape = pathAndModel.getNodeShape();
+		rootShapeTitle = getShapesLabel(root, model, true);
+		Resource rootShape = shapesModel.createResource(AFOUtil.AFS_PREFIX + rootShapeTitle);
+		rootShape.addProperty(AFOUtil.RDF_TYPE, AFOUtil.SHACL_NODE_SHAPE);
 
-			// add target classes
-			Set<Resource> types = getTypes(root, model);
-			for (Iterator<Resource> iterator = types.iterator(); iterator.hasNext();)
-			{
-				Resource type = iterator.next();
-				rootShape.addProperty(AFOUtil.SHACL_TARGET_CLASS, type);
-			}
+		timer = PipelineMetrics.start("shapes.createShapes");
+		PathAndModel pathAndModel = new PathAndModel(pathList, shapesModel, rootShape, 0);
+		pathAndModel = findNeighbour(model, root, null, pathAndModel, true);
+		timer.stop();
 
-			shapesModel.setNsPrefixes(Prefixes.nsPrefixMap);
-			shapesModel.write(System.out, "TTL");
+		rootShape = pathAndModel.getNodeShape();
 
-			writeShapes(model, pathToInputFile);
-		}
-		else
+		// add target classes
+		Set<Resource> types = getTypes(root, model);
+		for (Iterator<Resource> iterator = types.iterator(); iterator.hasNext();)
 		{
-			ShapesCreatorPath shapesCreatorPath = new ShapesCreatorPath();
-			shapesCreatorPath.create(rootType, pathToInputFile, additionalFiles);
+			Resource type = iterator.next();
+			rootShape.addProperty(AFOUtil.SHACL_TARGET_CLASS, type);
 		}
 
+		shapesModel.setNsPrefixes(Prefixes.nsPrefixMap);
+		shapesModel.write(System.out, "TTL");
+
+		timer = PipelineMetrics.start("shapes.writeShapes");
+		writeShapes(model);
+		timer.stop();
+		PipelineMetrics.gauge("shapes.triplesOutput", shapesModel.size());
+
+		return shapesModel;
 	}
 
-	private void writeShapes(Model model, Path pathToInputFile) throws IOException
+	private void writeShapes(Model model) throws IOException
 	{
 		if (Files.notExists(outputFolder.toPath()))
 		{
@@ -742,18 +772,14 @@ public class ShapesCreator2
 
 	private Resource determineCardinality(Resource from, Property predicate, Resource to, Model model)
 	{
-		for (Entry<Resource, ConceptRelation> entry : link2conceptRelations.entrySet())
+		Resource uiFrom = model.getResource(from.getURI().replace(CmapUtil.URN_UUID, VizUtil.AFV_PREFIX));
+		for (ConceptRelation conceptRelation : connectionGraph.getOutgoingRelations(uiFrom))
 		{
-			Resource link = entry.getKey();
+			Resource link = conceptRelation.link;
 			if (!isSameProperty(predicate, link, model))
 			{
 				continue;
 			}
-			ConceptRelation conceptRelation = entry.getValue();
-			if (!from.getURI().equals(conceptRelation.from.getURI().replace(VizUtil.AFV_PREFIX, CmapUtil.URN_UUID)))
-			{
-				continue;
-			}
 			if (!to.getURI().equals(conceptRelation.to.getURI().replace(VizUtil.AFV_PREFIX, CmapUtil.URN_UUID)))
 			{
 				continue;
@@ -15,7 +15,6 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.xml.bind.JAXBException;
@@ -44,8 +43,8 @@ import com.osthus.rdfcmap.helper.ConceptRelation;
 import com.osthus.rdfcmap.sparql.PathList;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.ConnectionGraph;
 import com.osthus.rdfcmap.util.Prefixes;
-import com.osthus.rdfcmap.util.RdfUtil;
 import com.osthus.rdfcmap.util.VizUtil;
 
 /**
@@ -63,9 +62,9 @@ public class ShapesCreatorPath
 
 	Model shapesModel = ModelFactory.createDefaultModel();
 	private static File outputFolder = new File("shapes");
-	private static String rootShapeTitle = "rootShapeTitle";
+	private String rootShapeTitle = "rootShapeTitle";
 	private Map<String, Integer> shapelabel2counter = new HashMap<String, Integer>();
-	private static Map<Resource, ConceptRelation> link2conceptRelations = new HashMap<Resource, ConceptRelation>();
+	private ConnectionGraph connectionGraph = null;
 
 	public void create(Resource rootType, Path pathToInputFile, String[] additionalFiles)
 			throws JAXBException, IOException, ParserConfigurationException, SAXException
@@ -76,8 +75,24 @@ public class ShapesCreatorPath
 		Model model = ModelFactory.createDefaultModel();
 		log.info("Reading model from file: " + pathToInputFile.toString());
 		model.read(pathToInputFile.toUri().toString(), null, "TTL");
-		log.info(model.listStatements().toList().size() + " triples total.");
+		log.info(model.size() + " triples total.");
 
+		create(rootType, model, additionalFiles);
+	}
+
+	/**
+	 * Creates concentric shapes for the given model, e.g. as converted from CXL in memory, and writes them to the shapes folder.
+	 *
+	 * @param rootType
+	 * @param model
+	 * @param additionalFiles
+	 * @return model of shapes
+	 * @throws IOException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 */
+	public Model create(Resource rootType, Model model, String[] additionalFiles) throws IOException, ParserConfigurationException, SAXException
+	{
 		model = CmapUtil.addTriples(additionalFiles, model);
 		if (model.isEmpty())
 		{
@@ -86,7 +101,7 @@ public class ShapesCreatorPath
 		}
 		else if (additionalFiles != null && additionalFiles.length > 0)
 		{
-			log.info(model.listStatements().toList().size() + " triples total.");
+			log.info(model.size() + " triples total.");
 		}
 
 		if (rootType == null)
@@ -94,7 +109,7 @@ public class ShapesCreatorPath
 			throw new IllegalStateException("Missing root node for shapes creation. Use option --root");
 		}
 
-		link2conceptRelations = RdfUtil.determineConceptRelations(model); // model.write(System.out, "TTL")
+		connectionGraph = new ConnectionGraph(model);
 
 		Resource root = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, rootType).next().getSubject();
 		log.info("Found root: " + root.getURI());
@@ -124,10 +139,12 @@ public class ShapesCreatorPath
 		shapesModel.setNsPrefixes(Prefixes.nsPrefixMap);
 		shapesModel.write(System.out, "TTL");
 
-		writeShapes(model, pathToInputFile);
+		writeShapes(model);
+
+		return shapesModel;
 	}
 
-	private void writeShapes(Model model, Path pathToInputFile) throws IOException
+	private void writeShapes(Model model) throws IOException
 	{
 		if (Files.notExists(outputFolder.toPath()))
 		{
@@ -783,18 +800,14 @@ public class ShapesCreatorPath
 
 	private Resource determineCardinality(Resource from, Property predicate, Resource to, Model model)
 	{
-		for (Entry<Resource, ConceptRelation> entry : link2conceptRelations.entrySet())
+		Resource uiFrom = model.getResource(from.getURI().replace(CmapUtil.URN_UUID, VizUtil.AFV_PREFIX));
+		for (ConceptRelation conceptRelation : connectionGraph.getOutgoingRelations(uiFrom))
 		{
-			Resource link = entry.getKey();
+			Resource link = conceptRelation.link;
 			if (!isSameProperty(predicate, link, model))
 			{
 				continue;
 			}
-			ConceptRelation conceptRelation = entry.getValue();
-			if (!from.getURI().equals(conceptRelation.from.getURI().replace(VizUtil.AFV_PREFIX, CmapUtil.URN_UUID)))
-			{
-				continue;
-			}
 			if (!to.getURI().equals(conceptRelation.to.getURI().replace(VizUtil.AFV_PREFIX, CmapUtil.URN_UUID)))
 			{
 				continue;
@@ -0,0 +1,249 @@
+package com.osthus.rdfcmap.cmap.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads and writes CXL with JAXB.
+ *
+ * The JAXB context is created once, unmarshallers and marshallers are not thread-safe and therefore taken from pools, so that conversions running at the same
+ * time do not share them. Besides unmarshalling the complete CXL, the elements of the map can be streamed: the CXL is pulled with StAX and only single
+ * concepts, linking phrases, connections, their appearances and images are unmarshalled, one after another. Meta data, style sheets and the RDF model stored in
+ * CXL are skipped.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class CmapXmlCodec
+{
+	private static final JAXBContext jaxbContext = createJaxbContext();
+
+	private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+	private static final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+
+	private static final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Handler of the elements of a streamed map. Each method is called once for every element in the order of the CXL, the default is to ignore the element.
+	 */
+	public static abstract class ElementHandler
+	{
+		public void handleConcept(Concept concept)
+		{
+		}
+
+		public void handleLinkingPhrase(LinkingPhrase linkingPhrase)
+		{
+		}
+
+		public void handleConnection(Connection connection)
+		{
+		}
+
+		public void handleConceptAppearance(ConceptAppearance conceptAppearance)
+		{
+		}
+
+		public void handleLinkingPhraseAppearance(LinkingPhraseAppearance linkingPhraseAppearance)
+		{
+		}
+
+		public void handleConnectionAppearance(ConnectionAppearance connectionAppearance)
+		{
+		}
+
+		public void handleImage(Image image)
+		{
+		}
+	}
+
+	public static CMap unmarshal(Path path) throws JAXBException
+	{
+		Unmarshaller unmarshaller = borrowUnmarshaller();
+		try
+		{
+			return (CMap) unmarshaller.unmarshal(path.toFile());
+		}
+		finally
+		{
+			unmarshallers.offer(unmarshaller);
+		}
+	}
+
+	/**
+	 * @param cmap
+	 * @return formatted CXL
+	 * @throws JAXBException
+	 */
+	public static String marshal(CMap cmap) throws JAXBException
+	{
+		Marshaller marshaller = borrowMarshaller();
+		try
+		{
+			StringWriter writer = new StringWriter();
+			marshaller.marshal(cmap, writer);
+			return writer.toString();
+		}
+		finally
+		{
+			marshallers.offer(marshaller);
+		}
+	}
+
+	/**
+	 * Streams the elements of the map in CXL to the given handler.
+	 *
+	 * @param path
+	 * @param handler
+	 * @throws JAXBException
+	 * @throws IOException
+	 */
+	public static void stream(Path path, ElementHandler handler) throws JAXBException, IOException
+	{
+		Unmarshaller unmarshaller = borrowUnmarshaller();
+		try (InputStream inputStream = Files.newInputStream(path))
+		{
+			XMLStreamReader xmlStreamReader;
+			synchronized (xmlInputFactory)
+			{
+				xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
+			}
+
+			try
+			{
+				String currentList = null;
+				while (xmlStreamReader.hasNext())
+				{
+					int event = xmlStreamReader.getEventType();
+					if (event == XMLStreamConstants.START_ELEMENT)
+					{
+						String name = xmlStreamReader.getLocalName();
+						if (currentList == null)
+						{
+							if (name.endsWith("-list"))
+							{
+								currentList = name;
+							}
+						}
+						else if (unmarshalElement(unmarshaller, xmlStreamReader, currentList, name, handler))
+						{
+							// reader is already positioned after the unmarshalled element
+							continue;
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT && xmlStreamReader.getLocalName().equals(currentList))
+					{
+						currentList = null;
+					}
+					xmlStreamReader.next();
+				}
+			}
+			finally
+			{
+				xmlStreamReader.close();
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException("Error while reading CXL: " + path.toString() + ": " + e.getLocalizedMessage(), e);
+		}
+		finally
+		{
+			unmarshallers.offer(unmarshaller);
+		}
+	}
+
+	private static boolean unmarshalElement(Unmarshaller unmarshaller, XMLStreamReader xmlStreamReader, String list, String name, ElementHandler handler)
+			throws JAXBException
+	{
+		if ("concept-list".equals(list) && "concept".equals(name))
+		{
+			handler.handleConcept(unmarshaller.unmarshal(xmlStreamReader, Concept.class).getValue());
+		}
+		else if ("linking-phrase-list".equals(list) && "linking-phrase".equals(name))
+		{
+			handler.handleLinkingPhrase(unmarshaller.unmarshal(xmlStreamReader, LinkingPhrase.class).getValue());
+		}
+		else if ("connection-list".equals(list) && "connection".equals(name))
+		{
+			handler.handleConnection(unmarshaller.unmarshal(xmlStreamReader, Connection.class).getValue());
+		}
+		else if ("concept-appearance-list".equals(list) && "concept-appearance".equals(name))
+		{
+			handler.handleConceptAppearance(unmarshaller.unmarshal(xmlStreamReader, ConceptAppearance.class).getValue());
+		}
+		else if ("linking-phrase-appearance-list".equals(list) && "linking-phrase-appearance".equals(name))
+		{
+			handler.handleLinkingPhraseAppearance(unmarshaller.unmarshal(xmlStreamReader, LinkingPhraseAppearance.class).getValue());
+		}
+		else if ("connection-appearance-list".equals(list) && "connection-appearance".equals(name))
+		{
+			handler.handleConnectionAppearance(unmarshaller.unmarshal(xmlStreamReader, ConnectionAppearance.class).getValue());
+		}
+		else if ("image-list".equals(list) && "image".equals(name))
+		{
+			handler.handleImage(unmarshaller.unmarshal(xmlStreamReader, Image.class).getValue());
+		}
+		else
+		{
+			return false;
+		}
+		return true;
+	}
+
+	private static Unmarshaller borrowUnmarshaller() throws JAXBException
+	{
+		Unmarshaller unmarshaller = unmarshallers.poll();
+		if (unmarshaller == null)
+		{
+			unmarshaller = jaxbContext.createUnmarshaller();
+		}
+		return unmarshaller;
+	}
+
+	private static Marshaller borrowMarshaller() throws JAXBException
+	{
+		Marshaller marshaller = marshallers.poll();
+		if (marshaller == null)
+		{
+			marshaller = jaxbContext.createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+			marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+			marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new CmapNamespacePrefixMapper());
+		}
+		return marshaller;
+	}
+
+	private static JAXBContext createJaxbContext()
+	{
+		try
+		{
+			return JAXBContext.newInstance(CMap.class);
+		}
+		catch (JAXBException e)
+		{
+			throw new IllegalStateException("Could not create JAXB context for CXL: " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	private static XMLInputFactory createXmlInputFactory()
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+}
@@ -34,6 +34,7 @@ import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
 import com.osthus.rdfcmap.cmap.shape.ShapesCreator1_1_5;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.PipelineMetrics;
 
 /**
  * @author Helge Krieg, OSTHUS GmbH
@@ -42,61 +43,74 @@ public class OntologyCreator
 {
 	private static final Logger log = LogManager.getLogger("Logger");
 
-	public static Map<String, Resource> shapeName2class = new HashMap<String, Resource>();
+	private Map<String, Resource> shapeName2class = new HashMap<String, Resource>();
 
-	public static Map<Resource, Resource> property2domainProperty = new HashMap<Resource, Resource>();
+	private Map<Resource, Resource> property2domainProperty = new HashMap<Resource, Resource>();
 
-	private static Map<Resource, Integer> property2numApplied = new HashMap<>();
+	private Map<Resource, Integer> property2numApplied = new HashMap<>();
 
 	public void create(String inputFileToConvert, String[] additionalInputFiles) throws JAXBException, IOException, ParserConfigurationException, SAXException
 	{
 		log.info("Creating ontology from: " + inputFileToConvert + ((additionalInputFiles != null && additionalInputFiles.length > 0)
 				? " using additional files: " + StringUtils.join(additionalInputFiles, ", ") : ""));
 
-		String pathToTtlFile = StringUtils.EMPTY;
+		Model modelToConvert;
 		if (inputFileToConvert.toLowerCase().endsWith("cxl"))
 		{
 			log.info("Creating shapes.");
+			// pass the converted model on in memory instead of writing and reading TTL
 			Cmap2TurtleConverter cmap2TurtleConverter = new Cmap2TurtleConverter();
+			cmap2TurtleConverter.setWriteTurtleFile(false);
 			if (additionalInputFiles != null && additionalInputFiles.length > 0)
 			{
-				cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), additionalInputFiles);
+				modelToConvert = cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), additionalInputFiles);
 			}
 			else
 			{
-				cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), null);
+				modelToConvert = cmap2TurtleConverter.convert(Paths.get(inputFileToConvert), null);
 			}
-			pathToTtlFile = inputFileToConvert.toString().substring(0, inputFileToConvert.toString().length() - 3) + "ttl";
-			inputFileToConvert = pathToTtlFile; // created TTL from CXL, now take new TTL as input for shapes creation
 		}
-		else if (!inputFileToConvert.toLowerCase().endsWith("ttl"))
+		else if (inputFileToConvert.toLowerCase().endsWith("ttl"))
+		{
+			modelToConvert = ModelFactory.createDefaultModel();
+			log.info("Reading model from file: " + inputFileToConvert);
+			modelToConvert.read(Paths.get(inputFileToConvert).toUri().toString(), null, "TTL");
+			log.info(modelToConvert.size() + " triples total.");
+		}
+		else
 		{
 			log.error("No .cxl or .ttl as input file found.");
 			System.exit(1);
+			return;
 		}
 
+		PipelineMetrics.Timer timer = PipelineMetrics.start("ontology.createShapes");
 		ShapesCreator1_1_5 shapesCreator = new ShapesCreator1_1_5();
+		Model modelWithShapes;
 		if (additionalInputFiles != null && additionalInputFiles.length > 0)
 		{
-			shapesCreator.create(Paths.get(inputFileToConvert), additionalInputFiles);
+			modelWithShapes = shapesCreator.create(modelToConvert, additionalInputFiles);
 		}
 		else
 		{
-			shapesCreator.create(Paths.get(inputFileToConvert), null);
-		}
-
-		if (pathToTtlFile != null && !pathToTtlFile.isEmpty())
-		{
-			Files.deleteIfExists(Paths.get(pathToTtlFile));
+			modelWithShapes = shapesCreator.create(modelToConvert, null);
 		}
+		timer.stop();
 
-		Model model = createOntologyFromShapes(ShapesCreator1_1_5.modelWithShapes);
+		timer = PipelineMetrics.start("ontology.createOntologyFromShapes");
+		Model model = createOntologyFromShapes(modelWithShapes);
+		timer.stop();
 
-		model = addVocabulary(model, ShapesCreator1_1_5.modelWithShapes);
+		timer = PipelineMetrics.start("ontology.addVocabulary");
+		model = addVocabulary(model, modelWithShapes);
+		timer.stop();
 
+		timer = PipelineMetrics.start("ontology.write");
 		Path outPath = Paths.get(inputFileToConvert.toString().substring(0, inputFileToConvert.toString().length() - 4) + "-ontology.ttl");
 		Files.deleteIfExists(outPath);
 		model.write(new FileOutputStream(outPath.toFile()), "TTL");
+		timer.stop();
+		PipelineMetrics.gauge("ontology.triplesOutput", model.size());
 	}
 
 	private Model createOntologyFromShapes(Model modelWithShapes)
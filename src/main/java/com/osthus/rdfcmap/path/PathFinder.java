@@ -26,15 +26,16 @@ import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.util.iterator.ExtendedIterator;
-import org.apache.jena.util.iterator.Filter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.xml.sax.SAXException;
 
+import com.osthus.rdfcmap.RdfCmap;
 import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
 import com.osthus.rdfcmap.cmap.Turtle2CmapConverter;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.PipelineMetrics;
 import com.osthus.rdfcmap.util.Prefixes;
 import com.osthus.rdfcmap.util.RdfUtil;
 import com.osthus.rdfcmap.util.VizUtil;
@@ -46,6 +47,8 @@ public class PathFinder
 {
 	private static final Logger log = LogManager.getLogger("Logger");
 
+	private static final int PARALLEL_RECONSTRUCTION_THRESHOLD = 1000;
+
 	private Cmap2TurtleConverter cmap2TurtleConverter;
 	private Turtle2CmapConverter turtle2CmapConverter;
 
@@ -54,27 +57,37 @@ public class PathFinder
 		log.info("Listing graphs from cxl: " + pathToInputFile.toString()
 				+ ((additionalFiles != null && additionalFiles.length > 0) ? " using additional files: " + StringUtils.join(additionalFiles, ", ") : ""));
 
+		PipelineMetrics.Timer timer = PipelineMetrics.start("pathfinder.readModel");
 		Model model = CmapUtil.extractStoredModelFromCxl(pathToInputFile);
 		CmapUtil.addTriples(additionalFiles, model);
+		timer.stop();
 		if (model.isEmpty())
 		{
 			log.info("No RDF model found, generating from scratch.");
 		}
 		else
 		{
-			log.info(model.listStatements().toList().size() + " triples total.");
+			log.info(model.size() + " triples total.");
 		}
+		PipelineMetrics.gauge("pathfinder.triplesInput", model.size());
 
 		cmap2TurtleConverter = new Cmap2TurtleConverter();
 		turtle2CmapConverter = new Turtle2CmapConverter();
 
+		timer = PipelineMetrics.start("pathfinder.prepareModel");
 		model = cmap2TurtleConverter.createOrUpdateVisualizationModel(pathToInputFile, model);
 		model = cmap2TurtleConverter.updateModel(model);
 		model = cmap2TurtleConverter.cleanModel(model);
+		timer.stop();
 
+		timer = PipelineMetrics.start("pathfinder.listGraphs");
 		String graphs = listGraphs(model);
+		timer.stop();
 		log.info(graphs);
+
+		timer = PipelineMetrics.start("pathfinder.write");
 		write(pathToInputFile, graphs);
+		timer.stop();
 	}
 
 	private String listGraphs(Model model)
@@ -86,20 +99,16 @@ public class PathFinder
 		Set<Resource> instances = extractInstances(model, rootNode);
 		log.info("Finding shortest paths to " + instances.size() + " target nodes.");
 
-		List<ShortestPath> paths = new ArrayList<>();
-		for (Iterator<Resource> iterator = instances.iterator(); iterator.hasNext();)
+		ShortestPathTree shortestPathTree = new ShortestPathTree(model, rootNode, RdfCmap.maxPathHops);
+		List<ShortestPath> paths = shortestPathTree.getShortestPaths(instances, instances.size() > PARALLEL_RECONSTRUCTION_THRESHOLD);
+		PipelineMetrics.count("pathfinder.paths", paths.size());
+		if (log.isDebugEnabled())
 		{
-			Resource instance = iterator.next();
-			log.debug("Finding path from root node to \"" + getResourceLabel(instance) + "\" <" + instance.getURI() + ">");
-			OntTools.Path path = OntTools.findShortestPath(model, rootNode, instance, Filter.any);
-
-			int hops = 0;
-			if (path != null)
+			for (ShortestPath shortestPath : paths)
 			{
-				hops = path.size();
+				log.debug("Found path with " + shortestPath.getHops() + " hops from root node to \"" + getResourceLabel(shortestPath.getEnd()) + "\" <"
+						+ shortestPath.getEnd().getURI() + ">");
 			}
-
-			paths.add(new ShortestPath(hops, rootNode, instance, path));
 		}
 
 		StringBuilder sb = new StringBuilder();
@@ -0,0 +1,228 @@
+package com.osthus.rdfcmap.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontology.OntTools;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+/**
+ * Shortest paths from a single root node to any number of target nodes.
+ *
+ * All statements with a resource as object are copied once into an int-indexed adjacency (compressed rows, edges of a subject keep the order of the model).
+ * A single breadth first search from the root records the edge that first reached every node, so each shortest path is reconstructed by following these
+ * parent edges back to the root. This gives the same hop counts as calling {@link OntTools#findShortestPath} for every target, at the cost of one traversal.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class ShortestPathTree
+{
+	public static final int UNLIMITED_HOPS = -1;
+
+	private static final int UNREACHED = -1;
+
+	private final Model model;
+
+	private final Resource root;
+
+	private final Map<Node, Integer> node2index = new HashMap<>();
+
+	private int[] edgeOffsets;
+
+	private int[] edgeTargets;
+
+	private Triple[] edgeTriples;
+
+	private int[] parentEdges;
+
+	private int[] hops;
+
+	/**
+	 * Builds the adjacency of the model and runs the search from the given root.
+	 *
+	 * @param model
+	 * @param root
+	 * @param maxHops
+	 *            paths with more hops are not searched, {@link #UNLIMITED_HOPS} for a complete search
+	 */
+	public ShortestPathTree(Model model, Resource root, int maxHops)
+	{
+		this.model = model;
+		this.root = root;
+		buildAdjacency();
+		search(maxHops);
+	}
+
+	private int index(Node node)
+	{
+		Integer index = node2index.get(node);
+		if (index == null)
+		{
+			index = node2index.size();
+			node2index.put(node, index);
+		}
+		return index;
+	}
+
+	private void buildAdjacency()
+	{
+		int numEdges = 0;
+		int[] sources = new int[1024];
+		int[] targets = new int[1024];
+		Triple[] triples = new Triple[1024];
+
+		index(root.asNode());
+
+		StmtIterator stmtIterator = model.listStatements();
+		while (stmtIterator.hasNext())
+		{
+			Statement statement = stmtIterator.next();
+			if (!statement.getObject().isResource())
+			{
+				// literals are never expanded and cannot be a target
+				continue;
+			}
+
+			if (numEdges == sources.length)
+			{
+				sources = Arrays.copyOf(sources, numEdges * 2);
+				targets = Arrays.copyOf(targets, numEdges * 2);
+				triples = Arrays.copyOf(triples, numEdges * 2);
+			}
+
+			Triple triple = statement.asTriple();
+			sources[numEdges] = index(triple.getSubject());
+			targets[numEdges] = index(triple.getObject());
+			triples[numEdges] = triple;
+			numEdges++;
+		}
+
+		// counting sort of edges by source, stable with respect to the order of the model
+		int numNodes = node2index.size();
+		edgeOffsets = new int[numNodes + 1];
+		for (int i = 0; i < numEdges; i++)
+		{
+			edgeOffsets[sources[i] + 1]++;
+		}
+		for (int i = 0; i < numNodes; i++)
+		{
+			edgeOffsets[i + 1] += edgeOffsets[i];
+		}
+
+		edgeTargets = new int[numEdges];
+		edgeTriples = new Triple[numEdges];
+		int[] insertPositions = Arrays.copyOf(edgeOffsets, numNodes);
+		for (int i = 0; i < numEdges; i++)
+		{
+			int position = insertPositions[sources[i]]++;
+			edgeTargets[position] = targets[i];
+			edgeTriples[position] = triples[i];
+		}
+	}
+
+	private void search(int maxHops)
+	{
+		int numNodes = node2index.size();
+		parentEdges = new int[numNodes];
+		hops = new int[numNodes];
+		Arrays.fill(parentEdges, UNREACHED);
+		Arrays.fill(hops, UNREACHED);
+
+		int rootIndex = node2index.get(root.asNode());
+		hops[rootIndex] = 0;
+
+		int[] queue = new int[numNodes];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = rootIndex;
+		while (head < tail)
+		{
+			int node = queue[head++];
+			if (maxHops != UNLIMITED_HOPS && hops[node] >= maxHops)
+			{
+				continue;
+			}
+
+			for (int edge = edgeOffsets[node]; edge < edgeOffsets[node + 1]; edge++)
+			{
+				int target = edgeTargets[edge];
+				if (hops[target] != UNREACHED)
+				{
+					continue;
+				}
+
+				hops[target] = hops[node] + 1;
+				parentEdges[target] = edge;
+				queue[tail++] = target;
+			}
+		}
+	}
+
+	/**
+	 * @param target
+	 * @return number of hops from root to target or 0 if there is no path
+	 */
+	public int getHops(Resource target)
+	{
+		Integer index = node2index.get(target.asNode());
+		if (index == null || hops[index] == UNREACHED)
+		{
+			return 0;
+		}
+		return hops[index];
+	}
+
+	/**
+	 * @param target
+	 * @return shortest path from root to target or null if there is no path
+	 */
+	public OntTools.Path getPath(Resource target)
+	{
+		Integer index = node2index.get(target.asNode());
+		if (index == null || parentEdges[index] == UNREACHED)
+		{
+			return null;
+		}
+
+		Triple[] triples = new Triple[hops[index]];
+		int node = index;
+		for (int i = triples.length - 1; i >= 0; i--)
+		{
+			int edge = parentEdges[node];
+			triples[i] = edgeTriples[edge];
+			node = node2index.get(edgeTriples[edge].getSubject());
+		}
+
+		OntTools.Path path = new OntTools.Path();
+		for (int i = 0; i < triples.length; i++)
+		{
+			path.add(model.asStatement(triples[i]));
+		}
+		return path;
+	}
+
+	/**
+	 * Reconstructs the shortest paths from root to all given targets.
+	 *
+	 * @param targets
+	 * @param parallel
+	 *            reconstruct paths in parallel, the order of the result is the order of the targets in any case
+	 * @return
+	 */
+	public List<ShortestPath> getShortestPaths(Collection<Resource> targets, boolean parallel)
+	{
+		Stream<Resource> targetStream = parallel ? new ArrayList<>(targets).parallelStream() : targets.stream();
+		return targetStream.map(target -> new ShortestPath(getHops(target), root, target, getPath(target))).collect(Collectors.toList());
+	}
+}
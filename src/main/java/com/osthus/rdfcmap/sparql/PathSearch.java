@@ -0,0 +1,209 @@
+package com.osthus.rdfcmap.sparql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import com.osthus.rdfcmap.util.AFOUtil;
+
+/**
+ * Depth first search from a source node to a target node of a model following object properties forward and inverse.
+ *
+ * Nodes are numbered once and all links except rdf:type are stored in int-indexed forward and inverse adjacency arrays in the order the model lists them. The
+ * search runs on an explicit stack with a bitset of visited nodes, so neither deep nor wide graphs exhaust the call stack and no node is queried twice. At every
+ * node all forward links are followed first, then all inverse links. Every link to a not yet visited node is recorded, the resulting sequence of statements is
+ * the graph of the SPARQL query.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class PathSearch
+{
+	private static final Node RDF_TYPE = AFOUtil.RDF_TYPE.asNode();
+
+	private final Model model;
+
+	private final Map<Node, Integer> node2index = new HashMap<>();
+
+	private final Adjacency forward;
+
+	private final Adjacency inverse;
+
+	public PathSearch(Model model)
+	{
+		this.model = model;
+
+		List<Node> nodes = new ArrayList<>();
+		ExtendedIterator<Triple> tripleIterator = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		while (tripleIterator.hasNext())
+		{
+			Triple triple = tripleIterator.next();
+			index(triple.getSubject(), nodes);
+			if (!triple.getObject().isLiteral())
+			{
+				index(triple.getObject(), nodes);
+			}
+		}
+
+		forward = new Adjacency(nodes.size());
+		inverse = new Adjacency(nodes.size());
+		Graph graph = model.getGraph();
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			Node node = nodes.get(i);
+
+			tripleIterator = graph.find(node, Node.ANY, Node.ANY);
+			while (tripleIterator.hasNext())
+			{
+				Triple triple = tripleIterator.next();
+				if (triple.getObject().isLiteral() || RDF_TYPE.equals(triple.getPredicate()))
+				{
+					continue;
+				}
+				forward.add(node2index.get(triple.getObject()), triple);
+			}
+			forward.close(i);
+
+			tripleIterator = graph.find(Node.ANY, Node.ANY, node);
+			while (tripleIterator.hasNext())
+			{
+				Triple triple = tripleIterator.next();
+				if (RDF_TYPE.equals(triple.getPredicate()))
+				{
+					continue;
+				}
+				inverse.add(node2index.get(triple.getSubject()), triple);
+			}
+			inverse.close(i);
+		}
+	}
+
+	private void index(Node node, List<Node> nodes)
+	{
+		if (!node2index.containsKey(node))
+		{
+			node2index.put(node, nodes.size());
+			nodes.add(node);
+		}
+	}
+
+	/**
+	 * Searches for the target starting at source.
+	 *
+	 * @param source
+	 * @param target
+	 * @return all visited statements in order of the search, the last one leads to the target, or null if target cannot be reached
+	 */
+	public List<Statement> find(Resource source, Resource target)
+	{
+		Integer sourceIndex = node2index.get(source.asNode());
+		Integer targetIndex = node2index.get(target.asNode());
+		if (sourceIndex == null || targetIndex == null)
+		{
+			return null;
+		}
+
+		int numNodes = node2index.size();
+		BitSet visited = new BitSet(numNodes);
+		int[] stackNodes = new int[numNodes];
+		int[] stackEdges = new int[numNodes];
+		boolean[] stackInverse = new boolean[numNodes];
+
+		List<Statement> statements = new ArrayList<>();
+
+		visited.set(sourceIndex);
+		stackNodes[0] = sourceIndex;
+		stackEdges[0] = forward.offsets[sourceIndex];
+		stackInverse[0] = false;
+		int depth = 1;
+		while (depth > 0)
+		{
+			int top = depth - 1;
+			int node = stackNodes[top];
+			Adjacency adjacency = stackInverse[top] ? inverse : forward;
+			int edge = stackEdges[top];
+
+			if (edge == adjacency.offsets[node + 1])
+			{
+				if (stackInverse[top])
+				{
+					depth--;
+				}
+				else
+				{
+					// no forward link leads to target, now check inverse links
+					stackInverse[top] = true;
+					stackEdges[top] = inverse.offsets[node];
+				}
+				continue;
+			}
+
+			stackEdges[top] = edge + 1;
+			int nextNode = adjacency.targets[edge];
+			if (visited.get(nextNode))
+			{
+				continue;
+			}
+
+			visited.set(nextNode);
+			statements.add(model.asStatement(adjacency.triples[edge]));
+			if (nextNode == targetIndex)
+			{
+				return statements;
+			}
+
+			stackNodes[depth] = nextNode;
+			stackEdges[depth] = forward.offsets[nextNode];
+			stackInverse[depth] = false;
+			depth++;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Links of all nodes in compressed rows: the links of node i are stored at positions offsets[i] to offsets[i + 1] - 1.
+	 */
+	private static class Adjacency
+	{
+		private final int[] offsets;
+
+		private int[] targets = new int[64];
+
+		private Triple[] triples = new Triple[64];
+
+		private int size = 0;
+
+		private Adjacency(int numNodes)
+		{
+			offsets = new int[numNodes + 1];
+		}
+
+		private void add(int target, Triple triple)
+		{
+			if (size == targets.length)
+			{
+				targets = Arrays.copyOf(targets, size * 2);
+				triples = Arrays.copyOf(triples, size * 2);
+			}
+			targets[size] = target;
+			triples[size] = triple;
+			size++;
+		}
+
+		private void close(int node)
+		{
+			offsets[node + 1] = size;
+		}
+	}
+}
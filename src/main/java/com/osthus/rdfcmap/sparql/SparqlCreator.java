@@ -34,6 +34,7 @@ import com.osthus.rdfcmap.cmap.Cmap2TurtleConverter;
 import com.osthus.rdfcmap.helper.PreparedModels;
 import com.osthus.rdfcmap.util.AFOUtil;
 import com.osthus.rdfcmap.util.CmapUtil;
+import com.osthus.rdfcmap.util.PipelineMetrics;
 import com.osthus.rdfcmap.util.Prefixes;
 import com.osthus.rdfcmap.util.VizUtil;
 
@@ -60,29 +61,39 @@ public class SparqlCreator
 		log.info("Creating sparql from cxl: " + pathToInputFile.toString()
 				+ ((additionalFiles != null && additionalFiles.length > 0) ? " using additional files: " + StringUtils.join(additionalFiles, ", ") : ""));
 
+		PipelineMetrics.Timer timer = PipelineMetrics.start("sparql.readModel");
 		Model model = CmapUtil.extractStoredModelFromCxl(pathToInputFile);
 		model = CmapUtil.addTriples(additionalFiles, model);
+		timer.stop();
 		if (model.isEmpty())
 		{
 			log.info("No RDF model found, generating from scratch.");
 		}
 		else
 		{
-			log.info(model.listStatements().toList().size() + " triples total.");
+			log.info(model.size() + " triples total.");
 		}
+		PipelineMetrics.gauge("sparql.triplesInput", model.size());
 
 		cmap2TurtleConverter = new Cmap2TurtleConverter();
 
+		timer = PipelineMetrics.start("sparql.prepareModel");
 		model = cmap2TurtleConverter.createOrUpdateVisualizationModel(pathToInputFile, model);
 		model = cmap2TurtleConverter.updateModel(model);
 		model = cmap2TurtleConverter.cleanModel(model);
 		PreparedModels preparedModels = cmap2TurtleConverter.prepareSeparatedModels(model);
 		Model instanceModel = preparedModels.getInstanceModel();
+		timer.stop();
 
+		timer = PipelineMetrics.start("sparql.createSparql");
 		String sparql = createSparql(instanceModel, model);
 		sparql = cleanPrefixes(sparql);
+		timer.stop();
 		log.info("SPARQL: \n" + sparql);
+
+		timer = PipelineMetrics.start("sparql.write");
 		write(pathToInputFile, sparql, model);
+		timer.stop();
 	}
 
 	private String cleanPrefixes(String sparql)
@@ -178,15 +189,12 @@ public class SparqlCreator
 		sb.append(StringUtils.join(targetPropertyLabels, " "));
 		sb.append(" where {\n");
 
-		Set<String> visited = new LinkedHashSet<String>();
-		visited.add(startNode.getURI());
-		PathList pathList = new PathList(visited, false);
-		pathList = findNeighbour(model, startNode, targetNode, pathList);
-
-		if (!pathList.isFoundTarget())
+		List<Statement> pathStatements = new PathSearch(model).find(startNode, targetNode);
+		if (pathStatements == null)
 		{
 			throw new IllegalStateException("Could not find path from source to target.");
 		}
+		graphStatements.addAll(pathStatements);
 
 		log.info("Sequence of statements of graph from source to target:\n" + StringUtils.join(graphStatements, "\n") + "\n");
 
@@ -534,135 +542,6 @@ public class SparqlCreator
 		return "_:" + typeLabel + id;
 	}
 
-	private PathList findNeighbour(Model model, Resource currentNode, Resource targetNode, PathList pathList)
-	{
-		// start at node
-		// --iterate over all object properties
-		// --get neighbour forward
-		// -----if (not visited and not target) store as visited and get next neighbour forward
-		// -----if (visited) get next neighbour forward
-		// -----if (target) stop
-		// --if no neighbour found forward
-		// -----get neighbour based on inverse relation pointing to node
-		// --------if (not visited and not target) store as visited and get next neighbour inverse forward
-		// --------if (visited) get next neighbour inverse forward
-		// --------if (target) stop
-		// repeat until target found
-		// include all other unvisited nodes and object properties (second version)
-
-		Set<String> visited = pathList.getPathList();
-		StmtIterator nodeStmtIterator = model.listStatements(currentNode, (Property) null, (RDFNode) null);
-		while (nodeStmtIterator.hasNext())
-		{
-			Statement statement = nodeStmtIterator.next();
-			if (statement.getObject().isLiteral())
-			{
-				continue;
-			}
-
-			if (statement.getPredicate().equals(AFOUtil.RDF_TYPE))
-			{
-				continue;
-			}
-
-			Resource nextNode = statement.getResource();
-			String id;
-			if (nextNode.isAnon())
-			{
-				id = nextNode.asNode().getBlankNodeId().getLabelString();
-			}
-			else
-			{
-				id = nextNode.getURI();
-			}
-			if (visited.contains(id))
-			{
-				continue;
-			}
-
-			if (nextNode.equals(targetNode))
-			{
-				// DONE!!
-				visited.add(id);
-				pathList.setPathList(visited);
-				pathList.setFoundTarget(true);
-				graphStatements.add(statement);
-				return pathList;
-			}
-
-			visited.add(id);
-			pathList.setPathList(visited);
-			graphStatements.add(statement);
-
-			if (findNeighbour(model, nextNode, targetNode, pathList).isFoundTarget())
-			{
-				pathList.setFoundTarget(true);
-				return pathList;
-			}
-		}
-
-		// no forward link leads to target now check inverse links
-		if (findNeighbourInverse(model, currentNode, targetNode, pathList).isFoundTarget())
-		{
-			pathList.setFoundTarget(true);
-			return pathList;
-		}
-
-		return pathList;
-	}
-
-	private PathList findNeighbourInverse(Model model, Resource currentNode, Resource targetNode, PathList pathList)
-	{
-		Set<String> visited = pathList.getPathList();
-		StmtIterator reverseNodeStmtIterator = model.listStatements((Resource) null, (Property) null, currentNode);
-		while (reverseNodeStmtIterator.hasNext())
-		{
-			Statement statement = reverseNodeStmtIterator.next();
-
-			if (statement.getPredicate().equals(AFOUtil.RDF_TYPE))
-			{
-				continue;
-			}
-
-			Resource nextNode = statement.getSubject();
-
-			String id;
-			if (nextNode.isAnon())
-			{
-				id = nextNode.asNode().getBlankNodeId().getLabelString();
-			}
-			else
-			{
-				id = nextNode.getURI();
-			}
-
-			if (visited.contains(id))
-			{
-				continue;
-			}
-
-			if (nextNode.equals(targetNode))
-			{
-				visited.add(id);
-				pathList.setPathList(visited);
-				pathList.setFoundTarget(true);
-				graphStatements.add(statement);
-				return pathList;
-			}
-
-			visited.add(id);
-			pathList.setPathList(visited);
-			graphStatements.add(statement);
-
-			if (findNeighbour(model, nextNode, targetNode, pathList).isFoundTarget())
-			{
-				pathList.setFoundTarget(true);
-				return pathList;
-			}
-		}
-		return pathList;
-	}
-
 	private String getPropertyLabel(Property property, Model model)
 	{
 		String propertyLabel = StringUtils.EMPTY;
@@ -1,5 +1,6 @@
 package com.osthus.rdfcmap.util;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -7,6 +8,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
@@ -24,13 +26,11 @@ import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.graph.GraphUtil;
 import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -39,10 +39,13 @@ import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphReadOnly;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import com.osthus.adf.AdfCreator;
@@ -357,6 +360,8 @@ public class CmapUtil
 	 * Extract RDf model from additional &lt;rdf-model&gt;-tag within CXL. The visualization may contain changes that are not yet synchronized to the stored
 	 * model. So, we first extract the stored model.
 	 *
+	 * The content of the tag is streamed from the CXL directly into the Turtle parser, neither a DOM of the CXL nor a temporary file is created.
+	 *
 	 * @param path
 	 * @return
 	 * @throws ParserConfigurationException
@@ -364,40 +369,39 @@ public class CmapUtil
 	 * @throws IOException
 	 * @throws FileNotFoundException
 	 */
+	@SuppressWarnings("deprecation")
 	public static Model extractStoredModelFromCxl(Path path) throws ParserConfigurationException, SAXException, IOException, FileNotFoundException
 	{
-		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-		DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-		Document document = documentBuilder.parse(new FileInputStream(path.toFile()));
-
 		Model model = ModelFactory.createDefaultModel();
+		parseStoredModelFromCxl(path, StreamRDFLib.graph(model.getGraph()));
+		return model;
+	}
 
-		Node rdfModelNode = document.getElementsByTagName("rdf-model").item(0);
-		String rdfModelString = StringUtils.EMPTY;
-		if (rdfModelNode != null && !rdfModelNode.getTextContent().isEmpty())
+	/**
+	 * Streams the triples of the RDF model stored in the CXL to the given destination. Nothing is sent if the CXL does not contain an RDF model.
+	 *
+	 * @param path
+	 * @param destination
+	 */
+	static void parseStoredModelFromCxl(Path path, StreamRDF destination) throws ParserConfigurationException, SAXException, IOException, FileNotFoundException
+	{
+		try (InputStream cxlInputStream = new BufferedInputStream(new FileInputStream(path.toFile())))
 		{
-			rdfModelString = rdfModelNode.getTextContent();
-			String inputPath = StringUtils.EMPTY;
-			String tempFileName = StringUtils.EMPTY;
-			if (path.getParent() != null)
+			RdfModelElementReader rdfModelReader = RdfModelElementReader.open(cxlInputStream);
+			if (rdfModelReader == null)
 			{
-				inputPath = path.getParent().toString();
-				tempFileName = inputPath + "/temp.ttl";
+				return;
 			}
-			else
+
+			try
 			{
-				tempFileName = "temp.ttl";
+				RDFDataMgr.parse(destination, rdfModelReader, path.toUri().toString(), Lang.TURTLE);
+			}
+			finally
+			{
+				rdfModelReader.close();
 			}
-
-			Path tempInput = Paths.get(tempFileName);
-			Files.deleteIfExists(tempInput);
-			tempInput = Files.createFile(tempInput);
-			FileUtils.writeStringToFile(tempInput.toFile(), rdfModelString);
-
-			model.read(tempInput.toUri().toString(), null, "TTL");
-			Files.deleteIfExists(tempInput);
 		}
-		return model;
 	}
 
 	/**
@@ -414,99 +418,91 @@ public class CmapUtil
 	{
 		if (additionalFiles != null && additionalFiles.length > 0)
 		{
-			Model tempModel = ModelFactory.createDefaultModel();
-			tempModel.add(model);
-
-			Model visualizationModel = extractVisualizationModel(tempModel);
-			int numTriplesBeforeAddingOtherModels = tempModel.listStatements().toList().size();
-			tempModel.removeAll();
+			long numTriplesBeforeAddingOtherModels = model.size();
 
-			for (int i = 0; i < additionalFiles.length; i++)
+			for (VocabularyReader.ParsedFile parsedFile : VocabularyReader.readAll(toPaths(additionalFiles)))
 			{
-				Path pathToAdditionalFile = Paths.get(additionalFiles[i]);
-				log.info("Reading triples from file: " + pathToAdditionalFile.toString());
-				Model additionalModel = null;
-				if (pathToAdditionalFile.toString().toUpperCase().endsWith("TTL"))
+				if (parsedFile.numTriples > 0)
 				{
-					additionalModel = ModelFactory.createDefaultModel();
-					additionalModel.read(new FileInputStream(pathToAdditionalFile.toFile()), null, "TTL");
-				}
-				else if (pathToAdditionalFile.toString().toUpperCase().endsWith("CXL"))
-				{
-					additionalModel = CmapUtil.extractStoredModelFromCxl(pathToAdditionalFile);
-				}
-				else if (pathToAdditionalFile.toString().toUpperCase().endsWith("OWL"))
-				{
-					additionalModel = ModelFactory.createDefaultModel();
-					additionalModel.read(new FileInputStream(pathToAdditionalFile.toFile()), null, "RDF/XML");
-				}
-				else
-				{
-					throw new IllegalStateException("Unsupported input file: " + pathToAdditionalFile.toString());
-				}
-
-				if (additionalModel != null && !additionalModel.isEmpty())
-				{
-					int numTriplesToAdd = additionalModel.listStatements().toList().size();
-					int numTriples = tempModel.listStatements().toList().size();
-					tempModel = tempModel.add(additionalModel);
-					int numTriplesNew = tempModel.listStatements().toList().size();
-					log.info(numTriplesToAdd + " triples found. " + (numTriplesNew - numTriples) + " triples added.");
+					long numTriples = model.size();
+					GraphUtil.addInto(model.getGraph(), parsedFile.graph);
+					log.info(parsedFile.numTriples + " triples found. " + (model.size() - numTriples) + " triples added.");
 				}
 				else
 				{
-					log.info("No triples added from file: " + pathToAdditionalFile.toString());
+					log.info("No triples added from file: " + parsedFile.path.toString());
 				}
 			}
 
-			tempModel.add(visualizationModel);
-			model.add(tempModel);
-			int numTriplesAfterAddingOtherModels = model.listStatements().toList().size();
-			int change = numTriplesAfterAddingOtherModels - numTriplesBeforeAddingOtherModels;
+			long change = model.size() - numTriplesBeforeAddingOtherModels;
 			log.info("Model " + (change > 0 ? "increased " : (change == 0 ? "changed " : "reduced ")) + "by " + change + " triples. ");
 		}
 
 		return model;
 	}
 
-	public static Model addTriples(List<String> additionalFileNames, Model model)
-			throws FileNotFoundException, ParserConfigurationException, SAXException, IOException
+	/**
+	 * Adds the triples of a vocabulary that has already been read, e.g. the shared vocabulary of batch mode. The vocabulary itself is not modified.
+	 *
+	 * @param vocabulary
+	 * @param model
+	 * @return model with all triples of the vocabulary
+	 */
+	public static Model addTriples(Model vocabulary, Model model)
 	{
-		String[] additionalFiles = new String[additionalFileNames.size()];
-		for (int i = 0; i < additionalFiles.length; i++)
+		if (vocabulary != null && !vocabulary.isEmpty())
 		{
-			additionalFiles[i] = additionalFileNames.get(i);
+			long numTriples = model.size();
+			model.add(vocabulary);
+			long change = model.size() - numTriples;
+			log.info(vocabulary.size() + " triples found in shared vocabulary. Model increased by " + change + " triples.");
 		}
-		return addTriples(additionalFiles, model);
+
+		return model;
 	}
 
-	private static Model extractVisualizationModel(Model model)
+	/**
+	 * Reads all additional files into one model that must not be modified anymore. It may be read by several conversions at the same time.
+	 *
+	 * @param additionalFiles
+	 * @return read-only model of all triples, or null if there are no additional files
+	 */
+	public static Model readSharedVocabulary(String[] additionalFiles) throws FileNotFoundException, ParserConfigurationException, SAXException, IOException
 	{
-		Model tempModel = ModelFactory.createDefaultModel();
-		Set<Statement> statementsToAdd = new HashSet<Statement>();
-		StmtIterator stmtIterator = model.listStatements();
-		while (stmtIterator.hasNext())
+		if (additionalFiles == null || additionalFiles.length == 0)
 		{
-			Statement statement = stmtIterator.next();
-			if (statement.getSubject().isAnon())
-			{
-				continue;
-			}
+			return null;
+		}
 
-			if (statement.getSubject().getURI().contains(VizUtil.AFV_PREFIX))
-			{
-				statementsToAdd.add(statement);
-				statementsToAdd = addStatementsWithBlankNodes(model, statement, statementsToAdd);
-			}
-			else if (statement.getSubject().getURI().contains(CmapUtil.URN_UUID))
-			{
-				statementsToAdd.add(statement);
-				statementsToAdd = addStatementsWithBlankNodes(model, statement, statementsToAdd);
-			}
+		Model vocabulary = ModelFactory.createDefaultModel();
+		for (VocabularyReader.ParsedFile parsedFile : VocabularyReader.readAll(toPaths(additionalFiles)))
+		{
+			GraphUtil.addInto(vocabulary.getGraph(), parsedFile.graph);
 		}
+		log.info(vocabulary.size() + " triples in shared vocabulary.");
+
+		return ModelFactory.createModelForGraph(new GraphReadOnly(vocabulary.getGraph()));
+	}
 
-		tempModel.add(new ArrayList<Statement>(statementsToAdd));
-		return tempModel;
+	private static List<Path> toPaths(String[] fileNames)
+	{
+		List<Path> paths = new ArrayList<>(fileNames.length);
+		for (String fileName : fileNames)
+		{
+			paths.add(Paths.get(fileName));
+		}
+		return paths;
+	}
+
+	public static Model addTriples(List<String> additionalFileNames, Model model)
+			throws FileNotFoundException, ParserConfigurationException, SAXException, IOException
+	{
+		String[] additionalFiles = new String[additionalFileNames.size()];
+		for (int i = 0; i < additionalFiles.length; i++)
+		{
+			additionalFiles[i] = additionalFileNames.get(i);
+		}
+		return addTriples(additionalFiles, model);
 	}
 
 	public static String determineBackgroundColor(Model model, Resource uiResource)
@@ -0,0 +1,168 @@
+package com.osthus.rdfcmap.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+import com.osthus.rdfcmap.helper.ConceptRelation;
+
+/**
+ * Topology of the UI concepts, links and connections of a model.
+ *
+ * Built in one pass over the afv:connectsFrom and afv:connectsTo triples of all afv:Connection resources. A link is related to the concept of its incoming
+ * connection and the concept of its outgoing connection; if a link has several incoming or outgoing connections, the first one is used. Lookups of the
+ * relation of a link and of the relations starting or ending at a concept take constant time.
+ *
+ * The graph is a snapshot, it has to be created again after connections of the model were changed.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class ConnectionGraph
+{
+	private final Map<Resource, Resource> connection2from = new LinkedHashMap<>();
+
+	private final Map<Resource, Resource> connection2to = new HashMap<>();
+
+	private final Map<Resource, ConceptRelation> link2conceptRelation = new LinkedHashMap<>();
+
+	private final Map<Resource, List<ConceptRelation>> concept2outgoingRelations = new HashMap<>();
+
+	private final Map<Resource, List<ConceptRelation>> concept2incomingRelations = new HashMap<>();
+
+	public ConnectionGraph(Model model)
+	{
+		Set<Resource> connections = new HashSet<>(model.listSubjectsWithProperty(AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION).toList());
+		Set<Resource> concepts = new HashSet<>(model.listSubjectsWithProperty(AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT).toList());
+
+		collectEnds(model, VizUtil.AFV_CONNECTS_FROM, connections, connection2from);
+		collectEnds(model, VizUtil.AFV_CONNECTS_TO, connections, connection2to);
+		connection2from.keySet().retainAll(connection2to.keySet());
+
+		Map<Resource, Resource> link2from = new LinkedHashMap<>();
+		Map<Resource, Resource> link2to = new HashMap<>();
+		for (Entry<Resource, Resource> entry : connection2from.entrySet())
+		{
+			Resource from = entry.getValue();
+			Resource to = connection2to.get(entry.getKey());
+			boolean isFromConcept = concepts.contains(from);
+			boolean isToConcept = concepts.contains(to);
+			if (isFromConcept && !isToConcept && !link2from.containsKey(to))
+			{
+				link2from.put(to, from);
+			}
+			else if (!isFromConcept && isToConcept && !link2to.containsKey(from))
+			{
+				link2to.put(from, to);
+			}
+		}
+
+		for (Entry<Resource, Resource> entry : link2from.entrySet())
+		{
+			Resource link = entry.getKey();
+			Resource to = link2to.get(link);
+			if (to == null)
+			{
+				continue;
+			}
+
+			ConceptRelation conceptRelation = new ConceptRelation(entry.getValue(), to, link);
+			link2conceptRelation.put(link, conceptRelation);
+			addRelation(concept2outgoingRelations, conceptRelation.from, conceptRelation);
+			addRelation(concept2incomingRelations, conceptRelation.to, conceptRelation);
+		}
+	}
+
+	/**
+	 * @return all UI connections with both ends, in the order of the model
+	 */
+	public Set<Resource> getConnections()
+	{
+		return Collections.unmodifiableSet(connection2from.keySet());
+	}
+
+	public Resource getConnectsFrom(Resource connection)
+	{
+		return connection2from.get(connection);
+	}
+
+	public Resource getConnectsTo(Resource connection)
+	{
+		return connection2to.get(connection);
+	}
+
+	/**
+	 * @return relation between concepts for every UI link
+	 */
+	public Map<Resource, ConceptRelation> getConceptRelations()
+	{
+		return Collections.unmodifiableMap(link2conceptRelation);
+	}
+
+	/**
+	 * @param link
+	 * @return relation of the given UI link or null if the link does not connect two concepts
+	 */
+	public ConceptRelation getConceptRelation(Resource link)
+	{
+		return link2conceptRelation.get(link);
+	}
+
+	/**
+	 * @param concept
+	 * @return relations via links starting at the given UI concept
+	 */
+	public List<ConceptRelation> getOutgoingRelations(Resource concept)
+	{
+		List<ConceptRelation> relations = concept2outgoingRelations.get(concept);
+		return relations == null ? Collections.<ConceptRelation> emptyList() : Collections.unmodifiableList(relations);
+	}
+
+	/**
+	 * @param concept
+	 * @return relations via links ending at the given UI concept
+	 */
+	public List<ConceptRelation> getIncomingRelations(Resource concept)
+	{
+		List<ConceptRelation> relations = concept2incomingRelations.get(concept);
+		return relations == null ? Collections.<ConceptRelation> emptyList() : Collections.unmodifiableList(relations);
+	}
+
+	private static void collectEnds(Model model, Property property, Set<Resource> connections, Map<Resource, Resource> connection2end)
+	{
+		StmtIterator stmtIterator = model.listStatements((Resource) null, property, (RDFNode) null);
+		while (stmtIterator.hasNext())
+		{
+			Statement statement = stmtIterator.next();
+			if (!connections.contains(statement.getSubject()) || !statement.getObject().isResource() || connection2end.containsKey(statement.getSubject()))
+			{
+				continue;
+			}
+
+			connection2end.put(statement.getSubject(), statement.getResource());
+		}
+	}
+
+	private static void addRelation(Map<Resource, List<ConceptRelation>> concept2relations, Resource concept, ConceptRelation conceptRelation)
+	{
+		List<ConceptRelation> relations = concept2relations.get(concept);
+		if (relations == null)
+		{
+			relations = new ArrayList<>();
+			concept2relations.put(concept, relations);
+		}
+		relations.add(conceptRelation);
+	}
+}
@@ -0,0 +1,301 @@
+package com.osthus.rdfcmap.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+/**
+ * Index of skos:prefLabel and rdfs:label values of all classes, named individuals and properties of a model.
+ *
+ * The index is built lazily once per model and kept up to date by a listener on the model: added class, individual, property or label triples are indexed
+ * incrementally, removed ones mark the index as outdated so that it gets rebuilt on the next lookup. Resources are stored as nodes only, so the index does not
+ * keep its model alive.
+ *
+ * The index is keyed by label only, not by namespace and label: a label maps to the few resources of all namespaces that carry it. The caller selects the
+ * resource whose IRI starts with the requested namespace and reports the others as possible matches, see {@link RdfUtil#getResourceByLabel}.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class LabelIndex
+{
+	private static final Map<Model, LabelIndex> model2index = Collections.synchronizedMap(new WeakHashMap<Model, LabelIndex>());
+
+	private static final Node OWL_CLASS = AFOUtil.OWL_CLASS.asNode();
+	private static final Node OWL_NAMED_INDIVIDUAL = AFOUtil.OWL_NAMED_INDIVIDUAL.asNode();
+	private static final Node OWL_OBJECT_PROPERTY = AFOUtil.OWL_OBJECT_PROPERTY.asNode();
+	private static final Node OWL_DATATYPE_PROPERTY = AFOUtil.OWL_DATATYPE_PROPERTY.asNode();
+	private static final Node OWL_ANNOTATION_PROPERTY = AFOUtil.OWL_ANNOTATION_PROPERTY.asNode();
+	private static final Node SKOS_PREF_LABEL = AFOUtil.SKOS_PREF_LABEL.asNode();
+	private static final Node RDFS_LABEL = AFOUtil.RDFS_LABEL.asNode();
+
+	private final Map<String, Set<Node>> label2classesAndIndividuals = new HashMap<>();
+	private final Map<String, Set<Node>> label2properties = new HashMap<>();
+
+	private final Set<Node> classesAndIndividuals = new LinkedHashSet<>();
+	private final Set<Node> properties = new LinkedHashSet<>();
+
+	private boolean isValid = false;
+
+	private LabelIndex()
+	{
+	}
+
+	/**
+	 * Returns the label index of the given model. The index is created and registered at the model on first access.
+	 *
+	 * @param model
+	 * @return
+	 */
+	public static LabelIndex forModel(Model model)
+	{
+		synchronized (model2index)
+		{
+			LabelIndex labelIndex = model2index.get(model);
+			if (labelIndex == null)
+			{
+				labelIndex = new LabelIndex();
+				model.register(labelIndex.new LabelIndexListener());
+				model2index.put(model, labelIndex);
+			}
+			return labelIndex;
+		}
+	}
+
+	/**
+	 * Returns all classes and named individuals (and optionally properties) with a skos:prefLabel or rdfs:label equal to the given label.
+	 *
+	 * @param model
+	 * @param label
+	 * @param includeProperties
+	 * @return
+	 */
+	public synchronized List<Resource> getResourcesByLabel(Model model, String label, boolean includeProperties)
+	{
+		if (!isValid)
+		{
+			rebuild(model);
+		}
+
+		List<Resource> resources = new ArrayList<>();
+		Set<Node> nodes = label2classesAndIndividuals.get(label);
+		if (nodes != null)
+		{
+			for (Node node : nodes)
+			{
+				resources.add(model.wrapAsResource(node));
+			}
+		}
+
+		if (!includeProperties)
+		{
+			return resources;
+		}
+
+		nodes = label2properties.get(label);
+		if (nodes != null)
+		{
+			for (Node node : nodes)
+			{
+				Resource resource = model.wrapAsResource(node);
+				if (!resources.contains(resource))
+				{
+					resources.add(resource);
+				}
+			}
+		}
+
+		return resources;
+	}
+
+	/**
+	 * Marks the index as outdated. It is rebuilt on the next lookup.
+	 */
+	public synchronized void invalidate()
+	{
+		isValid = false;
+	}
+
+	private void rebuild(Model model)
+	{
+		label2classesAndIndividuals.clear();
+		label2properties.clear();
+		classesAndIndividuals.clear();
+		properties.clear();
+
+		collectSubjects(model, AFOUtil.OWL_CLASS, classesAndIndividuals);
+		collectSubjects(model, AFOUtil.OWL_NAMED_INDIVIDUAL, classesAndIndividuals);
+		collectSubjects(model, AFOUtil.OWL_OBJECT_PROPERTY, properties);
+		collectSubjects(model, AFOUtil.OWL_DATATYPE_PROPERTY, properties);
+		collectSubjects(model, AFOUtil.OWL_ANNOTATION_PROPERTY, properties);
+
+		for (Node node : classesAndIndividuals)
+		{
+			indexLabels(model, node, label2classesAndIndividuals);
+		}
+
+		for (Node node : properties)
+		{
+			indexLabels(model, node, label2properties);
+		}
+
+		isValid = true;
+	}
+
+	private static void collectSubjects(Model model, RDFNode type, Set<Node> subjects)
+	{
+		StmtIterator stmtIterator = model.listStatements((Resource) null, null, type);
+		while (stmtIterator.hasNext())
+		{
+			Resource subject = stmtIterator.next().getSubject();
+			if (subject.isURIResource())
+			{
+				subjects.add(subject.asNode());
+			}
+		}
+	}
+
+	private static void indexLabels(Model model, Node node, Map<String, Set<Node>> label2nodes)
+	{
+		Resource subject = model.wrapAsResource(node);
+		indexLabels(model.listStatements(subject, AFOUtil.SKOS_PREF_LABEL, (RDFNode) null), node, label2nodes);
+		indexLabels(model.listStatements(subject, AFOUtil.RDFS_LABEL, (RDFNode) null), node, label2nodes);
+	}
+
+	private static void indexLabels(StmtIterator labelIterator, Node node, Map<String, Set<Node>> label2nodes)
+	{
+		while (labelIterator.hasNext())
+		{
+			Statement statement = labelIterator.next();
+			if (!statement.getObject().isLiteral())
+			{
+				continue;
+			}
+			addLabel(statement.getString(), node, label2nodes);
+		}
+	}
+
+	private static void addLabel(String label, Node node, Map<String, Set<Node>> label2nodes)
+	{
+		Set<Node> nodes = label2nodes.get(label);
+		if (nodes == null)
+		{
+			nodes = new LinkedHashSet<>(2);
+			label2nodes.put(label, nodes);
+		}
+		nodes.add(node);
+	}
+
+	private static boolean isClassOrIndividual(Node object)
+	{
+		return OWL_CLASS.equals(object) || OWL_NAMED_INDIVIDUAL.equals(object);
+	}
+
+	private static boolean isProperty(Node object)
+	{
+		return OWL_OBJECT_PROPERTY.equals(object) || OWL_DATATYPE_PROPERTY.equals(object) || OWL_ANNOTATION_PROPERTY.equals(object);
+	}
+
+	private static boolean isLabel(Node predicate)
+	{
+		return SKOS_PREF_LABEL.equals(predicate) || RDFS_LABEL.equals(predicate);
+	}
+
+	private synchronized void added(Statement statement)
+	{
+		if (!isValid)
+		{
+			return;
+		}
+
+		Node subject = statement.getSubject().asNode();
+		Node predicate = statement.getPredicate().asNode();
+		Node object = statement.getObject().asNode();
+
+		if (!subject.isURI())
+		{
+			return;
+		}
+
+		if (isClassOrIndividual(object))
+		{
+			if (classesAndIndividuals.add(subject))
+			{
+				indexLabels(statement.getModel(), subject, label2classesAndIndividuals);
+			}
+		}
+		else if (isProperty(object))
+		{
+			if (properties.add(subject))
+			{
+				indexLabels(statement.getModel(), subject, label2properties);
+			}
+		}
+		else if (isLabel(predicate) && object.isLiteral())
+		{
+			String label = statement.getString();
+			if (classesAndIndividuals.contains(subject))
+			{
+				addLabel(label, subject, label2classesAndIndividuals);
+			}
+			if (properties.contains(subject))
+			{
+				addLabel(label, subject, label2properties);
+			}
+		}
+	}
+
+	private synchronized void removed(Statement statement)
+	{
+		if (!isValid)
+		{
+			return;
+		}
+
+		Node subject = statement.getSubject().asNode();
+		if (!classesAndIndividuals.contains(subject) && !properties.contains(subject))
+		{
+			return;
+		}
+
+		Node object = statement.getObject().asNode();
+		if (isClassOrIndividual(object) || isProperty(object) || isLabel(statement.getPredicate().asNode()))
+		{
+			isValid = false;
+		}
+	}
+
+	private class LabelIndexListener extends StatementListener
+	{
+		@Override
+		public void addedStatement(Statement statement)
+		{
+			added(statement);
+		}
+
+		@Override
+		public void removedStatement(Statement statement)
+		{
+			removed(statement);
+		}
+
+		@Override
+		public void notifyEvent(Model model, Object event)
+		{
+			// removeAll and other bulk events do not report single statements
+			invalidate();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.osthus.rdfcmap.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Registry of timers, counters and gauges of the conversion pipelines.
+ *
+ * Every stage of a pipeline is measured by a timer from {@link #start(String)} to {@link Timer#stop()}. Besides the elapsed time, a timer records the bytes
+ * allocated by the measuring thread during the stage if the JVM supports it. Counters are summed up, gauges keep the last reported value (e.g. the number of
+ * triples after a stage). All metrics of a run are written as JSON with option --metrics.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class PipelineMetrics
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final Map<String, TimerStatistics> timers = new LinkedHashMap<>();
+
+	private static final Map<String, Long> counters = new LinkedHashMap<>();
+
+	private static final Map<String, Long> gauges = new LinkedHashMap<>();
+
+	private static final com.sun.management.ThreadMXBean threadMXBean = createThreadMXBean();
+
+	/**
+	 * Starts measuring a stage. The same stage may be measured several times, all measurements are summed up.
+	 *
+	 * @param name
+	 * @return timer to stop at the end of the stage
+	 */
+	public static Timer start(String name)
+	{
+		return new Timer(name);
+	}
+
+	public static synchronized void count(String name, long increment)
+	{
+		Long value = counters.get(name);
+		counters.put(name, value == null ? increment : value + increment);
+	}
+
+	public static synchronized void gauge(String name, long value)
+	{
+		gauges.put(name, value);
+	}
+
+	public static synchronized void reset()
+	{
+		timers.clear();
+		counters.clear();
+		gauges.clear();
+	}
+
+	private static synchronized void record(String name, long nanos, long allocatedBytes)
+	{
+		TimerStatistics statistics = timers.get(name);
+		if (statistics == null)
+		{
+			statistics = new TimerStatistics();
+			timers.put(name, statistics);
+		}
+		statistics.calls++;
+		statistics.totalNanos += nanos;
+		statistics.maxNanos = Math.max(statistics.maxNanos, nanos);
+		if (allocatedBytes >= 0)
+		{
+			statistics.allocatedBytes += allocatedBytes;
+		}
+	}
+
+	public static synchronized JsonObject toJson()
+	{
+		JsonObject jsonTimers = new JsonObject();
+		for (Entry<String, TimerStatistics> entry : timers.entrySet())
+		{
+			TimerStatistics statistics = entry.getValue();
+			JsonObject jsonTimer = new JsonObject();
+			jsonTimer.put("calls", statistics.calls);
+			jsonTimer.put("totalMillis", statistics.totalNanos / 1000000l);
+			jsonTimer.put("maxMillis", statistics.maxNanos / 1000000l);
+			if (threadMXBean != null)
+			{
+				jsonTimer.put("allocatedBytes", statistics.allocatedBytes);
+			}
+			jsonTimers.put(entry.getKey(), jsonTimer);
+		}
+
+		JsonObject jsonCounters = new JsonObject();
+		for (Entry<String, Long> entry : counters.entrySet())
+		{
+			jsonCounters.put(entry.getKey(), entry.getValue());
+		}
+
+		JsonObject jsonGauges = new JsonObject();
+		for (Entry<String, Long> entry : gauges.entrySet())
+		{
+			jsonGauges.put(entry.getKey(), entry.getValue());
+		}
+
+		JsonObject json = new JsonObject();
+		json.put("timers", jsonTimers);
+		json.put("counters", jsonCounters);
+		json.put("gauges", jsonGauges);
+		return json;
+	}
+
+	public static void write(Path path) throws IOException
+	{
+		log.info("Writing metrics to: " + path.toString());
+		try (OutputStream outputStream = Files.newOutputStream(path))
+		{
+			JSON.write(outputStream, toJson());
+		}
+	}
+
+	private static long allocatedBytes()
+	{
+		if (threadMXBean == null)
+		{
+			return -1;
+		}
+		return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean createThreadMXBean()
+	{
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+		{
+			return null;
+		}
+
+		com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		if (!sunThreadMXBean.isThreadAllocatedMemorySupported())
+		{
+			return null;
+		}
+		if (!sunThreadMXBean.isThreadAllocatedMemoryEnabled())
+		{
+			sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+		}
+		return sunThreadMXBean;
+	}
+
+	public static class Timer
+	{
+		private final String name;
+
+		private final long startNanos;
+
+		private final long startBytes;
+
+		private Timer(String name)
+		{
+			this.name = name;
+			this.startBytes = allocatedBytes();
+			this.startNanos = System.nanoTime();
+		}
+
+		/**
+		 * Stops measuring the stage and records the result.
+		 *
+		 * @return elapsed nanoseconds
+		 */
+		public long stop()
+		{
+			long nanos = System.nanoTime() - startNanos;
+			long bytes = startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+			record(name, nanos, bytes);
+			return nanos;
+		}
+	}
+
+	private static class TimerStatistics
+	{
+		private long calls = 0;
+
+		private long totalNanos = 0;
+
+		private long maxNanos = 0;
+
+		private long allocatedBytes = 0;
+	}
+}
@@ -0,0 +1,152 @@
+package com.osthus.rdfcmap.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reader for the character content of the &lt;rdf-model&gt;-tag within CXL.
+ *
+ * The CXL is pulled with StAX up to the start of the tag, afterwards the text of the tag is handed out chunk by chunk as it is parsed. Neither a DOM of the
+ * document nor the complete text of the tag is held in memory, so the reader can be passed directly to a Turtle parser.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+public class RdfModelElementReader extends Reader
+{
+	public static final String RDF_MODEL_TAG = "rdf-model";
+
+	private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+	private final XMLStreamReader xmlStreamReader;
+
+	private int textOffset = 0;
+
+	private int textLength = 0;
+
+	private int depth = 0;
+
+	private boolean finished = false;
+
+	private RdfModelElementReader(XMLStreamReader xmlStreamReader)
+	{
+		this.xmlStreamReader = xmlStreamReader;
+	}
+
+	/**
+	 * Moves forward in the given CXL until the &lt;rdf-model&gt;-tag is found.
+	 *
+	 * @param cxlInputStream
+	 * @return reader for the content of the tag or null if the CXL does not contain an RDF model
+	 * @throws IOException
+	 */
+	public static RdfModelElementReader open(InputStream cxlInputStream) throws IOException
+	{
+		try
+		{
+			XMLStreamReader xmlStreamReader;
+			synchronized (xmlInputFactory)
+			{
+				xmlStreamReader = xmlInputFactory.createXMLStreamReader(cxlInputStream);
+			}
+
+			while (xmlStreamReader.hasNext())
+			{
+				if (xmlStreamReader.next() == XMLStreamConstants.START_ELEMENT && RDF_MODEL_TAG.equals(xmlStreamReader.getLocalName()))
+				{
+					return new RdfModelElementReader(xmlStreamReader);
+				}
+			}
+
+			xmlStreamReader.close();
+			return null;
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException("Error while searching for <" + RDF_MODEL_TAG + "> in CXL: " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	@Override
+	public int read(char[] buffer, int offset, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+
+		try
+		{
+			while (!finished)
+			{
+				if (textOffset < textLength)
+				{
+					int numChars = Math.min(length, textLength - textOffset);
+					System.arraycopy(xmlStreamReader.getTextCharacters(), xmlStreamReader.getTextStart() + textOffset, buffer, offset, numChars);
+					textOffset += numChars;
+					return numChars;
+				}
+
+				textOffset = 0;
+				textLength = 0;
+
+				switch (xmlStreamReader.next())
+				{
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						textLength = xmlStreamReader.getTextLength();
+						break;
+					case XMLStreamConstants.START_ELEMENT:
+						depth++;
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						if (depth == 0)
+						{
+							finished = true;
+						}
+						depth--;
+						break;
+					case XMLStreamConstants.END_DOCUMENT:
+						finished = true;
+						break;
+					default:
+						break;
+				}
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException("Error while reading <" + RDF_MODEL_TAG + "> from CXL: " + e.getLocalizedMessage(), e);
+		}
+
+		return -1;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		finished = true;
+		try
+		{
+			xmlStreamReader.close();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	private static XMLInputFactory createXmlInputFactory()
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+}
@@ -3,7 +3,6 @@ package com.osthus.rdfcmap.util;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -24,8 +23,6 @@ import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.osthus.rdfcmap.helper.ConceptRelation;
-
 /**
  * @author Helge Krieg, OSTHUS GmbH
  */
@@ -33,6 +30,16 @@ public class RdfUtil
 {
 	private static final Logger log = LogManager.getLogger("Logger");
 
+	private static final Pattern INSTANCE_PATTERN = Pattern.compile("(?i)(instance\\:[a-zA-Z0-9\\s]+)$");
+
+	private static final Pattern AID_PATTERN = Pattern.compile("\\(([A-Z]+_[0-9]{5,7})\\)");
+
+	private static final Pattern PREFIXED_IRI_PATTERN = Pattern.compile("\\(([a-zA-Z\\-]+\\:[a-zA-Z]+)\\)");
+
+	private static final Pattern PREFIXED_IRI_LIST_PATTERN = Pattern.compile("\\((([a-zA-Z\\-]+\\:[a-zA-Z]+)[\\s]*[\\,]?[\\s]*)*\\)");
+
+	private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s");
+
 	public static boolean isAFTNamespace(String namespace)
 	{
 		if (Prefixes.aftPrefixMap.containsValue(namespace))
@@ -120,65 +127,6 @@ public class RdfUtil
 		return model;
 	}
 
-	public static Map<Resource, ConceptRelation> determineConceptRelations(Model model)
-	{
-		Map<Resource, ConceptRelation> link2conceptRelations = new HashMap<Resource, ConceptRelation>();
-		Set<Resource> handledConnections = new HashSet<>();
-		StmtIterator stmtIterator = model.listStatements((Resource) null, AFOUtil.RDF_TYPE, VizUtil.AFV_CONNECTION);
-		while (stmtIterator.hasNext())
-		{
-			Statement statement = stmtIterator.next();
-			Resource connection = statement.getSubject();
-
-			if (handledConnections.contains(connection))
-			{
-				continue;
-			}
-
-			Resource from = model.listStatements(connection, VizUtil.AFV_CONNECTS_FROM, (RDFNode) null).next().getResource();
-			Resource to = model.listStatements(connection, VizUtil.AFV_CONNECTS_TO, (RDFNode) null).next().getResource();
-
-			Resource fromNode = null;
-			Resource toNode = null;
-			Resource link = null;
-			if (model.listStatements(from, AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT).hasNext())
-			{
-				fromNode = from;
-			}
-			else
-			{
-				link = from;
-			}
-			if (model.listStatements(to, AFOUtil.RDF_TYPE, VizUtil.AFV_CONCEPT).hasNext())
-			{
-				toNode = to;
-			}
-			else
-			{
-				link = to;
-			}
-
-			if (fromNode == null)
-			{
-				Resource sourceConnection = model.listStatements((Resource) null, VizUtil.AFV_CONNECTS_TO, link).next().getSubject();
-				fromNode = model.listStatements(sourceConnection, VizUtil.AFV_CONNECTS_FROM, (RDFNode) null).next().getResource();
-				handledConnections.add(sourceConnection);
-			}
-			else
-			{
-				Resource targetConnection = model.listStatements((Resource) null, VizUtil.AFV_CONNECTS_FROM, link).next().getSubject();
-				toNode = model.listStatements(targetConnection, VizUtil.AFV_CONNECTS_TO, (RDFNode) null).next().getResource();
-				handledConnections.add(targetConnection);
-			}
-
-			link2conceptRelations.put(link, new ConceptRelation(fromNode, toNode, link));
-
-			handledConnections.add(connection);
-		}
-
-		return link2conceptRelations;
-	}
-
 	public static String getLabelFromDctTitle(Model model, Resource resource)
 	{
 		if (!resource.hasProperty(AFOUtil.DCT_TITLE))
@@ -204,32 +152,32 @@ public class RdfUtil
 
 		if (label.contains("&#10;"))
 		{
-			label = label.replaceAll("&#10;", "").trim();
+			label = StringUtils.replace(label, "&#10;", "").trim();
 		}
 
 		if (label.contains("&#xa;"))
 		{
-			label = label.replaceAll("&#xa;", "").trim();
+			label = StringUtils.replace(label, "&#xa;", "").trim();
 		}
 
 		if (label.contains("["))
 		{
-			label = label.replaceAll("\\[", "").trim();
+			label = StringUtils.replace(label, "[", "").trim();
 		}
 
 		if (label.contains("]"))
 		{
-			label = label.replaceAll("\\]", "").trim();
+			label = StringUtils.replace(label, "]", "").trim();
 		}
 
 		if (label.contains("instance of"))
 		{
-			label = label.replaceAll("instance of", "").trim();
+			label = StringUtils.replace(label, "instance of", "").trim();
 		}
 
 		if (label.contains("NamedIndividual"))
 		{
-			label = label.replaceAll("NamedIndividual", "").trim();
+			label = StringUtils.replace(label, "NamedIndividual", "").trim();
 		}
 
 		if (label.contains("^^"))
@@ -239,12 +187,11 @@ public class RdfUtil
 
 		if (label.toLowerCase().contains("instance:"))
 		{
-			Pattern pattern = Pattern.compile("(?i)(instance\\:[a-zA-Z0-9\\s]+)$");
-			Matcher matcher = pattern.matcher(label);
+			Matcher matcher = INSTANCE_PATTERN.matcher(label);
 			if (matcher.find())
 			{
 				String instanceString = matcher.group(1);
-				label = label.replaceAll(instanceString, "");
+				label = StringUtils.replace(label, instanceString, "");
 			}
 		}
 
@@ -265,12 +212,11 @@ public class RdfUtil
 
 		if (label.contains("("))
 		{
-			Pattern pattern = Pattern.compile("\\(([A-Z]+_[0-9]{5,7})\\)");
-			Matcher matcher = pattern.matcher(label);
+			Matcher matcher = AID_PATTERN.matcher(label);
 			if (matcher.find())
 			{
 				aid = matcher.group(1);
-				label = label.replaceAll("\\(" + aid + "\\)", "");
+				label = StringUtils.replace(label, "(" + aid + ")", "");
 			}
 		}
 
@@ -278,18 +224,16 @@ public class RdfUtil
 		if (label.contains("("))
 		{
 			// try pattern for readable prefixed iris
-			Pattern pattern = Pattern.compile("\\(([a-zA-Z\\-]+\\:[a-zA-Z]+)\\)");
-			Matcher matcher = pattern.matcher(label);
+			Matcher matcher = PREFIXED_IRI_PATTERN.matcher(label);
 			if (matcher.find())
 			{
 				prefixedIri = matcher.group(1);
-				label = label.replaceAll("\\(" + prefixedIri + "\\)", "");
+				label = StringUtils.replace(label, "(" + prefixedIri + ")", "");
 			}
 			else if (label.contains(","))
 			{
 				// try pattern for comma-separated list of prefixed iris
-				pattern = Pattern.compile("\\((([a-zA-Z\\-]+\\:[a-zA-Z]+)[\\s]*[\\,]?[\\s]*)*\\)");
-				matcher = pattern.matcher(label);
+				matcher = PREFIXED_IRI_LIST_PATTERN.matcher(label);
 				if (matcher.find())
 				{
 					String prefixedIris = matcher.group(0);
@@ -376,8 +320,8 @@ public class RdfUtil
 		{
 			if (filterLabel.trim().contains(" "))
 			{
-				filterLabel = filterLabel.replaceAll("\\s", "-");
-				filterLabel = WordUtils.capitalizeFully(filterLabel, '-').replaceAll("\\-", "");
+				filterLabel = WHITESPACE_PATTERN.matcher(filterLabel).replaceAll("-");
+				filterLabel = StringUtils.remove(WordUtils.capitalizeFully(filterLabel, '-'), '-');
 			}
 			if (!isResourceExpected)
 			{
@@ -446,85 +390,22 @@ public class RdfUtil
 
 		Set<String> partialHits = new HashSet<String>();
 
-		Set<Resource> allClassesAndIndividuals = new HashSet<Resource>();
-		StmtIterator classIterator = model.listStatements((Resource) null, (Property) null, AFOUtil.OWL_CLASS);
-		while (classIterator.hasNext())
+		List<Resource> labelledResources = LabelIndex.forModel(model).getResourcesByLabel(model, filterLabel, includeProperties);
+		for (Resource subject : labelledResources)
 		{
-			Statement statement = classIterator.next();
-			Resource subject = statement.getSubject();
-			allClassesAndIndividuals.add(subject);
-		}
-
-		StmtIterator individualIterator = model.listStatements((Resource) null, (Property) null, AFOUtil.OWL_NAMED_INDIVIDUAL);
-		while (individualIterator.hasNext())
-		{
-			Statement statement = individualIterator.next();
-			Resource subject = statement.getSubject();
-			allClassesAndIndividuals.add(subject);
-		}
-
-		if (includeProperties)
-		{
-			StmtIterator propertiesIterator = model.listStatements((Resource) null, (Property) null, AFOUtil.OWL_OBJECT_PROPERTY);
-			while (propertiesIterator.hasNext())
-			{
-				Statement statement = propertiesIterator.next();
-				Resource subject = statement.getSubject();
-				allClassesAndIndividuals.add(subject);
-			}
-
-			propertiesIterator = model.listStatements((Resource) null, (Property) null, AFOUtil.OWL_DATATYPE_PROPERTY);
-			while (propertiesIterator.hasNext())
+			if (subject.getURI().startsWith(namespace))
 			{
-				Statement statement = propertiesIterator.next();
-				Resource subject = statement.getSubject();
-				allClassesAndIndividuals.add(subject);
+				return subject;
 			}
 
-			propertiesIterator = model.listStatements((Resource) null, (Property) null, AFOUtil.OWL_ANNOTATION_PROPERTY);
-			while (propertiesIterator.hasNext())
+			String currentNamespace = Prefixes.getNamespaceMap().get(subject.getNameSpace());
+			if (currentNamespace != null)
 			{
-				Statement statement = propertiesIterator.next();
-				Resource subject = statement.getSubject();
-				allClassesAndIndividuals.add(subject);
+				partialHits.add(currentNamespace + ":" + filterLabel);
 			}
-
-		}
-
-		Iterator<Resource> nodeIterator = allClassesAndIndividuals.iterator();
-		while (nodeIterator.hasNext())
-		{
-			Resource subject = nodeIterator.next();
-
-			StmtIterator subjectStmtIterator = model.listStatements(subject, (Property) null, (RDFNode) null);
-			while (subjectStmtIterator.hasNext())
+			else
 			{
-				Statement subjectStatement = subjectStmtIterator.next();
-				if (subjectStatement.getPredicate().equals(AFOUtil.SKOS_PREF_LABEL) || subjectStatement.getPredicate().equals(AFOUtil.RDFS_LABEL))
-				{
-					String currentLabel = subjectStatement.getString();
-					if (!filterLabel.equals(currentLabel))
-					{
-						continue;
-					}
-
-					if (subject.getURI().startsWith(namespace))
-					{
-						return subject;
-					}
-					else
-					{
-						String currentNamespace = Prefixes.getNamespaceMap().get(subject.getNameSpace());
-						if (currentNamespace != null)
-						{
-							partialHits.add(currentNamespace + ":" + currentLabel);
-						}
-						else
-						{
-							partialHits.add(subject.getNameSpace() + currentLabel);
-						}
-					}
-				}
+				partialHits.add(subject.getNameSpace() + filterLabel);
 			}
 		}
 
@@ -0,0 +1,273 @@
+package com.osthus.rdfcmap.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.osthus.rdfcmap.RdfCmap;
+
+import de.osthus.ambeth.exception.RuntimeExceptionUtil;
+
+/**
+ * VocabularyCache
+ *
+ * On-disk cache of parsed additional files. Each file is stored as RDF Thrift in an entry named by the hash of its absolute path. The entry header holds
+ * size, modification time and SHA-256 of the content of the file it was created from: an entry is used if size and modification time are unchanged, or if
+ * only the modification time changed but the content hash is still the same. In the latter case the entry is written again with the new modification time.
+ *
+ * Entries are written to a temporary file and atomically moved into place, so several processes can share the cache directory. Readers see either a
+ * complete old or a complete new entry.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class VocabularyCache
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	private static final int MAGIC = 0x52434d56; // RCMV
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String ENTRY_SUFFIX = ".rdft";
+
+	/**
+	 * Size, modification time and content hash of a file, captured before the file is parsed so that an entry never describes a newer file than its triples.
+	 */
+	static class FileState
+	{
+		private final Path path;
+
+		final long size;
+
+		final long lastModified;
+
+		private String contentHash;
+
+		private FileState(Path path, long size, long lastModified)
+		{
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * @return SHA-256 of the content, computed on first use
+		 * @throws IOException
+		 */
+		String contentHash() throws IOException
+		{
+			if (contentHash == null)
+			{
+				contentHash = hashContent(path);
+			}
+			return contentHash;
+		}
+	}
+
+	/**
+	 * @param path
+	 * @return current state of the file or null if it cannot be read
+	 */
+	static FileState capture(Path path)
+	{
+		try
+		{
+			return new FileState(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+		}
+		catch (IOException e)
+		{
+			log.debug("Not using vocabulary cache for file: " + path.toString() + ". " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param path
+	 * @param state
+	 *            state of the file captured before
+	 * @return the cached graph of the file or null if there is no valid entry
+	 */
+	static VocabularyReader.ParsedFile load(Path path, FileState state)
+	{
+		if (RdfCmap.rebuildVocabularyCache)
+		{
+			return null;
+		}
+
+		Path entry = entryFor(path);
+		if (Files.notExists(entry))
+		{
+			return null;
+		}
+
+		VocabularyReader.ParsedFile parsedFile;
+		boolean isModified;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry))))
+		{
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+			{
+				log.debug("Ignoring cache entry of unknown format: " + entry.toString());
+				return null;
+			}
+
+			long size = in.readLong();
+			long lastModified = in.readLong();
+			String contentHash = in.readUTF();
+
+			if (size != state.size)
+			{
+				return null;
+			}
+
+			isModified = lastModified != state.lastModified;
+			if (isModified && !contentHash.equals(state.contentHash()))
+			{
+				return null;
+			}
+
+			Graph graph = Factory.createDefaultGraph();
+			StreamRDFCounting destination = StreamRDFLib.count(StreamRDFLib.graph(graph));
+			RDFDataMgr.parse(destination, in, Lang.RDFTHRIFT);
+			log.info("Read triples of file: " + path.toString() + " from vocabulary cache.");
+			parsedFile = new VocabularyReader.ParsedFile(path, graph, destination.countTriples());
+		}
+		catch (IOException | RiotException e)
+		{
+			log.warn("Could not read vocabulary cache entry " + entry.toString() + " for file: " + path.toString() + ". Parsing file again. " + e.getMessage());
+			return null;
+		}
+
+		if (isModified)
+		{
+			// only the modification time changed, record it so that the content is not hashed again next time
+			store(path, state, parsedFile.graph);
+		}
+		return parsedFile;
+	}
+
+	/**
+	 * Stores the graph parsed from the given file. Failures are logged only, the cache is an optimization.
+	 *
+	 * @param path
+	 * @param state
+	 *            state of the file captured before it was parsed
+	 * @param graph
+	 */
+	static void store(Path path, FileState state, Graph graph)
+	{
+		Path entry = entryFor(path);
+		Path tempEntry = null;
+		try
+		{
+			Files.createDirectories(entry.getParent());
+			String contentHash = state.contentHash();
+
+			tempEntry = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+			try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempEntry)))
+			{
+				DataOutputStream out = new DataOutputStream(outputStream);
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(state.size);
+				out.writeLong(state.lastModified);
+				out.writeUTF(contentHash);
+				out.flush();
+				RDFDataMgr.write(outputStream, graph, RDFFormat.RDF_THRIFT);
+			}
+
+			try
+			{
+				Files.move(tempEntry, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempEntry, entry, StandardCopyOption.REPLACE_EXISTING);
+			}
+			log.debug("Stored triples of file: " + path.toString() + " in vocabulary cache: " + entry.toString());
+		}
+		catch (IOException | RiotException e)
+		{
+			log.warn("Could not store file: " + path.toString() + " in vocabulary cache. " + e.getMessage());
+		}
+		finally
+		{
+			if (tempEntry != null)
+			{
+				try
+				{
+					Files.deleteIfExists(tempEntry);
+				}
+				catch (IOException e)
+				{
+					log.debug("Could not delete temporary cache entry: " + tempEntry.toString());
+				}
+			}
+		}
+	}
+
+	private static Path entryFor(Path path)
+	{
+		String absolutePath = path.toAbsolutePath().normalize().toString();
+		return Paths.get(RdfCmap.vocabularyCacheFolder, toHex(sha256().digest(absolutePath.getBytes(StandardCharsets.UTF_8))) + ENTRY_SUFFIX);
+	}
+
+	private static String hashContent(Path path) throws IOException
+	{
+		MessageDigest digest = sha256();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(path))
+		{
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				digest.update(buffer, 0, read);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest sha256()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw RuntimeExceptionUtil.mask(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		StringBuilder hex = new StringBuilder(2 * bytes.length);
+		for (byte b : bytes)
+		{
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,173 @@
+package com.osthus.rdfcmap.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.xml.sax.SAXException;
+
+import com.osthus.rdfcmap.RdfCmap;
+
+import de.osthus.ambeth.exception.RuntimeExceptionUtil;
+
+/**
+ * VocabularyReader
+ *
+ * Parses additional files (TTL, OWL as RDF/XML or the RDF model stored in CXL) with streaming parsers into one graph per file. Several files are parsed
+ * concurrently, each on its own thread. The number of triples of each file is counted by the parser. Parsed files are taken from and stored in the
+ * {@link VocabularyCache} unless disabled.
+ *
+ * @author Helge Krieg, OSTHUS GmbH
+ */
+class VocabularyReader
+{
+	private static final Logger log = LogManager.getLogger("Logger");
+
+	/**
+	 * Graph of a single additional file with the number of triples the parser emitted.
+	 */
+	static class ParsedFile
+	{
+		final Path path;
+
+		final Graph graph;
+
+		final long numTriples;
+
+		ParsedFile(Path path, Graph graph, long numTriples)
+		{
+			this.path = path;
+			this.graph = graph;
+			this.numTriples = numTriples;
+		}
+	}
+
+	/**
+	 * @param paths
+	 * @return parsed files in the order of the given paths
+	 */
+	static List<ParsedFile> readAll(List<Path> paths) throws FileNotFoundException, ParserConfigurationException, SAXException, IOException
+	{
+		List<ParsedFile> parsedFiles = new ArrayList<>(paths.size());
+		if (paths.size() == 1)
+		{
+			parsedFiles.add(read(paths.get(0)));
+			return parsedFiles;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(paths.size(), Runtime.getRuntime().availableProcessors()));
+		try
+		{
+			List<Future<ParsedFile>> futures = new ArrayList<>(paths.size());
+			for (final Path path : paths)
+			{
+				futures.add(executor.submit(new Callable<ParsedFile>()
+				{
+					@Override
+					public ParsedFile call() throws Exception
+					{
+						return read(path);
+					}
+				}));
+			}
+
+			for (Future<ParsedFile> future : futures)
+			{
+				parsedFiles.add(future.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw RuntimeExceptionUtil.mask(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			if (cause instanceof SAXException)
+			{
+				throw (SAXException) cause;
+			}
+			if (cause instanceof ParserConfigurationException)
+			{
+				throw (ParserConfigurationException) cause;
+			}
+			throw RuntimeExceptionUtil.mask(cause);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		return parsedFiles;
+	}
+
+	static ParsedFile read(Path path) throws FileNotFoundException, ParserConfigurationException, SAXException, IOException
+	{
+		VocabularyCache.FileState state = null;
+		if (RdfCmap.useVocabularyCache)
+		{
+			state = VocabularyCache.capture(path);
+		}
+		if (state != null)
+		{
+			ParsedFile cachedFile = VocabularyCache.load(path, state);
+			if (cachedFile != null)
+			{
+				return cachedFile;
+			}
+			// the file may change while it is parsed, the entry must describe the content before parsing
+			state.contentHash();
+		}
+
+		log.info("Reading triples from file: " + path.toString());
+		Graph graph = Factory.createDefaultGraph();
+		StreamRDFCounting destination = StreamRDFLib.count(StreamRDFLib.graph(graph));
+
+		String fileName = path.toString().toUpperCase();
+		if (fileName.endsWith("TTL"))
+		{
+			RDFDataMgr.parse(destination, path.toUri().toString(), Lang.TURTLE);
+		}
+		else if (fileName.endsWith("CXL"))
+		{
+			CmapUtil.parseStoredModelFromCxl(path, destination);
+		}
+		else if (fileName.endsWith("OWL"))
+		{
+			RDFDataMgr.parse(destination, path.toUri().toString(), Lang.RDFXML);
+		}
+		else
+		{
+			throw new IllegalStateException("Unsupported input file: " + path.toString());
+		}
+
+		if (state != null)
+		{
+			VocabularyCache.store(path, state, graph);
+		}
+
+		return new ParsedFile(path, graph, destination.countTriples());
+	}
+}